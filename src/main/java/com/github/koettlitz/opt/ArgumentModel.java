@@ -1,13 +1,27 @@
 package com.github.koettlitz.opt;
 
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import com.github.koettlitz.util.Util;
+import com.github.koettlitz.util.Bits;
+import com.github.koettlitz.util.FlatMapSpliterator;
+import com.github.koettlitz.util.Glob;
 
 /**
  * Represents parsed arguments. This class is implementing the <code>Iterable</code> interface
  * to iterate over the argumentvalues.
+ * <p>
+ * An argument model is immutable and can be published to other threads without synchronization.
+ * It keeps the given values in one array indexed by {@link ExpectedArgument#getIndex()}
+ * and the presence of the arguments in a bit set, while the names and keys of the arguments
+ * are resolved by the layout shared with all models of the same parser.
+ * Default values of arguments, that were not given, are supplied on the first read and kept by the model.
  *
  * @author David Koettlitz
  * <br>Erstellt am 24.07.2017
@@ -16,11 +30,17 @@ import com.github.koettlitz.util.Util;
  * @see ArgumentParserBuilder
  */
 public class ArgumentModel implements Iterable<String> {
-   private final Map<String, ExpectedPlainArgument> arguments;
+   private static final Object NO_VALUE = new Object();
+
+   private final ArgumentSpec spec;
+   private final long[] present;
+   private final Object[] values;
+   private final int[] counts;
    private final List<String> varArgs;
-   private final Map<Character, ExpectedOption> options;
-   private final Map<String, ExpectedOption> longOptions;
-   private final Command command;
+   private final int command;
+
+   private volatile Object[] suppliedDefaults;
+   private volatile DelimitedList[] lists;
 
     /**
      * Creates a new argument model with arguments and options.
@@ -34,11 +54,12 @@ public class ArgumentModel implements Iterable<String> {
                          Map<Character, ExpectedOption> options,
                          Map<String, ExpectedOption> longOptions,
                          Command command) {
-        this.arguments = Util.nonNull(arguments, Collections::emptySortedMap);
-        this.varArgs = null;
-        this.options = Util.nonNull(options, Collections::emptySortedMap);
-        this.longOptions = Util.nonNull(longOptions, Collections::emptySortedMap);
-        this.command = command;
+        this(specOf(new ArrayList<>(nonNull(arguments).values()), options, longOptions, command),
+             null,
+             nonNull(arguments).values(),
+             nonNull(options).values(),
+             nonNull(longOptions).values(),
+             command);
     }
 
     /**
@@ -53,33 +74,266 @@ public class ArgumentModel implements Iterable<String> {
                          Map<Character, ExpectedOption> options,
                          Map<String, ExpectedOption> longOptions,
                          Command command) {
-        this.arguments = null;
-        this.varArgs = varArgs;
-        this.options = Optional.ofNullable(options).orElseGet(Collections::emptySortedMap);
-        this.longOptions = Optional.ofNullable(longOptions).orElseGet(Collections::emptySortedMap);
-        this.command = command;
+        this(specOf(null, options, longOptions, command),
+             varArgs,
+             null,
+             nonNull(options).values(),
+             nonNull(longOptions).values(),
+             command);
     }
 
+   /**
+    * Creates a new argument model, that takes the current values of the given arguments.
+    *
+    * @param spec The layout of the arguments
+    * @param varArgs The given plain arguments in var args mode, that are taken over as they are,
+    * or <code>null</code>
+    * @param arguments The expected plain arguments or <code>null</code> in var args mode
+    * @param options The expected options
+    * @param longOptions The expected options, that have a long key
+    * @param command The provided command or <code>null</code>
+    */
+   ArgumentModel(ArgumentSpec spec,
+                 List<String> varArgs,
+                 Iterable<ExpectedPlainArgument> arguments,
+                 Collection<ExpectedOption> options,
+                 Collection<ExpectedOption> longOptions,
+                 Command command) {
+      this.spec = spec;
+      this.present = Bits.create(spec.size());
+      this.values = new Object[spec.size()];
+      this.varArgs = varArgs == null ? null : Collections.unmodifiableList(varArgs);
+
+      if (arguments != null) {
+         for (ExpectedPlainArgument arg : arguments) {
+            if (arg.isPresent()) {
+               Bits.set(present, arg.getIndex());
+               values[arg.getIndex()] = arg.getValue();
+            }
+         }
+      }
+
+      this.counts = take(longOptions, take(options, null));
+
+      if (command != null && command.isPresent()) {
+         Bits.set(present, command.getIndex());
+         values[command.getIndex()] = command.getValue();
+         this.command = command.getIndex();
+      } else {
+         this.command = -1;
+      }
+   }
+
+   /**
+    * Creates a new argument model of already collected values, e.g. of a decoded model.
+    *
+    * @param spec The layout of the arguments
+    * @param present The presence of the arguments
+    * @param values The values indexed by the indices of the arguments
+    * @param counts The counts of the options, that are not given exactly once, minus one or <code>null</code>
+    * @param varArgs The given plain arguments in var args mode or <code>null</code>
+    */
+   ArgumentModel(ArgumentSpec spec, long[] present, Object[] values, int[] counts, List<String> varArgs) {
+      this.spec = spec;
+      this.present = present;
+      this.values = values;
+      this.counts = counts;
+      this.varArgs = varArgs == null ? null : Collections.unmodifiableList(varArgs);
+
+      int command = -1;
+      for (int i = Bits.nextSetBit(present, 0); i >= 0 && command < 0; i = Bits.nextSetBit(present, i + 1)) {
+         if (spec.kind(i) == ArgumentSpec.COMMAND)
+            command = i;
+      }
+      this.command = command;
+   }
+
+   /**
+    * Takes the values of the present <code>options</code>.
+    * The number of occurrences is only kept if it differs from 1, shifted by one,
+    * so the counts are only allocated if an option is given more than once.
+    *
+    * @return The counts of the options, that are not given exactly once, or <code>null</code>
+    */
+   private int[] take(Collection<ExpectedOption> options, int[] counts) {
+      for (ExpectedOption option : options) {
+         if (!option.isPresent())
+            continue;
+
+         int index = option.getIndex();
+         Bits.set(present, index);
+         values[index] = option.isMultiValued() ? option.copyValues() : option.getValue();
+         if (option.getCount() != 1) {
+            if (counts == null)
+               counts = new int[values.length];
+
+            counts[index] = option.getCount() - 1;
+         }
+      }
+
+      return counts;
+   }
+
+   private static ArgumentSpec specOf(List<ExpectedPlainArgument> arguments,
+                                      Map<Character, ExpectedOption> options,
+                                      Map<String, ExpectedOption> longOptions,
+                                      Command command) {
+      return new ArgumentSpec(arguments,
+                              nonNull(options),
+                              nonNull(longOptions),
+                              command == null ? Collections.<Command>emptySet() : Collections.singleton(command));
+   }
+
+   private static <K, V> Map<K, V> nonNull(Map<K, V> map) {
+      return map == null ? Collections.<K, V>emptyMap() : map;
+   }
+
     public Collection<String> getPlainArguments() {
         if (varArgs != null)
             return varArgs;
 
-        return arguments.values()
-                        .stream()
-                        .map(ExpectedPlainArgument::getValue)
-                        .collect(Collectors.toList());
+        List<String> plainArguments = new ArrayList<>(spec.plainCount());
+        for (int i = 0; i < spec.plainCount(); i++)
+            plainArguments.add((String) values[spec.plainIndex(i)]);
+
+        return plainArguments;
     }
 
+   /**
+    * Get the value of the plain argument at position <code>index</code>.
+    * In var args mode this is the <code>index</code>th given plain argument,
+    * otherwise the value of the <code>index</code>th expected argument.
+    *
+    * @param index The position of the plain argument
+    *
+    * @return The value of the plain argument, its default value if it was not given
+    * or <code>null</code> if there is no default either
+    *
+    * @throws IndexOutOfBoundsException If <code>index</code> is negative or not less than the number of plain arguments
+    */
+   public String getPlainArgument(int index) throws IndexOutOfBoundsException {
+      if (varArgs != null)
+         return varArgs.get(index);
+
+      if (index < 0 || index >= spec.plainCount())
+         throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + spec.plainCount());
+
+      return valueOrDefault(spec.plainIndex(index));
+   }
+
+   /**
+    * Get a sequential stream over the values of the plain arguments.
+    * The stream can be turned into a parallel stream by calling <code>parallel()</code>.
+    * In var args mode the stream splits the underlying storage without copying it first,
+    * so large numbers of arguments can be processed on multiple cores.
+    *
+    * @return A stream over the values of the plain arguments
+    */
+   public Stream<String> plainArgumentStream() {
+      if (varArgs != null)
+         return StreamSupport.stream(varArgs.spliterator(), false);
+
+      return IntStream.range(0, spec.plainCount())
+                      .mapToObj(this::getPlainArgument);
+   }
+
+   /**
+    * Get a sequential stream over the paths of the plain arguments in their order.
+    * Glob patterns are expanded while the stream is consumed, see {@link #argumentPathStream(String)},
+    * the values of other arguments are single paths.
+    * The stream can be turned into a parallel stream by calling <code>parallel()</code>,
+    * which splits the arguments as well as the paths of a single glob pattern, and it has to be closed
+    * to release the directories, that are read.
+    *
+    * @return A stream over the paths of the plain arguments
+    *
+    * @throws UncheckedIOException If a directory can't be read
+    *
+    * @see ArgumentParserBuilder#setGlobVarArgs(boolean)
+    */
+   public Stream<Path> plainArgumentPathStream() throws UncheckedIOException {
+      return plainArgumentPathStream(Paths.get(""));
+   }
+
+   /**
+    * Get a sequential stream over the paths of the plain arguments like {@link #plainArgumentPathStream()},
+    * but resolves relative paths against <code>workingDirectory</code> instead of the current working directory,
+    * e.g. against the working directory of a client, whose command line is executed by a server.
+    *
+    * @param workingDirectory The directory relative paths are resolved against
+    *
+    * @return A stream over the resolved paths of the plain arguments
+    *
+    * @throws UncheckedIOException If a directory can't be read
+    *
+    * @see com.github.koettlitz.opt.exec.CommandContext#getWorkingDirectory()
+    */
+   public Stream<Path> plainArgumentPathStream(Path workingDirectory) throws UncheckedIOException {
+      if (varArgs != null) {
+         boolean glob = spec.isGlobVarArgs();
+         return FlatMapSpliterator.stream(plainArgumentStream().spliterator(),
+                                          value -> paths(workingDirectory, value, glob));
+      }
+
+      return FlatMapSpliterator.stream(IntStream.range(0, spec.plainCount()).boxed().spliterator(),
+                                       i -> paths(workingDirectory, getPlainArgument(i), spec.glob(spec.plainIndex(i))));
+   }
+
+   /**
+    * Get a sequential stream over the paths of the argument with the given <code>name</code>.
+    * If the argument is a glob pattern, the stream lists the matching paths while the directories are read,
+    * without collecting them first. Otherwise the stream contains the value as a single path.
+    * The stream can be turned into a parallel stream by calling <code>parallel()</code>
+    * and has to be closed to release the directories, that are read.
+    *
+    * @param name The name of the argument
+    *
+    * @return A stream over the paths of the argument or its default value
+    * or an empty stream if there is no value
+    *
+    * @throws UncheckedIOException If a directory can't be read
+    *
+    * @see PlainArgumentBuilder#setGlob(boolean)
+    */
+   public Stream<Path> argumentPathStream(String name) throws UncheckedIOException {
+      return argumentPathStream(name, Paths.get(""));
+   }
+
+   /**
+    * Get a sequential stream over the paths of the argument with the given <code>name</code>
+    * like {@link #argumentPathStream(String)}, but resolves a relative path against <code>workingDirectory</code>
+    * instead of the current working directory.
+    *
+    * @param name The name of the argument
+    * @param workingDirectory The directory a relative path is resolved against
+    *
+    * @return A stream over the resolved paths of the argument or its default value
+    * or an empty stream if there is no value
+    *
+    * @throws UncheckedIOException If a directory can't be read
+    */
+   public Stream<Path> argumentPathStream(String name, Path workingDirectory) throws UncheckedIOException {
+      int index = spec.plainIndex(name);
+      return paths(workingDirectory, valueOrDefault(index), spec.glob(index));
+   }
+
+   private static Stream<Path> paths(Path workingDirectory, String value, boolean glob) {
+      if (value == null)
+         return Stream.empty();
+
+      return glob ? Glob.expand(workingDirectory, value) : Stream.of(workingDirectory.resolve(value));
+   }
+
    /**
     * Get the value of the argument with the given <code>name</code>.
     *
     * @param name The name of the argument
     *
-    * @return The value of the argument or <code>null</code> if the argument
-    * <code>name</code> was not specified.
+    * @return The value of the argument, its default value if the argument <code>name</code> was not specified
+    * or <code>null</code> if there is no default either
     */
    public String getArgumentValue(String name) {
-      return getOptionalArgumentValue(name).orElse(null);
+      return valueOrDefault(spec.plainIndex(name));
    }
 
    /**
@@ -87,12 +341,10 @@ public class ArgumentModel implements Iterable<String> {
     *
     * @param name The name of the argument
     *
-    * @return An optional that contains the arguments value if present.
+    * @return An optional that contains the arguments value if present or else its default value.
     */
    public Optional<String> getOptionalArgumentValue(String name) {
-       return Optional.ofNullable(arguments)
-                      .flatMap(a -> Optional.ofNullable(a.get(name)))
-                      .map(ExpectedPlainArgument::getValue);
+       return Optional.ofNullable(getArgumentValue(name));
    }
 
    /**
@@ -103,10 +355,7 @@ public class ArgumentModel implements Iterable<String> {
     * @return <code>true</code> if the agument was given. <code>false</code> otherwise
     */
    public boolean isArgumentPresent(String name) {
-       return Optional.ofNullable(arguments)
-                      .flatMap(a -> Optional.ofNullable(a.get(name)))
-                      .map(ExpectedArgument::isPresent)
-                      .orElse(false);
+       return isPresent(spec.plainIndex(name));
    }
 
    /**
@@ -114,12 +363,11 @@ public class ArgumentModel implements Iterable<String> {
     *
     * @param key The key of the option
     *
-    * @return The value of the option or <code>null</code> if the option was not specified.
+    * @return The value of the option, its default value if the option was not specified
+    * or <code>null</code> if there is no default either
     */
    public String getOptionValue(char key) {
-      return Optional.ofNullable(options.get(key))
-                     .map(ExpectedOption::getValue)
-                     .orElse(null);
+      return lastValue(spec.optionIndex(key));
    }
 
    /**
@@ -127,12 +375,11 @@ public class ArgumentModel implements Iterable<String> {
     *
     * @param longKey The long key of the option
     *
-    * @return The value of the option or <code>null</code> if the option was not specified.
+    * @return The value of the option, its default value if the option was not specified
+    * or <code>null</code> if there is no default either
     */
    public String getOptionValue(String longKey) {
-      return Optional.ofNullable(longOptions.get(longKey))
-                     .map(ExpectedOption::getValue)
-                     .orElse(null);
+      return lastValue(spec.optionIndex(longKey));
    }
 
    /**
@@ -143,8 +390,7 @@ public class ArgumentModel implements Iterable<String> {
     * @return The value of the option
     */
    public Optional<String> getOptionalValue(char key) {
-      return Optional.ofNullable(options.get(key))
-                     .map(ExpectedOption::getValue);
+      return Optional.ofNullable(getOptionValue(key));
    }
 
    /**
@@ -155,8 +401,85 @@ public class ArgumentModel implements Iterable<String> {
     * @return The value of the option
     */
    public Optional<String> getOptionalValue(String longKey) {
-      return Optional.ofNullable(longOptions.get(longKey))
-                     .map(ExpectedOption::getValue);
+      return Optional.ofNullable(getOptionValue(longKey));
+   }
+
+   /**
+    * Get all the values of the option of the given <code>key</code> in the order they were given.
+    * Only multi valued options keep more than the last value.
+    *
+    * @param key The key of the option
+    *
+    * @return A read-only list of the values, that is empty if the option was not specified
+    */
+   public List<String> getOptionValues(char key) {
+      return allValues(spec.optionIndex(key));
+   }
+
+   /**
+    * Get all the values of the option of the given <code>longKey</code> in the order they were given.
+    * Only multi valued options keep more than the last value.
+    *
+    * @param longKey The long key of the option
+    *
+    * @return A read-only list of the values, that is empty if the option was not specified
+    */
+   public List<String> getOptionValues(String longKey) {
+      return allValues(spec.optionIndex(longKey));
+   }
+
+   /**
+    * Get the entries of the value of the option of the given <code>key</code>, that are separated
+    * by the delimiter of the option, e.g. <code>a</code>, <code>b</code> and <code>c</code> for <code>-h a,b,c</code>.
+    * The entries of all values of a multi valued option are listed. If the option was not specified,
+    * the entries of its default value are listed. The list is split on its first access and kept by the model.
+    *
+    * @param key The key of the option
+    *
+    * @return A read-only list of the entries, that lists every value as one entry if the option has no delimiter
+    *
+    * @see OptionBuilder#setDelimiter(char)
+    */
+   public DelimitedList getOptionList(char key) {
+      return list(spec.optionIndex(key));
+   }
+
+   /**
+    * Get the entries of the value of the option of the given <code>longKey</code>, that are separated
+    * by the delimiter of the option, e.g. <code>a</code>, <code>b</code> and <code>c</code> for <code>--hosts=a,b,c</code>.
+    * The entries of all values of a multi valued option are listed. If the option was not specified,
+    * the entries of its default value are listed. The list is split on its first access and kept by the model.
+    *
+    * @param longKey The long key of the option
+    *
+    * @return A read-only list of the entries, that lists every value as one entry if the option has no delimiter
+    *
+    * @see OptionBuilder#setDelimiter(char)
+    */
+   public DelimitedList getOptionList(String longKey) {
+      return list(spec.optionIndex(longKey));
+   }
+
+   /**
+    * Get how often the option of the given <code>key</code> was given, e.g. 3 for <code>-vvv</code>.
+    *
+    * @param key The key of the option
+    *
+    * @return The number of occurrences of the option
+    */
+   public int getOptionCount(char key) {
+      return count(spec.optionIndex(key));
+   }
+
+   /**
+    * Get how often the option of the given <code>longKey</code> was given.
+    *
+    * @param longKey The long key of the option
+    *
+    * @return The number of occurrences of the option
+    */
+   public int getOptionCount(String longKey) {
+      return count(spec.optionIndex(longKey));
    }
 
    /**
@@ -167,9 +490,7 @@ public class ArgumentModel implements Iterable<String> {
     * @return <code>true</code> if the option was set. <code>false</code> otherwise
     */
     public boolean isOptionPresent(char key) {
-       return Optional.ofNullable(options.get(key))
-                      .map(ExpectedArgument::isPresent)
-                      .orElse(false);
+       return isPresent(spec.optionIndex(key));
     }
 
     /**
@@ -180,9 +501,7 @@ public class ArgumentModel implements Iterable<String> {
      * @return <code>true</code> if the option was set. <code>false</code> otherwise
      */
      public boolean isOptionPresent(String longKey) {
-        return Optional.ofNullable(longOptions.get(longKey))
-                       .map(ExpectedArgument::isPresent)
-                       .orElse(false);
+        return isPresent(spec.optionIndex(longKey));
      }
 
     /**
@@ -193,7 +512,7 @@ public class ArgumentModel implements Iterable<String> {
      * @return The parsed argument model of the command or <code>null</code> if not present
      */
     public ArgumentModel getCommandValue(String name) {
-       return getOptionalCommandValue(name).orElse(null);
+       return (ArgumentModel) valueAt(spec.commandIndex(name));
     }
 
     /**
@@ -204,9 +523,16 @@ public class ArgumentModel implements Iterable<String> {
      * @return An optional containing the parsed argument model of the command if present
      */
     public Optional<ArgumentModel> getOptionalCommandValue(String name) {
-       return Optional.ofNullable(command)
-                      .filter(cmd -> cmd.getName().equals(name))
-                      .map(Command::getValue);
+       return Optional.ofNullable(getCommandValue(name));
+    }
+
+    /**
+     * Get the name of the command, that was given.
+     *
+     * @return The name of the given command or <code>null</code> if no command was given
+     */
+    public String getCommandName() {
+       return command < 0 ? null : spec.name(command);
     }
 
     /**
@@ -217,10 +543,7 @@ public class ArgumentModel implements Iterable<String> {
      * @return <code>true</code> if the command was given. <code>false</code> otherwise
      */
     public boolean isCommandPresent(String name) {
-       return Optional.ofNullable(command)
-                      .filter(cmd -> cmd.getName().equals(name))
-                      .map(ExpectedArgument::isPresent)
-                      .orElse(false);
+       return isPresent(spec.commandIndex(name));
     }
 
     @Override
@@ -228,9 +551,168 @@ public class ArgumentModel implements Iterable<String> {
         if (varArgs != null)
             return varArgs.iterator();
 
-        return arguments.values()
-                        .stream()
-                        .map(ExpectedPlainArgument::getValue)
-                        .iterator();
+        return new Iterator<String>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < spec.plainCount();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                return getPlainArgument(index++);
+            }
+        };
     }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      ArgumentModel that = (ArgumentModel) o;
+      return spec.fingerprint() == that.spec.fingerprint() &&
+              Arrays.equals(present, that.present) &&
+              Arrays.deepEquals(values, that.values) &&
+              Arrays.equals(counts, that.counts) &&
+              Objects.equals(varArgs, that.varArgs);
+   }
+
+   @Override
+   public int hashCode() {
+      return Objects.hash(spec.fingerprint(), Arrays.hashCode(present), Arrays.deepHashCode(values), varArgs);
+   }
+
+   ArgumentSpec getSpec() {
+      return spec;
+   }
+
+   long[] getPresence() {
+      return present;
+   }
+
+   Object[] getValues() {
+      return values;
+   }
+
+   int[] getCounts() {
+      return counts;
+   }
+
+   List<String> getVarArgs() {
+      return varArgs;
+   }
+
+   /**
+    * Get the model of the command, that was given.
+    *
+    * @return The model of the command or <code>null</code> if no command was given
+    */
+   ArgumentModel getCommandModel() {
+      return command < 0 ? null : (ArgumentModel) values[command];
+   }
+
+   /**
+    * Get how often the argument at <code>index</code> was given.
+    *
+    * @param index The index of the argument
+    *
+    * @return The number of occurrences
+    */
+   int count(int index) {
+      if (!isPresent(index))
+         return 0;
+
+      return counts == null ? 1 : counts[index] + 1;
+   }
+
+   boolean isPresent(int index) {
+      return index >= 0 && Bits.get(present, index);
+   }
+
+   private Object valueAt(int index) {
+      return index < 0 ? null : values[index];
+   }
+
+   private String valueOrDefault(int index) {
+      if (index < 0)
+         return null;
+
+      return isPresent(index) ? (String) values[index] : defaultValue(index);
+   }
+
+   /**
+    * Get the default value of the argument at <code>index</code>.
+    * A supplied default value is kept, so the supplier is called once per model at most.
+    */
+   private String defaultValue(int index) {
+      Object def = spec.defaultAt(index);
+      if (!(def instanceof Supplier))
+         return (String) def;
+
+      // Strings are immutable, so a value seen without the lock is always complete
+      Object[] supplied = suppliedDefaults;
+      if (supplied != null && supplied[index] != null)
+         return supplied[index] == NO_VALUE ? null : (String) supplied[index];
+
+      synchronized (this) {
+         if (suppliedDefaults == null)
+            suppliedDefaults = new Object[values.length];
+
+         if (suppliedDefaults[index] == null) {
+            @SuppressWarnings("unchecked")
+            String value = ((Supplier<String>) def).get();
+            suppliedDefaults[index] = value == null ? NO_VALUE : value;
+         }
+
+         return suppliedDefaults[index] == NO_VALUE ? null : (String) suppliedDefaults[index];
+      }
+   }
+
+   private String lastValue(int index) {
+      if (index >= 0 && !isPresent(index))
+         return defaultValue(index);
+
+      Object value = valueAt(index);
+      if (value instanceof String[]) {
+         String[] values = (String[]) value;
+         return values.length == 0 ? null : values[values.length - 1];
+      }
+
+      return (String) value;
+   }
+
+   private DelimitedList list(int index) {
+      if (index < 0)
+         return new DelimitedList(null, ExpectedOption.NO_DELIMITER);
+
+      DelimitedList[] lists = this.lists;
+      if (lists != null && lists[index] != null)
+         return lists[index];
+
+      synchronized (this) {
+         if (this.lists == null)
+            this.lists = new DelimitedList[values.length];
+
+         if (this.lists[index] == null) {
+            Object value = isPresent(index) ? values[index] : defaultValue(index);
+            String[] strings = value instanceof String[] ? (String[]) value
+                               : value == null ? null : new String[] { (String) value };
+            this.lists[index] = new DelimitedList(strings, spec.option(index).getDelimiter());
+         }
+
+         return this.lists[index];
+      }
+   }
+
+   private List<String> allValues(int index) {
+      Object value = valueAt(index);
+      if (value instanceof String[])
+         return Collections.unmodifiableList(Arrays.asList((String[]) value));
+
+      return value == null ? Collections.<String>emptyList() : Collections.singletonList((String) value);
+   }
 }
@@ -4,14 +4,19 @@ import static com.github.koettlitz.opt.ExpectedOption.NO_KEY;
 
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+import com.github.koettlitz.opt.ex.ConstraintViolationException;
 import com.github.koettlitz.opt.ex.InvalidOptionFormatException;
+import com.github.koettlitz.opt.ex.LimitExceededException;
+import com.github.koettlitz.opt.ex.PathValidationException;
 import com.github.koettlitz.opt.ex.MissingArgumentException;
 import com.github.koettlitz.opt.ex.MissingOptionValueException;
 import com.github.koettlitz.opt.ex.UnexpectedOptionValueException;
 import com.github.koettlitz.opt.ex.UnknownArgumentException;
+import com.github.koettlitz.opt.trace.Span;
+import com.github.koettlitz.opt.trace.Tracer;
+import com.github.koettlitz.util.Bits;
+import com.github.koettlitz.util.ChunkedList;
 import com.github.koettlitz.util.PeekableIterator;
 
 /**
@@ -26,11 +31,42 @@ public class ArgumentModelBuilder {
    private final Map<Character, ExpectedOption> options;
    private final Map<String, ExpectedOption> longOptions;
    private final CommandGroup commands;
-   private final Set<ExpectedArgument> mandatories;
+   private final ConstraintSet constraints;
+   private final ArgumentSpec spec;
+   private final long[] present;
 
    private boolean minusMinusPresent = false;
 
    private int plainArgIndex;
+   private int firstPlainArgIndex;
+
+   private Map<String, ArgumentModelBuilder> commandBuilders;
+
+   /**
+    * Create a new argumentmodel builder with plain arguments, options, long options and the compiled constraints.
+    *
+    * @param arguments The expected arguments
+    * @param options The expected options mapped by their key
+    * @param longOptions The expected options mapped by their long key
+    * @param commands The expeced commands mapped by their name
+    * @param constraints The constraints compiled over the indices of the arguments
+    * @param spec The layout of the arguments shared by the built models
+    */
+   ArgumentModelBuilder(List<ExpectedPlainArgument> arguments,
+                        Map<Character, ExpectedOption> options,
+                        Map<String, ExpectedOption> longOptions,
+                        CommandGroup commands,
+                        ConstraintSet constraints,
+                        ArgumentSpec spec) {
+      this.arguments = arguments;
+      this.varArgs = arguments == null ? new ChunkedList<>() : null;
+      this.options = Objects.requireNonNull(options);
+      this.longOptions = Objects.requireNonNull(longOptions);
+      this.commands = commands;
+      this.constraints = constraints;
+      this.spec = spec;
+      this.present = constraints.newPresence();
+   }
 
    /**
     * Create a new argumentmodel builder with plain arguments, options and long options.
@@ -46,17 +82,17 @@ public class ArgumentModelBuilder {
                                Map<String, ExpectedOption> longOptions,
                                CommandGroup commands,
                                int plainArgIndex) {
-      this.arguments = arguments;
-      this.varArgs = arguments == null ? new LinkedList<>() : null;
-      this.options = Objects.requireNonNull(options);
-      this.longOptions = Objects.requireNonNull(longOptions);
-      this.commands = commands;
+      this(arguments,
+           options,
+           longOptions,
+           commands,
+           compileMandatories(arguments, options, longOptions, commands),
+           new ArgumentSpec(arguments,
+                            options,
+                            longOptions,
+                            commands == null ? Collections.<Command>emptySet() : commands.asCollection()));
       this.plainArgIndex = plainArgIndex;
-      this.mandatories = Stream.of(Optional.ofNullable(arguments).orElse(Collections.emptyList()),
-                                   commands == null ? Collections.<Command>emptySet() : commands.asCollection())
-                               .flatMap(Collection::stream)
-                               .filter(ExpectedArgument::isMandatory)
-                               .collect(Collectors.toSet());
+      this.firstPlainArgIndex = plainArgIndex;
    }
 
    /**
@@ -66,7 +102,10 @@ public class ArgumentModelBuilder {
     * @param options The expected options mapped by their key
     * @param longOptions The expected options mapped by their long key
     * @param plainArgIndex The index of the next plain argument that will be parsed
+    *
+    * @deprecated Models are built by the parser, use {@link ArgumentParser#parseArguments(String...)}
     */
+   @Deprecated
    public ArgumentModelBuilder(List<ExpectedPlainArgument> arguments,
                                Map<Character, ExpectedOption> options,
                                Map<String, ExpectedOption> longOptions,
@@ -81,12 +120,14 @@ public class ArgumentModelBuilder {
     * @param options The expected options mapped by their key
     * @param longOptions The expected options mapped by their long key
     * @param commands The expeced commands mapped by their name
+    *
+    * @deprecated Models are built by the parser, use {@link ArgumentParser#parseArguments(String...)}
     */
+   @Deprecated
    public ArgumentModelBuilder(List<ExpectedPlainArgument> arguments,
                                Map<Character, ExpectedOption> options,
                                Map<String, ExpectedOption> longOptions,
                                CommandGroup commands) {
-
       this(arguments, options, longOptions, commands, 0);
    }
 
@@ -96,16 +137,44 @@ public class ArgumentModelBuilder {
     * @param arguments The expected arguments
     * @param options The expected options mapped by their key
     * @param longOptions The expected options mapped by their long key
+    *
+    * @deprecated Models are built by the parser, use {@link ArgumentParser#parseArguments(String...)}
     */
+   @Deprecated
    public ArgumentModelBuilder(List<ExpectedPlainArgument> arguments,
                                Map<Character, ExpectedOption> options,
                                Map<String, ExpectedOption> longOptions) {
-
       this(arguments, options, longOptions, null, 0);
    }
 
+   /**
+    * Create a new argumentmodel builder in var args mode with options and long options.
+    *
+    * @param options The expected options mapped by their key
+    * @param longOptions The expected options mapped by their long key
+    *
+    * @deprecated Models are built by the parser, use {@link ArgumentParser#parseArguments(String...)}
+    */
+   @Deprecated
    public ArgumentModelBuilder(Map<Character, ExpectedOption> options, Map<String, ExpectedOption> longOptions) {
-      this(null, options, longOptions);
+      this(null, options, longOptions, null, 0);
+   }
+
+   private static ConstraintSet compileMandatories(List<ExpectedPlainArgument> arguments,
+                                                   Map<Character, ExpectedOption> options,
+                                                   Map<String, ExpectedOption> longOptions,
+                                                   CommandGroup commands) {
+      List<ExpectedArgument> all = new ArrayList<>();
+      if (arguments != null)
+         all.addAll(arguments);
+      if (options != null)
+         all.addAll(options.values());
+      if (longOptions != null)
+         all.addAll(longOptions.values());
+      if (commands != null)
+         all.addAll(commands.asCollection());
+
+      return new ConstraintSet(all, commands, Collections.<Constraint>emptyList());
    }
 
    public static ExpectedOption getValueFor(Entry<String, ExpectedOption> longOptionEntry,
@@ -127,31 +196,98 @@ public class ArgumentModelBuilder {
     * @throws MissingArgumentException If any of the mandatory arguments is missing
     */
    public ArgumentModel build() throws MissingArgumentException {
-      if (!allMandatoriesPresent())
-         throw new MissingArgumentException(mandatories);
+      try {
+         return build(null);
+      } catch (ConstraintViolationException e) {
+         // only the builders of a parser have constraints, they are built by build(ParseErrors)
+         throw new IllegalStateException(e);
+      }
+   }
 
-      Map<Character, ExpectedOption> options = this.options
-                                                   .entrySet()
-                                                   .stream()
-                                                   .filter(e -> e.getValue().isPresent())
-                                                   .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
+   /**
+    * Builds the argumentmodel with all the given arguments and options.
+    *
+    * @param errors The collector for missing arguments and violated constraints
+    * or <code>null</code> to throw the first of them
+    */
+   ArgumentModel build(ParseErrors errors) throws MissingArgumentException, ConstraintViolationException {
+      if (errors == null)
+         constraints.check(present);
+      else
+         constraints.report(present, errors);
+
+      Command command = commands == null ? null : commands.getPresent();
+      List<String> varArgs = this.varArgs;
+      if (varArgs != null && commandBuilders != null) {
+         // A reused builder clears its var args with the next parse
+         varArgs = new ChunkedList<>();
+         varArgs.addAll(this.varArgs);
+      }
 
-      Map<String, ExpectedOption> longOptions = this.longOptions
-                                                    .entrySet()
-                                                    .stream()
-                                                    .filter(e -> e.getValue().isPresent())
-                                                    .collect(Collectors.toMap(Entry::getKey,
-                                                                              e -> getValueFor(e, options)));
+      return new ArgumentModel(spec, varArgs, arguments, options.values(), longOptions.values(), command);
+   }
 
-      if (isVarArgs())
-         return new ArgumentModel(varArgs, options, longOptions, commands == null ? null : commands.getPresent());
+   /**
+    * Keeps the builders of the commands after a parse, so they can be reused after {@link #reset()}.
+    */
+   void enableReuse() {
+      if (commandBuilders == null)
+         commandBuilders = new HashMap<>();
+   }
 
+   /**
+    * Get a builder for the arguments of the given command.
+    * If this builder is reused, the builder of the command is created once and reused as well.
+    *
+    * @param cmd A command of this builder
+    *
+    * @return A builder for the arguments of the command in its initial state
+    */
+   ArgumentModelBuilder commandBuilder(Command cmd) {
+      if (commandBuilders == null)
+         return cmd.getParser().createModelBuilder();
+
+      ArgumentModelBuilder builder = commandBuilders.get(cmd.getName());
+      if (builder == null) {
+         builder = cmd.getParser().createModelBuilder();
+         builder.enableReuse();
+         commandBuilders.put(cmd.getName(), builder);
+      }
+
+      return builder;
+   }
+
+   /**
+    * Resets this builder and the builders of its commands to their initial state.
+    * All values of the previous parse are forgotten, while the expected arguments
+    * and the storage for the values are kept.
+    */
+   void reset() {
+      if (arguments != null) {
+         for (ExpectedPlainArgument arg : arguments)
+            arg.setValue(null);
+      } else {
+         varArgs.clear();
+      }
 
-      LinkedHashMap<String, ExpectedPlainArgument> arguments = new LinkedHashMap<>();
-      for (ExpectedPlainArgument arg : this.arguments)
-         arguments.put(arg.getName(), arg);
+      for (ExpectedOption option : options.values())
+         option.reset();
+      for (ExpectedOption option : longOptions.values())
+         option.reset();
 
-      return new ArgumentModel(arguments, options, longOptions, commands == null ? null : commands.getPresent());
+      if (commands != null) {
+         for (Command cmd : commands.asCollection())
+            cmd.reset();
+      }
+
+      if (commandBuilders != null) {
+         for (ArgumentModelBuilder builder : commandBuilders.values())
+            builder.reset();
+      }
+
+      Arrays.fill(present, 0L);
+      plainArgIndex = firstPlainArgIndex;
+      minusMinusPresent = false;
    }
 
    /**
@@ -175,19 +311,28 @@ public class ArgumentModelBuilder {
          throw new NoSuchElementException("No Argument left");
 
       ExpectedPlainArgument next = arguments.get(plainArgIndex++);
-      mandatories.remove(next);
+      Bits.set(present, next.getIndex());
       next.setValue(arg);
       return next;
    }
 
+   /**
+    * Marks the given <code>option</code> as present and counts its occurrence.
+    *
+    * @param option The option that was given
+    */
+   public void addOccurrence(ExpectedOption option) {
+      option.addOccurrence();
+      Bits.set(present, option.getIndex());
+   }
+
    /**
     * Determines whether all mandatory arguments (including mandatory options) are present.
     *
     * @return <code>true</code> if all mandatory arguments are present, <code>false</code> otherwise.
     */
    public boolean allMandatoriesPresent() {
-      mandatories.removeIf(ExpectedArgument::isPresent);
-      return mandatories.isEmpty();
+      return constraints.mandatoriesPresent(present);
    }
 
    /**
@@ -218,12 +363,12 @@ public class ArgumentModelBuilder {
    }
 
    /**
-    * Get all the mandatory arguments (including mandatory options).
+    * Get all the mandatory arguments (including mandatory options), that are not present yet.
     *
-    * @return all the mandatory args
+    * @return all the missing mandatory args
     */
    public Iterable<ExpectedArgument> getMandatories() {
-      return mandatories;
+      return constraints.missing(present);
    }
 
    /**
@@ -326,32 +471,87 @@ public class ArgumentModelBuilder {
     * @throws InvalidOptionFormatException If a token with multiple options in it contains an option,
     * that expects a value and is not the last char of the token, e.g. <code>-abc</code> is given
     * where option <code>a</code> expects a value
+    * @throws ConstraintViolationException If the arguments of the command violate a constraint of its parser
+    * @throws LimitExceededException If the arguments of the command exceed one of the limits of its parser
+    * @throws PathValidationException If a path violates the path policy of its argument
     */
    public boolean parseCommand(String name, PeekableIterator<String> argIterator) throws MissingArgumentException,
                                                                                          MissingOptionValueException,
                                                                                          UnknownArgumentException,
                                                                                          UnexpectedOptionValueException,
-                                                                                         InvalidOptionFormatException {
+                                                                                         InvalidOptionFormatException,
+                                                                                         LimitExceededException,
+                                                                                         PathValidationException,
+                                                                                         ConstraintViolationException {
+      return parseCommand(name, argIterator, null);
+   }
+
+   boolean parseCommand(String name,
+                        PeekableIterator<String> argIterator,
+                        ParseErrors errors) throws MissingArgumentException,
+                                                   MissingOptionValueException,
+                                                   UnknownArgumentException,
+                                                   UnexpectedOptionValueException,
+                                                   InvalidOptionFormatException,
+                                                   LimitExceededException,
+                                                   PathValidationException,
+                                                   ConstraintViolationException {
       Command cmd = commands.getCommand(name);
       if (cmd == null)
          return false;
 
-      ArgumentModel result = cmd.getParser()
-                                .parseArguments(argIterator);
-
-      cmd.setValue(result);
+      ArgumentParser parser = cmd.getParser();
+      Span span = Tracer.startChild("command");
+      try {
+         if (span != null)
+            span.setAttribute("name", name);
+         setCommandValue(cmd, parser.parseArguments(argIterator, parser.createModelBuilder(), errors));
+      } finally {
+         if (span != null)
+            span.close();
+      }
       return true;
    }
 
+   /**
+    * Get the expected command with the given <code>name</code>.
+    *
+    * @param name The name of the command
+    *
+    * @return The command or <code>null</code> if no command <code>name</code> is expected
+    */
+   Command getCommand(String name) {
+      return commands == null ? null : commands.getCommand(name);
+   }
+
+   /**
+    * Sets the parsed arguments of a command and marks it as present.
+    *
+    * @param cmd The given command
+    * @param value The parsed arguments of the command
+    */
+   void setCommandValue(Command cmd, ArgumentModel value) {
+      cmd.setValue(value);
+      Bits.set(present, cmd.getIndex());
+   }
+
    public boolean isMinusMinusPresent() {
       if (!minusMinusPresent) {
-         minusMinusPresent = Optional.ofNullable(options.get('-'))
-                                     .map(ExpectedArgument::isPresent)
-                                     .orElse(false);
+         ExpectedOption minusMinus = options.get('-');
+         minusMinusPresent = minusMinus != null && minusMinus.isPresent();
       }
       return minusMinusPresent;
    }
 
+   /**
+    * Get the number of plain arguments given in var args mode.
+    *
+    * @return The number of var args or 0 if this builder doesn't have var args
+    */
+   int varArgCount() {
+      return varArgs == null ? 0 : varArgs.size();
+   }
+
    public boolean isVarArgs() {
       return arguments == null;
    }
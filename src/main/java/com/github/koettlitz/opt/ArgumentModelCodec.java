@@ -0,0 +1,520 @@
+package com.github.koettlitz.opt;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+
+import com.github.koettlitz.util.Bits;
+import com.github.koettlitz.util.ChunkedList;
+
+/**
+ * A compact binary format of the {@link ArgumentModel}s of one {@link ArgumentParser},
+ * e.g. to pass parsed arguments through a queue or to persist them.
+ * Arguments are identified by their indices instead of their names,
+ * so decoding a model neither parses nor looks up any name.
+ * <p>
+ * Every encoded model is a frame of the format version, the fingerprint of the parser
+ * and the length of the body. A frame is only decoded by a codec of a parser with the same fingerprint,
+ * i.e. with the same arguments at the same indices and the same commands,
+ * and the values of every argument have to be of the kind the parser gives it, e.g. a nested body for a command.
+ * The body holds the presence bits of the arguments and the values of the present arguments
+ * in the order of their indices. The models of commands are nested bodies.
+ * Numbers are written as unsigned variable length integers and strings as UTF-8 with their length.
+ * <p>
+ * A codec is immutable and can be shared between threads.
+ */
+public final class ArgumentModelCodec {
+   public static final byte VERSION = 1;
+   /**
+    * The maximum size of the body of a model read by {@link #read(DataInput)}, unless another one is given.
+    */
+   public static final int DEFAULT_MAX_BODY_SIZE = 64 * 1024 * 1024;
+
+   private static final int HEADER_SIZE = 1 + 8;
+
+   private static final byte TAG_NONE = 0;
+   private static final byte TAG_STRING = 1;
+   private static final byte TAG_STRINGS = 2;
+   private static final byte TAG_MODEL = 3;
+
+   private static final byte FLAG_COUNTS = 1;
+   private static final byte FLAG_VAR_ARGS = 2;
+
+   private final ArgumentSpec spec;
+   private final int maxBodySize;
+
+   /**
+    * Creates a codec for the models of the given parser, that reads bodies of up to {@link #DEFAULT_MAX_BODY_SIZE} bytes.
+    *
+    * @param parser The parser of the models
+    *
+    * @throws NullPointerException If <code>parser</code> is <code>null</code>
+    */
+   public ArgumentModelCodec(ArgumentParser parser) throws NullPointerException {
+      this(parser, DEFAULT_MAX_BODY_SIZE);
+   }
+
+   /**
+    * Creates a codec for the models of the given parser.
+    *
+    * @param parser The parser of the models
+    * @param maxBodySize The maximum size of the body of a model read by {@link #read(DataInput)},
+    *                    so a corrupt length never allocates more
+    *
+    * @throws NullPointerException If <code>parser</code> is <code>null</code>
+    * @throws IllegalArgumentException If <code>maxBodySize</code> is negative
+    */
+   public ArgumentModelCodec(ArgumentParser parser, int maxBodySize) throws NullPointerException,
+                                                                             IllegalArgumentException {
+      if (maxBodySize < 0)
+         throw new IllegalArgumentException("maxBodySize can not be less than 0. Was " + maxBodySize);
+
+      this.spec = parser.getSpec();
+      this.maxBodySize = maxBodySize;
+   }
+
+   public int getMaxBodySize() {
+      return maxBodySize;
+   }
+
+   /**
+    * Get the fingerprint of the parser, that is written with every model.
+    *
+    * @return The fingerprint of the arguments of the parser
+    */
+   public long getFingerprint() {
+      return spec.fingerprint();
+   }
+
+   /**
+    * Get the number of bytes the encoded <code>model</code> takes.
+    *
+    * @param model The model to encode
+    *
+    * @return The exact size of the frame of the model
+    *
+    * @throws IllegalArgumentException If the model was not parsed by the parser of this codec
+    */
+   public int encodedSize(ArgumentModel model) throws IllegalArgumentException {
+      checkSpec(model);
+      int bodySize = bodySize(model);
+      return HEADER_SIZE + varIntSize(bodySize) + bodySize;
+   }
+
+   /**
+    * Encodes the <code>model</code> into a new array.
+    *
+    * @param model The model to encode
+    *
+    * @return The frame of the model
+    *
+    * @throws IllegalArgumentException If the model was not parsed by the parser of this codec
+    */
+   public byte[] encode(ArgumentModel model) throws IllegalArgumentException {
+      byte[] bytes = new byte[encodedSize(model)];
+      encode(model, ByteBuffer.wrap(bytes));
+      return bytes;
+   }
+
+   /**
+    * Encodes the <code>model</code> at the current position of the <code>buffer</code>.
+    *
+    * @param model The model to encode
+    * @param buffer The buffer to write to
+    *
+    * @throws IllegalArgumentException If the model was not parsed by the parser of this codec
+    * @throws BufferOverflowException If the remaining space of the buffer is less than the {@link #encodedSize(ArgumentModel)}
+    */
+   public void encode(ArgumentModel model, ByteBuffer buffer) throws IllegalArgumentException,
+                                                                     BufferOverflowException {
+      checkSpec(model);
+      int bodySize = bodySize(model);
+      if (buffer.remaining() < HEADER_SIZE + varIntSize(bodySize) + bodySize)
+         throw new BufferOverflowException();
+
+      buffer.put(VERSION);
+      buffer.putLong(spec.fingerprint());
+      putVarInt(buffer, bodySize);
+      putBody(buffer, model);
+   }
+
+   /**
+    * Writes the encoded <code>model</code> to <code>out</code>.
+    *
+    * @param model The model to encode
+    * @param out The output to write to
+    *
+    * @throws IllegalArgumentException If the model was not parsed by the parser of this codec
+    * @throws IOException If the model could not be written
+    */
+   public void write(ArgumentModel model, DataOutput out) throws IllegalArgumentException, IOException {
+      out.write(encode(model));
+   }
+
+   /**
+    * Decodes the model at the current position of the <code>buffer</code>.
+    * The position is moved behind the model.
+    *
+    * @param buffer The buffer to read from
+    *
+    * @return The decoded model
+    *
+    * @throws IOException If the buffer doesn't contain a model of the parser of this codec
+    */
+   public ArgumentModel decode(ByteBuffer buffer) throws IOException {
+      try {
+         readHeader(buffer.get(), buffer.getLong());
+         int bodySize = getLength(buffer);
+         int end = buffer.position() + bodySize;
+         ArgumentModel model = getBody(buffer, spec);
+         if (buffer.position() != end)
+            throw new IOException("Model doesn't match its length of " + bodySize + " bytes.");
+
+         return model;
+      } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+         throw new IOException("Model is truncated.", e);
+      }
+   }
+
+   /**
+    * Reads an encoded model from <code>in</code>.
+    *
+    * @param in The input to read from
+    *
+    * @return The decoded model
+    *
+    * @throws IOException If the model could not be read, is larger than the maximum body size
+    *                     or is not a model of the parser of this codec
+    */
+   public ArgumentModel read(DataInput in) throws IOException {
+      readHeader(in.readByte(), in.readLong());
+
+      long bodySize = 0;
+      for (int shift = 0; ; shift += 7) {
+         if (shift >= 35)
+            throw new IOException("Malformed number.");
+
+         byte b = in.readByte();
+         bodySize |= (long) (b & 0x7f) << shift;
+         if (b >= 0)
+            break;
+      }
+
+      if (bodySize > maxBodySize)
+         throw new IOException("Model is larger than " + maxBodySize + " bytes. Was " + bodySize);
+
+      byte[] body = new byte[(int) bodySize];
+      in.readFully(body);
+
+      ByteBuffer buffer = ByteBuffer.wrap(body);
+      try {
+         ArgumentModel model = getBody(buffer, spec);
+         if (buffer.hasRemaining())
+            throw new IOException("Model doesn't match its length of " + bodySize + " bytes.");
+
+         return model;
+      } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+         throw new IOException("Model is truncated.", e);
+      }
+   }
+
+   private void checkSpec(ArgumentModel model) throws IllegalArgumentException {
+      if (Objects.requireNonNull(model).getSpec().fingerprint() != spec.fingerprint())
+         throw new IllegalArgumentException("Model was not parsed by the parser of this codec.");
+   }
+
+   private void readHeader(byte version, long fingerprint) throws IOException {
+      if (version != VERSION)
+         throw new IOException("Unsupported version " + version + ", expected " + VERSION);
+      if (fingerprint != spec.fingerprint())
+         throw new IOException("Model was written for another parser. Fingerprint: " + Long.toHexString(fingerprint)
+                               + ", expected: " + Long.toHexString(spec.fingerprint()));
+   }
+
+   private static int bodySize(ArgumentModel model) {
+      long[] present = model.getPresence();
+      Object[] values = model.getValues();
+      int[] counts = model.getCounts();
+
+      int size = 8 * present.length + 1;
+      for (int i = Bits.nextSetBit(present, 0); i >= 0; i = Bits.nextSetBit(present, i + 1)) {
+         size += 1 + valueSize(values[i]);
+         if (counts != null)
+            size += varIntSize(counts[i] + 1);
+      }
+
+      List<String> varArgs = model.getVarArgs();
+      if (varArgs != null) {
+         size += varIntSize(varArgs.size());
+         for (int i = 0; i < varArgs.size(); i++)
+            size += stringSize(varArgs.get(i));
+      }
+
+      return size;
+   }
+
+   private static int valueSize(Object value) {
+      if (value instanceof String)
+         return stringSize((String) value);
+
+      if (value instanceof String[]) {
+         String[] strings = (String[]) value;
+         int size = varIntSize(strings.length);
+         for (String s : strings)
+            size += stringSize(s);
+
+         return size;
+      }
+
+      if (value instanceof ArgumentModel)
+         return bodySize((ArgumentModel) value);
+
+      return 0;
+   }
+
+   private static void putBody(ByteBuffer buffer, ArgumentModel model) {
+      long[] present = model.getPresence();
+      Object[] values = model.getValues();
+      int[] counts = model.getCounts();
+      List<String> varArgs = model.getVarArgs();
+
+      for (long word : present)
+         buffer.putLong(word);
+
+      buffer.put((byte) ((counts != null ? FLAG_COUNTS : 0) | (varArgs != null ? FLAG_VAR_ARGS : 0)));
+
+      for (int i = Bits.nextSetBit(present, 0); i >= 0; i = Bits.nextSetBit(present, i + 1)) {
+         Object value = values[i];
+         if (value instanceof String) {
+            buffer.put(TAG_STRING);
+            putString(buffer, (String) value);
+         } else if (value instanceof String[]) {
+            String[] strings = (String[]) value;
+            buffer.put(TAG_STRINGS);
+            putVarInt(buffer, strings.length);
+            for (String s : strings)
+               putString(buffer, s);
+         } else if (value instanceof ArgumentModel) {
+            buffer.put(TAG_MODEL);
+            putBody(buffer, (ArgumentModel) value);
+         } else {
+            buffer.put(TAG_NONE);
+         }
+
+         if (counts != null)
+            putVarInt(buffer, counts[i] + 1);
+      }
+
+      if (varArgs != null) {
+         putVarInt(buffer, varArgs.size());
+         for (int i = 0; i < varArgs.size(); i++)
+            putString(buffer, varArgs.get(i));
+      }
+   }
+
+   private static ArgumentModel getBody(ByteBuffer buffer, ArgumentSpec spec) throws IOException {
+      long[] present = Bits.create(spec.size());
+      for (int i = 0; i < present.length; i++)
+         present[i] = buffer.getLong();
+
+      if (Bits.nextSetBit(present, spec.size()) >= 0)
+         throw new IOException("Model contains arguments unknown to the parser.");
+
+      byte flags = buffer.get();
+      Object[] values = new Object[spec.size()];
+      int[] counts = (flags & FLAG_COUNTS) != 0 ? new int[spec.size()] : null;
+
+      for (int i = Bits.nextSetBit(present, 0); i >= 0; i = Bits.nextSetBit(present, i + 1)) {
+         byte tag = buffer.get();
+         if (tag != expectedTag(spec, i) && (tag != TAG_NONE || expectedTag(spec, i) != TAG_STRING))
+            throw new IOException("Tag " + tag + " doesn't match the argument " + spec.label(i) + " at index " + i);
+
+         switch (tag) {
+            case TAG_NONE:
+               break;
+            case TAG_STRING:
+               values[i] = getString(buffer);
+               break;
+            case TAG_STRINGS:
+               String[] strings = new String[getLength(buffer)];
+               for (int n = 0; n < strings.length; n++)
+                  strings[n] = getString(buffer);
+               values[i] = strings;
+               break;
+            case TAG_MODEL:
+               ArgumentSpec commandSpec = spec.commandSpec(i);
+               if (commandSpec == null)
+                  throw new IOException("No command at index " + i);
+               values[i] = getBody(buffer, commandSpec);
+               break;
+            default:
+               throw new IOException("Unknown tag " + tag + " at index " + i);
+         }
+
+         if (counts != null)
+            counts[i] = getVarInt(buffer) - 1;
+      }
+
+      List<String> varArgs = null;
+      if ((flags & FLAG_VAR_ARGS) != 0) {
+         int size = getLength(buffer);
+         varArgs = new ChunkedList<>();
+         for (int i = 0; i < size; i++)
+            varArgs.add(getString(buffer));
+      }
+
+      return new ArgumentModel(spec, present, values, counts, varArgs);
+   }
+
+   /**
+    * Get the tag of the values of the argument at <code>index</code>. A single value may be <code>null</code>,
+    * which is tagged {@link #TAG_NONE}.
+    *
+    * @return The tag or -1 if there is no argument at <code>index</code>
+    */
+   private static byte expectedTag(ArgumentSpec spec, int index) {
+      switch (spec.kind(index)) {
+         case ArgumentSpec.PLAIN:
+            return TAG_STRING;
+         case ArgumentSpec.OPTION:
+            return spec.option(index).isMultiValued() ? TAG_STRINGS : TAG_STRING;
+         case ArgumentSpec.COMMAND:
+            return TAG_MODEL;
+         default:
+            return -1;
+      }
+   }
+
+   private static int varIntSize(int value) {
+      int size = 1;
+      while ((value >>>= 7) != 0)
+         size++;
+
+      return size;
+   }
+
+   private static void putVarInt(ByteBuffer buffer, int value) {
+      while ((value & ~0x7f) != 0) {
+         buffer.put((byte) ((value & 0x7f) | 0x80));
+         value >>>= 7;
+      }
+      buffer.put((byte) value);
+   }
+
+   private static int getVarInt(ByteBuffer buffer) throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 35; shift += 7) {
+         byte b = buffer.get();
+         // the fifth byte has room for the top 4 bits only, anything else doesn't fit a non-negative int
+         if (shift == 28 && (b & 0xf8) != 0)
+            break;
+
+         value |= (b & 0x7f) << shift;
+         if (b >= 0)
+            return value;
+      }
+
+      throw new IOException("Malformed number.");
+   }
+
+   /**
+    * Get a length or a number of elements, that can not be larger than the remaining bytes,
+    * as every element takes at least one byte.
+    */
+   private static int getLength(ByteBuffer buffer) throws IOException {
+      int length = getVarInt(buffer);
+      if (length > buffer.remaining())
+         throw new IOException("Model is truncated.");
+
+      return length;
+   }
+
+   /**
+    * Get the size of a string with its length, where <code>null</code> has the length 0
+    * and every other string its UTF-8 length plus one.
+    */
+   private static int stringSize(String s) {
+      if (s == null)
+         return 1;
+
+      int length = utf8Length(s);
+      return varIntSize(length + 1) + length;
+   }
+
+   private static int utf8Length(String s) {
+      int length = 0;
+      for (int i = 0; i < s.length(); i++) {
+         char c = s.charAt(i);
+         if (c < 0x80) {
+            length++;
+         } else if (c < 0x800) {
+            length += 2;
+         } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            length += 4;
+            i++;
+         } else if (Character.isSurrogate(c)) {
+            length++;
+         } else {
+            length += 3;
+         }
+      }
+
+      return length;
+   }
+
+   private static void putString(ByteBuffer buffer, String s) {
+      if (s == null) {
+         putVarInt(buffer, 0);
+         return;
+      }
+
+      putVarInt(buffer, utf8Length(s) + 1);
+      for (int i = 0; i < s.length(); i++) {
+         char c = s.charAt(i);
+         if (c < 0x80) {
+            buffer.put((byte) c);
+         } else if (c < 0x800) {
+            buffer.put((byte) (0xc0 | (c >> 6)));
+            buffer.put((byte) (0x80 | (c & 0x3f)));
+         } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(++i));
+            buffer.put((byte) (0xf0 | (cp >> 18)));
+            buffer.put((byte) (0x80 | ((cp >> 12) & 0x3f)));
+            buffer.put((byte) (0x80 | ((cp >> 6) & 0x3f)));
+            buffer.put((byte) (0x80 | (cp & 0x3f)));
+         } else if (Character.isSurrogate(c)) {
+            // An unpaired surrogate has no UTF-8 form and is replaced, like String.getBytes does
+            buffer.put((byte) '?');
+         } else {
+            buffer.put((byte) (0xe0 | (c >> 12)));
+            buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+            buffer.put((byte) (0x80 | (c & 0x3f)));
+         }
+      }
+   }
+
+   private static String getString(ByteBuffer buffer) throws IOException {
+      int length = getVarInt(buffer) - 1;
+      if (length < 0)
+         return null;
+      if (length > buffer.remaining())
+         throw new IOException("Model is truncated.");
+
+      if (buffer.hasArray()) {
+         String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+         ((Buffer) buffer).position(buffer.position() + length);
+         return s;
+      }
+
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+   }
+}
@@ -1,20 +1,30 @@
 package com.github.koettlitz.opt;
 
 import static com.github.koettlitz.opt.ExpectedOption.NO_KEY;
-import static java.util.stream.Collectors.toMap;
 
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.stream.Stream;
+import java.util.concurrent.Executor;
 
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+import com.github.koettlitz.opt.ex.ConstraintViolationException;
+import com.github.koettlitz.opt.ParseLimits.Limit;
+import com.github.koettlitz.opt.audit.AuditSink;
 import com.github.koettlitz.opt.ex.InvalidOptionFormatException;
+import com.github.koettlitz.opt.ex.LimitExceededException;
+import com.github.koettlitz.opt.ex.PathValidationException;
 import com.github.koettlitz.opt.ex.MissingArgumentException;
 import com.github.koettlitz.opt.ex.MissingOptionValueException;
 import com.github.koettlitz.opt.ex.UnexpectedOptionValueException;
 import com.github.koettlitz.opt.ex.UnknownArgumentException;
+import com.github.koettlitz.opt.trace.Span;
+import com.github.koettlitz.opt.trace.Tracer;
+import com.github.koettlitz.util.ArgFileIterator;
 import com.github.koettlitz.util.ArrayIterator;
 import com.github.koettlitz.util.PeekableIterator;
+import com.github.koettlitz.util.TrackingIterator;
 import com.github.koettlitz.util.Util;
 
 /**
@@ -34,16 +44,34 @@ public class ArgumentParser {
       "?"
    };
 
+   private static final Comparator<ExpectedArgument> BY_INDEX = new Comparator<ExpectedArgument>() {
+      @Override
+      public int compare(ExpectedArgument a, ExpectedArgument b) {
+         return Integer.compare(a.getIndex(), b.getIndex());
+      }
+   };
+
    private final List<ExpectedPlainArgument> arguments;
    private final Map<Character, ExpectedOption> options;
    private final Map<String, ExpectedOption> longOptions;
    private final CommandGroup commands;
 
    private final ExpectedArgument[] allArguments;
+   private final ExpectedOption minusMinus;
+   private final ArgumentSpec spec;
+
+   private Collection<Constraint> constraints = Collections.emptyList();
+   private ConstraintSet constraintSet;
 
    private Collection<String> helpArgs = new LinkedList<>(Arrays.asList(DEFAULT_HELP_ARGS));
    private boolean ignoreUnknown;
    private boolean varArgs;
+   private boolean expandArgFiles;
+   private ParseLimits limits = ParseLimits.NONE;
+   private AuditSink auditSink;
+   private Tracer tracer;
+   private Executor pathExecutor;
+   private int pathParallelism = 1;
 
    public ArgumentParser(List<ExpectedPlainArgument> arguments,
                          Map<Character, ExpectedOption> options,
@@ -51,19 +79,32 @@ public class ArgumentParser {
                          CommandGroup commands,
                          boolean varArgs) {
       this.arguments = arguments;
-      this.options = Util.nonNull(options, Collections::emptyMap);
-      this.longOptions = Util.nonNull(longOptions, Collections::emptyMap);
+      this.options = options != null ? options : Collections.<Character, ExpectedOption>emptyMap();
+      this.longOptions = longOptions != null ? longOptions : Collections.<String, ExpectedOption>emptyMap();
       this.commands = commands;
       this.varArgs = varArgs;
+      this.allArguments = sortedArguments(this.arguments, this.options, this.longOptions, commands);
+
+      if (this.options.containsKey('-')) {
+         this.minusMinus = null;
+      } else {
+         int index = allArguments.length == 0 ? 0 : allArguments[allArguments.length - 1].getIndex() + 1;
+         this.minusMinus = new ExpectedOption(index,
+                                              '-',
+                                              "--",
+                                              "Indicates, that the following arguments are plain arguments"
+                                              + "and no options, even if they have a leading '-'");
+      }
+
+      Map<Character, ExpectedOption> keys = new HashMap<>(this.options);
+      if (minusMinus != null)
+         keys.put('-', minusMinus);
 
-      this.allArguments = Stream.of(this.arguments == null ? new LinkedList<ExpectedPlainArgument>() : this.arguments,
-                                    this.options.values(),
-                                    this.longOptions.values(),
-                                    commands == null ? Collections.<Command>emptySet() : commands.asCollection())
-                                .flatMap(Collection::stream)
-                                .sorted(Comparator.comparingInt(ExpectedArgument::getIndex))
-                                .distinct()
-                                .toArray(ExpectedArgument[]::new);
+      this.spec = new ArgumentSpec(this.arguments != null || varArgs ? this.arguments : Collections.<ExpectedPlainArgument>emptyList(),
+                                   keys,
+                                   this.longOptions,
+                                   commands == null ? Collections.<Command>emptySet() : commands.asCollection());
+      this.constraintSet = compileConstraints();
    }
 
    public ArgumentParser(List<ExpectedPlainArgument> arguments,
@@ -73,6 +114,28 @@ public class ArgumentParser {
       this(arguments, options, longOptions, null, varArgs);
    }
 
+   /**
+    * Collects the distinct expected arguments sorted by their index.
+    * Runs once per parser, mostly at startup, so it uses plain loops instead of streams and lambdas,
+    * whose bootstrap would load and spin up a few hundred classes before the first parse.
+    */
+   private static ExpectedArgument[] sortedArguments(List<ExpectedPlainArgument> arguments,
+                                                     Map<Character, ExpectedOption> options,
+                                                     Map<String, ExpectedOption> longOptions,
+                                                     CommandGroup commands) {
+      List<ExpectedArgument> all = new ArrayList<>();
+      if (arguments != null)
+         all.addAll(arguments);
+      all.addAll(options.values());
+      all.addAll(longOptions.values());
+      if (commands != null)
+         all.addAll(commands.asCollection());
+
+      Collections.sort(all, BY_INDEX);
+      // keeps the first of equal arguments like an option mapped by its key and its long key
+      return new LinkedHashSet<>(all).toArray(new ExpectedArgument[0]);
+   }
+
    /**
     * Parses the given <code>args</code> and returns the results as an argument model.
     *
@@ -92,12 +155,19 @@ public class ArgumentParser {
     * @throws InvalidOptionFormatException If a token with multiple options in it contains an option,
     * that expects a value and is not the last char of the token, e.g. <code>-abc</code> is given
     * where option <code>a</code> expects a value
+    * @throws ConstraintViolationException If the given arguments violate one of the constraints of this parser
+    * @throws LimitExceededException If the arguments exceed one of the limits of this parser
+    * @throws PathValidationException If a path violates the path policy of its argument
+    * @throws UncheckedIOException If argument files are expanded and one of them could not be read
     */
    public ArgumentModel parseArguments(int offset, String... args) throws MissingArgumentException,
                                                                           MissingOptionValueException,
                                                                           UnknownArgumentException,
                                                                           UnexpectedOptionValueException,
                                                                           InvalidOptionFormatException,
+                                                                          LimitExceededException,
+                                                                          PathValidationException,
+                                                                          ConstraintViolationException,
                                                                           IllegalArgumentException {
       return parseArguments(ArrayIterator.of(offset, args.length - offset, args));
    }
@@ -122,12 +192,19 @@ public class ArgumentParser {
     * @throws InvalidOptionFormatException If a token with multiple options in it contains an option,
     * that expects a value and is not the last char of the token, e.g. <code>-abc</code> is given
     * where option <code>a</code> expects a value
+    * @throws ConstraintViolationException If the given arguments violate one of the constraints of this parser
+    * @throws LimitExceededException If the arguments exceed one of the limits of this parser
+    * @throws PathValidationException If a path violates the path policy of its argument
+    * @throws UncheckedIOException If argument files are expanded and one of them could not be read
     */
    public ArgumentModel parseArguments(String... args) throws MissingArgumentException,
                                                               MissingOptionValueException,
                                                               UnknownArgumentException,
                                                               UnexpectedOptionValueException,
                                                               InvalidOptionFormatException,
+                                                              LimitExceededException,
+                                                              PathValidationException,
+                                                              ConstraintViolationException,
                                                               IllegalArgumentException {
       return parseArguments(ArrayIterator.of(args));
    }
@@ -153,13 +230,119 @@ public class ArgumentParser {
     * @throws InvalidOptionFormatException If a token with multiple options in it contains an option,
     * that expects a value and is not the last char of the token, e.g. <code>-abc</code> is given
     * where option <code>a</code> expects a value
+    * @throws ConstraintViolationException If the given arguments violate one of the constraints of this parser
+    * @throws LimitExceededException If the arguments exceed one of the limits of this parser
+    * @throws PathValidationException If a path violates the path policy of its argument
+    * @throws UncheckedIOException If argument files are expanded and one of them could not be read
+    *
+    * @see #setExpandArgFiles(boolean)
     */
    public ArgumentModel parseArguments(PeekableIterator<String> iterator) throws MissingArgumentException,
                                                                                  MissingOptionValueException,
                                                                                  UnknownArgumentException,
                                                                                  UnexpectedOptionValueException,
-                                                                                 InvalidOptionFormatException {
-      return parseArguments(iterator, createModelBuilder());
+                                                                                 InvalidOptionFormatException,
+                                                                                 LimitExceededException,
+                                                                                 PathValidationException,
+                                                                                 ConstraintViolationException,
+                                                                                 UncheckedIOException {
+      if (!expandArgFiles || iterator instanceof ArgFileIterator)
+         return parseArguments(iterator, createModelBuilder());
+
+      try (ArgFileIterator argFileIterator = new ArgFileIterator(iterator, null, limits.getMaxTokenLength())) {
+         return parseArguments(argFileIterator, createModelBuilder());
+      }
+   }
+
+   /**
+    * Parses a command line with placeholders like <code>${name}</code> for some of its values once,
+    * so it can be executed with different values by binding them without parsing it again.
+    *
+    * @param template The arguments to parse, that may contain placeholders as whole values
+    *
+    * @return The prepared command
+    *
+    * @throws MissingArgumentException If a mandatory argument (or mandatory option) is missing
+    * @throws MissingOptionValueException If an option that has to go with a following value was no value given
+    * @throws UnknownArgumentException If an unknown argument was discovered before the arguments were fully parsed
+    * @throws UnexpectedOptionValueException If an option value for an option that doesn't expect any value was supplied
+    * @throws InvalidOptionFormatException If a token with multiple options in it contains an option,
+    * that expects a value and is not the last char of the token
+    * @throws ConstraintViolationException If the template violates one of the constraints of this parser
+    * @throws LimitExceededException If the template exceeds one of the limits of this parser
+    * @throws IllegalArgumentException If a placeholder is not a whole value of an option or plain argument
+    *
+    * @see PreparedCommand
+    */
+   public PreparedCommand prepare(String... template) throws MissingArgumentException,
+                                                             MissingOptionValueException,
+                                                             UnknownArgumentException,
+                                                             UnexpectedOptionValueException,
+                                                             InvalidOptionFormatException,
+                                                             LimitExceededException,
+                                                             ConstraintViolationException,
+                                                             IllegalArgumentException {
+      // the paths are checked and the models are audited when the values are bound
+      ParseArena arena = new ParseArena(this, createModelBuilder());
+      arena.setCheckPaths(false);
+      arena.setAudit(false);
+      PeekableIterator<String> iterator = ArrayIterator.of(template);
+      try {
+         if (!expandArgFiles)
+            return new PreparedCommand(this, template, parseArguments(iterator, arena, null));
+
+         try (ArgFileIterator argFileIterator = new ArgFileIterator(iterator, null, limits.getMaxTokenLength())) {
+            return new PreparedCommand(this, template, parseArguments(argFileIterator, arena, null));
+         }
+      } catch (PathValidationException e) {
+         throw new IllegalStateException("Paths are not checked while preparing", e);
+      }
+   }
+
+   /**
+    * Parses the given <code>args</code> without stopping at the first problem.
+    * Every problem is collected with its position and the parsing goes on with the next token,
+    * so all problems of the arguments are found in a single pass.
+    *
+    * @param args The arguments to parse
+    *
+    * @return The parsed (possibly partial) argument model and all problems found
+    *
+    * @throws UncheckedIOException If argument files are expanded and one of them could not be read
+    */
+   public ParseResult parseRecovering(String... args) throws UncheckedIOException {
+      return parseRecovering(ArrayIterator.ofNullable(args));
+   }
+
+   /**
+    * Parses the args given by the <code>iterator</code> without stopping at the first problem.
+    * Every problem is collected with its position and the parsing goes on with the next token,
+    * so all problems of the arguments are found in a single pass.
+    *
+    * @param iterator The arguments to parse
+    *
+    * @return The parsed (possibly partial) argument model and all problems found
+    *
+    * @throws UncheckedIOException If argument files are expanded and one of them could not be read
+    */
+   public ParseResult parseRecovering(PeekableIterator<String> iterator) throws UncheckedIOException {
+      ArgFileIterator argFileIterator = expandArgFiles && !(iterator instanceof ArgFileIterator)
+                                        ? new ArgFileIterator(iterator, null, limits.getMaxTokenLength())
+                                        : null;
+      try {
+         TrackingIterator tokens = new TrackingIterator(argFileIterator == null ? iterator : argFileIterator);
+         ParseErrors errors = new ParseErrors(tokens);
+         ArgumentModel model = parseArguments(tokens, createModelBuilder(), errors);
+         if (errors.getDiagnostics().isEmpty())
+            audit(model);
+
+         return new ParseResult(model, errors.getDiagnostics());
+      } catch (ArgumentParseException e) {
+         throw new IllegalStateException("Problem was thrown instead of collected.", e);
+      } finally {
+         if (argFileIterator != null)
+            argFileIterator.close();
+      }
    }
 
    protected ArgumentModel parseArguments(PeekableIterator<String> iterator,
@@ -167,130 +350,421 @@ public class ArgumentParser {
                                                                                MissingOptionValueException,
                                                                                UnknownArgumentException,
                                                                                UnexpectedOptionValueException,
-                                                                               InvalidOptionFormatException {
-      String arg = null;
+                                                                               InvalidOptionFormatException,
+                                                                               LimitExceededException,
+                                                                               PathValidationException,
+                                                                               ConstraintViolationException {
+      return parseArguments(iterator, builder, null);
+   }
+
+   /**
+    * Parses the args given by the <code>iterator</code> into the <code>builder</code>.
+    * All nesting levels of commands are parsed in this one loop: A given command opens a new level
+    * on the stack of the {@link ParseArena}, that is closed when the end of the arguments is reached
+    * or an unknown argument is found and the parser of the level ignores unknown arguments.
+    * In that case the unknown argument is parsed by the level below.
+    *
+    * @param errors The collector of the problems in recovering mode or <code>null</code> to throw the first problem
+    */
+   ArgumentModel parseArguments(PeekableIterator<String> iterator,
+                                ArgumentModelBuilder builder,
+                                ParseErrors errors) throws MissingArgumentException,
+                                                           MissingOptionValueException,
+                                                           UnknownArgumentException,
+                                                           UnexpectedOptionValueException,
+                                                           InvalidOptionFormatException,
+                                                           LimitExceededException,
+                                                           PathValidationException,
+                                                           ConstraintViolationException {
+      return parseArguments(iterator, new ParseArena(this, builder), errors);
+   }
+
+   /**
+    * Parses the args given by the <code>iterator</code> into the root builder of the <code>arena</code>.
+    *
+    * @param errors The collector of the problems in recovering mode or <code>null</code> to throw the first problem
+    */
+   ArgumentModel parseArguments(PeekableIterator<String> iterator,
+                                ParseArena arena,
+                                ParseErrors errors) throws MissingArgumentException,
+                                                           MissingOptionValueException,
+                                                           UnknownArgumentException,
+                                                           UnexpectedOptionValueException,
+                                                           InvalidOptionFormatException,
+                                                           LimitExceededException,
+                                                           PathValidationException,
+                                                           ConstraintViolationException {
+      if (tracer == null)
+         return parseLevels(iterator, arena, errors, null);
+
+      Span span = tracer.start("parse");
+      ParseTrace trace = span.isSampled() ? new ParseTrace(tracer, span) : null;
       try {
-         while (iterator.hasNext()) {
-            arg = iterator.peek();
+         return parseLevels(iterator, arena, errors, trace);
+      } catch (ArgumentParseException | RuntimeException e) {
+         span.setAttribute("error", e.getClass().getSimpleName());
+         throw e;
+      } finally {
+         if (trace != null)
+            trace.endAll();
+         span.close();
+      }
+   }
+
+   /**
+    * Parses the args in one loop over all nesting levels.
+    *
+    * @param trace The spans of the parse if it is traced and sampled, otherwise <code>null</code>
+    */
+   private ArgumentModel parseLevels(PeekableIterator<String> iterator,
+                                     ParseArena arena,
+                                     ParseErrors errors,
+                                     ParseTrace trace) throws MissingArgumentException,
+                                                              MissingOptionValueException,
+                                                              UnknownArgumentException,
+                                                              UnexpectedOptionValueException,
+                                                              InvalidOptionFormatException,
+                                                              LimitExceededException,
+                                                              PathValidationException,
+                                                              ConstraintViolationException {
+      ArgumentModelBuilder builder = arena.builder();
+      ArgumentParser parser = this;
+      ParseLimits limits = this.limits;
+      int tokens = 0;
+
+      while (iterator.hasNext()) {
+         String arg = iterator.peek();
+         if (errors != null)
+            errors.mark();
+
+         if (exceedsLimits(limits, arg, tokens, errors))
+            break;
+
+         try {
             if (!arg.startsWith("-") || builder.isMinusMinusPresent()) {
                if (builder.expectsCommand(arg)) {
+                  if (arena.depth() > limits.getMaxCommandDepth()) {
+                     limitExceeded(Limit.COMMAND_DEPTH, limits, arg, errors);
+                     break;
+                  }
+
                   iterator.next();
-                  builder.parseCommand(arg, iterator);
+                  tokens++;
+                  builder = arena.push(builder.getCommand(arg));
+                  parser = arena.parser();
+                  if (trace != null)
+                     trace.start("command").setAttribute("name", arg);
                } else {
+                  if (builder.isVarArgs() && builder.varArgCount() >= limits.getMaxVarArgs()) {
+                     limitExceeded(Limit.VAR_ARGS, limits, arg, errors);
+                     break;
+                  }
+
                   builder.nextArg(arg);
                   iterator.next();
+                  tokens++;
                }
             } else {
-               ExpectedOption option = handleOption(arg, builder);
+               boolean longOption = arg.length() > 2 && arg.charAt(1) == '-';
+               if (!longOption && arg.length() - 1 > limits.getMaxCombinedFlags()) {
+                  limitExceeded(Limit.COMBINED_FLAGS, limits, arg, errors);
+                  break;
+               }
+
+               long optionStart = trace == null ? 0 : System.nanoTime();
+               ExpectedOption option = parser.handleOption(arg, builder, errors);
+               if (trace != null)
+                  trace.optionNanos += System.nanoTime() - optionStart;
                iterator.next();
-               if (option.expectsValue() && option.getValue() == null) {
-                  if (!iterator.hasNext())
-                     throw new MissingOptionValueException(option);
+               tokens++;
+               if (option != null) {
+                  if (iterator.hasNext()) {
+                     if (errors != null)
+                        errors.mark();
+                     if (exceedsLimits(limits, iterator.peek(), tokens, errors))
+                        break;
 
-                  option.setValue(iterator.next());
+                     option.setValue(iterator.next());
+                     tokens++;
+                  } else {
+                     ParseErrors.fail(errors, new MissingOptionValueException(option), arg, 0);
+                  }
                }
             }
+         } catch (NoSuchElementException e) {
+            if (parser.ignoreUnknown) {
+               if (arena.depth() == 1)
+                  break;
+
+               arena.pop(errors);
+               if (trace != null)
+                  trace.end();
+               builder = arena.builder();
+               parser = arena.parser();
+               continue;
+            }
+
+            ParseErrors.fail(errors, new UnknownArgumentException(arg), arg, 0);
+            iterator.next();
+            tokens++;
          }
-      } catch (NoSuchElementException e) {
-         if (!ignoreUnknown)
-            throw new UnknownArgumentException(arg);
       }
 
-      return builder.build();
+      while (arena.depth() > 1) {
+         arena.pop(errors);
+         if (trace != null)
+            trace.end();
+      }
+
+      if (trace != null) {
+         trace.parse.setAttribute("tokens", tokens).setAttribute("optionNanos", trace.optionNanos);
+         trace.start("validate");
+      }
+      ArgumentModel model = arena.root().build(errors);
+      if (arena.isCheckPaths() && PathChecks.isNeeded(model))
+         PathChecks.check(model, pathExecutor, pathParallelism, arena.getWorkingDirectory(), errors);
+      if (trace != null)
+         trace.end();
+
+      if (errors == null && arena.isAudit())
+         audit(model);
+
+      return model;
    }
 
-   private static ExpectedOption handleOption(String arg,
-                                              ArgumentModelBuilder builder) throws MissingOptionValueException,
-                                                                                   NoSuchElementException,
-                                                                                   UnexpectedOptionValueException,
-                                                                                   InvalidOptionFormatException {
-      ExpectedOption result = null;
+   /**
+    * The spans of a sampled parse. The spans of the nested commands and of the validation
+    * are started in the parse span and ended in reverse order.
+    */
+   private static final class ParseTrace {
+      private final Tracer tracer;
+      private final Span parse;
+      /**
+       * The spans started by this trace, that are not ended yet, the innermost last.
+       */
+      private Span[] open = new Span[4];
+      private int openCount;
+      private long optionNanos;
+
+      ParseTrace(Tracer tracer, Span parse) {
+         this.tracer = tracer;
+         this.parse = parse;
+      }
 
+      Span start(String name) {
+         Span span = tracer.start(name);
+         if (openCount == open.length)
+            open = Arrays.copyOf(open, 2 * openCount);
+         open[openCount++] = span;
+         return span;
+      }
+
+      void end() {
+         Span span = open[--openCount];
+         open[openCount] = null;
+         span.close();
+      }
+
+      void endAll() {
+         while (openCount > 0)
+            end();
+      }
+   }
+
+   void audit(ArgumentModel model) {
+      if (auditSink != null)
+         auditSink.record(model);
+   }
+
+   /**
+    * Checks the limits of every single token.
+    *
+    * @param token The next token
+    * @param consumed The number of tokens parsed before
+    * @param errors The collector of the problems in recovering mode or <code>null</code> to throw the problem
+    *
+    * @return <code>true</code> if a limit was exceeded and the problem was collected, so the parse has to stop
+    *
+    * @throws LimitExceededException If a limit was exceeded in fail fast mode
+    */
+   private static boolean exceedsLimits(ParseLimits limits,
+                                        String token,
+                                        int consumed,
+                                        ParseErrors errors) throws LimitExceededException {
+      if (consumed >= limits.getMaxTokens()) {
+         limitExceeded(Limit.TOKENS, limits, token, errors);
+         return true;
+      }
+
+      if (token.length() > limits.getMaxTokenLength()) {
+         limitExceeded(Limit.TOKEN_LENGTH, limits, token, errors);
+         return true;
+      }
+
+      return false;
+   }
+
+   private static void limitExceeded(Limit limit,
+                                     ParseLimits limits,
+                                     String token,
+                                     ParseErrors errors) throws LimitExceededException {
+      ParseErrors.fail(errors, new LimitExceededException(limit, limits.get(limit)), token, 0);
+   }
+
+   /**
+    * Marks the options given by the token <code>arg</code> as present and sets their values
+    * if they are part of the token.
+    *
+    * @return The option that expects its value in the following token
+    * or <code>null</code> if no value has to follow
+    *
+    * @throws NoSuchElementException If the token contains an unknown option and unknown arguments are ignored
+    */
+   private ExpectedOption handleOption(String arg,
+                                       ArgumentModelBuilder builder,
+                                       ParseErrors errors) throws MissingOptionValueException,
+                                                                  NoSuchElementException,
+                                                                  UnexpectedOptionValueException,
+                                                                  InvalidOptionFormatException,
+                                                                  UnknownArgumentException {
       // long options e.g. '--longOpt'
       if (arg.length() > 2 && arg.charAt(1) == '-') {
          int equalsIndex = arg.indexOf('=');
-         if (equalsIndex == -1) {
-            result = builder.getOption(arg.substring(2))
-                            .orElseThrow(() -> new NoSuchElementException(arg));
+         ExpectedOption result = builder.getOption(equalsIndex == -1 ? arg.substring(2) : arg.substring(2, equalsIndex))
+                                        .orElse(null);
+         if (result == null) {
+            unknownOption(arg, 0, errors);
+            return null;
+         }
 
-            if (result.expectsValue())
-               throw new MissingOptionValueException(result);
-         } else {
-            result = builder.getOption(arg.substring(2, equalsIndex))
-                            .orElseThrow(() -> new NoSuchElementException(arg));
-
-            if (arg.length() > equalsIndex + 1) {
-               if (result.expectsValue())
-                  result.setValue(arg.substring(equalsIndex + 1));
-               else
-                  throw new UnexpectedOptionValueException(result, arg);
+         if (equalsIndex == -1) {
+            if (result.expectsValue()) {
+               ParseErrors.fail(errors, new MissingOptionValueException(result), arg, 0);
+               return null;
             }
+         } else if (arg.length() > equalsIndex + 1) {
+            if (!result.expectsValue()) {
+               ParseErrors.fail(errors, new UnexpectedOptionValueException(result, arg), arg, equalsIndex);
+               return null;
+            }
+
+            builder.addOccurrence(result);
+            result.setValue(arg.substring(equalsIndex + 1));
+            return null;
          }
+
+         builder.addOccurrence(result);
+         return result.expectsValue() ? result : null;
+      }
+
       // Single char options e.g. '-a', '-abc' or '--'
-      } else if (arg.length() >= 2) {
+      if (arg.length() >= 2) {
+         ExpectedOption result = null;
          for (int i = 1; i < arg.length(); i++) {
             char key = arg.charAt(i);
-            result = builder.getOption(key)
-                            .orElseThrow(() -> new NoSuchElementException(arg));
-
-            result.setPresent(true);
-            if (result.expectsValue() && i + 1 < arg.length())
-               throw new InvalidOptionFormatException(arg, key);
+            ExpectedOption option = builder.getOption(key).orElse(null);
+            if (option == null) {
+               unknownOption(arg, i, errors);
+            } else if (option.expectsValue() && i + 1 < arg.length()) {
+               ParseErrors.fail(errors, new InvalidOptionFormatException(arg, key), arg, i);
+            } else {
+               builder.addOccurrence(option);
+               result = option;
+            }
          }
+
+         return result != null && result.expectsValue() ? result : null;
+      }
+
       // Can only be '-'
-      } else {
-         result = builder.getOption(ExpectedOption.NO_KEY)
-                         .orElseThrow(() -> new NoSuchElementException(arg));
+      ExpectedOption result = builder.getOption(ExpectedOption.NO_KEY).orElse(null);
+      if (result == null) {
+         unknownOption(arg, 0, errors);
+         return null;
       }
 
-      result.setPresent(true);
-      return result;
+      builder.addOccurrence(result);
+      return result.expectsValue() ? result : null;
    }
 
-   private ArgumentModelBuilder createModelBuilder() {
+   private void unknownOption(String arg, int offset, ParseErrors errors) throws NoSuchElementException,
+                                                                                 UnknownArgumentException {
+      if (ignoreUnknown)
+         throw new NoSuchElementException(arg);
+
+      ParseErrors.fail(errors, new UnknownArgumentException(arg), arg, offset);
+   }
+
+   ArgumentSpec getSpec() {
+      return spec;
+   }
+
+   /**
+    * Find out whether one of the commands of this parser has to be given.
+    *
+    * @return <code>true</code> if a command is mandatory, <code>false</code> otherwise
+    */
+   boolean isCommandMandatory() {
+      return commands != null && commands.isMandatory();
+   }
+
+   /**
+    * Get the commands of this parser.
+    *
+    * @return A read-only view of the commands, that is empty if this parser has no commands
+    */
+   public Collection<Command> getCommands() {
+      return commands == null ? Collections.<Command>emptySet() : Collections.unmodifiableCollection(commands.asCollection());
+   }
+
+   /**
+    * Creates a new session to parse arguments with this parser over and over again.
+    * A session is not thread safe, but it reuses its internal state for every parse,
+    * so parsing with a session allocates far less than {@link #parseArguments(String...)}.
+    *
+    * @return A new parse session
+    *
+    * @see ParseSessionPool
+    */
+   public ParseSession newSession() {
+      return new ParseSession(this, null);
+   }
+
+   ArgumentModelBuilder createModelBuilder() {
       List<ExpectedPlainArgument> arguments;
       if (this.arguments != null) {
-         arguments = this.arguments
-                         .stream()
-                         .map(ExpectedPlainArgument::clone)
-                         .collect(ArrayList::new,
-                                  Collection::add,
-                                  Collection::addAll);
+         arguments = new ArrayList<>(this.arguments.size());
+         for (ExpectedPlainArgument arg : this.arguments)
+            arguments.add(arg.clone());
       } else {
          arguments = varArgs ? null : new LinkedList<>();
       }
 
-      Map<Character, ExpectedOption> options = this.options
-                                                   .entrySet()
-                                                   .stream()
-                                                   .collect(toMap(Entry::getKey,
-                                                                  e -> e.getValue().clone()));
-
-      short count = (short) ((arguments == null ? 0 : arguments.size()) + options.size() + (commands == null ? 0 : 1));
+      Map<Character, ExpectedOption> options = new HashMap<>();
+      for (Entry<Character, ExpectedOption> e : this.options.entrySet())
+         options.put(e.getKey(), e.getValue().clone());
 
       Map<String, ExpectedOption> longOptions = new HashMap<>();
       for (Entry<String, ExpectedOption> e : this.longOptions.entrySet()) {
          ExpectedOption opt = e.getValue();
          ExpectedOption shortOpt = opt.getKey() == NO_KEY ? null : options.get(opt.getKey());
-         if (shortOpt != null) {
-            longOptions.put(e.getKey(), shortOpt);
-         } else {
-            longOptions.put(e.getKey(), opt);
-            count++;
-         }
+         longOptions.put(e.getKey(), shortOpt != null ? shortOpt : opt.clone());
       }
 
       CommandGroup commands = this.commands == null ? null : this.commands.clone();
 
-      if (!options.containsKey('-')) {
-         options.put('-', new ExpectedOption(count,
-                                             '-',
-                                             "--",
-                                             "Indicates, that the following arguments are plain arguments"
-                                             + "and no options, even if they have a leading '-'"));
-      }
+      if (minusMinus != null)
+         options.put('-', minusMinus.clone());
 
-      return new ArgumentModelBuilder(arguments, options, longOptions, commands);
+      return new ArgumentModelBuilder(arguments, options, longOptions, commands, constraintSet, spec);
+   }
+
+   private ConstraintSet compileConstraints() throws IllegalArgumentException {
+      List<ExpectedArgument> arguments = new ArrayList<>(Arrays.asList(allArguments));
+      if (minusMinus != null)
+         arguments.add(minusMinus);
+
+      return new ConstraintSet(arguments, commands, constraints);
    }
 
    /**
@@ -322,8 +796,12 @@ public class ArgumentParser {
       if (args == null || args.length < 1 || helpArgs == null)
          return false;
 
-      return helpArgs.stream()
-                     .anyMatch(args[0]::equals);
+      for (String helpArg : helpArgs) {
+         if (args[0].equals(helpArg))
+            return true;
+      }
+
+      return false;
    }
 
    /**
@@ -403,6 +881,182 @@ public class ArgumentParser {
       this.ignoreUnknown = ignoreUnknown;
    }
 
+   /**
+    * Get the constraints on the presence of the arguments, options and commands of this parser.
+    * The mandatory arguments are checked in any case.
+    *
+    * @return The constraints, that are checked after parsing
+    */
+   public Collection<Constraint> getConstraints() {
+      return constraints;
+   }
+
+   /**
+    * Set the constraints on the presence of the arguments, options and commands of this parser.
+    * The constraints are compiled into bit masks once, so checking them costs a few bit operations per parse.
+    *
+    * @param constraints The constraints to be checked after parsing
+    *
+    * @throws IllegalArgumentException If a constraint references an argument this parser doesn't know
+    */
+   public void setConstraints(Collection<Constraint> constraints) throws IllegalArgumentException {
+      Collection<Constraint> previous = this.constraints;
+      this.constraints = constraints == null ? Collections.<Constraint>emptyList()
+                                             : Collections.unmodifiableList(new ArrayList<>(constraints));
+      try {
+         this.constraintSet = compileConstraints();
+      } catch (IllegalArgumentException e) {
+         this.constraints = previous;
+         throw e;
+      }
+   }
+
+   /**
+    * Get whether the plain arguments in var args mode are glob patterns.
+    *
+    * @return If the var args are expanded to the matching paths or not
+    */
+   public boolean isGlobVarArgs() {
+      return spec.isGlobVarArgs();
+   }
+
+   /**
+    * Set whether the plain arguments in var args mode are glob patterns like <code>logs/*.gz</code>,
+    * that are expanded in the process by {@link ArgumentModel#plainArgumentPathStream()}.
+    *
+    * @param globVarArgs If the var args are expanded to the matching paths or not
+    */
+   public void setGlobVarArgs(boolean globVarArgs) {
+      spec.setGlobVarArgs(globVarArgs);
+   }
+
+   /**
+    * Get whether tokens starting with <code>@</code> are expanded to the contents of the argument file they name.
+    *
+    * @return If argument files are expanded or not
+    *
+    * @see #setExpandArgFiles(boolean)
+    */
+   public boolean isExpandArgFiles() {
+      return expandArgFiles;
+   }
+
+   /**
+    * Set whether tokens starting with <code>@</code> are expanded to the contents of the argument file they name,
+    * e.g. <code>@paths.txt</code> is replaced by the whitespace separated tokens of the file <code>paths.txt</code>.
+    * The files are read lazily while parsing and can name other argument files.
+    * This setting is only considered by the parser the arguments are passed to, not by the parsers of its commands.
+    *
+    * @param expandArgFiles flag if argument files should be expanded or not
+    *
+    * @see ArgFileIterator
+    */
+   public void setExpandArgFiles(boolean expandArgFiles) {
+      this.expandArgFiles = expandArgFiles;
+      spec.setExpandArgFiles(expandArgFiles);
+   }
+
+   /**
+    * Get the limits for the size of the arguments of a parse.
+    *
+    * @return The limits
+    *
+    * @see #setLimits(ParseLimits)
+    */
+   public ParseLimits getLimits() {
+      return limits;
+   }
+
+   /**
+    * Set the limits for the size of the arguments of a parse. A parse stops with a {@link LimitExceededException}
+    * at the first token, that exceeds one of them. Like argument files this setting is only considered
+    * by the parser the arguments are passed to, whose limits apply to the commands as well.
+    * By default nothing is limited.
+    *
+    * @param limits The limits or <code>null</code> for no limits
+    */
+   public void setLimits(ParseLimits limits) {
+      this.limits = limits == null ? ParseLimits.NONE : limits;
+   }
+
+   public AuditSink getAuditSink() {
+      return auditSink;
+   }
+
+   /**
+    * Set the sink, that gets the model of every successful parse with this parser,
+    * e.g. an {@link com.github.koettlitz.opt.audit.AuditLog}. Only the parser the arguments are passed to
+    * calls its sink, once per parse, with the whole model including the commands.
+    *
+    * @param auditSink The sink or <code>null</code> to record nothing
+    */
+   public void setAuditSink(AuditSink auditSink) {
+      this.auditSink = auditSink;
+   }
+
+   public Tracer getTracer() {
+      return tracer;
+   }
+
+   /**
+    * Set the tracer of the parses with this parser. A parse is traced as a span <code>parse</code>
+    * with a child span per nested command and a span for the validation of the results.
+    * The parse span is a child of the current span of the thread, e.g. the span of a request.
+    * Like the limits, only the tracer of the parser the arguments are passed to is considered.
+    * The tracer is also used by a {@link com.github.koettlitz.opt.exec.CommandDispatcher} and a
+    * {@link com.github.koettlitz.opt.shell.Shell} of this parser.
+    *
+    * @param tracer The tracer or <code>null</code> to trace nothing
+    */
+   public void setTracer(Tracer tracer) {
+      this.tracer = tracer;
+   }
+
+   public Executor getPathExecutor() {
+      return pathExecutor;
+   }
+
+   public int getPathParallelism() {
+      return pathParallelism;
+   }
+
+   /**
+    * Set how the paths of the arguments with a {@link PathPolicy} are checked after a parse.
+    * The checks of a parse are run by up to <code>parallelism</code> tasks at once,
+    * one of them on the parsing thread and the others on the <code>executor</code>,
+    * so a parse with hundreds of paths on a network file system waits for the slowest checks only.
+    * Like the limits, only the settings of the parser the arguments are passed to are considered.
+    * By default the paths are checked one after the other on the parsing thread.
+    *
+    * @param executor The executor of the concurrent checks or <code>null</code> to check on the parsing thread
+    * @param parallelism The maximum number of concurrent checks of a parse
+    *
+    * @throws IllegalArgumentException If <code>parallelism</code> is less than 1
+    */
+   public void setPathValidation(Executor executor, int parallelism) throws IllegalArgumentException {
+      if (parallelism < 1)
+         throw new IllegalArgumentException("parallelism can not be less than 1. Was " + parallelism);
+
+      this.pathExecutor = executor;
+      this.pathParallelism = parallelism;
+   }
+
+   public PathPolicy getVarArgPathPolicy() {
+      return spec.getVarArgPathPolicy();
+   }
+
+   /**
+    * Set the requirements for the paths given as var args.
+    * A var arg, that is a glob pattern, is not checked.
+    *
+    * @param pathPolicy The requirements or <code>null</code> if the var args are not checked as paths
+    *
+    * @see #setPathValidation(Executor, int)
+    */
+   public void setVarArgPathPolicy(PathPolicy pathPolicy) {
+      spec.setVarArgPathPolicy(pathPolicy);
+   }
+
    /**
     * Get the arguments that indicate that help is requested.
     * If the first given argument equals one of the helpArgs
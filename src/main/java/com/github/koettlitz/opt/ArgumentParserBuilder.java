@@ -5,6 +5,11 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+import com.github.koettlitz.opt.audit.AuditSink;
+import com.github.koettlitz.opt.trace.Tracer;
 
 /**
  * A builder class to build an {@link ArgumentParser}.
@@ -61,13 +66,22 @@ public class ArgumentParserBuilder {
    private Map<Character, ExpectedOption> options;
    private Map<String, ExpectedOption> longOptions;
    private CommandGroup commands;
+   private List<Constraint> constraints;
 
    private CommandBuilder parentBuilder;
    private boolean ignoreUnknown;
+   private boolean expandArgFiles;
+   private ParseLimits limits;
+   private AuditSink auditSink;
+   private Tracer tracer;
+   private Executor pathExecutor;
+   private int pathParallelism = 1;
+   private PathPolicy varArgPathPolicy;
    private String[] helpArgs;
 
    private short argCount;
    private boolean varArgs = false;
+   private boolean globVarArgs;
 
    public ArgumentParserBuilder(CommandBuilder parentBuilder) {
       this.parentBuilder = parentBuilder;
@@ -91,12 +105,23 @@ public class ArgumentParserBuilder {
     * Builds the argumentparser, that will be able to parse all the arguments and options specified.
     *
     * @return A new argumentparser
+    *
+    * @throws IllegalArgumentException If a constraint references an argument, that was not added to this builder
     */
    public ArgumentParser buildAndGet() {
       ArgumentParser parser = new ArgumentParser(arguments, options, longOptions, commands, varArgs);
       parser.setIgnoreUnknown(ignoreUnknown);
+      parser.setExpandArgFiles(expandArgFiles);
+      parser.setGlobVarArgs(globVarArgs);
+      parser.setLimits(limits);
+      parser.setAuditSink(auditSink);
+      parser.setTracer(tracer);
+      parser.setPathValidation(pathExecutor, pathParallelism);
+      parser.setVarArgPathPolicy(varArgPathPolicy);
       if (helpArgs != null)
          parser.setHelpArgs(Arrays.asList(helpArgs));
+      if (constraints != null)
+         parser.setConstraints(constraints);
 
       if (parentBuilder != null)
          parentBuilder.setParser(parser);
@@ -322,6 +347,72 @@ public class ArgumentParserBuilder {
       return this;
    }
 
+   /**
+    * Adds a constraint on the presence of the arguments, options and commands of this builder.
+    * The constraint is resolved when the parser is built.
+    *
+    * @param constraint The constraint to be checked after parsing
+    *
+    * @return This argumentparser builder to go on
+    *
+    * @throws NullPointerException If <code>constraint</code> is <code>null</code>
+    *
+    * @see Constraint
+    */
+   public ArgumentParserBuilder addConstraint(Constraint constraint) throws NullPointerException {
+      if (constraints == null)
+         constraints = new ArrayList<>();
+
+      constraints.add(Objects.requireNonNull(constraint));
+      return this;
+   }
+
+   /**
+    * Allows at most one of the given arguments to be present.
+    * Options are referenced by <code>-key</code> or <code>--longKey</code>,
+    * plain arguments and commands by their names.
+    *
+    * @param names The names of the mutually exclusive arguments
+    *
+    * @return This argumentparser builder to go on
+    *
+    * @see Constraint#mutuallyExclusive(String...)
+    */
+   public ArgumentParserBuilder mutuallyExclusive(String... names) {
+      return addConstraint(Constraint.mutuallyExclusive(names));
+   }
+
+   /**
+    * Requires either all or none of the given arguments to be present.
+    * Options are referenced by <code>-key</code> or <code>--longKey</code>,
+    * plain arguments and commands by their names.
+    *
+    * @param names The names of the arguments
+    *
+    * @return This argumentparser builder to go on
+    *
+    * @see Constraint#requiredTogether(String...)
+    */
+   public ArgumentParserBuilder requiredTogether(String... names) {
+      return addConstraint(Constraint.requiredTogether(names));
+   }
+
+   /**
+    * Requires the arguments <code>required</code> to be present, if the argument <code>name</code> is present.
+    * Options are referenced by <code>-key</code> or <code>--longKey</code>,
+    * plain arguments and commands by their names.
+    *
+    * @param name The name of the dependent argument
+    * @param required The names of the arguments, that <code>name</code> depends on
+    *
+    * @return This argumentparser builder to go on
+    *
+    * @see Constraint#requires(String, String...)
+    */
+   public ArgumentParserBuilder requires(String name, String... required) {
+      return addConstraint(Constraint.requires(name, required));
+   }
+
    /**
     * Set whether there should be a variable list of arguments, or a predefined number of expected arguments.
     * (Can only be one of the two states. If set to <code>true</code> you cannot add <code>ExpectedArguments</code>)
@@ -342,6 +433,28 @@ public class ArgumentParserBuilder {
       return this;
    }
 
+   /**
+    * Set whether the var args are glob patterns like <code>logs/*.gz</code>, that are expanded in the process
+    * instead of by the shell, so any number of matches can be passed.
+    * Making the var args glob patterns sets the var args mode too.
+    *
+    * @param globVarArgs <code>true</code> if the var args are glob patterns
+    *
+    * @return this argumentParserBuilder to continue
+    *
+    * @throws IllegalStateException If <code>globVarArgs</code> is true and there were already some
+    * <code>ExpectedArguments</code> added.
+    *
+    * @see ArgumentModel#plainArgumentPathStream()
+    */
+   public ArgumentParserBuilder setGlobVarArgs(boolean globVarArgs) throws IllegalStateException {
+      if (globVarArgs)
+         setVarArgs(true);
+
+      this.globVarArgs = globVarArgs;
+      return this;
+   }
+
    /**
     * Set whether unknown/unexpected arguments should be ignored
     * or an Exception should be thrown.
@@ -369,6 +482,117 @@ public class ArgumentParserBuilder {
       return setIgnoreUnknown(true);
    }
 
+   /**
+    * Set whether tokens starting with <code>@</code> should be replaced by the contents of the argument file they name.
+    * By default argument files are not expanded.
+    *
+    * @param expandArgFiles flag if argument files should be expanded or not
+    *
+    * @return This argumentparser builder to go on
+    *
+    * @see ArgumentParser#setExpandArgFiles(boolean)
+    */
+   public ArgumentParserBuilder setExpandArgFiles(boolean expandArgFiles) {
+      this.expandArgFiles = expandArgFiles;
+      return this;
+   }
+
+   /**
+    * Set the flag whether tokens starting with <code>@</code> should be replaced
+    * by the contents of the argument file they name to <code>true</code>.
+    *
+    * @return This argumentparser builder to go on
+    *
+    * @see ArgumentParser#setExpandArgFiles(boolean)
+    */
+   public ArgumentParserBuilder expandArgFiles() {
+      return setExpandArgFiles(true);
+   }
+
+   /**
+    * Set the limits for the size of the arguments of a parse, e.g. for parsers of untrusted input.
+    * By default nothing is limited.
+    *
+    * @param limits The limits or <code>null</code> for no limits
+    *
+    * @return This argumentparser builder to go on
+    *
+    * @see ArgumentParser#setLimits(ParseLimits)
+    */
+   public ArgumentParserBuilder setLimits(ParseLimits limits) {
+      this.limits = limits;
+      return this;
+   }
+
+   /**
+    * Set the sink, that gets the model of every successful parse.
+    *
+    * @param auditSink The sink or <code>null</code> to record nothing
+    *
+    * @return This argumentparser builder to go on
+    *
+    * @see ArgumentParser#setAuditSink(AuditSink)
+    */
+   public ArgumentParserBuilder setAuditSink(AuditSink auditSink) {
+      this.auditSink = auditSink;
+      return this;
+   }
+
+   /**
+    * Set the tracer of the parses.
+    *
+    * @param tracer The tracer or <code>null</code> to trace nothing
+    *
+    * @return This argumentparser builder to go on
+    *
+    * @see ArgumentParser#setTracer(Tracer)
+    */
+   public ArgumentParserBuilder setTracer(Tracer tracer) {
+      this.tracer = tracer;
+      return this;
+   }
+
+   /**
+    * Set how the paths of the arguments with a {@link PathPolicy} are checked after a parse.
+    *
+    * @param executor The executor of the concurrent checks or <code>null</code> to check on the parsing thread
+    * @param parallelism The maximum number of concurrent checks of a parse
+    *
+    * @return This argumentparser builder to go on
+    *
+    * @throws IllegalArgumentException If <code>parallelism</code> is less than 1
+    *
+    * @see ArgumentParser#setPathValidation(Executor, int)
+    */
+   public ArgumentParserBuilder setPathValidation(Executor executor, int parallelism) throws IllegalArgumentException {
+      if (parallelism < 1)
+         throw new IllegalArgumentException("parallelism can not be less than 1. Was " + parallelism);
+
+      this.pathExecutor = executor;
+      this.pathParallelism = parallelism;
+      return this;
+   }
+
+   /**
+    * Set the requirements for the paths given as var args. Setting a path policy sets the var args mode too.
+    *
+    * @param pathPolicy The requirements or <code>null</code> if the var args are not checked as paths
+    *
+    * @return This argumentparser builder to go on
+    *
+    * @throws IllegalStateException If <code>pathPolicy</code> is not <code>null</code>
+    * and there were already some <code>ExpectedArguments</code> added.
+    *
+    * @see ArgumentParser#setVarArgPathPolicy(PathPolicy)
+    */
+   public ArgumentParserBuilder setVarArgPathPolicy(PathPolicy pathPolicy) throws IllegalStateException {
+      if (pathPolicy != null)
+         setVarArgs(true);
+
+      this.varArgPathPolicy = pathPolicy;
+      return this;
+   }
+
    public ArgumentParserBuilder setHelpArgs(String... helpArgs) {
       this.helpArgs = helpArgs;
       return this;
@@ -0,0 +1,431 @@
+package com.github.koettlitz.opt;
+
+import static com.github.koettlitz.opt.ExpectedOption.NO_KEY;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Renders an {@link ArgumentModel} back to arguments in a canonical form,
+ * that is parsed by the parser of the model to an equal model again.
+ * <p>
+ * On every level the options come first in the order of their indices,
+ * an option given more than once is repeated and every value of a multi valued option
+ * is rendered as an occurrence of its own. An option with a key is rendered like <code>-k value</code>,
+ * an option with a long key only like <code>--long=value</code>.
+ * The options are followed by <code>--</code> if it was given or if a plain argument starts with <code>-</code>,
+ * the plain arguments and finally the command with its own arguments.
+ * If a plain argument equals the name of a command of its level, the command comes first,
+ * because otherwise the plain argument would be parsed as the command.
+ * Values with control characters like line breaks are quoted like <code>$'a\nb'</code>,
+ * so a command line never spans more than one line, e.g. in an audit log.
+ * If the parser of the model expands argument files, a token starting with <code>@</code>
+ * is rendered as <code>@@</code> like {@link com.github.koettlitz.util.ArgFileIterator} expects,
+ * so it is never read as the name of an argument file.
+ * <p>
+ * The length of the rendered arguments is computed before they are rendered,
+ * so the arrays and string builders are allocated with their exact size.
+ */
+public final class ArgumentRenderer {
+   private ArgumentRenderer() {}
+
+   /**
+    * Renders the <code>model</code> as arguments.
+    *
+    * @param model The model to render
+    *
+    * @return The arguments, that are parsed to the <code>model</code>
+    */
+   public static String[] toArgs(ArgumentModel model) {
+      TokenCounter counter = new TokenCounter();
+      render(model, counter);
+
+      ArgsWriter writer = new ArgsWriter(counter.count);
+      render(model, writer);
+      return writer.args;
+   }
+
+   /**
+    * Renders the <code>model</code> as a single line, where the arguments are separated by a space
+    * and quoted like in a POSIX shell if necessary.
+    *
+    * @param model The model to render
+    *
+    * @return The command line, that is split and parsed to the <code>model</code>
+    */
+   public static String toCommandLine(ArgumentModel model) {
+      return appendCommandLine(model, new StringBuilder(commandLineLength(model))).toString();
+   }
+
+   /**
+    * Get the length of the command line of the <code>model</code>.
+    *
+    * @param model The model to render
+    *
+    * @return The exact length of {@link #toCommandLine(ArgumentModel)}
+    */
+   public static int commandLineLength(ArgumentModel model) {
+      TokenCounter counter = new TokenCounter();
+      render(model, counter);
+      return counter.length;
+   }
+
+   /**
+    * Appends the command line of the <code>model</code> to <code>builder</code>.
+    * The capacity of the builder is ensured once before anything is appended.
+    *
+    * @param model The model to render
+    * @param builder The builder to append to
+    *
+    * @return The given <code>builder</code>
+    */
+   public static StringBuilder appendCommandLine(ArgumentModel model, StringBuilder builder) {
+      builder.ensureCapacity(builder.length() + commandLineLength(model));
+      try {
+         render(model, new LineWriter(builder));
+      } catch (UncheckedIOException e) {
+         throw new Error("A StringBuilder never throws an IOException.", e);
+      }
+      return builder;
+   }
+
+   /**
+    * Appends the command line of the <code>model</code> to <code>out</code>.
+    *
+    * @param model The model to render
+    * @param out The appendable to append to
+    * @param <A> The type of the appendable
+    *
+    * @return The given <code>out</code>
+    *
+    * @throws IOException If appending fails
+    */
+   public static <A extends Appendable> A appendCommandLine(ArgumentModel model, A out) throws IOException {
+      if (out instanceof StringBuilder) {
+         appendCommandLine(model, (StringBuilder) out);
+         return out;
+      }
+
+      try {
+         render(model, new LineWriter(out));
+      } catch (UncheckedIOException e) {
+         throw e.getCause();
+      }
+      return out;
+   }
+
+   private static void render(ArgumentModel model, TokenSink sink) {
+      render(model, model.getSpec().isExpandArgFiles(), sink);
+   }
+
+   /**
+    * Renders one level of the model.
+    *
+    * @param argFiles Whether the parser of the whole model expands argument files,
+    *                 which applies to the tokens of its commands too
+    */
+   private static void render(ArgumentModel model, boolean argFiles, TokenSink sink) {
+      ArgumentSpec spec = model.getSpec();
+      Object[] values = model.getValues();
+      int command = -1;
+      boolean minusMinus = false;
+
+      for (int i = 0; i < spec.size(); i++) {
+         if (!model.isPresent(i))
+            continue;
+
+         if (spec.kind(i) == ArgumentSpec.COMMAND) {
+            command = i;
+         } else if (spec.kind(i) == ArgumentSpec.OPTION) {
+            if (spec.key(i) == '-')
+               minusMinus = true;
+            else
+               renderOption(spec, i, values[i], model.count(i), argFiles, sink);
+         }
+      }
+
+      boolean commandFirst = command >= 0 && plainsContainCommand(model, spec);
+      if (commandFirst)
+         renderCommand(spec, command, values, argFiles, sink);
+
+      if (minusMinus || plainsContainOption(model, spec))
+         sink.token("--", null);
+
+      List<String> varArgs = model.getVarArgs();
+      if (varArgs != null) {
+         for (int i = 0; i < varArgs.size(); i++)
+            value(varArgs.get(i), argFiles, sink);
+      } else {
+         for (int i = 0; i < spec.plainCount(); i++) {
+            String value = (String) values[spec.plainIndex(i)];
+            if (value != null)
+               value(value, argFiles, sink);
+         }
+      }
+
+      if (command >= 0 && !commandFirst)
+         renderCommand(spec, command, values, argFiles, sink);
+   }
+
+   /**
+    * Takes a value as a token of its own, where a leading <code>@</code> is doubled if argument files are expanded.
+    */
+   private static void value(String value, boolean argFiles, TokenSink sink) {
+      sink.token(argFiles && value.length() > 1 && value.charAt(0) == '@' ? "@" : "", value);
+   }
+
+   private static void renderOption(ArgumentSpec spec,
+                                    int index,
+                                    Object value,
+                                    int count,
+                                    boolean argFiles,
+                                    TokenSink sink) {
+      char key = spec.key(index);
+      String prefix = key != NO_KEY ? "-" + key : "--" + spec.longKey(index);
+
+      if (value instanceof String[]) {
+         for (String v : (String[]) value)
+            renderOption(prefix, key, v, argFiles, sink);
+      } else {
+         for (int n = 0; n < count; n++)
+            renderOption(prefix, key, (String) value, argFiles, sink);
+      }
+   }
+
+   private static void renderOption(String prefix, char key, String value, boolean argFiles, TokenSink sink) {
+      if (value == null) {
+         sink.token(prefix, null);
+      } else if (key != NO_KEY) {
+         sink.token(prefix, null);
+         value(value, argFiles, sink);
+      } else if (value.isEmpty()) {
+         // "--long=" takes its value from the next token
+         sink.token(prefix + "=", null);
+         sink.token("", value);
+      } else {
+         sink.token(prefix + "=", value);
+      }
+   }
+
+   private static void renderCommand(ArgumentSpec spec, int index, Object[] values, boolean argFiles, TokenSink sink) {
+      sink.token(spec.name(index), null);
+      render((ArgumentModel) values[index], argFiles, sink);
+   }
+
+   private static boolean plainsContainCommand(ArgumentModel model, ArgumentSpec spec) {
+      List<String> varArgs = model.getVarArgs();
+      int size = varArgs != null ? varArgs.size() : spec.plainCount();
+      for (int i = 0; i < size; i++) {
+         String value = varArgs != null ? varArgs.get(i) : (String) model.getValues()[spec.plainIndex(i)];
+         if (value != null && spec.commandIndex(value) >= 0)
+            return true;
+      }
+
+      return false;
+   }
+
+   /**
+    * Determines whether a plain argument starts with <code>-</code> and would be parsed as an option without <code>--</code>.
+    */
+   private static boolean plainsContainOption(ArgumentModel model, ArgumentSpec spec) {
+      List<String> varArgs = model.getVarArgs();
+      int size = varArgs != null ? varArgs.size() : spec.plainCount();
+      for (int i = 0; i < size; i++) {
+         String value = varArgs != null ? varArgs.get(i) : (String) model.getValues()[spec.plainIndex(i)];
+         if (value != null && value.startsWith("-"))
+            return true;
+      }
+
+      return false;
+   }
+
+   /**
+    * Determines whether the <code>value</code> has to be quoted to be read as one token.
+    */
+   private static boolean needsQuotes(String value, boolean tokenStart) {
+      if (value.isEmpty())
+         return tokenStart;
+
+      char first = value.charAt(0);
+      if (tokenStart && first == '#')
+         return true;
+
+      for (int i = 0; i < value.length(); i++) {
+         char c = value.charAt(i);
+         if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || "-_./=:,+%^@#".indexOf(c) >= 0))
+            return true;
+      }
+
+      return false;
+   }
+
+   /**
+    * Determines whether the <code>value</code> has characters, that can't be written within single quotes
+    * without breaking the line, so it has to be quoted like <code>$'...'</code>.
+    */
+   private static boolean needsEscapes(String value) {
+      for (int i = 0; i < value.length(); i++) {
+         if (isControl(value.charAt(i)))
+            return true;
+      }
+
+      return false;
+   }
+
+   private static boolean isControl(char c) {
+      return Character.isISOControl(c) || c == '\u2028' || c == '\u2029';
+   }
+
+   private static int quotedLength(String value, boolean tokenStart) {
+      if (!needsQuotes(value, tokenStart))
+         return value.length();
+
+      if (needsEscapes(value)) {
+         int length = value.length() + 3;
+         for (int i = 0; i < value.length(); i++)
+            length += escapeLength(value.charAt(i)) - 1;
+
+         return length;
+      }
+
+      int length = value.length() + 2;
+      for (int i = 0; i < value.length(); i++) {
+         if (value.charAt(i) == '\'')
+            length += 3;
+      }
+
+      return length;
+   }
+
+   /**
+    * Get the length of the char within <code>$'...'</code>.
+    */
+   private static int escapeLength(char c) {
+      switch (c) {
+         case '\n':
+         case '\t':
+         case '\r':
+         case '\\':
+         case '\'':
+            return 2;
+         default:
+            return !isControl(c) ? 1 : c <= 0xff ? 4 : 6;
+      }
+   }
+
+   private interface TokenSink {
+      /**
+       * Takes the token <code>prefix + value</code>, where only the value may need quotes.
+       *
+       * @param prefix The part of the token, that never needs quotes
+       * @param value The rest of the token or <code>null</code>
+       */
+      void token(String prefix, String value);
+   }
+
+   private static final class TokenCounter implements TokenSink {
+      private int count;
+      private int length;
+
+      @Override
+      public void token(String prefix, String value) {
+         if (count++ > 0)
+            length++;
+
+         length += prefix.length();
+         if (value != null)
+            length += quotedLength(value, prefix.isEmpty());
+      }
+   }
+
+   private static final class ArgsWriter implements TokenSink {
+      private final String[] args;
+      private int count;
+
+      ArgsWriter(int size) {
+         this.args = new String[size];
+      }
+
+      @Override
+      public void token(String prefix, String value) {
+         args[count++] = value == null ? prefix : prefix.isEmpty() ? value : prefix + value;
+      }
+   }
+
+   private static final class LineWriter implements TokenSink {
+      private final Appendable out;
+      private boolean first = true;
+
+      LineWriter(Appendable out) {
+         this.out = out;
+      }
+
+      @Override
+      public void token(String prefix, String value) {
+         try {
+            if (!first)
+               out.append(' ');
+            first = false;
+
+            out.append(prefix);
+            if (value != null)
+               append(value, prefix.isEmpty());
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         }
+      }
+
+      private void append(String value, boolean tokenStart) throws IOException {
+         if (!needsQuotes(value, tokenStart)) {
+            out.append(value);
+            return;
+         }
+         if (needsEscapes(value)) {
+            appendEscaped(value);
+            return;
+         }
+
+         out.append('\'');
+         int start = 0;
+         for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '\'') {
+               out.append(value, start, i).append("'\\''");
+               start = i + 1;
+            }
+         }
+         out.append(value, start, value.length()).append('\'');
+      }
+
+      private void appendEscaped(String value) throws IOException {
+         out.append("$'");
+         for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+               case '\n':
+                  out.append("\\n");
+                  break;
+               case '\t':
+                  out.append("\\t");
+                  break;
+               case '\r':
+                  out.append("\\r");
+                  break;
+               case '\\':
+               case '\'':
+                  out.append('\\').append(c);
+                  break;
+               default:
+                  if (!isControl(c)) {
+                     out.append(c);
+                  } else {
+                     out.append(c <= 0xff ? "\\x" : "\\u");
+                     for (int shift = c <= 0xff ? 4 : 12; shift >= 0; shift -= 4)
+                        out.append(Character.forDigit((c >> shift) & 0xf, 16));
+                  }
+            }
+         }
+         out.append('\'');
+      }
+   }
+}
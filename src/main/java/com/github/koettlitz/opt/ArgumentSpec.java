@@ -0,0 +1,446 @@
+package com.github.koettlitz.opt;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The immutable layout of the arguments of a parser, that is shared by all of its {@link ArgumentModel}s.
+ * Only the settings of the parser, that can be changed after it was built, i.e. whether the var args are globs,
+ * whether argument files are expanded and the path policy of the var args, are volatile,
+ * so the threads, that read them through the models, see a change.
+ * It maps the names and keys of the arguments to their indices,
+ * so a model only has to keep the given values in an array indexed by {@link ExpectedArgument#getIndex()}.
+ * The {@link #fingerprint()} identifies the layout including the layouts of the commands.
+ */
+final class ArgumentSpec {
+   static final byte NONE = 0;
+   static final byte PLAIN = 1;
+   static final byte OPTION = 2;
+   static final byte COMMAND = 3;
+
+   private final int size;
+   private final int[] plainIndices;
+   private final Map<String, Integer> plainArguments;
+   private final Map<Character, Integer> options;
+   private final Map<String, Integer> longOptions;
+   private final Map<String, Integer> commands;
+   private final byte[] kinds;
+   private final char[] keys;
+   private final String[] longKeys;
+   private final String[] names;
+   private final ExpectedOption[] expectedOptions;
+   private final boolean[] mandatory;
+   private final boolean[] globs;
+   private final PathPolicy[] pathPolicies;
+   private final boolean ownPathPolicies;
+   private volatile boolean globVarArgs;
+   private volatile boolean expandArgFiles;
+   private volatile PathPolicy varArgPathPolicy;
+   private final String[] labels;
+   private final ArgumentParser[] parsers;
+   private final Object[] defaults;
+   private final long fingerprint;
+
+   /**
+    * Creates the layout of the given arguments.
+    *
+    * @param arguments The expected plain arguments in their order or <code>null</code> in var args mode
+    * @param options The expected options mapped by their key
+    * @param longOptions The expected options mapped by their long key
+    * @param commands The expected commands
+    */
+   ArgumentSpec(List<ExpectedPlainArgument> arguments,
+                Map<Character, ExpectedOption> options,
+                Map<String, ExpectedOption> longOptions,
+                Collection<Command> commands) {
+      int size = 0;
+
+      if (arguments != null) {
+         this.plainIndices = new int[arguments.size()];
+         Map<String, Integer> plainArguments = new HashMap<>();
+         int i = 0;
+         for (ExpectedPlainArgument arg : arguments) {
+            plainIndices[i++] = arg.getIndex();
+            plainArguments.put(arg.getName(), arg.getIndex());
+            size = Math.max(size, arg.getIndex() + 1);
+         }
+         this.plainArguments = plainArguments;
+      } else {
+         this.plainIndices = null;
+         this.plainArguments = Collections.emptyMap();
+      }
+
+      Map<Character, Integer> byKey = new HashMap<>();
+      for (Entry<Character, ExpectedOption> e : options.entrySet()) {
+         byKey.put(e.getKey(), e.getValue().getIndex());
+         size = Math.max(size, e.getValue().getIndex() + 1);
+      }
+      this.options = byKey;
+
+      Map<String, Integer> byLongKey = new HashMap<>();
+      for (Entry<String, ExpectedOption> e : longOptions.entrySet()) {
+         byLongKey.put(e.getKey(), e.getValue().getIndex());
+         size = Math.max(size, e.getValue().getIndex() + 1);
+      }
+      this.longOptions = byLongKey;
+
+      Map<String, Integer> byName = new HashMap<>();
+      for (Command cmd : commands) {
+         byName.put(cmd.getName(), cmd.getIndex());
+         size = Math.max(size, cmd.getIndex() + 1);
+      }
+      this.commands = byName;
+
+      this.size = size;
+      this.kinds = new byte[size];
+      this.keys = new char[size];
+      this.longKeys = new String[size];
+      this.names = new String[size];
+      this.expectedOptions = new ExpectedOption[size];
+      this.mandatory = new boolean[size];
+      this.globs = new boolean[size];
+      this.pathPolicies = new PathPolicy[size];
+      this.labels = new String[size];
+      this.parsers = new ArgumentParser[size];
+      this.defaults = new Object[size];
+      if (arguments != null) {
+         for (ExpectedPlainArgument arg : arguments) {
+            defaults[arg.getIndex()] = arg.getDefaultSupplier() != null ? arg.getDefaultSupplier() : arg.getDefaultValue();
+            kinds[arg.getIndex()] = PLAIN;
+            mandatory[arg.getIndex()] = arg.isMandatory();
+            globs[arg.getIndex()] = arg.isGlob();
+            pathPolicies[arg.getIndex()] = arg.getPathPolicy();
+            names[arg.getIndex()] = arg.getName();
+            labels[arg.getIndex()] = "<" + arg.getName() + ">";
+         }
+      }
+      for (Entry<Character, ExpectedOption> e : options.entrySet()) {
+         int index = e.getValue().getIndex();
+         defaults[index] = defaultOf(e.getValue());
+         kinds[index] = OPTION;
+         expectedOptions[index] = e.getValue();
+         mandatory[index] = e.getValue().isMandatory();
+         pathPolicies[index] = e.getValue().getPathPolicy();
+         keys[index] = e.getKey();
+         labels[index] = "-" + e.getKey();
+      }
+      for (Entry<String, ExpectedOption> e : longOptions.entrySet()) {
+         int index = e.getValue().getIndex();
+         defaults[index] = defaultOf(e.getValue());
+         kinds[index] = OPTION;
+         expectedOptions[index] = e.getValue();
+         mandatory[index] = e.getValue().isMandatory();
+         pathPolicies[index] = e.getValue().getPathPolicy();
+         longKeys[index] = e.getKey();
+         labels[index] = (labels[index] == null ? "--" : labels[index] + " --") + e.getKey();
+      }
+      for (Command cmd : commands) {
+         kinds[cmd.getIndex()] = COMMAND;
+         names[cmd.getIndex()] = cmd.getName();
+         labels[cmd.getIndex()] = cmd.getName();
+         parsers[cmd.getIndex()] = cmd.getParser();
+      }
+
+      this.fingerprint = computeFingerprint();
+      this.ownPathPolicies = computeOwnPathPolicies();
+   }
+
+   private boolean computeOwnPathPolicies() {
+      for (PathPolicy policy : pathPolicies) {
+         if (policy != null)
+            return true;
+      }
+
+      return false;
+   }
+
+   private static Object defaultOf(ExpectedOption option) {
+      return option.getDefaultSupplier() != null ? option.getDefaultSupplier() : option.getDefaultValue();
+   }
+
+   /**
+    * Hashes the layout with 64 bit FNV-1a.
+    */
+   private long computeFingerprint() {
+      long hash = 0xcbf29ce484222325L;
+      hash = mix(hash, isVarArgs() ? 1 : 0);
+      hash = mix(hash, size);
+      for (int i = 0; i < size; i++) {
+         String label = labels[i] == null ? "" : labels[i];
+         for (int c = 0; c < label.length(); c++)
+            hash = mix(hash, label.charAt(c));
+
+         hash = mix(hash, 0);
+         hash = mix(hash, kinds[i]);
+         ExpectedOption option = expectedOptions[i];
+         if (option != null) {
+            hash = mix(hash, (option.expectsValue() ? 1 : 0) | (option.isMultiValued() ? 2 : 0));
+            hash = mix(hash, option.getDelimiter());
+         }
+         if (parsers[i] != null)
+            hash = mix(hash, parsers[i].getSpec().fingerprint());
+      }
+
+      return hash;
+   }
+
+   private static long mix(long hash, long value) {
+      for (int shift = 0; shift < 64; shift += 8)
+         hash = (hash ^ ((value >>> shift) & 0xff)) * 0x100000001b3L;
+
+      return hash;
+   }
+
+   /**
+    * Get the fingerprint of this layout. Layouts with the same arguments at the same indices,
+    * whose options take the same kind of values, and the same layouts of their commands have the same fingerprint.
+    *
+    * @return A hash of the layout
+    */
+   long fingerprint() {
+      return fingerprint;
+   }
+
+   /**
+    * Get the layout of the arguments of the command at <code>index</code>.
+    *
+    * @param index The index of the command
+    *
+    * @return The layout of the command or <code>null</code> if there is no command at <code>index</code>
+    */
+   ArgumentSpec commandSpec(int index) {
+      ArgumentParser parser = parser(index);
+      return parser == null ? null : parser.getSpec();
+   }
+
+   /**
+    * Get the parser of the arguments of the command at <code>index</code>.
+    *
+    * @param index The index of the command
+    *
+    * @return The parser of the command or <code>null</code> if there is no command at <code>index</code>
+    */
+   ArgumentParser parser(int index) {
+      return index < 0 || index >= size ? null : parsers[index];
+   }
+
+   /**
+    * Get what kind of argument is at <code>index</code>.
+    *
+    * @param index The index of the argument
+    *
+    * @return One of {@link #PLAIN}, {@link #OPTION}, {@link #COMMAND} or {@link #NONE} if there is no argument
+    */
+   byte kind(int index) {
+      return kinds[index];
+   }
+
+   /**
+    * Get the key of the option at <code>index</code>.
+    *
+    * @param index The index of the option
+    *
+    * @return The key or {@link ExpectedOption#NO_KEY} if the option has only a long key
+    */
+   char key(int index) {
+      return keys[index];
+   }
+
+   String longKey(int index) {
+      return longKeys[index];
+   }
+
+   /**
+    * Get the expected option at <code>index</code> as it was declared,
+    * e.g. to find out whether it expects a value. It never holds parsed values.
+    *
+    * @param index The index of the option
+    *
+    * @return The declared option or <code>null</code> if there is no option at <code>index</code>
+    */
+   ExpectedOption option(int index) {
+      return expectedOptions[index];
+   }
+
+   /**
+    * Find out whether the plain argument or option at <code>index</code> is mandatory.
+    *
+    * @param index The index of the argument
+    *
+    * @return <code>true</code> if the argument has to be given, <code>false</code> otherwise
+    */
+   boolean mandatory(int index) {
+      return mandatory[index];
+   }
+
+   /**
+    * Get the name of the plain argument or command at <code>index</code>.
+    *
+    * @param index The index of the argument
+    *
+    * @return The name or <code>null</code> if there is no plain argument or command at <code>index</code>
+    */
+   String name(int index) {
+      return names[index];
+   }
+
+   /**
+    * Get the default of the argument at <code>index</code>.
+    *
+    * @param index The index of the argument
+    *
+    * @return The constant default value, the supplier of the default value or <code>null</code>
+    */
+   Object defaultAt(int index) {
+      return index < 0 ? null : defaults[index];
+   }
+
+   /**
+    * Get the length of an array, that has room for the values of all arguments.
+    *
+    * @return The highest index of all arguments plus one
+    */
+   int size() {
+      return size;
+   }
+
+   /**
+    * Find out whether the plain argument at <code>index</code> is a glob pattern.
+    *
+    * @param index The index of the argument
+    *
+    * @return <code>true</code> if the value of the argument has to be expanded, <code>false</code> otherwise
+    */
+   boolean glob(int index) {
+      return index >= 0 && globs[index];
+   }
+
+   /**
+    * Find out whether the plain arguments in var args mode are glob patterns.
+    *
+    * @return <code>true</code> if the var args have to be expanded, <code>false</code> otherwise
+    */
+   boolean isGlobVarArgs() {
+      return globVarArgs;
+   }
+
+   void setGlobVarArgs(boolean globVarArgs) {
+      this.globVarArgs = globVarArgs;
+   }
+
+   /**
+    * Find out whether the parser of this layout expands argument files,
+    * so a token starting with <code>@</code> has to be rendered as <code>@@</code>.
+    *
+    * @return <code>true</code> if argument files are expanded, <code>false</code> otherwise
+    */
+   boolean isExpandArgFiles() {
+      return expandArgFiles;
+   }
+
+   void setExpandArgFiles(boolean expandArgFiles) {
+      this.expandArgFiles = expandArgFiles;
+   }
+
+   /**
+    * Find out whether the paths of any argument of this layout have to be checked.
+    * The layouts of the commands are not looked at, a model is checked if any of its levels has a path policy.
+    *
+    * @return <code>true</code> if there is a path policy, <code>false</code> otherwise
+    *
+    * @see PathChecks#isNeeded(ArgumentModel)
+    */
+   boolean hasPathPolicies() {
+      return ownPathPolicies || varArgPathPolicy != null;
+   }
+
+   /**
+    * Get the requirements for the paths given as the value of the plain argument or option at <code>index</code>.
+    *
+    * @param index The index of the argument
+    *
+    * @return The path policy or <code>null</code> if the value is not checked
+    */
+   PathPolicy pathPolicy(int index) {
+      return pathPolicies[index];
+   }
+
+   PathPolicy getVarArgPathPolicy() {
+      return varArgPathPolicy;
+   }
+
+   void setVarArgPathPolicy(PathPolicy varArgPathPolicy) {
+      this.varArgPathPolicy = varArgPathPolicy;
+   }
+
+   /**
+    * Get the label of the argument at <code>index</code>, e.g. <code>-k --key</code> for an option.
+    *
+    * @param index The index of the argument
+    *
+    * @return The label
+    */
+   String label(int index) {
+      return labels[index];
+   }
+
+   boolean isVarArgs() {
+      return plainIndices == null;
+   }
+
+   /**
+    * Get the number of expected plain arguments.
+    *
+    * @return The number of plain arguments or 0 in var args mode
+    */
+   int plainCount() {
+      return plainIndices == null ? 0 : plainIndices.length;
+   }
+
+   /**
+    * Get the index of the plain argument at <code>position</code>.
+    *
+    * @param position The position of the plain argument in the order they are parsed
+    *
+    * @return The index of the plain argument
+    */
+   int plainIndex(int position) {
+      return plainIndices[position];
+   }
+
+   int plainIndex(String name) {
+      return indexOf(plainArguments.get(name));
+   }
+
+   int optionIndex(char key) {
+      return indexOf(options.get(key));
+   }
+
+   int optionIndex(String longKey) {
+      return indexOf(longOptions.get(longKey));
+   }
+
+   int commandIndex(String name) {
+      return indexOf(commands.get(name));
+   }
+
+   Collection<String> commandNames() {
+      return Collections.unmodifiableSet(commands.keySet());
+   }
+
+   Collection<Character> optionKeys() {
+      return Collections.unmodifiableSet(options.keySet());
+   }
+
+   Collection<String> longOptionKeys() {
+      return Collections.unmodifiableSet(longOptions.keySet());
+   }
+
+   private static int indexOf(Integer index) {
+      return index == null ? -1 : index;
+   }
+}
@@ -0,0 +1,491 @@
+package com.github.koettlitz.opt;
+
+import static com.github.koettlitz.opt.ExpectedOption.NO_KEY;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * Generates random command lines for an {@link ArgumentParser}, e.g. as input of benchmarks,
+ * fuzzing and stress tests. The generator walks the arguments of the parser and of its commands
+ * and is reproducible: two generators with the same parser, seed and settings generate the same command lines.
+ * <p>
+ * A valid command line gives all mandatory arguments, a random selection of the other options
+ * with random values and a random number of plain arguments on every level.
+ * The command of a level is given with the probability {@link #getCommandRatio()} up to {@link #getMaxDepth()}
+ * nested levels. The shape of the tokens is controlled by {@link #getCombinedFlagRatio()},
+ * that combines flags like <code>-abc</code>, and {@link #getLongFormRatio()},
+ * that chooses <code>--key=value</code> over <code>-k value</code>.
+ * <p>
+ * An invalid command line is a valid one with a single defect: an unknown option, a missing option value,
+ * a value for a flag, a missing mandatory argument or a superfluous plain argument.
+ * <p>
+ * Every generated command line is checked with {@link ArgumentParser#parseRecovering(String...)},
+ * so constraints of the parser are respected. A generator is not thread safe,
+ * concurrent consumers get independent generators from {@link #split()}.
+ */
+public final class ArgvGenerator {
+   private static final int MAX_ATTEMPTS = 1000;
+   private static final String VALUE_CHARS = "abcdefghijklmnopqrstuvwxyz0123456789_./";
+
+   private final ArgumentParser parser;
+   private final SplittableRandom random;
+   private int maxOptions = 4;
+   private int maxVarArgs = 4;
+   private int maxDepth = 8;
+   private double commandRatio = 0.7;
+   private double combinedFlagRatio = 0.3;
+   private double longFormRatio = 0.5;
+   private double invalidRatio = 0.0;
+
+   /**
+    * Creates a new generator.
+    *
+    * @param parser The parser of the generated command lines
+    * @param seed The seed of the random numbers
+    *
+    * @throws NullPointerException If <code>parser</code> is <code>null</code>
+    */
+   public ArgvGenerator(ArgumentParser parser, long seed) throws NullPointerException {
+      this(parser, new SplittableRandom(seed));
+   }
+
+   private ArgvGenerator(ArgumentParser parser, SplittableRandom random) {
+      this.parser = Objects.requireNonNull(parser);
+      this.random = random;
+   }
+
+   /**
+    * Creates a generator with the same settings, whose command lines are independent of this one's.
+    * Splitting is reproducible like generating, so the split generators of a seed always generate the same.
+    *
+    * @return A new generator
+    */
+   public ArgvGenerator split() {
+      ArgvGenerator split = new ArgvGenerator(parser, random.split());
+      split.maxOptions = maxOptions;
+      split.maxVarArgs = maxVarArgs;
+      split.maxDepth = maxDepth;
+      split.commandRatio = commandRatio;
+      split.combinedFlagRatio = combinedFlagRatio;
+      split.longFormRatio = longFormRatio;
+      split.invalidRatio = invalidRatio;
+      return split;
+   }
+
+   /**
+    * Generates a command line, that is invalid with the probability {@link #getInvalidRatio()}.
+    *
+    * @return The arguments of the command line
+    *
+    * @throws IllegalStateException If no command line of the required kind could be generated,
+    * e.g. because the constraints of the parser can't be fulfilled
+    */
+   public String[] next() throws IllegalStateException {
+      return random.nextDouble() < invalidRatio ? nextInvalid() : nextValid();
+   }
+
+   /**
+    * Generates a command line, that is parsed without problems.
+    *
+    * @return The arguments of the command line
+    *
+    * @throws IllegalStateException If no valid command line could be generated
+    */
+   public String[] nextValid() throws IllegalStateException {
+      for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+         String[] args = generate(false);
+         if (args != null && isValid(args))
+            return args;
+      }
+
+      throw new IllegalStateException("No valid command line found in " + MAX_ATTEMPTS + " attempts.");
+   }
+
+   /**
+    * Generates a command line, that the parser rejects.
+    *
+    * @return The arguments of the command line
+    *
+    * @throws IllegalStateException If no invalid command line could be generated,
+    * e.g. because the parser ignores unknown arguments and has no mandatory arguments
+    */
+   public String[] nextInvalid() throws IllegalStateException {
+      for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+         String[] args = generate(true);
+         if (args != null && !isValid(args))
+            return args;
+      }
+
+      throw new IllegalStateException("No invalid command line found in " + MAX_ATTEMPTS + " attempts.");
+   }
+
+   /**
+    * Get an endless stream of command lines generated by {@link #next()}.
+    *
+    * @return The stream of the arguments of the command lines
+    */
+   public Stream<String[]> stream() {
+      return Stream.generate(this::next);
+   }
+
+   private boolean isValid(String[] args) {
+      return parser.parseRecovering(args).getDiagnostics().isEmpty();
+   }
+
+   private String[] generate(boolean invalid) {
+      List<String> args = new ArrayList<>();
+      // the defect is placed on the root level, because the other levels may ignore unknown arguments
+      generate(parser, args, 1, invalid ? random.nextInt(Defect.values().length) : -1);
+      return args.toArray(new String[0]);
+   }
+
+   /**
+    * Generates the arguments of one level.
+    *
+    * @param defect The ordinal of the {@link Defect} to add or -1
+    */
+   private void generate(ArgumentParser parser, List<String> args, int depth, int defect) {
+      ArgumentSpec spec = parser.getSpec();
+      List<Integer> options = new ArrayList<>();
+      List<Integer> plains = new ArrayList<>();
+      List<Command> commands = new ArrayList<>(parser.getCommands());
+      int droppedMandatory = -1;
+
+      for (int i = 0; i < spec.size(); i++) {
+         if (spec.kind(i) == ArgumentSpec.OPTION && spec.key(i) != '-')
+            options.add(i);
+      }
+      for (int p = 0; p < spec.plainCount(); p++)
+         plains.add(spec.plainIndex(p));
+
+      if (defect == Defect.MISSING_MANDATORY.ordinal()) {
+         List<Integer> mandatories = new ArrayList<>();
+         for (int i = 0; i < spec.size(); i++) {
+            if ((spec.kind(i) == ArgumentSpec.PLAIN || spec.kind(i) == ArgumentSpec.OPTION) && spec.mandatory(i))
+               mandatories.add(i);
+         }
+         if (!mandatories.isEmpty())
+            droppedMandatory = mandatories.get(random.nextInt(mandatories.size()));
+      }
+
+      // the options: all mandatory ones and a random selection of the others
+      List<Integer> given = new ArrayList<>();
+      for (int index : options) {
+         if (spec.mandatory(index) && index != droppedMandatory)
+            given.add(index);
+      }
+      int optionCount = options.isEmpty() ? 0 : random.nextInt(maxOptions + 1);
+      for (int n = 0; n < optionCount; n++) {
+         int index = options.get(random.nextInt(options.size()));
+         if (index != droppedMandatory)
+            given.add(index);
+      }
+      shuffle(given);
+      addOptions(spec, given, args);
+
+      if (defect == Defect.UNKNOWN_OPTION.ordinal())
+         args.add(random.nextInt(args.size() + 1), unknownOption(spec));
+      else if (defect == Defect.VALUE_FOR_FLAG.ordinal())
+         addValueForFlag(spec, args);
+
+      // the plain arguments: the mandatory ones and a random number of the optional ones
+      if (spec.isVarArgs()) {
+         int count = random.nextInt(maxVarArgs + 1);
+         for (int n = 0; n < count; n++)
+            args.add(plainValue(spec));
+      } else {
+         int last = -1;
+         for (int p = 0; p < plains.size(); p++) {
+            if (spec.mandatory(plains.get(p)))
+               last = p;
+         }
+         int count = last + 1 + random.nextInt(plains.size() - last);
+         if (droppedMandatory >= 0 && spec.kind(droppedMandatory) == ArgumentSpec.PLAIN)
+            count = plains.indexOf(droppedMandatory);
+
+         for (int p = 0; p < count; p++)
+            args.add(plainValue(spec));
+
+         if (defect == Defect.SUPERFLUOUS_PLAIN.ordinal()) {
+            for (int p = count; p <= plains.size(); p++)
+               args.add(plainValue(spec));
+         }
+      }
+
+      if (defect == Defect.MISSING_OPTION_VALUE.ordinal()) {
+         List<Integer> valued = new ArrayList<>();
+         for (int index : options) {
+            if (spec.option(index).expectsValue())
+               valued.add(index);
+         }
+         if (!valued.isEmpty()) {
+            args.add(optionToken(spec, valued.get(random.nextInt(valued.size())), false));
+            return;
+         }
+      }
+
+      if (!commands.isEmpty() && depth < maxDepth && (parser.isCommandMandatory() || random.nextDouble() < commandRatio)) {
+         // the commands are sorted, so the choice doesn't depend on the iteration order of the parser
+         commands.sort((a, b) -> Integer.compare(a.getIndex(), b.getIndex()));
+         Command command = commands.get(random.nextInt(commands.size()));
+         args.add(command.getName());
+         generate(command.getParser(), args, depth + 1, -1);
+      }
+   }
+
+   private void addOptions(ArgumentSpec spec, List<Integer> given, List<String> args) {
+      int i = 0;
+      while (i < given.size()) {
+         int index = given.get(i++);
+         ExpectedOption option = spec.option(index);
+         boolean shortForm = spec.key(index) != NO_KEY
+                             && (spec.longKey(index) == null || random.nextDouble() >= longFormRatio);
+
+         if (shortForm && !option.expectsValue() && random.nextDouble() < combinedFlagRatio) {
+            // combine the following short options into one token, only the last one may expect a value
+            StringBuilder token = new StringBuilder("-").append(spec.key(index));
+            ExpectedOption last = option;
+            while (i < given.size() && !last.expectsValue() && spec.key(given.get(i)) != NO_KEY) {
+               last = spec.option(given.get(i));
+               token.append(spec.key(given.get(i++)));
+            }
+            args.add(token.toString());
+            if (last.expectsValue())
+               args.add(optionValue());
+         } else if (shortForm || spec.longKey(index) == null) {
+            // an option without any key is given as "-"
+            args.add(spec.key(index) != NO_KEY ? "-" + spec.key(index) : "-");
+            if (option.expectsValue())
+               args.add(optionValue());
+         } else {
+            args.add(optionToken(spec, index, option.expectsValue()));
+         }
+      }
+   }
+
+   /**
+    * Creates the token of the long form of an option.
+    *
+    * @param withValue Whether the value is part of the token
+    */
+   private String optionToken(ArgumentSpec spec, int index, boolean withValue) {
+      String longKey = spec.longKey(index);
+      if (longKey == null)
+         return spec.key(index) != NO_KEY ? "-" + spec.key(index) : "-";
+
+      return withValue ? "--" + longKey + "=" + optionValue() : "--" + longKey;
+   }
+
+   private void addValueForFlag(ArgumentSpec spec, List<String> args) {
+      for (int i = 0; i < spec.size(); i++) {
+         if (spec.kind(i) == ArgumentSpec.OPTION && spec.longKey(i) != null && !spec.option(i).expectsValue()) {
+            args.add("--" + spec.longKey(i) + "=" + optionValue());
+            return;
+         }
+      }
+   }
+
+   private String unknownOption(ArgumentSpec spec) {
+      for (int attempt = 0; attempt < 100; attempt++) {
+         String longKey = word(3 + random.nextInt(8));
+         if (spec.optionIndex(longKey) < 0)
+            return "--" + longKey;
+      }
+
+      return "--" + word(32);
+   }
+
+   private String optionValue() {
+      return word(1 + random.nextInt(12));
+   }
+
+   /**
+    * Creates a plain value, that is no command of the level.
+    */
+   private String plainValue(ArgumentSpec spec) {
+      String value;
+      do {
+         value = word(1 + random.nextInt(12));
+      } while (spec.commandIndex(value) >= 0);
+
+      return value;
+   }
+
+   private String word(int length) {
+      char[] chars = new char[length];
+      // the first char is a letter, so the word is never taken for an option or an argument file
+      chars[0] = VALUE_CHARS.charAt(random.nextInt(26));
+      for (int i = 1; i < length; i++)
+         chars[i] = VALUE_CHARS.charAt(random.nextInt(VALUE_CHARS.length()));
+
+      return new String(chars);
+   }
+
+   private void shuffle(List<Integer> list) {
+      for (int i = list.size() - 1; i > 0; i--) {
+         int j = random.nextInt(i + 1);
+         list.set(j, list.set(i, list.get(j)));
+      }
+   }
+
+   public int getMaxOptions() {
+      return maxOptions;
+   }
+
+   /**
+    * Set the maximum number of optional options given on a level. The number is uniformly distributed
+    * between 0 and the maximum. Mandatory options are always given additionally.
+    *
+    * @param maxOptions The maximum number of options per level
+    *
+    * @return This generator
+    *
+    * @throws IllegalArgumentException If <code>maxOptions</code> is negative
+    */
+   public ArgvGenerator setMaxOptions(int maxOptions) throws IllegalArgumentException {
+      this.maxOptions = checkNotNegative("maxOptions", maxOptions);
+      return this;
+   }
+
+   public int getMaxVarArgs() {
+      return maxVarArgs;
+   }
+
+   /**
+    * Set the maximum number of plain arguments given on a level in var args mode.
+    * The number is uniformly distributed between 0 and the maximum.
+    *
+    * @param maxVarArgs The maximum number of var args per level
+    *
+    * @return This generator
+    *
+    * @throws IllegalArgumentException If <code>maxVarArgs</code> is negative
+    */
+   public ArgvGenerator setMaxVarArgs(int maxVarArgs) throws IllegalArgumentException {
+      this.maxVarArgs = checkNotNegative("maxVarArgs", maxVarArgs);
+      return this;
+   }
+
+   public int getMaxDepth() {
+      return maxDepth;
+   }
+
+   /**
+    * Set the maximum number of levels including the root, so commands are only nested <code>maxDepth - 1</code> deep.
+    *
+    * @param maxDepth The maximum depth
+    *
+    * @return This generator
+    *
+    * @throws IllegalArgumentException If <code>maxDepth</code> is less than 1
+    */
+   public ArgvGenerator setMaxDepth(int maxDepth) throws IllegalArgumentException {
+      if (maxDepth < 1)
+         throw new IllegalArgumentException("maxDepth can not be less than 1. Was " + maxDepth);
+
+      this.maxDepth = maxDepth;
+      return this;
+   }
+
+   public double getCommandRatio() {
+      return commandRatio;
+   }
+
+   /**
+    * Set the probability, that a level, which has commands, gives one of them. Mandatory commands are always given.
+    *
+    * @param commandRatio The probability between 0 and 1
+    *
+    * @return This generator
+    *
+    * @throws IllegalArgumentException If <code>commandRatio</code> is not between 0 and 1
+    */
+   public ArgvGenerator setCommandRatio(double commandRatio) throws IllegalArgumentException {
+      this.commandRatio = checkRatio("commandRatio", commandRatio);
+      return this;
+   }
+
+   public double getCombinedFlagRatio() {
+      return combinedFlagRatio;
+   }
+
+   /**
+    * Set the probability, that a flag is combined with the following short options into one token.
+    *
+    * @param combinedFlagRatio The probability between 0 and 1
+    *
+    * @return This generator
+    *
+    * @throws IllegalArgumentException If <code>combinedFlagRatio</code> is not between 0 and 1
+    */
+   public ArgvGenerator setCombinedFlagRatio(double combinedFlagRatio) throws IllegalArgumentException {
+      this.combinedFlagRatio = checkRatio("combinedFlagRatio", combinedFlagRatio);
+      return this;
+   }
+
+   public double getLongFormRatio() {
+      return longFormRatio;
+   }
+
+   /**
+    * Set the probability, that an option with a key and a long key is given by its long key,
+    * e.g. <code>--key=value</code> instead of <code>-k value</code>.
+    *
+    * @param longFormRatio The probability between 0 and 1
+    *
+    * @return This generator
+    *
+    * @throws IllegalArgumentException If <code>longFormRatio</code> is not between 0 and 1
+    */
+   public ArgvGenerator setLongFormRatio(double longFormRatio) throws IllegalArgumentException {
+      this.longFormRatio = checkRatio("longFormRatio", longFormRatio);
+      return this;
+   }
+
+   public double getInvalidRatio() {
+      return invalidRatio;
+   }
+
+   /**
+    * Set the probability, that {@link #next()} generates an invalid command line.
+    *
+    * @param invalidRatio The probability between 0 and 1
+    *
+    * @return This generator
+    *
+    * @throws IllegalArgumentException If <code>invalidRatio</code> is not between 0 and 1
+    */
+   public ArgvGenerator setInvalidRatio(double invalidRatio) throws IllegalArgumentException {
+      this.invalidRatio = checkRatio("invalidRatio", invalidRatio);
+      return this;
+   }
+
+   private static int checkNotNegative(String name, int value) throws IllegalArgumentException {
+      if (value < 0)
+         throw new IllegalArgumentException(name + " can not be less than 0. Was " + value);
+
+      return value;
+   }
+
+   private static double checkRatio(String name, double value) throws IllegalArgumentException {
+      if (!(value >= 0 && value <= 1))
+         throw new IllegalArgumentException(name + " has to be between 0 and 1. Was " + value);
+
+      return value;
+   }
+
+   /**
+    * The defects of invalid command lines.
+    */
+   private enum Defect {
+      UNKNOWN_OPTION,
+      MISSING_OPTION_VALUE,
+      VALUE_FOR_FLAG,
+      MISSING_MANDATORY,
+      SUPERFLUOUS_PLAIN
+   }
+}
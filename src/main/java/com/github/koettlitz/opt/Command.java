@@ -2,6 +2,8 @@ package com.github.koettlitz.opt;
 
 import java.util.Objects;
 
+import com.github.koettlitz.opt.exec.CommandHandler;
+
 /**
  * @author David Koettlitz
  * <br>Erstellt am 07.08.2017
@@ -13,6 +15,7 @@ public class Command implements ExpectedArgument, Cloneable {
    private ArgumentModel value;
    private ArgumentParser parser;
    private CommandGroup group;
+   private CommandHandler handler;
 
    public Command(CommandGroup group,
                   int index,
@@ -91,6 +94,29 @@ public class Command implements ExpectedArgument, Cloneable {
       group.setPresent(isPresent());
    }
 
+   /**
+    * Forgets the parsed arguments of a previous parse, so the command can be reused.
+    */
+   void reset() {
+      value = null;
+      group.setPresent(false);
+   }
+
+   /**
+    * Get the handler, that executes the command.
+    *
+    * @return The handler of the command or <code>null</code> if the command has no handler
+    *
+    * @see com.github.koettlitz.opt.exec.CommandDispatcher
+    */
+   public CommandHandler getHandler() {
+      return handler;
+   }
+
+   public void setHandler(CommandHandler handler) {
+      this.handler = handler;
+   }
+
    void setGroup(CommandGroup group) {
       this.group = group;
    }
@@ -105,6 +131,7 @@ public class Command implements ExpectedArgument, Cloneable {
       Command clone = new Command(index, name);
       clone.description = description;
       clone.parser = parser;
+      clone.handler = handler;
       return clone;
    }
 
@@ -1,6 +1,6 @@
 package com.github.koettlitz.opt;
 
-import com.github.koettlitz.util.Util;
+import com.github.koettlitz.opt.exec.CommandHandler;
 
 /**
  * @author David Koettlitz
@@ -22,7 +22,7 @@ public class CommandBuilder implements ArgumentBuilder {
     */
    protected CommandBuilder(ArgumentParserBuilder parentBuilder, CommandGroup group, short index, String name) throws NullPointerException {
       this.parentBuilder = parentBuilder;
-      this.group = Util.nonNull(group, CommandGroup::new);
+      this.group = group != null ? group : new CommandGroup();
       this.command = new Command(index, name);
    }
 
@@ -89,6 +89,20 @@ public class CommandBuilder implements ArgumentBuilder {
       return this;
    }
 
+   /**
+    * Set the handler, that executes the command once it was parsed.
+    *
+    * @param handler The handler of the command
+    *
+    * @return This command builder to go on
+    *
+    * @see com.github.koettlitz.opt.exec.CommandDispatcher
+    */
+   public CommandBuilder setHandler(CommandHandler handler) {
+      command.setHandler(handler);
+      return this;
+   }
+
    public CommandBuilder setMandatory(boolean mandatory) {
       group.setMandatory(mandatory);
       return this;
@@ -42,11 +42,12 @@ public class CommandGroup implements Cloneable {
    }
 
    public Command getPresent() {
-      return commands.values()
-                     .stream()
-                     .filter(Command::isPresent)
-                     .findAny()
-                     .orElse(null);
+      for (Command cmd : commands.values()) {
+         if (cmd.isPresent())
+            return cmd;
+      }
+
+      return null;
    }
 
    public boolean isMandatory() {
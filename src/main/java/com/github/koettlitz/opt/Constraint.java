@@ -0,0 +1,127 @@
+package com.github.koettlitz.opt;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A constraint on the presence of arguments, options and commands of an {@link ArgumentParser}.
+ * The constrained arguments are referenced by name: <code>-k</code> for the option with the key <code>k</code>,
+ * <code>--longKey</code> for the option with the long key <code>longKey</code> and the plain name
+ * for plain arguments and commands.
+ * <br>
+ * Constraints are resolved and compiled into bit masks when the parser is built,
+ * so checking them after parsing takes only a few bit operations per constraint.
+ *
+ * @see ArgumentParserBuilder#addConstraint(Constraint)
+ */
+public final class Constraint {
+
+   public enum Type {
+      /** At most one of the arguments may be given. */
+      MUTUALLY_EXCLUSIVE,
+      /** Either all or none of the arguments have to be given. */
+      REQUIRED_TOGETHER,
+      /** If the first argument is given, all the others have to be given too. */
+      REQUIRES
+   }
+
+   private final Type type;
+   private final String[] names;
+
+   private Constraint(Type type, String[] names) throws IllegalArgumentException {
+      this.type = type;
+      this.names = names;
+      if (names.length < 2)
+         throw new IllegalArgumentException("A constraint needs at least two arguments: " + this);
+
+      for (String name : names)
+         Objects.requireNonNull(name);
+   }
+
+   /**
+    * Creates a constraint, that allows at most one of the arguments <code>names</code> to be given.
+    *
+    * @param names The names of the arguments
+    *
+    * @return A new constraint
+    *
+    * @throws IllegalArgumentException If less than two names are given
+    */
+   public static Constraint mutuallyExclusive(String... names) throws IllegalArgumentException {
+      return new Constraint(Type.MUTUALLY_EXCLUSIVE, names.clone());
+   }
+
+   /**
+    * Creates a constraint, that requires either all or none of the arguments <code>names</code> to be given.
+    *
+    * @param names The names of the arguments
+    *
+    * @return A new constraint
+    *
+    * @throws IllegalArgumentException If less than two names are given
+    */
+   public static Constraint requiredTogether(String... names) throws IllegalArgumentException {
+      return new Constraint(Type.REQUIRED_TOGETHER, names.clone());
+   }
+
+   /**
+    * Creates a constraint, that requires all the arguments <code>required</code> to be given
+    * if the argument <code>name</code> is given.
+    *
+    * @param name The name of the dependent argument
+    * @param required The names of the arguments the argument <code>name</code> depends on
+    *
+    * @return A new constraint
+    *
+    * @throws IllegalArgumentException If no required names are given
+    */
+   public static Constraint requires(String name, String... required) throws IllegalArgumentException {
+      String[] names = new String[required.length + 1];
+      names[0] = name;
+      System.arraycopy(required, 0, names, 1, required.length);
+      return new Constraint(Type.REQUIRES, names);
+   }
+
+   public Type getType() {
+      return type;
+   }
+
+   /**
+    * Get the names of the constrained arguments.
+    * For a {@link Type#REQUIRES} constraint the first name is the dependent argument.
+    *
+    * @return A copy of the names
+    */
+   public String[] getNames() {
+      return names.clone();
+   }
+
+   String name(int i) {
+      return names[i];
+   }
+
+   int size() {
+      return names.length;
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Constraint that = (Constraint) o;
+      return type == that.type &&
+              Arrays.equals(names, that.names);
+   }
+
+   @Override
+   public int hashCode() {
+      return 31 * type.hashCode() + Arrays.hashCode(names);
+   }
+
+   @Override
+   public String toString() {
+      return "Constraint { type=" + type
+                          + ", names=" + Arrays.toString(names)
+             + " }";
+   }
+}
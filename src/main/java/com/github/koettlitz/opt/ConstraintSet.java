@@ -0,0 +1,219 @@
+package com.github.koettlitz.opt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.github.koettlitz.opt.ex.ConstraintViolationException;
+import com.github.koettlitz.opt.ex.MissingArgumentException;
+import com.github.koettlitz.util.Bits;
+
+/**
+ * The mandatory arguments and {@link Constraint}s of an {@link ArgumentParser}
+ * compiled into bit masks over the indices of the arguments.
+ * The presence of the arguments in a parse is tracked in a bit set of the same layout
+ * (see {@link #newPresence()}). The masks are sparse and only hold the words with bits set,
+ * so every check is a few word wide bit operations no matter how many arguments the parser has.
+ */
+final class ConstraintSet {
+   private final ExpectedArgument[] byIndex;
+   /**
+    * The sparse masks of the mandatory arguments and the commands or <code>null</code>.
+    */
+   private final long[] mandatory;
+   private final long[] commands;
+   private final Constraint[] constraints;
+   /**
+    * The sparse masks of the arguments of the constraints.
+    */
+   private final long[][] masks;
+   private final int[] dependents;
+
+   /**
+    * Compiles the constraints of the given arguments.
+    *
+    * @param arguments All arguments, options and commands of the parser
+    * @param commandGroup The commands of the parser or <code>null</code>
+    * @param constraints Additional constraints
+    *
+    * @throws IllegalArgumentException If a constraint references an unknown argument
+    */
+   ConstraintSet(Collection<? extends ExpectedArgument> arguments,
+                 CommandGroup commandGroup,
+                 Collection<Constraint> constraints) throws IllegalArgumentException {
+      int bitCount = 0;
+      for (ExpectedArgument arg : arguments)
+         bitCount = Math.max(bitCount, arg.getIndex() + 1);
+
+      this.byIndex = new ExpectedArgument[bitCount];
+      long[] mandatory = Bits.create(bitCount);
+      for (ExpectedArgument arg : arguments) {
+         byIndex[arg.getIndex()] = arg;
+         if (!(arg instanceof Command) && arg.isMandatory())
+            Bits.set(mandatory, arg.getIndex());
+      }
+      this.mandatory = Bits.sparse(mandatory);
+
+      if (commandGroup != null && commandGroup.isMandatory()) {
+         long[] commands = Bits.create(bitCount);
+         for (Command cmd : commandGroup.asCollection())
+            Bits.set(commands, cmd.getIndex());
+         this.commands = Bits.sparse(commands);
+      } else {
+         this.commands = null;
+      }
+
+      this.constraints = constraints.toArray(new Constraint[0]);
+      this.masks = new long[this.constraints.length][];
+      this.dependents = new int[this.constraints.length];
+      for (int i = 0; i < this.constraints.length; i++) {
+         Constraint constraint = this.constraints[i];
+         long[] mask = Bits.create(bitCount);
+         int first = 0;
+         if (constraint.getType() == Constraint.Type.REQUIRES) {
+            dependents[i] = resolve(constraint.name(0), arguments).getIndex();
+            first = 1;
+         } else {
+            dependents[i] = -1;
+         }
+
+         for (int n = first; n < constraint.size(); n++)
+            Bits.set(mask, resolve(constraint.name(n), arguments).getIndex());
+
+         masks[i] = Bits.sparse(mask);
+      }
+   }
+
+   private static ExpectedArgument resolve(String name,
+                                           Collection<? extends ExpectedArgument> arguments) throws IllegalArgumentException {
+      for (ExpectedArgument arg : arguments) {
+         if (arg instanceof ExpectedOption) {
+            ExpectedOption opt = (ExpectedOption) arg;
+            if (name.startsWith("--") ? name.substring(2).equals(opt.getLongKey())
+                                      : name.length() == 2 && name.charAt(0) == '-' && name.charAt(1) == opt.getKey())
+               return arg;
+         } else if (arg.getName().equals(name)) {
+            return arg;
+         }
+      }
+
+      throw new IllegalArgumentException("Constraint references unknown argument " + name);
+   }
+
+   /**
+    * Creates an empty bit set to track the presence of the arguments during a parse.
+    *
+    * @return A new bit set with room for the indices of all arguments
+    */
+   long[] newPresence() {
+      return Bits.create(byIndex.length);
+   }
+
+   /**
+    * Get the number of bits needed to track the presence of all arguments.
+    *
+    * @return The highest index of all arguments plus one
+    */
+   int bitCount() {
+      return byIndex.length;
+   }
+
+   boolean mandatoriesPresent(long[] present) {
+      return Bits.containsAll(present, mandatory)
+             && (commands == null || Bits.intersects(present, commands));
+   }
+
+   /**
+    * Get the mandatory arguments, that are not present.
+    * If a command is mandatory and none is present, all the commands are returned.
+    *
+    * @param present The presence of the arguments
+    *
+    * @return The missing arguments
+    */
+   List<ExpectedArgument> missing(long[] present) {
+      List<ExpectedArgument> missing = new ArrayList<>();
+      collect(mandatory, present, false, missing);
+      if (commands != null && !Bits.intersects(present, commands))
+         collect(commands, present, false, missing);
+
+      return missing;
+   }
+
+   /**
+    * Checks whether all mandatory arguments are present and all constraints are fulfilled.
+    *
+    * @param present The presence of the arguments
+    *
+    * @throws MissingArgumentException If a mandatory argument is missing
+    * @throws ConstraintViolationException If a constraint is violated
+    */
+   void check(long[] present) throws MissingArgumentException, ConstraintViolationException {
+      if (!mandatoriesPresent(present))
+         throw new MissingArgumentException(missing(present));
+
+      for (int i = 0; i < constraints.length; i++) {
+         ConstraintViolationException violation = violation(i, present);
+         if (violation != null)
+            throw violation;
+      }
+   }
+
+   /**
+    * Collects every missing mandatory argument and every violated constraint.
+    *
+    * @param present The presence of the arguments
+    * @param errors The collector of the problems
+    */
+   void report(long[] present, ParseErrors errors) {
+      if (!mandatoriesPresent(present))
+         errors.add(new MissingArgumentException(missing(present)));
+
+      for (int i = 0; i < constraints.length; i++) {
+         ConstraintViolationException violation = violation(i, present);
+         if (violation != null)
+            errors.add(violation);
+      }
+   }
+
+   /**
+    * Checks the constraint at position <code>i</code>.
+    *
+    * @return The violation of the constraint or <code>null</code> if it is fulfilled
+    */
+   private ConstraintViolationException violation(int i, long[] present) {
+      long[] mask = masks[i];
+      switch (constraints[i].getType()) {
+         case MUTUALLY_EXCLUSIVE:
+            if (Bits.intersectionCount(present, mask) > 1)
+               return violation(i, present, true);
+            break;
+         case REQUIRED_TOGETHER:
+            if (Bits.intersects(present, mask) && !Bits.containsAll(present, mask))
+               return violation(i, present, false);
+            break;
+         case REQUIRES:
+            if (Bits.get(present, dependents[i]) && !Bits.containsAll(present, mask))
+               return violation(i, present, false);
+            break;
+      }
+
+      return null;
+   }
+
+   private ConstraintViolationException violation(int i, long[] present, boolean given) {
+      List<ExpectedArgument> arguments = new ArrayList<>();
+      collect(masks[i], present, given, arguments);
+      return new ConstraintViolationException(constraints[i], arguments);
+   }
+
+   private void collect(long[] mask, long[] present, boolean given, List<ExpectedArgument> result) {
+      for (int n = 0; n < mask.length; n += 2) {
+         for (long word = mask[n + 1]; word != 0; word &= word - 1) {
+            int i = ((int) mask[n] << 6) + Long.numberOfTrailingZeros(word);
+            if (Bits.get(present, i) == given)
+               result.add(byIndex[i]);
+         }
+      }
+   }
+}
@@ -0,0 +1,156 @@
+package com.github.koettlitz.opt;
+
+import java.nio.CharBuffer;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only list of the entries of delimited values like <code>a,b,c</code>, that are sliced out of the values
+ * instead of being copied into an array. The boundaries of the entries are found once on the first access,
+ * a string of an entry is only created when the entry is read by {@link #get(int)}
+ * and {@link #slice(int)} reads an entry without creating a string at all.
+ * <br>
+ * The entries of all values of a multi valued option are listed in the order the values were given.
+ * An empty value has no entries. A value without a delimiter is a single entry.
+ *
+ * @see ArgumentModel#getOptionList(char)
+ */
+public final class DelimitedList extends AbstractList<String> implements RandomAccess {
+   private static final String[] NO_VALUES = new String[0];
+
+   private final String[] values;
+   private final char delimiter;
+   private volatile Bounds bounds;
+
+   /**
+    * Creates a list of the entries of the given values.
+    *
+    * @param values The delimited values, that are not copied
+    * @param delimiter The delimiter or {@link ExpectedOption#NO_DELIMITER} to list every value as one entry
+    */
+   DelimitedList(String[] values, char delimiter) {
+      this.values = values == null ? NO_VALUES : values;
+      this.delimiter = delimiter;
+   }
+
+   @Override
+   public String get(int index) throws IndexOutOfBoundsException {
+      Bounds bounds = bounds();
+      int value = valueOf(bounds, index);
+      return values[value].substring(start(bounds, value, index), bounds.ends[index]);
+   }
+
+   /**
+    * Get the entry at <code>index</code> as a view of the value, that contains it.
+    *
+    * @param index The index of the entry
+    *
+    * @return A read-only char sequence, that shares the chars of the value
+    *
+    * @throws IndexOutOfBoundsException If there is no entry at <code>index</code>
+    */
+   public CharSequence slice(int index) throws IndexOutOfBoundsException {
+      Bounds bounds = bounds();
+      int value = valueOf(bounds, index);
+      return CharBuffer.wrap(values[value], start(bounds, value, index), bounds.ends[index]);
+   }
+
+   @Override
+   public int size() {
+      return bounds().ends.length;
+   }
+
+   public char getDelimiter() {
+      return delimiter;
+   }
+
+   /**
+    * Finds the value, that contains the entry at <code>index</code>,
+    * which is the last value whose first entry is not behind <code>index</code>.
+    */
+   private static int valueOf(Bounds bounds, int index) throws IndexOutOfBoundsException {
+      if (index < 0 || index >= bounds.ends.length)
+         throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + bounds.ends.length);
+
+      int low = 0;
+      int high = bounds.firstEntries.length - 1;
+      while (low < high) {
+         int middle = (low + high + 1) >>> 1;
+         if (bounds.firstEntries[middle] <= index)
+            low = middle;
+         else
+            high = middle - 1;
+      }
+
+      return low;
+   }
+
+   private static int start(Bounds bounds, int value, int index) {
+      return index == bounds.firstEntries[value] ? 0 : bounds.ends[index - 1] + 1;
+   }
+
+   /**
+    * Get the boundaries of the entries. Concurrent first accesses may both compute them,
+    * which is harmless as the result is the same.
+    */
+   private Bounds bounds() {
+      Bounds bounds = this.bounds;
+      if (bounds == null)
+         this.bounds = bounds = computeBounds();
+
+      return bounds;
+   }
+
+   private Bounds computeBounds() {
+      int count = 0;
+      for (String value : values)
+         count += entryCount(value);
+
+      int[] ends = new int[count];
+      int[] firstEntries = new int[values.length];
+      int entry = 0;
+      for (int i = 0; i < values.length; i++) {
+         String value = values[i];
+         firstEntries[i] = entry;
+         if (entryCount(value) == 0)
+            continue;
+
+         if (delimiter != ExpectedOption.NO_DELIMITER) {
+            for (int end = value.indexOf(delimiter); end >= 0; end = value.indexOf(delimiter, end + 1))
+               ends[entry++] = end;
+         }
+         ends[entry++] = value.length();
+      }
+
+      return new Bounds(ends, firstEntries);
+   }
+
+   private int entryCount(String value) {
+      if (delimiter == ExpectedOption.NO_DELIMITER)
+         return 1;
+      if (value.isEmpty())
+         return 0;
+
+      int count = 1;
+      for (int i = value.indexOf(delimiter); i >= 0; i = value.indexOf(delimiter, i + 1))
+         count++;
+
+      return count;
+   }
+
+   private static final class Bounds {
+      /**
+       * The end of every entry in its value.
+       */
+      private final int[] ends;
+      /**
+       * The index of the first entry of every value.
+       */
+      private final int[] firstEntries;
+
+      Bounds(int[] ends, int[] firstEntries) {
+         this.ends = ends;
+         this.firstEntries = firstEntries;
+      }
+   }
+}
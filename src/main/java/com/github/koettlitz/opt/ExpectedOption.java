@@ -2,7 +2,13 @@ package com.github.koettlitz.opt;
 
 import com.github.koettlitz.util.Util;
 
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Supplier;
 
 /**
  * @author David Koettlitz
@@ -10,15 +16,26 @@ import java.util.Objects;
  */
 public class ExpectedOption implements ExpectedArgument, Cloneable {
    public static final char NO_KEY = '\0';
+   public static final char NO_DELIMITER = '\0';
 
    private final int index;
    private char key;
    private String longKey;
    private boolean expectsValue;
+   private boolean multiValued;
+   private boolean mandatory;
+   private char delimiter = NO_DELIMITER;
+   private PathPolicy pathPolicy;
    private String description;
+   private String defaultValue;
+   private Supplier<String> defaultSupplier;
 
    private String value;
    private boolean present;
+   private int count;
+   private String[] values;
+   private int valueCount;
+   private List<String> valueList;
 
    public ExpectedOption(int index,
                          char key,
@@ -42,24 +59,196 @@ public class ExpectedOption implements ExpectedArgument, Cloneable {
       this(index, NO_KEY, longKey, null);
    }
 
+   /**
+    * Sets the value of the option. If the option is multi valued, the value is appended
+    * to the values given before, otherwise it replaces the previous value.
+    *
+    * @param value The value of the option
+    *
+    * @throws UnsupportedOperationException If the option doesn't expect a value
+    */
    public void setValue(String value) throws UnsupportedOperationException {
          if (!expectsValue)
             throw new UnsupportedOperationException("No value for this option expected.");
 
       this.value = value;
+      if (multiValued) {
+         if (values == null)
+            values = new String[4];
+         else if (valueCount == values.length)
+            values = Arrays.copyOf(values, valueCount * 2);
+
+         values[valueCount++] = value;
+      }
    }
 
+   /**
+    * Get the value of the option. If the option is multi valued, this is the last given value.
+    *
+    * @return The value of the option or <code>null</code> if no value was given
+    */
    public String getValue() {
       return value;
    }
 
+   /**
+    * Get all values given for this option in the order they were given.
+    * For an option that is not multi valued, the list contains at most the one value of the option.
+    *
+    * @return A read-only view of the values
+    */
+   public List<String> getValues() {
+      if (!multiValued)
+         return value == null ? Collections.emptyList() : Collections.singletonList(value);
+
+      if (valueList == null)
+         valueList = new ValueList();
+
+      return valueList;
+   }
+
+   /**
+    * Copies the values of a multi valued option.
+    *
+    * @return A new array with all values given in the order they were given
+    */
+   String[] copyValues() {
+      return values == null ? new String[0] : Arrays.copyOf(values, valueCount);
+   }
+
+   /**
+    * Get how often the option was given, e.g. 3 for <code>-vvv</code>.
+    *
+    * @return The number of occurrences of the option
+    */
+   public int getCount() {
+      return count;
+   }
+
+   /**
+    * Marks the option as present and increments the number of its occurrences.
+    */
+   public void addOccurrence() {
+      present = true;
+      count++;
+   }
+
+   /**
+    * Forgets the values and occurrences of a previous parse, so the option can be reused.
+    * The storage of the values is kept.
+    */
+   void reset() {
+      if (values != null)
+         Arrays.fill(values, 0, valueCount, null);
+
+      value = null;
+      present = false;
+      count = 0;
+      valueCount = 0;
+   }
+
+   /**
+    * Get the constant value, that is read if the option is not given.
+    *
+    * @return The constant default value or <code>null</code>
+    */
+   public String getDefaultValue() {
+      return defaultValue;
+   }
+
+   /**
+    * Sets a constant value, that is read if the option is not given.
+    * Replaces a default supplier set before.
+    *
+    * @param defaultValue The default value or <code>null</code> for no default
+    */
+   public void setDefaultValue(String defaultValue) {
+      this.defaultValue = defaultValue;
+      this.defaultSupplier = null;
+   }
+
+   /**
+    * Get the supplier of the value, that is read if the option is not given.
+    *
+    * @return The supplier of the default value or <code>null</code>
+    */
+   public Supplier<String> getDefaultSupplier() {
+      return defaultSupplier;
+   }
+
+   /**
+    * Sets a supplier of the value, that is read if the option is not given.
+    * The supplier is called at most once per argument model and only if the default value is actually read.
+    * Replaces a constant default value set before.
+    *
+    * @param defaultSupplier The supplier of the default value or <code>null</code> for no default
+    */
+   public void setDefaultSupplier(Supplier<String> defaultSupplier) {
+      this.defaultSupplier = defaultSupplier;
+      this.defaultValue = null;
+   }
+
+   public boolean isMultiValued() {
+      return multiValued;
+   }
+
+   /**
+    * Set whether the option can be given multiple times, keeping all the values,
+    * e.g. <code>-I first -I second</code>. A multi valued option always expects a value.
+    *
+    * @param multiValued Whether the values of all occurrences are kept or not
+    */
+   public void setMultiValued(boolean multiValued) {
+      this.multiValued = multiValued;
+      if (multiValued)
+         expectsValue = true;
+   }
+
+   public char getDelimiter() {
+      return delimiter;
+   }
+
+   /**
+    * Set the char, that separates the entries of a value, e.g. <code>','</code> for <code>--hosts=a,b,c</code>.
+    * An option with a delimiter always expects a value.
+    *
+    * @param delimiter The delimiter or {@link #NO_DELIMITER} if the value is not a list
+    *
+    * @see ArgumentModel#getOptionList(char)
+    */
+   public void setDelimiter(char delimiter) {
+      this.delimiter = delimiter;
+      if (delimiter != NO_DELIMITER)
+         expectsValue = true;
+   }
+
+   public PathPolicy getPathPolicy() {
+      return pathPolicy;
+   }
+
+   /**
+    * Set the requirements for the paths given as the values of the option, every entry of a delimited value is a path.
+    * An option with a path policy always expects a value.
+    *
+    * @param pathPolicy The requirements or <code>null</code> if the values are not checked as paths
+    */
+   public void setPathPolicy(PathPolicy pathPolicy) {
+      this.pathPolicy = pathPolicy;
+      if (pathPolicy != null)
+         expectsValue = true;
+   }
+
    public void setDescription(String description) {
       this.description = Util.isBlank(description) ? null : description;
    }
 
    @Override
    public boolean isMandatory() {
-      return false;
+      return mandatory;
+   }
+
+   public void setMandatory(boolean mandatory) {
+      this.mandatory = mandatory;
    }
 
    @Override
@@ -128,13 +317,16 @@ public class ExpectedOption implements ExpectedArgument, Cloneable {
       else
          fullName = "-" + (expectsValue ? " <" + getName() + ">" : "");
 
-      return fullName;
+      return multiValued ? fullName + "..." : fullName;
    }
 
    @Override
    public ExpectedOption clone() {
       try {
-         return (ExpectedOption) super.clone();
+         ExpectedOption clone = (ExpectedOption) super.clone();
+         clone.values = values == null ? null : values.clone();
+         clone.valueList = null;
+         return clone;
       } catch (CloneNotSupportedException e) {
          String msg = "Error cloning this ExpectedOption. "
                       + "This error should never occur.";
@@ -149,15 +341,18 @@ public class ExpectedOption implements ExpectedArgument, Cloneable {
       ExpectedOption that = (ExpectedOption) o;
       return key == that.key &&
               expectsValue == that.expectsValue &&
+              multiValued == that.multiValued &&
               present == that.present &&
+              count == that.count &&
               Objects.equals(longKey, that.longKey) &&
               Objects.equals(description, that.description) &&
-              Objects.equals(value, that.value);
+              Objects.equals(value, that.value) &&
+              getValues().equals(that.getValues());
    }
 
    @Override
    public int hashCode() {
-      return Objects.hash(key, longKey, expectsValue, description, value, present);
+      return Objects.hash(key, longKey, expectsValue, multiValued, description, value, present, count);
    }
 
    @Override
@@ -168,4 +363,19 @@ public class ExpectedOption implements ExpectedArgument, Cloneable {
                                + (value != null ? (", value=" + value) : "")
               + " }";
    }
+
+   private class ValueList extends AbstractList<String> implements RandomAccess {
+      @Override
+      public String get(int index) {
+         if (index < 0 || index >= valueCount)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + valueCount);
+
+         return values[index];
+      }
+
+      @Override
+      public int size() {
+         return valueCount;
+      }
+   }
 }
@@ -1,6 +1,7 @@
 package com.github.koettlitz.opt;
 
 import java.util.Objects;
+import java.util.function.Supplier;
 
 /**
  * @author David Koettlitz
@@ -10,7 +11,11 @@ public class ExpectedPlainArgument implements ExpectedArgument, Cloneable {
    private final int index;
    private final String name;
    private boolean mandatory;
+   private boolean glob;
+   private PathPolicy pathPolicy;
    private String description;
+   private String defaultValue;
+   private Supplier<String> defaultSupplier;
 
    private String value;
 
@@ -37,6 +42,47 @@ public class ExpectedPlainArgument implements ExpectedArgument, Cloneable {
       this.value = value;
    }
 
+   /**
+    * Get the constant value, that is read if the argument is not given.
+    *
+    * @return The constant default value or <code>null</code>
+    */
+   public String getDefaultValue() {
+      return defaultValue;
+   }
+
+   /**
+    * Sets a constant value, that is read if the argument is not given.
+    * Replaces a default supplier set before.
+    *
+    * @param defaultValue The default value or <code>null</code> for no default
+    */
+   public void setDefaultValue(String defaultValue) {
+      this.defaultValue = defaultValue;
+      this.defaultSupplier = null;
+   }
+
+   /**
+    * Get the supplier of the value, that is read if the argument is not given.
+    *
+    * @return The supplier of the default value or <code>null</code>
+    */
+   public Supplier<String> getDefaultSupplier() {
+      return defaultSupplier;
+   }
+
+   /**
+    * Sets a supplier of the value, that is read if the argument is not given.
+    * The supplier is called at most once per argument model and only if the default value is actually read.
+    * Replaces a constant default value set before.
+    *
+    * @param defaultSupplier The supplier of the default value or <code>null</code> for no default
+    */
+   public void setDefaultSupplier(Supplier<String> defaultSupplier) {
+      this.defaultSupplier = defaultSupplier;
+      this.defaultValue = null;
+   }
+
    @Override
    public int getIndex() {
       return index;
@@ -56,6 +102,35 @@ public class ExpectedPlainArgument implements ExpectedArgument, Cloneable {
       this.mandatory = mandatory;
    }
 
+   public boolean isGlob() {
+      return glob;
+   }
+
+   /**
+    * Set whether the value of the argument is a glob pattern like <code>logs/*.gz</code>,
+    * that is expanded to the matching paths when they are read.
+    *
+    * @param glob Whether the value is a glob pattern or a single path
+    *
+    * @see ArgumentModel#argumentPathStream(String)
+    */
+   public void setGlob(boolean glob) {
+      this.glob = glob;
+   }
+
+   public PathPolicy getPathPolicy() {
+      return pathPolicy;
+   }
+
+   /**
+    * Set the requirements for the path given as the value of the argument.
+    *
+    * @param pathPolicy The requirements or <code>null</code> if the value is not checked as a path
+    */
+   public void setPathPolicy(PathPolicy pathPolicy) {
+      this.pathPolicy = pathPolicy;
+   }
+
    @Override
    public String getDescription() {
       return description;
@@ -0,0 +1,397 @@
+package com.github.koettlitz.opt;
+
+import static com.github.koettlitz.opt.ExpectedOption.NO_KEY;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+import com.github.koettlitz.opt.ex.InvalidOptionFormatException;
+import com.github.koettlitz.opt.ex.MissingOptionValueException;
+import com.github.koettlitz.opt.ex.UnexpectedOptionValueException;
+import com.github.koettlitz.opt.ex.UnknownArgumentException;
+
+/**
+ * Validates a command line, that is edited token by token, and completes its next token.
+ * Interactive shells call {@link #update(List)} with the tokens of the line after every edit.
+ * <p>
+ * After every token a checkpoint of the parse state is kept: the nesting levels of the given commands,
+ * the number of plain arguments given on each level, whether <code>--</code> was given
+ * and whether the next token is the value of an option. The levels are immutable and shared
+ * by the checkpoints, so a checkpoint is a single small object. An update keeps the checkpoints
+ * of the unchanged head of the line and resumes at the first changed token,
+ * so editing the tail of a long line only costs the tokens after the edit.
+ * <p>
+ * The checks are the ones done per token: unknown arguments and options, missing and unexpected option values
+ * and invalid option formats. Missing mandatory arguments and constraints depend on the whole line,
+ * so they are reported by the parse of the finished line.
+ */
+public final class IncrementalParser {
+   private final ArgumentParser parser;
+   private final List<String> tokens = new ArrayList<>();
+   /**
+    * The checkpoint before the token at the same index. The last checkpoint is the state after all tokens.
+    */
+   private final List<Checkpoint> checkpoints = new ArrayList<>();
+   private int resumedAt;
+
+   /**
+    * Creates a new incremental parser for an empty line.
+    *
+    * @param parser The parser of the line
+    *
+    * @throws NullPointerException If <code>parser</code> is <code>null</code>
+    */
+   public IncrementalParser(ArgumentParser parser) throws NullPointerException {
+      this.parser = Objects.requireNonNull(parser);
+      checkpoints.add(new Checkpoint(new Level(parser, null, null), null, false, 0, null));
+   }
+
+   /**
+    * Sets the tokens of the edited line. The tokens in front of the first changed token are not parsed again.
+    *
+    * @param line The tokens of the whole line
+    *
+    * @return The problems of the line
+    */
+   public List<ParseDiagnostic> update(List<String> line) {
+      int common = 0;
+      int max = Math.min(line.size(), tokens.size());
+      while (common < max && tokens.get(common).equals(line.get(common)))
+         common++;
+
+      resumedAt = common;
+      truncate(common);
+      for (int i = common; i < line.size(); i++) {
+         String token = line.get(i);
+         tokens.add(token);
+         checkpoints.add(next(checkpoints.get(i), token, i));
+      }
+
+      return getDiagnostics();
+   }
+
+   private void truncate(int size) {
+      while (tokens.size() > size) {
+         tokens.remove(tokens.size() - 1);
+         checkpoints.remove(checkpoints.size() - 1);
+      }
+   }
+
+   /**
+    * Get the index of the first token, that was parsed by the last update.
+    *
+    * @return The number of tokens, whose checkpoints were kept
+    */
+   public int getResumedAt() {
+      return resumedAt;
+   }
+
+   /**
+    * Get the problems of the current line in the order of their tokens.
+    * An option at the end of the line, that expects a value, is reported as missing its value.
+    *
+    * @return The problems
+    */
+   public List<ParseDiagnostic> getDiagnostics() {
+      List<ParseDiagnostic> diagnostics = new ArrayList<>();
+      for (int i = 1; i < checkpoints.size(); i++) {
+         if (checkpoints.get(i).diagnostic != null)
+            diagnostics.add(checkpoints.get(i).diagnostic);
+      }
+
+      Checkpoint last = last();
+      if (last.pendingOption != null) {
+         int index = tokens.size() - 1;
+         diagnostics.add(new ParseDiagnostic(new MissingOptionValueException(last.pendingOption),
+                                             tokens.get(index),
+                                             index,
+                                             checkpoints.get(index).charOffset,
+                                             0));
+      }
+
+      return diagnostics;
+   }
+
+   /**
+    * Find out whether the next token is taken as the value of an option.
+    *
+    * @return <code>true</code> if the last token is an option, that expects a value in the next token
+    */
+   public boolean expectsOptionValue() {
+      return last().pendingOption != null;
+   }
+
+   /**
+    * Get the names of the commands given in the current line from the root to the innermost.
+    *
+    * @return The names of the open commands
+    */
+   public List<String> getCommandPath() {
+      List<String> path = new ArrayList<>();
+      for (Level level = last().level; level.parent != null; level = level.parent)
+         path.add(level.command);
+
+      Collections.reverse(path);
+      return path;
+   }
+
+   /**
+    * Completes the token following the current line. Candidates are the commands, options and long options
+    * of the innermost level, that are valid in the next token. Values of options and plain arguments
+    * can't be completed, so there are no candidates if the next token is one of them.
+    *
+    * @param prefix The beginning of the next token, that was already typed
+    *
+    * @return The candidates starting with <code>prefix</code>, sorted
+    */
+   public List<String> complete(String prefix) {
+      List<String> candidates = new ArrayList<>();
+      Checkpoint checkpoint = last();
+      if (checkpoint.pendingOption != null || checkpoint.stopped)
+         return candidates;
+
+      for (Level level = checkpoint.level; level != null; level = level.parent) {
+         ArgumentSpec spec = level.spec;
+         if (!level.commandGiven) {
+            for (String name : spec.commandNames())
+               addCandidate(candidates, name, prefix);
+         }
+
+         if (!level.minusMinus) {
+            for (char key : spec.optionKeys()) {
+               if (key != NO_KEY)
+                  addCandidate(candidates, "-" + key, prefix);
+            }
+            for (String longKey : spec.longOptionKeys())
+               addCandidate(candidates, "--" + longKey, prefix);
+         }
+
+         // tokens unknown to a level, that ignores them, are parsed by the level below
+         if (!level.parser.isIgnoreUnknown())
+            break;
+      }
+
+      Collections.sort(candidates);
+      return candidates;
+   }
+
+   private static void addCandidate(List<String> candidates, String candidate, String prefix) {
+      if (candidate.startsWith(prefix) && !candidates.contains(candidate))
+         candidates.add(candidate);
+   }
+
+   public ArgumentParser getParser() {
+      return parser;
+   }
+
+   private Checkpoint last() {
+      return checkpoints.get(checkpoints.size() - 1);
+   }
+
+   /**
+    * Parses one token like {@link ArgumentParser#parseArguments(com.github.koettlitz.util.PeekableIterator)}.
+    *
+    * @param before The checkpoint before the token
+    * @param token The token
+    * @param index The index of the token
+    *
+    * @return The checkpoint after the token
+    */
+   private static Checkpoint next(Checkpoint before, String token, int index) {
+      int charOffset = before.charOffset;
+      int nextOffset = charOffset + token.length() + 1;
+      if (before.stopped)
+         return new Checkpoint(before.level, null, true, nextOffset, null);
+
+      if (before.pendingOption != null)
+         return new Checkpoint(before.level, null, false, nextOffset, null);
+
+      Level level = before.level;
+      while (true) {
+         ArgumentSpec spec = level.spec;
+         ArgumentParseException problem;
+         int offset = 0;
+
+         if (!token.startsWith("-") || level.minusMinus) {
+            int command = level.commandGiven ? -1 : spec.commandIndex(token);
+            if (command >= 0) {
+               Level parent = level.with(level.plainCount, level.minusMinus, true);
+               return new Checkpoint(new Level(spec.parser(command), parent, token), null, false, nextOffset, null);
+            }
+
+            if (spec.isVarArgs() || level.plainCount < spec.plainCount())
+               return new Checkpoint(level.with(level.plainCount + 1, level.minusMinus, level.commandGiven),
+                                     null, false, nextOffset, null);
+
+            problem = new UnknownArgumentException(token);
+         } else {
+            Option option = option(spec, token);
+            if (option.problem != null) {
+               return new Checkpoint(level,
+                                     null,
+                                     false,
+                                     nextOffset,
+                                     new ParseDiagnostic(option.problem, token, index, charOffset, option.offset));
+            }
+
+            if (!option.unknown) {
+               boolean minusMinus = level.minusMinus || option.minusMinus;
+               Level after = minusMinus == level.minusMinus
+                             ? level
+                             : level.with(level.plainCount, true, level.commandGiven);
+               return new Checkpoint(after, option.pending, false, nextOffset, null);
+            }
+
+            problem = new UnknownArgumentException(token);
+            offset = option.offset;
+         }
+
+         if (level.parser.isIgnoreUnknown()) {
+            if (level.parent == null)
+               return new Checkpoint(level, null, true, nextOffset, null);
+
+            level = level.parent;
+            continue;
+         }
+
+         return new Checkpoint(level,
+                               null,
+                               false,
+                               nextOffset,
+                               new ParseDiagnostic(problem, token, index, charOffset, offset));
+      }
+   }
+
+   /**
+    * Looks up the options of an option token like {@link ArgumentParser}.
+    */
+   private static Option option(ArgumentSpec spec, String token) {
+      Option result = new Option();
+
+      // long options e.g. '--longOpt'
+      if (token.length() > 2 && token.charAt(1) == '-') {
+         int equalsIndex = token.indexOf('=');
+         int index = spec.optionIndex(equalsIndex == -1 ? token.substring(2) : token.substring(2, equalsIndex));
+         if (index < 0) {
+            result.unknown = true;
+            return result;
+         }
+
+         ExpectedOption option = spec.option(index);
+         if (equalsIndex == -1) {
+            if (option.expectsValue())
+               result.problem = new MissingOptionValueException(option);
+         } else if (token.length() > equalsIndex + 1) {
+            if (!option.expectsValue()) {
+               result.problem = new UnexpectedOptionValueException(option, token);
+               result.offset = equalsIndex;
+            }
+         } else if (option.expectsValue()) {
+            result.pending = option;
+         }
+         return result;
+      }
+
+      // Single char options e.g. '-a', '-abc' or '--'
+      if (token.length() >= 2) {
+         for (int i = 1; i < token.length(); i++) {
+            char key = token.charAt(i);
+            int index = spec.optionIndex(key);
+            if (index < 0) {
+               result.unknown = true;
+               result.offset = i;
+               return result;
+            }
+
+            ExpectedOption option = spec.option(index);
+            if (option.expectsValue() && i + 1 < token.length()) {
+               result.problem = new InvalidOptionFormatException(token, key);
+               result.offset = i;
+               return result;
+            }
+
+            result.minusMinus |= key == '-';
+            result.pending = option.expectsValue() ? option : null;
+         }
+         return result;
+      }
+
+      // Can only be '-'
+      int index = spec.optionIndex(NO_KEY);
+      if (index < 0)
+         result.unknown = true;
+      else if (spec.option(index).expectsValue())
+         result.pending = spec.option(index);
+
+      return result;
+   }
+
+   private static final class Option {
+      private boolean unknown;
+      private ExpectedOption pending;
+      private boolean minusMinus;
+      private int offset;
+      private ArgumentParseException problem;
+   }
+
+   /**
+    * A nesting level of the parse. Levels are immutable, a changed level is a copy.
+    */
+   private static final class Level {
+      private final ArgumentParser parser;
+      private final ArgumentSpec spec;
+      private final Level parent;
+      private final String command;
+      private final int plainCount;
+      private final boolean minusMinus;
+      private final boolean commandGiven;
+
+      Level(ArgumentParser parser, Level parent, String command) {
+         this(parser, parent, command, 0, false, false);
+      }
+
+      private Level(ArgumentParser parser,
+                    Level parent,
+                    String command,
+                    int plainCount,
+                    boolean minusMinus,
+                    boolean commandGiven) {
+         this.parser = parser;
+         this.spec = parser.getSpec();
+         this.parent = parent;
+         this.command = command;
+         this.plainCount = plainCount;
+         this.minusMinus = minusMinus;
+         this.commandGiven = commandGiven;
+      }
+
+      Level with(int plainCount, boolean minusMinus, boolean commandGiven) {
+         return new Level(parser, parent, command, plainCount, minusMinus, commandGiven);
+      }
+   }
+
+   private static final class Checkpoint {
+      private final Level level;
+      /**
+       * The option, that takes the next token as its value, or <code>null</code>.
+       */
+      private final ExpectedOption pendingOption;
+      /**
+       * Whether the root parser ignores an unknown token, which ends the parse.
+       */
+      private final boolean stopped;
+      private final int charOffset;
+      private final ParseDiagnostic diagnostic;
+
+      Checkpoint(Level level, ExpectedOption pendingOption, boolean stopped, int charOffset, ParseDiagnostic diagnostic) {
+         this.level = level;
+         this.pendingOption = pendingOption;
+         this.stopped = stopped;
+         this.charOffset = charOffset;
+         this.diagnostic = diagnostic;
+      }
+   }
+}
@@ -1,5 +1,7 @@
 package com.github.koettlitz.opt;
 
+import java.util.function.Supplier;
+
 /**
  * A builder class to build an option for an {@link ArgumentParser}.
  * An option builder is a sub builder of an {@link ArgumentParserBuilder}.
@@ -79,6 +81,98 @@ public class OptionBuilder {
       return this;
    }
 
+   /**
+    * Sets whether the option can be given multiple times, keeping the values of all occurrences,
+    * e.g. <code>-I include -I lib</code>. Otherwise a repeated option replaces the previous value.
+    * Making the option multi valued makes it expect a value too.<br>
+    * Note: The number of occurrences is counted for every option, e.g. 3 for <code>-vvv</code>,
+    * see {@link ArgumentModel#getOptionCount(char)}.
+    *
+    * @param multiValued Whether the values of all occurrences are kept or not
+    *
+    * @return This option builder to go on
+    */
+   public OptionBuilder setMultiValued(boolean multiValued) {
+      option.setMultiValued(multiValued);
+      return this;
+   }
+
+   /**
+    * Makes the option mandatory. By default options are optional.
+    * If an option is mandatory, the argumentparser is throwing a <code>MissingArgumentException</code>
+    * if the option is not present.
+    *
+    * @param mandatory Determines if the option is mandatory or not.
+    *
+    * @return This option builder to go on
+    */
+   public OptionBuilder setMandatory(boolean mandatory) {
+      option.setMandatory(mandatory);
+      return this;
+   }
+
+   /**
+    * Sets the char, that separates the entries of the value of the option, e.g. <code>','</code>
+    * for <code>--hosts=a,b,c</code>. The entries are read by {@link ArgumentModel#getOptionList(char)},
+    * which splits the value on the first access without copying it.
+    * Setting a delimiter makes the option expect a value too.
+    *
+    * @param delimiter The delimiter of the entries
+    *
+    * @return This option builder to go on
+    */
+   public OptionBuilder setDelimiter(char delimiter) {
+      option.setDelimiter(delimiter);
+      return this;
+   }
+
+   /**
+    * Makes the values of the option paths, that have to meet the given requirements, e.g. to exist and to be readable.
+    * Every value of a multi valued option and every entry of a delimited value is checked right after parsing
+    * and a violation is reported like any other problem of the parse.
+    * Setting a path policy makes the option expect a value too.
+    *
+    * @param pathPolicy The requirements for the paths
+    *
+    * @return This option builder to go on
+    *
+    * @see ArgumentParserBuilder#setPathValidation(java.util.concurrent.Executor, int)
+    */
+   public OptionBuilder setPathPolicy(PathPolicy pathPolicy) {
+      option.setPathPolicy(pathPolicy);
+      return this;
+   }
+
+   /**
+    * Sets a constant value, that is read if the option is not given.
+    *
+    * @param defaultValue The default value
+    *
+    * @return This option builder to go on
+    *
+    * @see ArgumentModel#getOptionValue(char)
+    */
+   public OptionBuilder setDefaultValue(String defaultValue) {
+      option.setDefaultValue(defaultValue);
+      return this;
+   }
+
+   /**
+    * Sets a supplier of the value, that is read if the option is not given,
+    * e.g. a value that takes a lookup to determine.
+    * The supplier is called at most once per parsed argument model and only if the value is actually read.
+    *
+    * @param defaultSupplier The supplier of the default value
+    *
+    * @return This option builder to go on
+    *
+    * @see ArgumentModel#getOptionValue(char)
+    */
+   public OptionBuilder setDefaultValue(Supplier<String> defaultSupplier) {
+      option.setDefaultSupplier(defaultSupplier);
+      return this;
+   }
+
    /**
     * Set a long key for the option that can be specified with "--" instead of the single character key with "-".
     *
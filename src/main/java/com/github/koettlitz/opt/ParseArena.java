@@ -0,0 +1,143 @@
+package com.github.koettlitz.opt;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import com.github.koettlitz.opt.ex.ConstraintViolationException;
+import com.github.koettlitz.opt.ex.MissingArgumentException;
+
+/**
+ * The state of a parse over all nesting levels of commands.
+ * Every level is a frame on an explicit stack, that holds the parser of the level,
+ * the builder collecting its results and the command, that opened the level.
+ * The root level is at depth 1 and has no command.
+ */
+final class ParseArena {
+   private static final int INITIAL_DEPTH = 4;
+
+   private ArgumentParser[] parsers = new ArgumentParser[INITIAL_DEPTH];
+   private ArgumentModelBuilder[] builders = new ArgumentModelBuilder[INITIAL_DEPTH];
+   private Command[] commands = new Command[INITIAL_DEPTH];
+   private int depth;
+   private boolean checkPaths = true;
+   private boolean audit = true;
+   private Path workingDirectory;
+
+   /**
+    * Creates a new arena with the root level.
+    *
+    * @param root The parser of the root level
+    * @param builder The builder for the results of the root level
+    */
+   ParseArena(ArgumentParser root, ArgumentModelBuilder builder) {
+      parsers[0] = root;
+      builders[0] = builder;
+      depth = 1;
+   }
+
+   /**
+    * Drops all levels but the root, e.g. the levels left open by a parse that failed.
+    */
+   void clear() {
+      while (depth > 1) {
+         depth--;
+         parsers[depth] = null;
+         builders[depth] = null;
+         commands[depth] = null;
+      }
+   }
+
+   /**
+    * Find out whether the paths of the parsed model are checked against their policies.
+    *
+    * @return <code>false</code> if the paths are checked later, e.g. when a prepared command is bound
+    */
+   boolean isCheckPaths() {
+      return checkPaths;
+   }
+
+   void setCheckPaths(boolean checkPaths) {
+      this.checkPaths = checkPaths;
+   }
+
+   /**
+    * Find out whether the parsed model is recorded by the audit sink of the parser.
+    *
+    * @return <code>false</code> if the model is no executed command line, e.g. the template of a prepared command
+    */
+   boolean isAudit() {
+      return audit;
+   }
+
+   void setAudit(boolean audit) {
+      this.audit = audit;
+   }
+
+   /**
+    * Get the directory relative paths are checked against.
+    *
+    * @return The working directory of the parse or <code>null</code> for the current working directory
+    */
+   Path getWorkingDirectory() {
+      return workingDirectory;
+   }
+
+   void setWorkingDirectory(Path workingDirectory) {
+      this.workingDirectory = workingDirectory;
+   }
+
+   int depth() {
+      return depth;
+   }
+
+   ArgumentParser parser() {
+      return parsers[depth - 1];
+   }
+
+   ArgumentModelBuilder builder() {
+      return builders[depth - 1];
+   }
+
+   ArgumentModelBuilder root() {
+      return builders[0];
+   }
+
+   /**
+    * Opens a new level for the arguments of <code>command</code>.
+    *
+    * @param command The command, that was given on the current level
+    *
+    * @return The builder for the results of the new level
+    */
+   ArgumentModelBuilder push(Command command) {
+      if (depth == parsers.length) {
+         parsers = Arrays.copyOf(parsers, depth * 2);
+         builders = Arrays.copyOf(builders, depth * 2);
+         commands = Arrays.copyOf(commands, depth * 2);
+      }
+
+      parsers[depth] = command.getParser();
+      builders[depth] = builders[depth - 1].commandBuilder(command);
+      commands[depth] = command;
+      return builders[depth++];
+   }
+
+   /**
+    * Closes the current level. Its results are built and set as the value of the command,
+    * that opened the level.
+    *
+    * @param errors The collector of the problems in recovering mode or <code>null</code> to throw the first problem
+    *
+    * @throws MissingArgumentException If a mandatory argument of the closed level is missing
+    * @throws ConstraintViolationException If the arguments of the closed level violate a constraint
+    */
+   void pop(ParseErrors errors) throws MissingArgumentException, ConstraintViolationException {
+      int top = --depth;
+      ArgumentModel model = builders[top].build(errors);
+      builders[top - 1].setCommandValue(commands[top], model);
+
+      parsers[top] = null;
+      builders[top] = null;
+      commands[top] = null;
+   }
+}
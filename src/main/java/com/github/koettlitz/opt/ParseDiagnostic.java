@@ -0,0 +1,88 @@
+package com.github.koettlitz.opt;
+
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+
+/**
+ * A problem found while parsing arguments in recovering mode, together with its position.
+ *
+ * @see ArgumentParser#parseRecovering(String...)
+ * @see ParseResult
+ */
+public final class ParseDiagnostic {
+   private final ArgumentParseException exception;
+   private final String token;
+   private final int tokenIndex;
+   private final int charOffset;
+   private final int offset;
+
+   /**
+    * Creates a new diagnostic.
+    *
+    * @param exception The exception, that describes the problem
+    * @param token The token the problem was found in or <code>null</code> if it is not related to a token
+    * @param tokenIndex The index of the token
+    * @param charOffset The character offset of the token in the command line
+    * @param offset The offset of the problem in the token
+    */
+   public ParseDiagnostic(ArgumentParseException exception, String token, int tokenIndex, int charOffset, int offset) {
+      this.exception = exception;
+      this.token = token;
+      this.tokenIndex = tokenIndex;
+      this.charOffset = charOffset;
+      this.offset = offset;
+   }
+
+   public ArgumentParseException getException() {
+      return exception;
+   }
+
+   public String getMessage() {
+      return exception.getMessage();
+   }
+
+   /**
+    * Get the token the problem was found in.
+    *
+    * @return The token or <code>null</code> if the problem is not related to a single token,
+    * e.g. a missing argument
+    */
+   public String getToken() {
+      return token;
+   }
+
+   /**
+    * Get the index of the token the problem was found in.
+    * Problems, that are not related to a single token, have the index of the end of the arguments.
+    *
+    * @return The index of the token
+    */
+   public int getTokenIndex() {
+      return tokenIndex;
+   }
+
+   /**
+    * Get the character offset of the problem in the command line, where all tokens are joined by a single space.
+    *
+    * @return The character offset of the problem
+    */
+   public int getCharOffset() {
+      return charOffset + offset;
+   }
+
+   /**
+    * Get the offset of the problem in its token, e.g. 2 for the unknown option <code>b</code> in <code>-ab</code>.
+    *
+    * @return The offset of the problem in the token
+    */
+   public int getOffset() {
+      return offset;
+   }
+
+   @Override
+   public String toString() {
+      return "ParseDiagnostic { tokenIndex=" + tokenIndex
+                                + ", charOffset=" + getCharOffset()
+                                + ", message=" + getMessage()
+             + " }";
+   }
+}
@@ -0,0 +1,62 @@
+package com.github.koettlitz.opt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+import com.github.koettlitz.util.TrackingIterator;
+
+/**
+ * Collects the problems of a parse in recovering mode instead of throwing them.
+ * A parse in fail fast mode has no <code>ParseErrors</code>, so every problem is thrown right away.
+ */
+final class ParseErrors {
+   private final TrackingIterator tokens;
+   private final List<ParseDiagnostic> diagnostics = new ArrayList<>();
+   private int tokenIndex;
+   private int charOffset;
+
+   ParseErrors(TrackingIterator tokens) {
+      this.tokens = tokens;
+   }
+
+   /**
+    * Remembers the position of the next token as the position of the token, that is currently parsed.
+    */
+   void mark() {
+      tokenIndex = tokens.getIndex();
+      charOffset = tokens.getCharOffset();
+   }
+
+   /**
+    * Throws <code>e</code> if there is nothing to collect it, otherwise collects it
+    * with the position of the current token.
+    *
+    * @param errors The collector or <code>null</code> in fail fast mode
+    * @param e The problem
+    * @param token The token the problem was found in
+    * @param offset The offset of the problem in the token
+    * @param <E> The type of the problem
+    *
+    * @throws E If <code>errors</code> is <code>null</code>
+    */
+   static <E extends ArgumentParseException> void fail(ParseErrors errors, E e, String token, int offset) throws E {
+      if (errors == null)
+         throw e;
+
+      errors.diagnostics.add(new ParseDiagnostic(e, token, errors.tokenIndex, errors.charOffset, offset));
+   }
+
+   /**
+    * Collects a problem, that is not related to a single token, at the position after the last parsed token.
+    *
+    * @param e The problem
+    */
+   void add(ArgumentParseException e) {
+      diagnostics.add(new ParseDiagnostic(e, null, tokens.getIndex(), tokens.getCharOffset(), 0));
+   }
+
+   List<ParseDiagnostic> getDiagnostics() {
+      return diagnostics;
+   }
+}
@@ -0,0 +1,210 @@
+package com.github.koettlitz.opt;
+
+/**
+ * Bounds for the size of the arguments a single parse accepts. Parsers exposed to untrusted input,
+ * e.g. behind a {@link com.github.koettlitz.opt.daemon.CommandServer}, should set limits,
+ * so the cost of a parse is bounded no matter what is sent.
+ * The limits are checked with a few counters in the parse loop, which stops at the first exceeded limit
+ * with a {@link com.github.koettlitz.opt.ex.LimitExceededException}.
+ * <br>
+ * Limits are immutable, every <code>with...</code> method returns a copy.
+ * By default nothing is limited.
+ *
+ * @see ArgumentParser#setLimits(ParseLimits)
+ */
+public final class ParseLimits {
+   /**
+    * No limits at all.
+    */
+   public static final ParseLimits NONE = new ParseLimits(Integer.MAX_VALUE,
+                                                          Integer.MAX_VALUE,
+                                                          Integer.MAX_VALUE,
+                                                          Integer.MAX_VALUE,
+                                                          Integer.MAX_VALUE);
+
+   /**
+    * The kinds of limits.
+    */
+   public enum Limit {
+      /**
+       * The number of tokens including the values of options.
+       */
+      TOKENS,
+      /**
+       * The number of chars of a single token.
+       */
+      TOKEN_LENGTH,
+      /**
+       * The number of options combined in a single token like <code>-abc</code>.
+       */
+      COMBINED_FLAGS,
+      /**
+       * The number of plain arguments of a parser with var args.
+       */
+      VAR_ARGS,
+      /**
+       * The number of commands nested in each other.
+       */
+      COMMAND_DEPTH
+   }
+
+   private final int maxTokens;
+   private final int maxTokenLength;
+   private final int maxCombinedFlags;
+   private final int maxVarArgs;
+   private final int maxCommandDepth;
+
+   private ParseLimits(int maxTokens, int maxTokenLength, int maxCombinedFlags, int maxVarArgs, int maxCommandDepth) {
+      this.maxTokens = maxTokens;
+      this.maxTokenLength = maxTokenLength;
+      this.maxCombinedFlags = maxCombinedFlags;
+      this.maxVarArgs = maxVarArgs;
+      this.maxCommandDepth = maxCommandDepth;
+   }
+
+   private static int checkNotNegative(String name, int value) throws IllegalArgumentException {
+      if (value < 0)
+         throw new IllegalArgumentException(name + " can not be less than 0. Was " + value);
+
+      return value;
+   }
+
+   /**
+    * Get the maximum of the given kind.
+    *
+    * @param limit The kind of limit
+    *
+    * @return The maximum
+    */
+   public int get(Limit limit) {
+      switch (limit) {
+         case TOKENS:
+            return maxTokens;
+         case TOKEN_LENGTH:
+            return maxTokenLength;
+         case COMBINED_FLAGS:
+            return maxCombinedFlags;
+         case VAR_ARGS:
+            return maxVarArgs;
+         default:
+            return maxCommandDepth;
+      }
+   }
+
+   public int getMaxTokens() {
+      return maxTokens;
+   }
+
+   /**
+    * Limits the number of tokens of a parse. The values of options and the tokens of expanded argument files count,
+    * a token like <code>--key=value</code> counts once.
+    *
+    * @param maxTokens The maximum number of tokens
+    *
+    * @return A copy of these limits with the new maximum
+    *
+    * @throws IllegalArgumentException If <code>maxTokens</code> is negative
+    */
+   public ParseLimits withMaxTokens(int maxTokens) throws IllegalArgumentException {
+      return new ParseLimits(checkNotNegative("maxTokens", maxTokens),
+                             maxTokenLength,
+                             maxCombinedFlags,
+                             maxVarArgs,
+                             maxCommandDepth);
+   }
+
+   public int getMaxTokenLength() {
+      return maxTokenLength;
+   }
+
+   /**
+    * Limits the number of chars of every token including the values of options.
+    *
+    * @param maxTokenLength The maximum length of a token
+    *
+    * @return A copy of these limits with the new maximum
+    *
+    * @throws IllegalArgumentException If <code>maxTokenLength</code> is negative
+    */
+   public ParseLimits withMaxTokenLength(int maxTokenLength) throws IllegalArgumentException {
+      return new ParseLimits(maxTokens,
+                             checkNotNegative("maxTokenLength", maxTokenLength),
+                             maxCombinedFlags,
+                             maxVarArgs,
+                             maxCommandDepth);
+   }
+
+   public int getMaxCombinedFlags() {
+      return maxCombinedFlags;
+   }
+
+   /**
+    * Limits the number of options combined in a single token, e.g. <code>-abc</code> combines 3 options.
+    *
+    * @param maxCombinedFlags The maximum number of options in a token
+    *
+    * @return A copy of these limits with the new maximum
+    *
+    * @throws IllegalArgumentException If <code>maxCombinedFlags</code> is negative
+    */
+   public ParseLimits withMaxCombinedFlags(int maxCombinedFlags) throws IllegalArgumentException {
+      return new ParseLimits(maxTokens,
+                             maxTokenLength,
+                             checkNotNegative("maxCombinedFlags", maxCombinedFlags),
+                             maxVarArgs,
+                             maxCommandDepth);
+   }
+
+   public int getMaxVarArgs() {
+      return maxVarArgs;
+   }
+
+   /**
+    * Limits the number of plain arguments of every parser with var args, that takes part in the parse.
+    *
+    * @param maxVarArgs The maximum number of var args of a parser
+    *
+    * @return A copy of these limits with the new maximum
+    *
+    * @throws IllegalArgumentException If <code>maxVarArgs</code> is negative
+    */
+   public ParseLimits withMaxVarArgs(int maxVarArgs) throws IllegalArgumentException {
+      return new ParseLimits(maxTokens,
+                             maxTokenLength,
+                             maxCombinedFlags,
+                             checkNotNegative("maxVarArgs", maxVarArgs),
+                             maxCommandDepth);
+   }
+
+   public int getMaxCommandDepth() {
+      return maxCommandDepth;
+   }
+
+   /**
+    * Limits the number of commands nested in each other, e.g. <code>remote add origin</code>
+    * nests 2 commands if <code>remote</code> and <code>add</code> are commands.
+    *
+    * @param maxCommandDepth The maximum number of nested commands
+    *
+    * @return A copy of these limits with the new maximum
+    *
+    * @throws IllegalArgumentException If <code>maxCommandDepth</code> is negative
+    */
+   public ParseLimits withMaxCommandDepth(int maxCommandDepth) throws IllegalArgumentException {
+      return new ParseLimits(maxTokens,
+                             maxTokenLength,
+                             maxCombinedFlags,
+                             maxVarArgs,
+                             checkNotNegative("maxCommandDepth", maxCommandDepth));
+   }
+
+   @Override
+   public String toString() {
+      return "ParseLimits { maxTokens=" + maxTokens
+                            + ", maxTokenLength=" + maxTokenLength
+                            + ", maxCombinedFlags=" + maxCombinedFlags
+                            + ", maxVarArgs=" + maxVarArgs
+                            + ", maxCommandDepth=" + maxCommandDepth
+                            + " }";
+   }
+}
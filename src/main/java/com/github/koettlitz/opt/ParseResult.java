@@ -0,0 +1,48 @@
+package com.github.koettlitz.opt;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of parsing arguments in recovering mode:
+ * A (possibly partial) argument model and all the problems found on the way.
+ *
+ * @see ArgumentParser#parseRecovering(String...)
+ */
+public final class ParseResult {
+   private final ArgumentModel model;
+   private final List<ParseDiagnostic> diagnostics;
+
+   ParseResult(ArgumentModel model, List<ParseDiagnostic> diagnostics) {
+      this.model = model;
+      this.diagnostics = Collections.unmodifiableList(diagnostics);
+   }
+
+   /**
+    * Get the argument model with everything, that could be parsed.
+    * If there were problems, mandatory arguments may be missing.
+    *
+    * @return The parsed argument model
+    */
+   public ArgumentModel getModel() {
+      return model;
+   }
+
+   /**
+    * Get all the problems found while parsing in the order they were found.
+    *
+    * @return The problems or an empty list if the arguments are valid
+    */
+   public List<ParseDiagnostic> getDiagnostics() {
+      return diagnostics;
+   }
+
+   /**
+    * Find out whether the arguments could be parsed without problems.
+    *
+    * @return <code>true</code> if no problems were found, <code>false</code> otherwise.
+    */
+   public boolean isValid() {
+      return diagnostics.isEmpty();
+   }
+}
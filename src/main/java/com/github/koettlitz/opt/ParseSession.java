@@ -0,0 +1,192 @@
+package com.github.koettlitz.opt;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+import com.github.koettlitz.opt.ex.ConstraintViolationException;
+import com.github.koettlitz.opt.ex.InvalidOptionFormatException;
+import com.github.koettlitz.opt.ex.LimitExceededException;
+import com.github.koettlitz.opt.ex.PathValidationException;
+import com.github.koettlitz.opt.ex.MissingArgumentException;
+import com.github.koettlitz.opt.ex.MissingOptionValueException;
+import com.github.koettlitz.opt.ex.UnexpectedOptionValueException;
+import com.github.koettlitz.opt.ex.UnknownArgumentException;
+import com.github.koettlitz.util.ArgFileIterator;
+import com.github.koettlitz.util.ArrayIterator;
+import com.github.koettlitz.util.PeekableIterator;
+
+/**
+ * A reusable parse of an {@link ArgumentParser}.
+ * The session keeps the builders, the expected arguments and the storage for their values
+ * of all nesting levels from one parse to the next and just resets them,
+ * so parsing the same kind of arguments over and over again hardly allocates anything.
+ * <p>
+ * The models returned by {@link #parse(String...)} are immutable copies of the results,
+ * so they stay valid after the session is reset or parses again.
+ * A session is not thread safe. To share sessions between threads use a {@link ParseSessionPool}.
+ *
+ * @see ArgumentParser#newSession()
+ */
+public final class ParseSession implements AutoCloseable {
+   private final ArgumentParser parser;
+   private final ParseSessionPool pool;
+   private final ArgumentModelBuilder builder;
+   private final ParseArena arena;
+
+   private ArgumentModel model;
+   private boolean dirty;
+   private boolean idle;
+
+   ParseSession(ArgumentParser parser, ParseSessionPool pool) {
+      this.parser = parser;
+      this.pool = pool;
+      this.builder = parser.createModelBuilder();
+      this.builder.enableReuse();
+      this.arena = new ParseArena(parser, builder);
+   }
+
+   /**
+    * Parses the given <code>args</code>. The results of the previous parse are reset first.
+    *
+    * @param args The arguments to parse
+    *
+    * @return An argument model containing the results.
+    *
+    * @throws MissingArgumentException If a mandatory argument (or mandatory option) is missing
+    * @throws MissingOptionValueException If an option that has to go with a following value
+    * was no value given
+    * @throws UnknownArgumentException If an unknown argument was discovered
+    * before the arguments were fully parsed
+    * @throws UnexpectedOptionValueException If an option value for an option
+    * that doesn't expect any value was supplied
+    * @throws InvalidOptionFormatException If a token with multiple options in it contains an option,
+    * that expects a value and is not the last char of the token
+    * @throws ConstraintViolationException If the given arguments violate one of the constraints of the parser
+    * @throws LimitExceededException If the arguments exceed one of the limits of the parser
+    * @throws PathValidationException If a path violates the path policy of its argument
+    * @throws UncheckedIOException If argument files are expanded and one of them could not be read
+    *
+    * @see ArgumentParser#parseArguments(String...)
+    */
+   public ArgumentModel parse(String... args) throws MissingArgumentException,
+                                                     MissingOptionValueException,
+                                                     UnknownArgumentException,
+                                                     UnexpectedOptionValueException,
+                                                     InvalidOptionFormatException,
+                                                     LimitExceededException,
+                                                     PathValidationException,
+                                                     ConstraintViolationException,
+                                                     UncheckedIOException {
+      return parse(ArrayIterator.of(args));
+   }
+
+   /**
+    * Parses the args given by the <code>iterator</code>. The results of the previous parse are reset first.
+    *
+    * @param iterator The arguments to parse
+    *
+    * @return An argument model containing the results.
+    *
+    * @throws MissingArgumentException If a mandatory argument (or mandatory option) is missing
+    * @throws MissingOptionValueException If an option that has to go with a following value
+    * was no value given
+    * @throws UnknownArgumentException If an unknown argument was discovered
+    * before the arguments were fully parsed
+    * @throws UnexpectedOptionValueException If an option value for an option
+    * that doesn't expect any value was supplied
+    * @throws InvalidOptionFormatException If a token with multiple options in it contains an option,
+    * that expects a value and is not the last char of the token
+    * @throws ConstraintViolationException If the given arguments violate one of the constraints of the parser
+    * @throws LimitExceededException If the arguments exceed one of the limits of the parser
+    * @throws PathValidationException If a path violates the path policy of its argument
+    * @throws UncheckedIOException If argument files are expanded and one of them could not be read
+    *
+    * @see ArgumentParser#parseArguments(PeekableIterator)
+    */
+   public ArgumentModel parse(PeekableIterator<String> iterator) throws MissingArgumentException,
+                                                                        MissingOptionValueException,
+                                                                        UnknownArgumentException,
+                                                                        UnexpectedOptionValueException,
+                                                                        InvalidOptionFormatException,
+                                                                        LimitExceededException,
+                                                                        PathValidationException,
+                                                                        ConstraintViolationException,
+                                                                        UncheckedIOException {
+      reset();
+      dirty = true;
+
+      if (!parser.isExpandArgFiles() || iterator instanceof ArgFileIterator) {
+         model = parser.parseArguments(iterator, arena, null);
+      } else {
+         try (ArgFileIterator argFileIterator = new ArgFileIterator(iterator,
+                                                                  arena.getWorkingDirectory(),
+                                                                  parser.getLimits().getMaxTokenLength())) {
+            model = parser.parseArguments(argFileIterator, arena, null);
+         }
+      }
+
+      return model;
+   }
+
+   /**
+    * Get the results of the last successful parse.
+    *
+    * @return The argument model of the last parse or <code>null</code> if the session was reset
+    * or the last parse failed
+    */
+   public ArgumentModel getModel() {
+      return model;
+   }
+
+   public ArgumentParser getParser() {
+      return parser;
+   }
+
+   public Path getWorkingDirectory() {
+      return arena.getWorkingDirectory();
+   }
+
+   /**
+    * Set the directory the relative paths of the following parses are resolved against,
+    * i.e. the names of argument files and the paths checked by {@link PathPolicy}s,
+    * e.g. the working directory of a client, whose command line is parsed by a server.
+    * A session, that is returned to its pool, forgets its working directory.
+    *
+    * @param workingDirectory The working directory or <code>null</code> for the current working directory
+    */
+   public void setWorkingDirectory(Path workingDirectory) {
+      arena.setWorkingDirectory(workingDirectory);
+   }
+
+   /**
+    * Forgets the results of the last parse.
+    * Calling this method is optional, because every parse resets the session first,
+    * but it releases the references to the given arguments.
+    */
+   public void reset() {
+      model = null;
+      if (dirty) {
+         arena.clear();
+         builder.reset();
+         dirty = false;
+      }
+   }
+
+   /**
+    * Resets this session and returns it to the pool it was acquired from, if any.
+    * The session must not be used anymore after it was returned to its pool.
+    */
+   @Override
+   public void close() {
+      reset();
+      if (pool != null && !idle) {
+         arena.setWorkingDirectory(null);
+         idle = true;
+         pool.release(this);
+      }
+   }
+
+   void setIdle(boolean idle) {
+      this.idle = idle;
+   }
+}
@@ -0,0 +1,107 @@
+package com.github.koettlitz.opt;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread safe pool of {@link ParseSession}s of one {@link ArgumentParser}.
+ * A session is acquired for a parse and returned by closing it:
+ * <pre>
+ * try (ParseSession session = pool.acquire()) {
+ *    ArgumentModel model = session.parse(args);
+ *    ...
+ * }
+ * </pre>
+ * The pool doesn't bind sessions to threads and never blocks, so it suits virtual threads,
+ * where a session per thread would be created and dropped with every short lived thread.
+ * For a fixed set of long lived threads {@link #perThread(ArgumentParser)} is an alternative.
+ */
+public final class ParseSessionPool {
+   public static final int DEFAULT_MAX_IDLE = 64;
+
+   private final ArgumentParser parser;
+   private final int maxIdle;
+   private final Queue<ParseSession> idle = new ConcurrentLinkedQueue<>();
+   private final AtomicInteger idleCount = new AtomicInteger();
+
+   /**
+    * Creates a new pool, that keeps up to {@value #DEFAULT_MAX_IDLE} idle sessions.
+    *
+    * @param parser The parser of the sessions
+    *
+    * @throws NullPointerException If <code>parser</code> is <code>null</code>
+    */
+   public ParseSessionPool(ArgumentParser parser) throws NullPointerException {
+      this(parser, DEFAULT_MAX_IDLE);
+   }
+
+   /**
+    * Creates a new pool.
+    *
+    * @param parser The parser of the sessions
+    * @param maxIdle The maximum number of idle sessions kept. Sessions returned to a full pool are dropped.
+    *
+    * @throws NullPointerException If <code>parser</code> is <code>null</code>
+    * @throws IllegalArgumentException If <code>maxIdle</code> is negative
+    */
+   public ParseSessionPool(ArgumentParser parser, int maxIdle) throws NullPointerException,
+                                                                      IllegalArgumentException {
+      if (maxIdle < 0)
+         throw new IllegalArgumentException("maxIdle can not be less than 0. Was " + maxIdle);
+
+      this.parser = Objects.requireNonNull(parser);
+      this.maxIdle = maxIdle;
+   }
+
+   /**
+    * Creates sessions bound to the threads, that use them.
+    * Every thread gets its own session on first use, that lives as long as the thread.
+    *
+    * @param parser The parser of the sessions
+    *
+    * @return A thread local holding the session of the current thread
+    */
+   public static ThreadLocal<ParseSession> perThread(ArgumentParser parser) {
+      Objects.requireNonNull(parser);
+      return ThreadLocal.withInitial(parser::newSession);
+   }
+
+   /**
+    * Takes an idle session out of the pool or creates a new one, if there is none.
+    *
+    * @return A session in its initial state, that is returned to the pool by closing it
+    */
+   public ParseSession acquire() {
+      ParseSession session = idle.poll();
+      if (session == null)
+         return new ParseSession(parser, this);
+
+      idleCount.decrementAndGet();
+      session.setIdle(false);
+      return session;
+   }
+
+   void release(ParseSession session) {
+      if (idleCount.incrementAndGet() > maxIdle) {
+         idleCount.decrementAndGet();
+         return;
+      }
+
+      idle.offer(session);
+   }
+
+   /**
+    * Get the number of idle sessions in the pool.
+    *
+    * @return The number of sessions, that can be acquired without creating a new one
+    */
+   public int getIdleCount() {
+      return idleCount.get();
+   }
+
+   public ArgumentParser getParser() {
+      return parser;
+   }
+}
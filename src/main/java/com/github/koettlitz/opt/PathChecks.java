@@ -0,0 +1,160 @@
+package com.github.koettlitz.opt;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.koettlitz.opt.ex.PathValidationException;
+import com.github.koettlitz.util.Bits;
+import com.github.koettlitz.util.Glob;
+
+/**
+ * Checks the paths of a parsed model against the {@link PathPolicy}s of their arguments.
+ * <p>
+ * The checks of all nesting levels are collected first and then run by up to <code>parallelism</code> workers,
+ * the parsing thread being one of them, that take the next unchecked path until all are checked.
+ * So a slow file system is queried concurrently, while no more than <code>parallelism</code> tasks
+ * are given to the executor no matter how many paths there are.
+ * The violations are reported in the order of the arguments.
+ */
+final class PathChecks implements Runnable {
+   private final List<PathPolicy> policies = new ArrayList<>();
+   private final List<String> names = new ArrayList<>();
+   private final List<String> paths = new ArrayList<>();
+   private final AtomicInteger next = new AtomicInteger();
+   private final Path workingDirectory;
+   private PathValidationException[] violations;
+
+   private PathChecks(Path workingDirectory) {
+      this.workingDirectory = workingDirectory;
+   }
+
+   /**
+    * Finds out whether the <code>model</code> or the model of one of its commands has arguments with a path policy,
+    * which only looks at the layouts of the given commands instead of all commands of the parser.
+    *
+    * @return <code>true</code> if the paths of the model have to be checked
+    */
+   static boolean isNeeded(ArgumentModel model) {
+      for (ArgumentModel level = model; level != null; level = level.getCommandModel()) {
+         if (level.getSpec().hasPathPolicies())
+            return true;
+      }
+
+      return false;
+   }
+
+   /**
+    * Checks the paths of the <code>model</code> and of the models of its commands.
+    *
+    * @param executor The executor of the concurrent checks or <code>null</code> to check on the calling thread
+    * @param parallelism The maximum number of concurrent checks
+    * @param workingDirectory The directory relative paths are resolved against
+    *                         or <code>null</code> for the current working directory
+    * @param errors The collector of the violations in recovering mode or <code>null</code> to throw the first one
+    *
+    * @throws PathValidationException If a path violates its policy in fail fast mode
+    */
+   static void check(ArgumentModel model,
+                     Executor executor,
+                     int parallelism,
+                     Path workingDirectory,
+                     ParseErrors errors) throws PathValidationException {
+      PathChecks checks = new PathChecks(workingDirectory);
+      checks.collect(model);
+      if (checks.paths.isEmpty())
+         return;
+
+      checks.violations = new PathValidationException[checks.paths.size()];
+      checks.run(executor, parallelism);
+      for (PathValidationException violation : checks.violations) {
+         if (violation == null)
+            continue;
+
+         if (errors == null)
+            throw violation;
+
+         errors.add(violation);
+      }
+   }
+
+   private void collect(ArgumentModel model) {
+      ArgumentSpec spec = model.getSpec();
+      long[] present = model.getPresence();
+      Object[] values = model.getValues();
+
+      for (int i = Bits.nextSetBit(present, 0); i >= 0; i = Bits.nextSetBit(present, i + 1)) {
+         if (spec.kind(i) == ArgumentSpec.COMMAND) {
+            collect((ArgumentModel) values[i]);
+            continue;
+         }
+
+         PathPolicy policy = spec.pathPolicy(i);
+         if (policy == null)
+            continue;
+
+         if (spec.kind(i) == ArgumentSpec.PLAIN) {
+            add(policy, spec.label(i), (String) values[i], spec.glob(i));
+         } else {
+            String[] strings = values[i] instanceof String[] ? (String[]) values[i] : new String[] { (String) values[i] };
+            for (String path : new DelimitedList(strings, spec.option(i).getDelimiter()))
+               add(policy, spec.label(i), path, false);
+         }
+      }
+
+      List<String> varArgs = model.getVarArgs();
+      PathPolicy varArgPolicy = spec.getVarArgPathPolicy();
+      if (varArgs != null && varArgPolicy != null) {
+         for (String path : varArgs)
+            add(varArgPolicy, "args", path, spec.isGlobVarArgs());
+      }
+   }
+
+   private void add(PathPolicy policy, String name, String path, boolean glob) {
+      if (path == null || glob && Glob.isPattern(path))
+         return;
+
+      policies.add(policy);
+      names.add(name);
+      paths.add(path);
+   }
+
+   private void run(Executor executor, int parallelism) {
+      int helpers = executor == null ? 0 : Math.min(parallelism, paths.size()) - 1;
+      List<CompletableFuture<Void>> futures = new ArrayList<>(Math.max(helpers, 0));
+      try {
+         for (int i = 0; i < helpers; i++)
+            futures.add(CompletableFuture.runAsync(this, executor));
+      } catch (RejectedExecutionException e) {
+         // the workers, that were accepted, and this thread check the rest
+      }
+
+      run();
+      try {
+         CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).join();
+      } catch (CompletionException e) {
+         if (e.getCause() instanceof RuntimeException)
+            throw (RuntimeException) e.getCause();
+         throw e;
+      }
+   }
+
+   /**
+    * Checks the next unchecked paths until all are checked.
+    */
+   @Override
+   public void run() {
+      for (int i = next.getAndIncrement(); i < paths.size(); i = next.getAndIncrement()) {
+         try {
+            policies.get(i).check(names.get(i), paths.get(i), workingDirectory);
+         } catch (PathValidationException e) {
+            violations[i] = e;
+         }
+      }
+   }
+}
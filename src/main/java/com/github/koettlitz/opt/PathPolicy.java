@@ -0,0 +1,186 @@
+package com.github.koettlitz.opt;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.github.koettlitz.opt.ex.PathValidationException;
+
+/**
+ * The requirements for the paths given as the value of a plain argument, an option or the var args,
+ * e.g. that an input file has to exist and must not be larger than 1 GB.
+ * The paths are checked right after parsing, concurrently if the parser has an executor for the checks,
+ * and every violated requirement is a {@link PathValidationException}.
+ * <br>
+ * Policies are immutable, every <code>with...</code> method returns a copy.
+ *
+ * @see PlainArgumentBuilder#setPathPolicy(PathPolicy)
+ * @see OptionBuilder#setPathPolicy(PathPolicy)
+ * @see ArgumentParser#setPathValidation(java.util.concurrent.Executor, int)
+ */
+public final class PathPolicy {
+   /**
+    * No requirements at all, the base to add requirements to.
+    */
+   public static final PathPolicy NONE = new PathPolicy(false, false, false, Long.MAX_VALUE);
+
+   /**
+    * The kinds of requirements.
+    */
+   public enum Check {
+      /**
+       * The path has to be a valid path of the file system, e.g. without a NUL char. Every policy requires it.
+       */
+      VALID,
+      /**
+       * The path has to exist.
+       */
+      EXISTS,
+      /**
+       * The path has to be a directory.
+       */
+      DIRECTORY,
+      /**
+       * The path has to be readable.
+       */
+      READABLE,
+      /**
+       * A file must not be larger than the maximum size.
+       */
+      MAX_SIZE
+   }
+
+   private final boolean existing;
+   private final boolean directory;
+   private final boolean readable;
+   private final long maxSize;
+
+   private PathPolicy(boolean existing, boolean directory, boolean readable, long maxSize) {
+      this.existing = existing;
+      this.directory = directory;
+      this.readable = readable;
+      this.maxSize = maxSize;
+   }
+
+   /**
+    * Checks the given path.
+    *
+    * @param name The name of the argument the path was given for
+    * @param value The path
+    * @param workingDirectory The directory a relative path is resolved against
+    *                         or <code>null</code> for the current working directory
+    *
+    * @throws PathValidationException If the path violates a requirement of this policy
+    */
+   void check(String name, String value, Path workingDirectory) throws PathValidationException {
+      Path path;
+      try {
+         path = workingDirectory == null ? Paths.get(value) : workingDirectory.resolve(value);
+      } catch (InvalidPathException e) {
+         PathValidationException invalid = new PathValidationException(Check.VALID, name, value, "is invalid: " + e.getReason());
+         invalid.initCause(e);
+         throw invalid;
+      }
+
+      boolean mustExist = existing || directory || readable;
+      if (mustExist && !Files.exists(path))
+         throw new PathValidationException(Check.EXISTS, name, value, "does not exist");
+
+      if (directory && !Files.isDirectory(path))
+         throw new PathValidationException(Check.DIRECTORY, name, value, "is not a directory");
+
+      if (readable && !Files.isReadable(path))
+         throw new PathValidationException(Check.READABLE, name, value, "is not readable");
+
+      if (maxSize < Long.MAX_VALUE && Files.isRegularFile(path)) {
+         long size;
+         try {
+            size = Files.size(path);
+         } catch (IOException e) {
+            throw new PathValidationException(Check.READABLE, name, value, "is not readable");
+         }
+
+         if (size > maxSize)
+            throw new PathValidationException(Check.MAX_SIZE,
+                                              name,
+                                              value,
+                                              "is larger than " + maxSize + " bytes. Was " + size);
+      }
+   }
+
+   public boolean isExisting() {
+      return existing;
+   }
+
+   /**
+    * Requires the path to exist.
+    *
+    * @param existing Whether the path has to exist
+    *
+    * @return A copy of this policy with the new requirement
+    */
+   public PathPolicy withExisting(boolean existing) {
+      return new PathPolicy(existing, directory, readable, maxSize);
+   }
+
+   public boolean isDirectory() {
+      return directory;
+   }
+
+   /**
+    * Requires the path to be a directory, which requires it to exist too.
+    *
+    * @param directory Whether the path has to be a directory
+    *
+    * @return A copy of this policy with the new requirement
+    */
+   public PathPolicy withDirectory(boolean directory) {
+      return new PathPolicy(existing, directory, readable, maxSize);
+   }
+
+   public boolean isReadable() {
+      return readable;
+   }
+
+   /**
+    * Requires the path to be readable, which requires it to exist too.
+    *
+    * @param readable Whether the path has to be readable
+    *
+    * @return A copy of this policy with the new requirement
+    */
+   public PathPolicy withReadable(boolean readable) {
+      return new PathPolicy(existing, directory, readable, maxSize);
+   }
+
+   public long getMaxSize() {
+      return maxSize;
+   }
+
+   /**
+    * Limits the size of a file. Directories and paths, that don't exist, are not limited.
+    *
+    * @param maxSize The maximum size in bytes
+    *
+    * @return A copy of this policy with the new maximum
+    *
+    * @throws IllegalArgumentException If <code>maxSize</code> is negative
+    */
+   public PathPolicy withMaxSize(long maxSize) throws IllegalArgumentException {
+      if (maxSize < 0)
+         throw new IllegalArgumentException("maxSize can not be less than 0. Was " + maxSize);
+
+      return new PathPolicy(existing, directory, readable, maxSize);
+   }
+
+   @Override
+   public String toString() {
+      return "PathPolicy { existing=" + existing
+                            + ", directory=" + directory
+                            + ", readable=" + readable
+                            + (maxSize < Long.MAX_VALUE ? ", maxSize=" + maxSize : "")
+             + " }";
+   }
+}
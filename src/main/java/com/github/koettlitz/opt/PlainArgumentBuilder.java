@@ -1,5 +1,7 @@
 package com.github.koettlitz.opt;
 
+import java.util.function.Supplier;
+
 /**
  * A builder class to build an argument for an {@link ArgumentParser}.
  * An argument builder is a sub builder of an {@link ArgumentParserBuilder}.
@@ -53,6 +55,67 @@ public class PlainArgumentBuilder implements ArgumentBuilder {
       return this;
    }
 
+   /**
+    * Sets a constant value, that is read if the argument is not given.
+    * A default value is only useful for an argument, that is not mandatory.
+    *
+    * @param defaultValue The default value
+    *
+    * @return This argument builder to go on
+    *
+    * @see ArgumentModel#getArgumentValue(String)
+    */
+   public PlainArgumentBuilder setDefaultValue(String defaultValue) {
+      argument.setDefaultValue(defaultValue);
+      return this;
+   }
+
+   /**
+    * Sets a supplier of the value, that is read if the argument is not given,
+    * e.g. a value that takes a lookup to determine.
+    * The supplier is called at most once per parsed argument model and only if the value is actually read.
+    *
+    * @param defaultSupplier The supplier of the default value
+    *
+    * @return This argument builder to go on
+    *
+    * @see ArgumentModel#getArgumentValue(String)
+    */
+   public PlainArgumentBuilder setDefaultValue(Supplier<String> defaultSupplier) {
+      argument.setDefaultSupplier(defaultSupplier);
+      return this;
+   }
+
+   /**
+    * Makes the argument a glob pattern like <code>logs/*.gz</code>, that is expanded in the process
+    * instead of by the shell, so any number of matches can be passed.
+    * The matches are streamed while the directories are read by {@link ArgumentModel#argumentPathStream(String)}.
+    *
+    * @param glob Whether the argument is a glob pattern or a single path
+    *
+    * @return This argument builder to go on
+    */
+   public PlainArgumentBuilder setGlob(boolean glob) {
+      argument.setGlob(glob);
+      return this;
+   }
+
+   /**
+    * Makes the argument a path, that has to meet the given requirements, e.g. to exist and to be readable.
+    * The path is checked right after parsing and a violation is reported like any other problem of the parse.
+    * The value of a glob argument is only checked if it is no pattern.
+    *
+    * @param pathPolicy The requirements for the path
+    *
+    * @return This argument builder to go on
+    *
+    * @see ArgumentParserBuilder#setPathValidation(java.util.concurrent.Executor, int)
+    */
+   public PlainArgumentBuilder setPathPolicy(PathPolicy pathPolicy) {
+      argument.setPathPolicy(pathPolicy);
+      return this;
+   }
+
    @Override
    public PlainArgumentBuilder setDescription(String description) {
       argument.setDescription(description);
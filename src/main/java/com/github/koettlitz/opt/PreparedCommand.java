@@ -0,0 +1,265 @@
+package com.github.koettlitz.opt;
+
+import java.util.*;
+
+import com.github.koettlitz.opt.ParseLimits.Limit;
+import com.github.koettlitz.opt.ex.LimitExceededException;
+import com.github.koettlitz.opt.ex.PathValidationException;
+import com.github.koettlitz.util.Bits;
+
+/**
+ * A command line, that was parsed once with placeholders for some of its values,
+ * like <code>run --image=${img} --cpus=${n} job ${id}</code>, similar to a prepared SQL statement.
+ * <p>
+ * Parsing the template already resolves the options, the plain arguments and the path of the commands
+ * and checks the constraints, which only depend on what is given and not on the values.
+ * Binding the placeholders copies the values of the template, puts the bound values into their slots
+ * and creates the argument models of the levels, that contain a placeholder, so no token is parsed again.
+ * The bound values are taken as they are, so a value starting with <code>-</code> is never mistaken for an option.
+ * A plain argument bound to such a value marks <code>--</code> as given, as the command line would need it.
+ * The paths of arguments with a {@link PathPolicy} are checked whenever values are bound.
+ * <p>
+ * A placeholder is a whole value in the form <code>${name}</code>, i.e. the value of an option,
+ * a plain argument or a var arg. The same placeholder may be used more than once.
+ * A prepared command is immutable and can be bound by multiple threads at once.
+ *
+ * @see ArgumentParser#prepare(String...)
+ */
+public final class PreparedCommand {
+   private final ArgumentParser parser;
+   private final ArgumentModel template;
+   private final String[] placeholders;
+   private final Level root;
+
+   PreparedCommand(ArgumentParser parser, String[] template, ArgumentModel model) throws IllegalArgumentException {
+      Map<String, Integer> placeholders = new LinkedHashMap<>();
+      for (String token : template) {
+         for (int start = token.indexOf("${"); start >= 0; start = token.indexOf("${", start + 2)) {
+            int end = token.indexOf('}', start);
+            if (end > start + 2 && !placeholders.containsKey(token.substring(start + 2, end)))
+               placeholders.put(token.substring(start + 2, end), placeholders.size());
+         }
+      }
+
+      Set<String> bound = new HashSet<>();
+      this.parser = parser;
+      this.template = model;
+      this.root = prepare(model, placeholders, bound);
+      this.placeholders = placeholders.keySet().toArray(new String[placeholders.size()]);
+
+      for (String name : this.placeholders) {
+         if (!bound.contains(name))
+            throw new IllegalArgumentException("Placeholder ${" + name + "} is not a whole value of an option or argument");
+      }
+   }
+
+   /**
+    * Finds the slots of the placeholders in the given model and in its command.
+    *
+    * @return The level of the model or <code>null</code> if it contains no placeholder
+    */
+   private static Level prepare(ArgumentModel model, Map<String, Integer> placeholders, Set<String> bound) {
+      long[] present = model.getPresence();
+      Object[] values = model.getValues();
+      List<Integer> slots = new ArrayList<>();
+      Level command = null;
+      int commandIndex = -1;
+
+      for (int i = Bits.nextSetBit(present, 0); i >= 0; i = Bits.nextSetBit(present, i + 1)) {
+         Object value = values[i];
+         if (value instanceof ArgumentModel) {
+            command = prepare((ArgumentModel) value, placeholders, bound);
+            commandIndex = i;
+         } else if (value instanceof String[]) {
+            String[] strings = (String[]) value;
+            for (int n = 0; n < strings.length; n++)
+               addSlot(slots, i, n, strings[n], placeholders, bound);
+         } else if (value instanceof String) {
+            addSlot(slots, i, -1, (String) value, placeholders, bound);
+         }
+      }
+
+      List<String> varArgs = model.getVarArgs();
+      if (varArgs != null) {
+         for (int n = 0; n < varArgs.size(); n++)
+            addSlot(slots, -1, n, varArgs.get(n), placeholders, bound);
+      }
+
+      if (slots.isEmpty() && command == null)
+         return null;
+
+      int[] slotArray = new int[slots.size()];
+      for (int i = 0; i < slotArray.length; i++)
+         slotArray[i] = slots.get(i);
+
+      return new Level(model, slotArray, command, commandIndex, model.getSpec().optionIndex('-'));
+   }
+
+   private static void addSlot(List<Integer> slots,
+                               int index,
+                               int element,
+                               String value,
+                               Map<String, Integer> placeholders,
+                               Set<String> bound) {
+      if (value == null || value.length() < 4 || !value.startsWith("${") || !value.endsWith("}"))
+         return;
+
+      String name = value.substring(2, value.length() - 1);
+      Integer parameter = placeholders.get(name);
+      if (parameter == null) {
+         parameter = placeholders.size();
+         placeholders.put(name, parameter);
+      }
+      bound.add(name);
+
+      slots.add(index);
+      slots.add(element);
+      slots.add(parameter);
+   }
+
+   /**
+    * Binds the given values to the placeholders.
+    *
+    * @param values The values in the order of {@link #getPlaceholders()}
+    *
+    * @return A new argument model with the values in place of the placeholders
+    *
+    * @throws IllegalArgumentException If the number of values differs from the number of placeholders
+    * @throws NullPointerException If one of the values is <code>null</code>
+    * @throws LimitExceededException If a value is longer than a token may be by the limits of the parser
+    * @throws PathValidationException If a path violates the path policy of its argument
+    */
+   public ArgumentModel bind(String... values) throws IllegalArgumentException,
+                                                      NullPointerException,
+                                                      LimitExceededException,
+                                                      PathValidationException {
+      if (values.length != placeholders.length)
+         throw new IllegalArgumentException(placeholders.length + " values expected. Were " + values.length);
+
+      int maxLength = parser.getLimits().getMaxTokenLength();
+      for (String value : values) {
+         if (value.length() > maxLength)
+            throw new LimitExceededException(Limit.TOKEN_LENGTH, maxLength);
+      }
+
+      ArgumentModel model = root == null ? template : root.bind(values);
+      if (PathChecks.isNeeded(model))
+         PathChecks.check(model, parser.getPathExecutor(), parser.getPathParallelism(), null, null);
+      parser.audit(model);
+      return model;
+   }
+
+   /**
+    * Binds the given values to the placeholders of the same names.
+    *
+    * @param values The values mapped by the names of the placeholders
+    *
+    * @return A new argument model with the values in place of the placeholders
+    *
+    * @throws IllegalArgumentException If there is no value for one of the placeholders
+    * @throws LimitExceededException If a value is longer than a token may be by the limits of the parser
+    * @throws PathValidationException If a path violates the path policy of its argument
+    */
+   public ArgumentModel bind(Map<String, String> values) throws IllegalArgumentException,
+                                                                LimitExceededException,
+                                                                PathValidationException {
+      String[] ordered = new String[placeholders.length];
+      for (int i = 0; i < ordered.length; i++) {
+         ordered[i] = values.get(placeholders[i]);
+         if (ordered[i] == null)
+            throw new IllegalArgumentException("No value for placeholder ${" + placeholders[i] + "}");
+      }
+
+      return bind(ordered);
+   }
+
+   /**
+    * Get the names of the placeholders in the order they are bound by {@link #bind(String...)},
+    * which is the order they first appear in the template.
+    *
+    * @return A read-only list of the names
+    */
+   public List<String> getPlaceholders() {
+      return Collections.unmodifiableList(Arrays.asList(placeholders));
+   }
+
+   /**
+    * Get the parsed template.
+    *
+    * @return The argument model with the placeholders as values
+    */
+   public ArgumentModel getTemplate() {
+      return template;
+   }
+
+   public ArgumentParser getParser() {
+      return parser;
+   }
+
+   /**
+    * The slots of one nesting level of the template. Models without placeholders are shared by all bound models.
+    */
+   private static final class Level {
+      private final ArgumentModel model;
+      /**
+       * The index of the argument, the position in its values or -1 for a single value
+       * and the index of the placeholder in turns. An index of -1 is the position of a var arg.
+       */
+      private final int[] slots;
+      private final Level command;
+      private final int commandIndex;
+      /**
+       * The index of <code>--</code> or -1 if the parser has none.
+       */
+      private final int minusMinus;
+
+      Level(ArgumentModel model, int[] slots, Level command, int commandIndex, int minusMinus) {
+         this.model = model;
+         this.slots = slots;
+         this.command = command;
+         this.commandIndex = commandIndex;
+         this.minusMinus = minusMinus;
+      }
+
+      ArgumentModel bind(String[] parameters) {
+         ArgumentSpec spec = model.getSpec();
+         long[] present = model.getPresence();
+         Object[] template = model.getValues();
+         Object[] values = template.clone();
+         List<String> varArgs = model.getVarArgs();
+         boolean varArgsCopied = false;
+
+         for (int i = 0; i < slots.length; i += 3) {
+            int index = slots[i];
+            int element = slots[i + 1];
+            String value = parameters[slots[i + 2]];
+            if (minusMinus >= 0
+                && value.startsWith("-")
+                && (index < 0 || spec.kind(index) == ArgumentSpec.PLAIN)
+                && !Bits.get(present, minusMinus)) {
+               present = present.clone();
+               Bits.set(present, minusMinus);
+            }
+
+            if (index < 0) {
+               if (!varArgsCopied) {
+                  varArgs = new ArrayList<>(varArgs);
+                  varArgsCopied = true;
+               }
+               varArgs.set(element, value);
+            } else if (element < 0) {
+               values[index] = value;
+            } else {
+               if (values[index] == template[index])
+                  values[index] = ((String[]) template[index]).clone();
+               ((String[]) values[index])[element] = value;
+            }
+         }
+
+         if (command != null)
+            values[commandIndex] = command.bind(parameters);
+
+         return new ArgumentModel(spec, present, values, model.getCounts(), varArgs);
+      }
+   }
+}
@@ -0,0 +1,507 @@
+package com.github.koettlitz.opt.audit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.github.koettlitz.opt.ArgumentModel;
+import com.github.koettlitz.opt.ArgumentRenderer;
+
+/**
+ * An {@link AuditSink}, that appends every recorded model as a line to a file without blocking the parsing thread.
+ * A line is the time of the parse in milliseconds since the epoch, a space and the canonical command line
+ * rendered by {@link ArgumentRenderer}.
+ * <p>
+ * Recording a model puts it into a bounded lock free queue. A background thread takes all queued models at once,
+ * renders them into a single buffer and writes the buffer with one call to the file channel,
+ * so many records share one write and one fsync (group commit). If the queue is full,
+ * the {@link OverflowPolicy} decides whether the parsing thread waits or the record is dropped and counted.
+ * <p>
+ * When a batch would grow the file beyond the maximum size, the file is rotated first:
+ * <code>audit.log</code> is renamed to <code>audit.log.1</code>, <code>audit.log.1</code> to <code>audit.log.2</code>
+ * and so on, the oldest backup is deleted. Whether and when the file is synced to the disk is decided by
+ * the {@link FsyncPolicy}.
+ * <p>
+ * The log has to be closed to write the queued records. Records given while the log is closed are dropped.
+ */
+public class AuditLog implements AuditSink, AutoCloseable {
+   public static final int DEFAULT_CAPACITY = 8192;
+   public static final long DEFAULT_MAX_FILE_SIZE = 64L << 20;
+   public static final int DEFAULT_MAX_BACKUPS = 4;
+   public static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 1000;
+
+   private static final int MAX_BATCH = 1024;
+   private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+   private static final long BACKPRESSURE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+   /**
+    * What happens to a record if the queue is full.
+    */
+   public enum OverflowPolicy {
+      /**
+       * The recording thread waits until the writer made room.
+       */
+      BLOCK,
+      /**
+       * The record is dropped and counted.
+       */
+      DROP
+   }
+
+   /**
+    * When written records are synced to the disk.
+    */
+   public enum FsyncPolicy {
+      /**
+       * Never, the operating system writes them back on its own.
+       */
+      NEVER,
+      /**
+       * After every batch, so a record is durable once it was written.
+       */
+      EVERY_BATCH,
+      /**
+       * At most once per fsync interval, if records were written since the last sync.
+       */
+      INTERVAL
+   }
+
+   private final Path file;
+   private final int capacity;
+   private final OverflowPolicy overflowPolicy;
+   private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+   private final AtomicInteger size = new AtomicInteger();
+   private final AtomicLong dropped = new AtomicLong();
+   private final Thread writer;
+
+   private volatile boolean closed;
+   private volatile long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+   private volatile int maxBackups = DEFAULT_MAX_BACKUPS;
+   private volatile FsyncPolicy fsyncPolicy = FsyncPolicy.EVERY_BATCH;
+   private volatile long fsyncIntervalMillis = DEFAULT_FSYNC_INTERVAL_MILLIS;
+   private volatile long written;
+   private volatile long failed;
+   private volatile IOException lastError;
+
+   // Only used by the writer thread
+   private FileChannel channel;
+   private long fileSize;
+   private boolean unsynced;
+   private long lastSync;
+   private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+   private final StringBuilder line = new StringBuilder(256);
+   // a lone surrogate in a value is written as '?' instead of ending the line early
+   private final CharsetEncoder encoder = UTF_8.newEncoder()
+                                               .onMalformedInput(CodingErrorAction.REPLACE)
+                                               .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+   /**
+    * Creates an audit log, that appends to <code>file</code>, with a queue of {@value #DEFAULT_CAPACITY} records,
+    * that drops records if it is full.
+    *
+    * @param file The log file
+    *
+    * @throws IOException If the file can't be opened
+    */
+   public AuditLog(Path file) throws IOException {
+      this(file, DEFAULT_CAPACITY, OverflowPolicy.DROP);
+   }
+
+   /**
+    * Creates an audit log, that appends to <code>file</code>, and starts its writer thread.
+    *
+    * @param file The log file
+    * @param capacity The maximum number of queued records
+    * @param overflowPolicy What happens to a record if the queue is full
+    *
+    * @throws NullPointerException If <code>file</code> or <code>overflowPolicy</code> is <code>null</code>
+    * @throws IllegalArgumentException If <code>capacity</code> is less than 1
+    * @throws IOException If the file can't be opened
+    */
+   public AuditLog(Path file, int capacity, OverflowPolicy overflowPolicy) throws NullPointerException,
+                                                                               IllegalArgumentException,
+                                                                               IOException {
+      if (capacity < 1)
+         throw new IllegalArgumentException("capacity can not be less than 1. Was " + capacity);
+
+      this.file = Objects.requireNonNull(file);
+      this.capacity = capacity;
+      this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+      open();
+
+      this.writer = new Thread(this::write, "audit-writer-" + file.getFileName());
+      writer.setDaemon(true);
+      writer.start();
+   }
+
+   /**
+    * Queues the model to be written. Doesn't do any I/O, but waits for room in the queue
+    * if it is full and the overflow policy is {@link OverflowPolicy#BLOCK}.
+    *
+    * @param model The results of the parse
+    *
+    * @throws NullPointerException If <code>model</code> is <code>null</code>
+    */
+   @Override
+   public void record(ArgumentModel model) throws NullPointerException {
+      Entry entry = new Entry(System.currentTimeMillis(), Objects.requireNonNull(model));
+      int queued = reserve();
+      if (queued < 0) {
+         dropped.incrementAndGet();
+         return;
+      }
+
+      queue.offer(entry);
+      // the writer only parks when the queue is empty
+      if (queued == 0)
+         LockSupport.unpark(writer);
+   }
+
+   /**
+    * Reserves a place in the queue.
+    *
+    * @return The number of queued records before or -1 if the record has to be dropped
+    */
+   private int reserve() {
+      while (!closed) {
+         int queued = size.get();
+         if (queued < capacity) {
+            if (size.compareAndSet(queued, queued + 1))
+               return queued;
+         } else if (overflowPolicy == OverflowPolicy.DROP) {
+            return -1;
+         } else {
+            LockSupport.parkNanos(this, BACKPRESSURE_PARK_NANOS);
+         }
+      }
+
+      return -1;
+   }
+
+   private void write() {
+      List<Entry> batch = new ArrayList<>(MAX_BATCH);
+      while (true) {
+         // read before draining, so every record queued before the close is written
+         boolean closing = closed;
+         drain(batch);
+         if (!batch.isEmpty()) {
+            writeBatch(batch);
+            batch.clear();
+         } else if (size.get() > 0) {
+            // a place was reserved, but the record is not queued yet
+            Thread.yield();
+         } else if (closing) {
+            break;
+         } else {
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+         }
+
+         syncIfDue();
+      }
+
+      closeChannel();
+   }
+
+   private void drain(List<Entry> batch) {
+      Entry entry;
+      while (batch.size() < MAX_BATCH && (entry = queue.poll()) != null)
+         batch.add(entry);
+
+      if (!batch.isEmpty())
+         size.addAndGet(-batch.size());
+   }
+
+   private void writeBatch(List<Entry> batch) {
+      ((Buffer) buffer).clear();
+      int rendered = 0;
+      for (Entry entry : batch) {
+         int start = buffer.position();
+         try {
+            line.setLength(0);
+            line.append(entry.time).append(' ');
+            ArgumentRenderer.appendCommandLine(entry.model, line);
+            line.append('\n');
+            encode();
+            rendered++;
+         } catch (RuntimeException e) {
+            // a record, that can't be rendered, must neither stop the writer nor leave half a line
+            ((Buffer) buffer).position(start);
+            failed++;
+            lastError = new IOException("Record could not be rendered.", e);
+         }
+      }
+      ((Buffer) buffer).flip();
+      if (rendered == 0)
+         return;
+
+      try {
+         if (channel == null)
+            open();
+         if (fileSize > 0 && fileSize + buffer.remaining() > maxFileSize)
+            rotate();
+
+         while (buffer.hasRemaining())
+            fileSize += channel.write(buffer);
+
+         written += rendered;
+         unsynced = true;
+         if (fsyncPolicy == FsyncPolicy.EVERY_BATCH)
+            sync();
+      } catch (IOException | RuntimeException e) {
+         failed += rendered;
+         lastError = e instanceof IOException ? (IOException) e : new IOException(e);
+         closeChannel();
+      }
+   }
+
+   /**
+    * Encodes the line into the buffer, that grows if it is too small.
+    */
+   private void encode() {
+      CharBuffer chars = CharBuffer.wrap(line);
+      encoder.reset();
+      while (true) {
+         CoderResult result = encoder.encode(chars, buffer, true);
+         if (!result.isOverflow())
+            result = encoder.flush(buffer);
+         if (!result.isOverflow())
+            return;
+
+         ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+         ((Buffer) buffer).flip();
+         grown.put(buffer);
+         buffer = grown;
+      }
+   }
+
+   private void syncIfDue() {
+      if (unsynced
+          && fsyncPolicy == FsyncPolicy.INTERVAL
+          && System.currentTimeMillis() - lastSync >= fsyncIntervalMillis) {
+         try {
+            sync();
+         } catch (IOException e) {
+            lastError = e;
+            closeChannel();
+         }
+      }
+   }
+
+   private void sync() throws IOException {
+      channel.force(false);
+      unsynced = false;
+      lastSync = System.currentTimeMillis();
+   }
+
+   private void open() throws IOException {
+      channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+      fileSize = channel.size();
+   }
+
+   private void rotate() throws IOException {
+      if (unsynced && fsyncPolicy != FsyncPolicy.NEVER)
+         sync();
+      channel.close();
+      channel = null;
+
+      int backups = maxBackups;
+      if (backups == 0) {
+         Files.delete(file);
+      } else {
+         Files.deleteIfExists(backup(backups));
+         for (int i = backups - 1; i >= 1; i--) {
+            if (Files.exists(backup(i)))
+               Files.move(backup(i), backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+         }
+         Files.move(file, backup(1), StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      open();
+   }
+
+   private Path backup(int index) {
+      return file.resolveSibling(file.getFileName() + "." + index);
+   }
+
+   private void closeChannel() {
+      if (channel == null)
+         return;
+
+      try {
+         if (unsynced && fsyncPolicy != FsyncPolicy.NEVER)
+            sync();
+         channel.close();
+      } catch (IOException e) {
+         lastError = e;
+      }
+      channel = null;
+      unsynced = false;
+   }
+
+   /**
+    * Writes all queued records and closes the file. Waits until the writer thread is done.
+    */
+   @Override
+   public void close() {
+      closed = true;
+      LockSupport.unpark(writer);
+      try {
+         writer.join();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   public boolean isClosed() {
+      return closed;
+   }
+
+   public Path getFile() {
+      return file;
+   }
+
+   public int getCapacity() {
+      return capacity;
+   }
+
+   public OverflowPolicy getOverflowPolicy() {
+      return overflowPolicy;
+   }
+
+   /**
+    * Get the number of records written to the file.
+    *
+    * @return The number of written records
+    */
+   public long getWrittenCount() {
+      return written;
+   }
+
+   /**
+    * Get the number of records dropped, because the queue was full or the log was closed.
+    *
+    * @return The number of dropped records
+    */
+   public long getDroppedCount() {
+      return dropped.get();
+   }
+
+   /**
+    * Get the number of records lost, because they could not be written.
+    *
+    * @return The number of records, whose batch failed
+    *
+    * @see #getLastError()
+    */
+   public long getFailedCount() {
+      return failed;
+   }
+
+   /**
+    * Get the last problem writing the file. After a failed write the file is opened again for the next batch.
+    *
+    * @return The last problem or <code>null</code> if there was none
+    */
+   public IOException getLastError() {
+      return lastError;
+   }
+
+   public long getMaxFileSize() {
+      return maxFileSize;
+   }
+
+   /**
+    * Set the size a file may grow to before it is rotated. A batch larger than the size is written to a file of its own.
+    *
+    * @param maxFileSize The maximum size in bytes
+    *
+    * @throws IllegalArgumentException If <code>maxFileSize</code> is less than 1
+    */
+   public void setMaxFileSize(long maxFileSize) throws IllegalArgumentException {
+      if (maxFileSize < 1)
+         throw new IllegalArgumentException("maxFileSize can not be less than 1. Was " + maxFileSize);
+
+      this.maxFileSize = maxFileSize;
+   }
+
+   public int getMaxBackups() {
+      return maxBackups;
+   }
+
+   /**
+    * Set the number of rotated files, that are kept.
+    *
+    * @param maxBackups The number of backups or 0 to delete a rotated file
+    *
+    * @throws IllegalArgumentException If <code>maxBackups</code> is negative
+    */
+   public void setMaxBackups(int maxBackups) throws IllegalArgumentException {
+      if (maxBackups < 0)
+         throw new IllegalArgumentException("maxBackups can not be less than 0. Was " + maxBackups);
+
+      this.maxBackups = maxBackups;
+   }
+
+   public FsyncPolicy getFsyncPolicy() {
+      return fsyncPolicy;
+   }
+
+   /**
+    * Set when written records are synced to the disk. By default every batch is synced.
+    *
+    * @param fsyncPolicy The policy
+    *
+    * @throws NullPointerException If <code>fsyncPolicy</code> is <code>null</code>
+    */
+   public void setFsyncPolicy(FsyncPolicy fsyncPolicy) throws NullPointerException {
+      this.fsyncPolicy = Objects.requireNonNull(fsyncPolicy);
+   }
+
+   public long getFsyncIntervalMillis() {
+      return fsyncIntervalMillis;
+   }
+
+   /**
+    * Set the minimum time between two syncs with the policy {@link FsyncPolicy#INTERVAL}.
+    *
+    * @param fsyncIntervalMillis The interval in milliseconds
+    *
+    * @throws IllegalArgumentException If <code>fsyncIntervalMillis</code> is negative
+    */
+   public void setFsyncIntervalMillis(long fsyncIntervalMillis) throws IllegalArgumentException {
+      if (fsyncIntervalMillis < 0)
+         throw new IllegalArgumentException("fsyncIntervalMillis can not be less than 0. Was " + fsyncIntervalMillis);
+
+      this.fsyncIntervalMillis = fsyncIntervalMillis;
+   }
+
+   private static final class Entry {
+      private final long time;
+      private final ArgumentModel model;
+
+      Entry(long time, ArgumentModel model) {
+         this.time = time;
+         this.model = model;
+      }
+   }
+}
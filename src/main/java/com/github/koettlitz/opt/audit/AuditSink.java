@@ -0,0 +1,22 @@
+package com.github.koettlitz.opt.audit;
+
+import com.github.koettlitz.opt.ArgumentModel;
+import com.github.koettlitz.opt.ArgumentParser;
+
+/**
+ * Receives the model of every successful parse of an {@link ArgumentParser}.
+ * A sink is called on the parsing thread right before the model is returned,
+ * so it should hand the model off instead of doing any I/O itself, like {@link AuditLog} does.
+ * The models are not changed after they are passed, so they can be read by other threads.
+ *
+ * @see ArgumentParser#setAuditSink(AuditSink)
+ */
+@FunctionalInterface
+public interface AuditSink {
+   /**
+    * Records a parsed command line.
+    *
+    * @param model The results of the parse
+    */
+   void record(ArgumentModel model);
+}
@@ -0,0 +1,157 @@
+package com.github.koettlitz.opt.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Objects;
+
+import com.github.koettlitz.opt.exec.CommandDispatcher;
+
+/**
+ * The thin client of a {@link CommandServer}. It forwards the token of the server, the arguments
+ * and the working directory to the server and copies the output of the command to the given streams.
+ * The token is read from the token file of the server, so only users, that can read the file, can execute commands.
+ * <p>
+ * The client is meant to be started by a small launcher script instead of the full application:
+ * <pre>
+ * java -cp clp.jar com.github.koettlitz.opt.daemon.CommandClient &lt;port&gt; args...
+ * </pre>
+ * It exits with the exit code of the command.
+ */
+public final class CommandClient {
+   private CommandClient() {}
+
+   /**
+    * Reads the token of a server.
+    *
+    * @param tokenFile The token file of the server
+    *
+    * @return The token
+    *
+    * @throws IOException If the file could not be read
+    *
+    * @see CommandServer#getTokenFile()
+    */
+   public static String readToken(Path tokenFile) throws IOException {
+      return new String(Files.readAllBytes(tokenFile), StandardCharsets.UTF_8).trim();
+   }
+
+   /**
+    * Executes a command line on the server, whose token is read from the {@link CommandServer#defaultTokenFile(int)}
+    * of its port.
+    *
+    * @param port The port of the server on the loopback address
+    * @param args The arguments of the command line
+    * @param workingDirectory The working directory of the command
+    * @param out The stream the output of the command is copied to
+    * @param err The stream the errors of the command are copied to
+    *
+    * @return The exit code of the command
+    *
+    * @throws IOException If the token could not be read, the server could not be reached
+    * or closed the connection before the command exited
+    * @throws NullPointerException If any argument is <code>null</code>
+    */
+   public static int execute(int port,
+                             String[] args,
+                             Path workingDirectory,
+                             OutputStream out,
+                             OutputStream err) throws IOException, NullPointerException {
+      return execute(port, readToken(CommandServer.defaultTokenFile(port)), args, workingDirectory, out, err);
+   }
+
+   /**
+    * Executes a command line on the server.
+    *
+    * @param port The port of the server on the loopback address
+    * @param token The token of the server
+    * @param args The arguments of the command line
+    * @param workingDirectory The working directory of the command
+    * @param out The stream the output of the command is copied to
+    * @param err The stream the errors of the command are copied to
+    *
+    * @return The exit code of the command
+    *
+    * @throws IOException If the server could not be reached or closed the connection before the command exited,
+    * e.g. because the token is wrong
+    * @throws NullPointerException If any argument is <code>null</code>
+    */
+   public static int execute(int port,
+                             String token,
+                             String[] args,
+                             Path workingDirectory,
+                             OutputStream out,
+                             OutputStream err) throws IOException, NullPointerException {
+      Objects.requireNonNull(token);
+      Objects.requireNonNull(args);
+      Objects.requireNonNull(out);
+      Objects.requireNonNull(err);
+      String directory = workingDirectory.toAbsolutePath().toString();
+
+      try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+         socket.setTcpNoDelay(true);
+         Frames.writeRequest(new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())),
+                             token,
+                             directory,
+                             args);
+
+         DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+         byte[] buffer = new byte[8192];
+         while (true) {
+            byte type;
+            try {
+               type = in.readByte();
+            } catch (EOFException e) {
+               throw new IOException("The server closed the connection without an exit code. Is the token valid?", e);
+            }
+            int length = Frames.readLength(in);
+            if (type == Frames.EXIT) {
+               int exitCode = in.readInt();
+               out.flush();
+               err.flush();
+               return exitCode;
+            }
+
+            OutputStream target = type == Frames.STDOUT ? out : type == Frames.STDERR ? err : null;
+            if (target == null)
+               throw new IOException("Unknown frame type " + type);
+
+            while (length > 0) {
+               int read = in.read(buffer, 0, Math.min(buffer.length, length));
+               if (read < 0)
+                  throw new IOException("Connection closed within a frame.");
+
+               target.write(buffer, 0, read);
+               length -= read;
+            }
+            if (type == Frames.STDERR || in.available() == 0)
+               target.flush();
+         }
+      }
+   }
+
+   public static void main(String[] args) throws IOException {
+      if (args.length == 0) {
+         System.err.println("Usage: CommandClient <port> [args...]");
+         System.exit(CommandDispatcher.EXIT_USAGE);
+      }
+
+      int exitCode = execute(Integer.parseInt(args[0]),
+                             Arrays.copyOfRange(args, 1, args.length),
+                             Paths.get(""),
+                             System.out,
+                             System.err);
+      System.exit(exitCode);
+   }
+}
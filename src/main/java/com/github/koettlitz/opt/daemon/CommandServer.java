@@ -0,0 +1,448 @@
+package com.github.koettlitz.opt.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.github.koettlitz.opt.ArgumentModel;
+import com.github.koettlitz.opt.ArgumentParser;
+import com.github.koettlitz.opt.ParseSession;
+import com.github.koettlitz.opt.ParseSessionPool;
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+import com.github.koettlitz.opt.exec.CommandDispatcher;
+import com.github.koettlitz.opt.trace.Span;
+import com.github.koettlitz.opt.trace.Tracer;
+
+/**
+ * A long lived server, that parses and executes command lines sent by {@link CommandClient}s.
+ * The parser and the handlers of its commands are built once, so an invocation only pays for
+ * a loopback round trip instead of starting a JVM and building the parser.
+ * <p>
+ * The server only listens on the loopback address. As every local user can connect to it,
+ * the server creates a random token on start and writes it to a token file, that only its owner can read.
+ * A request, that doesn't start with the token, is dropped without an answer before anything else of it is read.
+ * A client has to send its request within the request timeout and at most {@link #getMaxSessions()} connections
+ * are served at once, further ones wait in the backlog of the server socket,
+ * so idle or slow connections can't pin an arbitrary number of threads.
+ * The token file is {@link #defaultTokenFile(int)} unless another one is given and is deleted on close.
+ * <p>
+ * Every connection carries one invocation, that is executed on its own thread of the executor.
+ * The output of the handler is streamed back to the client while the command runs, followed by the exit code.
+ * A command line, that can't be parsed, gets the error message and {@link CommandDispatcher#EXIT_USAGE}.
+ * A handler, that throws, gets the stack trace and {@link CommandDispatcher#EXIT_FAILURE}.
+ * <p>
+ * The command line is parsed relative to the working directory of the client, i.e. argument files
+ * and the paths checked by {@link com.github.koettlitz.opt.PathPolicy}s are resolved against it.
+ * Handlers have to resolve their paths against {@link com.github.koettlitz.opt.exec.CommandContext#getWorkingDirectory()}
+ * too, e.g. by {@link ArgumentModel#plainArgumentPathStream(Path)}, because the server has its own working directory.
+ * <p>
+ * {@link #close()} stops accepting connections and waits for the running commands
+ * up to the shutdown timeout before they are interrupted.
+ */
+public final class CommandServer implements AutoCloseable {
+   private static final long DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+   private static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 10_000;
+   private static final int DEFAULT_MAX_SESSIONS = 64;
+   private static final int TOKEN_BYTES = Frames.TOKEN_LENGTH / 2;
+
+   private final ParseSessionPool sessions;
+   private final CommandDispatcher dispatcher;
+   private final Tracer tracer;
+   private final ExecutorService executor;
+   private final ServerSocket serverSocket;
+   private final byte[] token;
+   private final Path tokenFile;
+   private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+   private final Thread acceptor;
+   private final Object sessionLock = new Object();
+   private int activeSessions;
+   private volatile long shutdownTimeoutMillis = DEFAULT_SHUTDOWN_TIMEOUT_MILLIS;
+   private volatile long requestTimeoutMillis = DEFAULT_REQUEST_TIMEOUT_MILLIS;
+   private volatile int maxSessions = DEFAULT_MAX_SESSIONS;
+   private volatile boolean closed;
+
+   /**
+    * Starts a server on the given port with a thread per connection.
+    *
+    * @param parser The parser of the command lines, whose commands have handlers
+    * @param port The port to listen on or 0 for any free port
+    *
+    * @throws IOException If the port could not be bound
+    */
+   public CommandServer(ArgumentParser parser, int port) throws IOException {
+      this(parser, port, Executors.newCachedThreadPool(r -> {
+         Thread thread = new Thread(r, "command-session");
+         thread.setDaemon(true);
+         return thread;
+      }));
+   }
+
+   /**
+    * Starts a server on the given port, that writes its token to the {@link #defaultTokenFile(int)} of its port.
+    *
+    * @param parser The parser of the command lines, whose commands have handlers
+    * @param port The port to listen on or 0 for any free port
+    * @param executor The executor running the connections. It is shut down, when the server is closed.
+    *
+    * @throws IOException If the port could not be bound or the token file could not be written
+    * @throws NullPointerException If <code>parser</code> or <code>executor</code> is <code>null</code>
+    */
+   public CommandServer(ArgumentParser parser, int port, ExecutorService executor) throws IOException,
+                                                                                         NullPointerException {
+      this(parser, port, executor, null);
+   }
+
+   /**
+    * Starts a server on the given port.
+    *
+    * @param parser The parser of the command lines, whose commands have handlers
+    * @param port The port to listen on or 0 for any free port
+    * @param executor The executor running the connections. It is shut down, when the server is closed.
+    * @param tokenFile The file the token is written to or <code>null</code> for the default token file of the port.
+    *                  An existing file is replaced.
+    *
+    * @throws IOException If the port could not be bound or the token file could not be written
+    * @throws NullPointerException If <code>parser</code> or <code>executor</code> is <code>null</code>
+    */
+   public CommandServer(ArgumentParser parser,
+                        int port,
+                        ExecutorService executor,
+                        Path tokenFile) throws IOException, NullPointerException {
+      this.sessions = new ParseSessionPool(parser);
+      this.dispatcher = new CommandDispatcher(parser);
+      this.tracer = parser.getTracer();
+      this.executor = Objects.requireNonNull(executor);
+      this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+
+      byte[] random = new byte[TOKEN_BYTES];
+      new SecureRandom().nextBytes(random);
+      StringBuilder token = new StringBuilder(2 * TOKEN_BYTES);
+      for (byte b : random)
+         token.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+
+      this.token = token.toString().getBytes(StandardCharsets.US_ASCII);
+      this.tokenFile = tokenFile != null ? tokenFile : defaultTokenFile(serverSocket.getLocalPort());
+      try {
+         writeToken(this.tokenFile, this.token);
+      } catch (IOException | RuntimeException e) {
+         closeQuietly(serverSocket);
+         throw e;
+      }
+
+      this.acceptor = new Thread(this::accept, "command-server-" + serverSocket.getLocalPort());
+      acceptor.setDaemon(true);
+      acceptor.start();
+   }
+
+   /**
+    * Get the file, that a server on the given port writes its token to unless another one is given,
+    * i.e. <code>.clp/daemon-&lt;port&gt;.token</code> in the home directory of the user.
+    *
+    * @param port The port of the server
+    *
+    * @return The path of the token file
+    */
+   public static Path defaultTokenFile(int port) {
+      return Paths.get(System.getProperty("user.home"), ".clp", "daemon-" + port + ".token");
+   }
+
+   /**
+    * Writes the token to a new file, that only the owner can read, if the file system supports POSIX permissions.
+    * The file is created with its permissions, so the token is never readable by others.
+    */
+   private static void writeToken(Path tokenFile, byte[] token) throws IOException {
+      Path directory = tokenFile.toAbsolutePath().getParent();
+      boolean posix = tokenFile.getFileSystem().supportedFileAttributeViews().contains("posix");
+      if (posix)
+         Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+      else
+         Files.createDirectories(directory);
+
+      Files.deleteIfExists(tokenFile);
+      if (posix)
+         Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+      else
+         Files.createFile(tokenFile);
+
+      Files.write(tokenFile, token);
+   }
+
+   /**
+    * Get the port the server listens on.
+    *
+    * @return The local port
+    */
+   public int getPort() {
+      return serverSocket.getLocalPort();
+   }
+
+   /**
+    * Get the file the token of this server is written to, which clients read to authenticate their requests.
+    *
+    * @return The token file
+    *
+    * @see CommandClient#readToken(Path)
+    */
+   public Path getTokenFile() {
+      return tokenFile;
+   }
+
+   public long getShutdownTimeoutMillis() {
+      return shutdownTimeoutMillis;
+   }
+
+   /**
+    * Set how long {@link #close()} waits for running commands.
+    *
+    * @param shutdownTimeoutMillis The timeout in milliseconds
+    *
+    * @throws IllegalArgumentException If <code>shutdownTimeoutMillis</code> is negative
+    */
+   public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) throws IllegalArgumentException {
+      if (shutdownTimeoutMillis < 0)
+         throw new IllegalArgumentException("shutdownTimeoutMillis can not be less than 0. Was " + shutdownTimeoutMillis);
+
+      this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+   }
+
+   public long getRequestTimeoutMillis() {
+      return requestTimeoutMillis;
+   }
+
+   /**
+    * Set how long a client may take to send its request, before its connection is closed.
+    *
+    * @param requestTimeoutMillis The timeout in milliseconds or 0 to wait forever
+    *
+    * @throws IllegalArgumentException If <code>requestTimeoutMillis</code> is negative
+    */
+   public void setRequestTimeoutMillis(long requestTimeoutMillis) throws IllegalArgumentException {
+      if (requestTimeoutMillis < 0)
+         throw new IllegalArgumentException("requestTimeoutMillis can not be less than 0. Was " + requestTimeoutMillis);
+
+      this.requestTimeoutMillis = requestTimeoutMillis;
+   }
+
+   public int getMaxSessions() {
+      return maxSessions;
+   }
+
+   /**
+    * Set how many connections are served at once. Further connections are accepted,
+    * when a running session has ended.
+    *
+    * @param maxSessions The maximum number of concurrent sessions
+    *
+    * @throws IllegalArgumentException If <code>maxSessions</code> is less than 1
+    */
+   public void setMaxSessions(int maxSessions) throws IllegalArgumentException {
+      if (maxSessions < 1)
+         throw new IllegalArgumentException("maxSessions can not be less than 1. Was " + maxSessions);
+
+      synchronized (sessionLock) {
+         this.maxSessions = maxSessions;
+         sessionLock.notifyAll();
+      }
+   }
+
+   public boolean isClosed() {
+      return closed;
+   }
+
+   private void accept() {
+      while (!closed) {
+         try {
+            if (!startSession())
+               return;
+         } catch (InterruptedException e) {
+            return;
+         }
+
+         Socket socket;
+         try {
+            socket = serverSocket.accept();
+         } catch (IOException e) {
+            endSession();
+            if (closed)
+               return;
+            continue;
+         }
+
+         try {
+            executor.execute(() -> serve(socket));
+         } catch (RejectedExecutionException e) {
+            endSession();
+            closeQuietly(socket);
+         }
+      }
+   }
+
+   /**
+    * Waits until less than the maximum number of sessions are running and counts the next one.
+    *
+    * @return <code>false</code> if the server was closed while waiting
+    */
+   private boolean startSession() throws InterruptedException {
+      synchronized (sessionLock) {
+         while (activeSessions >= maxSessions && !closed)
+            sessionLock.wait();
+
+         if (closed)
+            return false;
+
+         activeSessions++;
+         return true;
+      }
+   }
+
+   private void endSession() {
+      synchronized (sessionLock) {
+         activeSessions--;
+         sessionLock.notifyAll();
+      }
+   }
+
+   private void serve(Socket socket) {
+      connections.add(socket);
+      try {
+         socket.setTcpNoDelay(true);
+         socket.setSoTimeout((int) Math.min(requestTimeoutMillis, Integer.MAX_VALUE));
+         DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+         if (!Frames.readToken(in, token))
+            return;
+
+         String[] request = Frames.readRequest(in);
+         PrintStream stdout = stream(out, Frames.STDOUT);
+         PrintStream stderr = stream(out, Frames.STDERR);
+         int exitCode = execute(Paths.get(request[0]), Arrays.copyOfRange(request, 1, request.length), stdout, stderr);
+         stdout.flush();
+         stderr.flush();
+
+         synchronized (out) {
+            out.writeByte(Frames.EXIT);
+            out.writeInt(4);
+            out.writeInt(exitCode);
+            out.flush();
+         }
+      } catch (IOException | UncheckedIOException e) {
+         // the client went away, there is nobody left to report to
+      } finally {
+         connections.remove(socket);
+         closeQuietly(socket);
+         endSession();
+      }
+   }
+
+   private static PrintStream stream(DataOutputStream out, byte type) {
+      try {
+         return new PrintStream(new BufferedOutputStream(new Frames.FrameOutputStream(out, type)), false, "UTF-8");
+      } catch (UnsupportedEncodingException e) {
+         throw new Error("UTF-8 is always supported.", e);
+      }
+   }
+
+   private int execute(Path workingDirectory, String[] args, PrintStream out, PrintStream err) {
+      if (tracer == null)
+         return parseAndExecute(workingDirectory, args, out, err);
+
+      // every request is a trace of its own with the parse and the execution as children
+      try (Span span = tracer.start("request", null)) {
+         int exitCode = parseAndExecute(workingDirectory, args, out, err);
+         span.setAttribute("exitCode", exitCode);
+         return exitCode;
+      }
+   }
+
+   private int parseAndExecute(Path workingDirectory, String[] args, PrintStream out, PrintStream err) {
+      try (ParseSession session = sessions.acquire()) {
+         session.setWorkingDirectory(workingDirectory);
+         ArgumentModel model;
+         try {
+            model = session.parse(args);
+         } catch (ArgumentParseException e) {
+            err.println(e.getMessage());
+            return CommandDispatcher.EXIT_USAGE;
+         }
+
+         if (!dispatcher.canDispatch(model)) {
+            err.println("No command given.");
+            return CommandDispatcher.EXIT_USAGE;
+         }
+
+         try {
+            return dispatcher.execute(model, out, err, workingDirectory);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            e.printStackTrace(err);
+            return CommandDispatcher.EXIT_FAILURE;
+         } catch (Exception e) {
+            e.printStackTrace(err);
+            return CommandDispatcher.EXIT_FAILURE;
+         }
+      }
+   }
+
+   /**
+    * Stops accepting connections and waits up to the shutdown timeout for the running commands.
+    * Commands still running after the timeout are interrupted and their connections closed.
+    */
+   @Override
+   public void close() {
+      if (closed)
+         return;
+
+      closed = true;
+      synchronized (sessionLock) {
+         sessionLock.notifyAll();
+      }
+      closeQuietly(serverSocket);
+      try {
+         Files.deleteIfExists(tokenFile);
+      } catch (IOException e) {
+         // a stale token is useless without the server
+      }
+      executor.shutdown();
+      try {
+         if (!executor.awaitTermination(shutdownTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            executor.shutdownNow();
+            for (Socket socket : connections)
+               closeQuietly(socket);
+         }
+         acceptor.join(shutdownTimeoutMillis);
+      } catch (InterruptedException e) {
+         executor.shutdownNow();
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   private static void closeQuietly(AutoCloseable closeable) {
+      try {
+         closeable.close();
+      } catch (Exception e) {
+         // nothing left to do with it
+      }
+   }
+}
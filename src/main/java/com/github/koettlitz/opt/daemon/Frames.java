@@ -0,0 +1,190 @@
+package com.github.koettlitz.opt.daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * The wire format between {@link CommandClient} and {@link CommandServer}.
+ * Every frame is a type byte, the length of the payload as int and the payload.
+ * <p>
+ * The client sends one {@link #REQUEST} frame. Its type is followed by the token of the server
+ * with the fixed length {@link #TOKEN_LENGTH}, so the server authenticates the request before it reads the length.
+ * The payload holds the working directory, the number of arguments and the arguments,
+ * each as int length followed by UTF-8 bytes.
+ * The server answers with any number of {@link #STDOUT} and {@link #STDERR} frames
+ * and finally an {@link #EXIT} frame with the exit code as payload.
+ */
+final class Frames {
+   static final byte REQUEST = 'R';
+   static final byte STDOUT = '1';
+   static final byte STDERR = '2';
+   static final byte EXIT = 'X';
+
+   /**
+    * The length of the token, that is sent right after the type of a request frame.
+    */
+   static final int TOKEN_LENGTH = 64;
+
+   /**
+    * The limit of the payload of a frame, so a broken peer can't make the other one allocate arbitrary memory.
+    */
+   static final int MAX_PAYLOAD = 16 * 1024 * 1024;
+
+   private Frames() {}
+
+   /**
+    * Writes a request frame.
+    *
+    * @throws IOException If the token doesn't have {@link #TOKEN_LENGTH} ASCII chars or writing failed
+    */
+   static void writeRequest(DataOutputStream out,
+                            String token,
+                            String workingDirectory,
+                            String[] args) throws IOException {
+      byte[] tokenBytes = token.getBytes(StandardCharsets.US_ASCII);
+      if (tokenBytes.length != TOKEN_LENGTH)
+         throw new IOException("Invalid token, expected " + TOKEN_LENGTH + " chars. Was " + token.length());
+
+      byte[][] encoded = new byte[args.length + 1][];
+      int length = 4;
+      encoded[0] = workingDirectory.getBytes(StandardCharsets.UTF_8);
+      for (int i = 0; i < args.length; i++)
+         encoded[i + 1] = args[i].getBytes(StandardCharsets.UTF_8);
+
+      for (byte[] bytes : encoded)
+         length += 4 + bytes.length;
+
+      out.writeByte(REQUEST);
+      out.write(tokenBytes);
+      out.writeInt(length);
+      out.writeInt(encoded[0].length);
+      out.write(encoded[0]);
+      out.writeInt(args.length);
+      for (int i = 1; i < encoded.length; i++) {
+         out.writeInt(encoded[i].length);
+         out.write(encoded[i]);
+      }
+      out.flush();
+   }
+
+   /**
+    * Reads the type and the token of a request frame, which come before its length,
+    * so a request with a wrong token is rejected before any of its payload is read.
+    *
+    * @param token The expected token
+    *
+    * @return <code>true</code> if the request has the expected token
+    *
+    * @throws EOFException If the stream ended before the token was complete
+    * @throws IOException If the frame is no request or reading failed
+    */
+   static boolean readToken(DataInputStream in, byte[] token) throws EOFException, IOException {
+      byte type = in.readByte();
+      if (type != REQUEST)
+         throw new IOException("Expected a request frame, but got " + type);
+
+      byte[] given = new byte[TOKEN_LENGTH];
+      in.readFully(given);
+      return MessageDigest.isEqual(token, given);
+   }
+
+   /**
+    * Reads the rest of a request frame after its token. The lengths of the working directory
+    * and of the arguments have to add up to the length of the frame.
+    *
+    * @return The working directory followed by the arguments
+    *
+    * @throws EOFException If the stream ended before the request was complete
+    * @throws IOException If the frame is no valid request or reading failed
+    */
+   static String[] readRequest(DataInputStream in) throws EOFException, IOException {
+      int length = readLength(in);
+      byte[] payload = new byte[length];
+      in.readFully(payload);
+
+      ByteBuffer buffer = ByteBuffer.wrap(payload);
+      try {
+         String workingDirectory = getString(buffer);
+         int count = buffer.getInt();
+         if (count < 0 || count > buffer.remaining() / 4)
+            throw new IOException("Invalid number of arguments " + count);
+
+         String[] request = new String[count + 1];
+         request[0] = workingDirectory;
+         for (int i = 1; i < request.length; i++)
+            request[i] = getString(buffer);
+
+         if (buffer.hasRemaining())
+            throw new IOException("Request doesn't match its length of " + length + " bytes.");
+
+         return request;
+      } catch (BufferUnderflowException e) {
+         throw new IOException("Request is truncated.", e);
+      }
+   }
+
+   private static String getString(ByteBuffer buffer) throws IOException {
+      int length = buffer.getInt();
+      if (length < 0 || length > buffer.remaining())
+         throw new IOException("Invalid string length " + length);
+
+      String s = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+      ((Buffer) buffer).position(buffer.position() + length);
+      return s;
+   }
+
+   static int readLength(DataInputStream in) throws IOException {
+      int length = in.readInt();
+      if (length < 0 || length > MAX_PAYLOAD)
+         throw new IOException("Invalid frame length " + length);
+
+      return length;
+   }
+
+   /**
+    * The output of a command sent as frames of one type.
+    * All frame streams of a connection share the lock of the underlying stream,
+    * so frames of stdout and stderr never interleave.
+    */
+   static final class FrameOutputStream extends OutputStream {
+      private final DataOutputStream out;
+      private final byte type;
+
+      FrameOutputStream(DataOutputStream out, byte type) {
+         this.out = out;
+         this.type = type;
+      }
+
+      @Override
+      public void write(int b) throws IOException {
+         write(new byte[] { (byte) b }, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+         if (len == 0)
+            return;
+
+         synchronized (out) {
+            out.writeByte(type);
+            out.writeInt(len);
+            out.write(b, off, len);
+         }
+      }
+
+      @Override
+      public void flush() throws IOException {
+         synchronized (out) {
+            out.flush();
+         }
+      }
+   }
+}
@@ -0,0 +1,61 @@
+package com.github.koettlitz.opt.ex;
+
+import com.github.koettlitz.opt.Constraint;
+import com.github.koettlitz.opt.ExpectedArgument;
+
+/**
+ * Thrown to indicate that the given arguments violate a {@link Constraint},
+ * e.g. two mutually exclusive options were given.
+ */
+public class ConstraintViolationException extends ArgumentParseException {
+   private static final long serialVersionUID = 3935315470418926154L;
+
+   private final Constraint constraint;
+   private final Iterable<? extends ExpectedArgument> arguments;
+
+   /**
+    * Creates a new exception for the violated <code>constraint</code>.
+    *
+    * @param constraint The violated constraint
+    * @param arguments The arguments that violate the constraint:
+    * The given ones for mutually exclusive arguments, the missing ones otherwise.
+    */
+   public ConstraintViolationException(Constraint constraint, Iterable<? extends ExpectedArgument> arguments) {
+      super(createMessage(constraint, arguments));
+      this.constraint = constraint;
+      this.arguments = arguments;
+   }
+
+   private static String createMessage(Constraint constraint, Iterable<? extends ExpectedArgument> arguments) {
+      StringBuilder builder = new StringBuilder();
+      switch (constraint.getType()) {
+         case MUTUALLY_EXCLUSIVE:
+            builder.append("Mutually exclusive arguments given:");
+            break;
+         case REQUIRED_TOGETHER:
+            builder.append("Arguments have to be given together with ")
+                   .append(String.join(", ", constraint.getNames()))
+                   .append(". Missing:");
+            break;
+         case REQUIRES:
+            builder.append(constraint.getNames()[0])
+                   .append(" requires:");
+            break;
+      }
+
+      for (ExpectedArgument arg : arguments) {
+         builder.append(' ')
+                .append(arg.fullName());
+      }
+
+      return builder.toString();
+   }
+
+   public Constraint getConstraint() {
+      return constraint;
+   }
+
+   public Iterable<? extends ExpectedArgument> getArguments() {
+      return arguments;
+   }
+}
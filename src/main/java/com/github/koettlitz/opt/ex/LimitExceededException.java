@@ -0,0 +1,31 @@
+package com.github.koettlitz.opt.ex;
+
+import java.util.Locale;
+
+import com.github.koettlitz.opt.ParseLimits;
+import com.github.koettlitz.opt.ParseLimits.Limit;
+
+/**
+ * Thrown to indicate that the given arguments exceed one of the {@link ParseLimits} of the parser.
+ * The parse stops at the first exceeded limit.
+ */
+public class LimitExceededException extends ArgumentParseException {
+   private static final long serialVersionUID = 3120546327796612408L;
+
+   private final Limit limit;
+   private final int maximum;
+
+   public LimitExceededException(Limit limit, int maximum) {
+      super("Limit of " + limit.name().toLowerCase(Locale.ROOT).replace('_', ' ') + " exceeded. Maximum is " + maximum);
+      this.limit = limit;
+      this.maximum = maximum;
+   }
+
+   public Limit getLimit() {
+      return limit;
+   }
+
+   public int getMaximum() {
+      return maximum;
+   }
+}
@@ -0,0 +1,40 @@
+package com.github.koettlitz.opt.ex;
+
+import com.github.koettlitz.opt.PathPolicy;
+import com.github.koettlitz.opt.PathPolicy.Check;
+
+/**
+ * Thrown to indicate that a path given as the value of an argument violates the {@link PathPolicy} of the argument,
+ * e.g. an input file, that does not exist.
+ */
+public class PathValidationException extends ArgumentParseException {
+   private static final long serialVersionUID = -4617289930561287541L;
+
+   private final Check check;
+   private final String argumentName;
+   private final String path;
+
+   public PathValidationException(Check check, String argumentName, String path, String problem) {
+      super("Path " + path + " of " + argumentName + " " + problem);
+      this.check = check;
+      this.argumentName = argumentName;
+      this.path = path;
+   }
+
+   /**
+    * Get the requirement, that is violated.
+    *
+    * @return The kind of requirement
+    */
+   public Check getCheck() {
+      return check;
+   }
+
+   public String getArgumentName() {
+      return argumentName;
+   }
+
+   public String getPath() {
+      return path;
+   }
+}
@@ -0,0 +1,97 @@
+package com.github.koettlitz.opt.exec;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import com.github.koettlitz.opt.ArgumentModel;
+
+/**
+ * The parsed arguments of a command and the environment it is executed in.
+ */
+public final class CommandContext {
+   private final ArgumentModel rootModel;
+   private final ArgumentModel model;
+   private final List<String> path;
+   private final PrintStream out;
+   private final PrintStream err;
+   private final Path workingDirectory;
+
+   /**
+    * Creates a new context.
+    *
+    * @param rootModel The parsed arguments of the whole command line
+    * @param model The parsed arguments of the executed command
+    * @param path The names of the commands from the root to the executed command
+    * @param out The stream for the output of the command
+    * @param err The stream for the errors of the command
+    * @param workingDirectory The directory relative paths are resolved against
+    *
+    * @throws NullPointerException If any of the arguments is <code>null</code>
+    */
+   public CommandContext(ArgumentModel rootModel,
+                         ArgumentModel model,
+                         List<String> path,
+                         PrintStream out,
+                         PrintStream err,
+                         Path workingDirectory) throws NullPointerException {
+      this.rootModel = Objects.requireNonNull(rootModel);
+      this.model = Objects.requireNonNull(model);
+      this.path = Collections.unmodifiableList(Objects.requireNonNull(path));
+      this.out = Objects.requireNonNull(out);
+      this.err = Objects.requireNonNull(err);
+      this.workingDirectory = Objects.requireNonNull(workingDirectory);
+   }
+
+   /**
+    * Get the parsed arguments of the whole command line, e.g. to read global options.
+    *
+    * @return The model of the root parser
+    */
+   public ArgumentModel getRootModel() {
+      return rootModel;
+   }
+
+   /**
+    * Get the parsed arguments of the executed command.
+    *
+    * @return The model of the command
+    */
+   public ArgumentModel getModel() {
+      return model;
+   }
+
+   /**
+    * Get the names of the commands from the root to the executed command, e.g. <code>[remote, add]</code>.
+    *
+    * @return A read-only list of the command names
+    */
+   public List<String> getPath() {
+      return path;
+   }
+
+   public PrintStream getOut() {
+      return out;
+   }
+
+   public PrintStream getErr() {
+      return err;
+   }
+
+   public Path getWorkingDirectory() {
+      return workingDirectory;
+   }
+
+   /**
+    * Resolves a path given as argument against the working directory of the command.
+    *
+    * @param path The given path
+    *
+    * @return The resolved path
+    */
+   public Path resolve(String path) {
+      return workingDirectory.resolve(path);
+   }
+}
@@ -0,0 +1,303 @@
+package com.github.koettlitz.opt.exec;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.github.koettlitz.opt.ArgumentModel;
+import com.github.koettlitz.opt.ArgumentParser;
+import com.github.koettlitz.opt.Command;
+import com.github.koettlitz.opt.trace.Span;
+import com.github.koettlitz.opt.trace.Tracer;
+
+/**
+ * Routes parsed arguments to the {@link CommandHandler} of the given command.
+ * The handlers are set on the commands with {@link com.github.koettlitz.opt.CommandBuilder#setHandler(CommandHandler)}.
+ * The routes of all nesting levels are collected once, so routing a model takes one map lookup per level.
+ * If nested commands are given, the handler of the innermost command, that has a handler, is executed.
+ * <p>
+ * A command can be executed on the calling thread, on an executor or on a thread of its own,
+ * that is a virtual thread on a JDK supporting them.
+ */
+public final class CommandDispatcher {
+   /**
+    * The conventional exit code of a command, that failed with an exception.
+    */
+   public static final int EXIT_FAILURE = 1;
+   /**
+    * The conventional exit code of a command line, that could not be parsed.
+    */
+   public static final int EXIT_USAGE = 2;
+
+   private final Level root;
+   private final Tracer tracer;
+
+   /**
+    * Creates a dispatcher for the commands of the given parser.
+    * If the parser has a tracer, every execution is traced as a span <code>execute</code>.
+    *
+    * @param parser The parser of the models to dispatch
+    *
+    * @throws NullPointerException If <code>parser</code> is <code>null</code>
+    */
+   public CommandDispatcher(ArgumentParser parser) throws NullPointerException {
+      this.root = level(Objects.requireNonNull(parser), new IdentityHashMap<ArgumentParser, Level>());
+      this.tracer = parser.getTracer();
+   }
+
+   private static Level level(ArgumentParser parser, Map<ArgumentParser, Level> levels) {
+      Level level = levels.get(parser);
+      if (level != null)
+         return level;
+
+      level = new Level();
+      levels.put(parser, level);
+      for (Command cmd : parser.getCommands())
+         level.routes.put(cmd.getName(), new Route(cmd.getHandler(), level(cmd.getParser(), levels)));
+
+      return level;
+   }
+
+   /**
+    * Find out whether there is a handler for the command given in the <code>model</code>.
+    *
+    * @param model The parsed arguments
+    *
+    * @return <code>true</code> if the model can be dispatched, <code>false</code> otherwise
+    */
+   public boolean canDispatch(ArgumentModel model) {
+      return route(model, new ArrayList<String>(), System.out, System.err, Paths.get("")) != null;
+   }
+
+   /**
+    * Executes the handler of the given command on the calling thread
+    * with the standard streams and the current directory.
+    *
+    * @param model The parsed arguments
+    *
+    * @return The exit code of the command
+    *
+    * @throws IllegalArgumentException If there is no handler for the given command
+    * @throws Exception If the command failed
+    */
+   public int execute(ArgumentModel model) throws IllegalArgumentException, Exception {
+      return execute(model, System.out, System.err, Paths.get("").toAbsolutePath());
+   }
+
+   /**
+    * Executes the handler of the given command on the calling thread.
+    *
+    * @param model The parsed arguments
+    * @param out The stream for the output of the command
+    * @param err The stream for the errors of the command
+    * @param workingDirectory The working directory of the command
+    *
+    * @return The exit code of the command
+    *
+    * @throws IllegalArgumentException If there is no handler for the given command
+    * @throws Exception If the command failed
+    */
+   public int execute(ArgumentModel model,
+                      PrintStream out,
+                      PrintStream err,
+                      Path workingDirectory) throws IllegalArgumentException, Exception {
+      Dispatch dispatch = dispatch(model, out, err, workingDirectory);
+      return execute(dispatch, tracer == null ? null : Tracer.current());
+   }
+
+   /**
+    * Executes the handler of the given command on the <code>executor</code>
+    * with the standard streams and the current directory.
+    *
+    * @param model The parsed arguments
+    * @param executor The executor to run the command on
+    *
+    * @return A future of the exit code, that completes exceptionally if the command failed
+    *
+    * @throws IllegalArgumentException If there is no handler for the given command
+    */
+   public CompletableFuture<Integer> submit(ArgumentModel model, Executor executor) throws IllegalArgumentException {
+      return submit(model, executor, System.out, System.err, Paths.get("").toAbsolutePath());
+   }
+
+   /**
+    * Executes the handler of the given command on the <code>executor</code>.
+    *
+    * @param model The parsed arguments
+    * @param executor The executor to run the command on
+    * @param out The stream for the output of the command
+    * @param err The stream for the errors of the command
+    * @param workingDirectory The working directory of the command
+    *
+    * @return A future of the exit code, that completes exceptionally if the command failed
+    *
+    * @throws IllegalArgumentException If there is no handler for the given command
+    */
+   public CompletableFuture<Integer> submit(ArgumentModel model,
+                                            Executor executor,
+                                            PrintStream out,
+                                            PrintStream err,
+                                            Path workingDirectory) throws IllegalArgumentException {
+      Objects.requireNonNull(executor);
+      Dispatch dispatch = dispatch(model, out, err, workingDirectory);
+      // the execution continues the trace of the submitting thread
+      Span parent = tracer == null ? null : Tracer.current();
+      CompletableFuture<Integer> future = new CompletableFuture<>();
+      executor.execute(() -> run(dispatch, parent, future));
+      return future;
+   }
+
+   /**
+    * Executes the handler of the given command on a thread of its own
+    * with the standard streams and the current directory.
+    *
+    * @param model The parsed arguments
+    *
+    * @return A future of the exit code, that completes exceptionally if the command failed
+    *
+    * @throws IllegalArgumentException If there is no handler for the given command
+    *
+    * @see #isVirtualThreadSupported()
+    */
+   public CompletableFuture<Integer> submitOnNewThread(ArgumentModel model) throws IllegalArgumentException {
+      return submitOnNewThread(model, System.out, System.err, Paths.get("").toAbsolutePath());
+   }
+
+   /**
+    * Executes the handler of the given command on a thread of its own.
+    * The thread is a virtual thread if the JDK supports them, otherwise a daemon platform thread.
+    * Virtual threads make thousands of concurrent, mostly waiting commands cheap.
+    *
+    * @param model The parsed arguments
+    * @param out The stream for the output of the command
+    * @param err The stream for the errors of the command
+    * @param workingDirectory The working directory of the command
+    *
+    * @return A future of the exit code, that completes exceptionally if the command failed
+    *
+    * @throws IllegalArgumentException If there is no handler for the given command
+    *
+    * @see #isVirtualThreadSupported()
+    */
+   public CompletableFuture<Integer> submitOnNewThread(ArgumentModel model,
+                                                       PrintStream out,
+                                                       PrintStream err,
+                                                       Path workingDirectory) throws IllegalArgumentException {
+      return submit(model, VirtualThreads::start, out, err, workingDirectory);
+   }
+
+   /**
+    * Find out whether commands submitted with {@link #submitOnNewThread(ArgumentModel)} run on virtual threads.
+    *
+    * @return <code>true</code> if the JDK supports virtual threads, <code>false</code> otherwise
+    */
+   public static boolean isVirtualThreadSupported() {
+      return VirtualThreads.isSupported();
+   }
+
+   private void run(Dispatch dispatch, Span parent, CompletableFuture<Integer> future) {
+      try {
+         future.complete(execute(dispatch, parent));
+      } catch (Throwable e) {
+         future.completeExceptionally(e);
+      }
+   }
+
+   private int execute(Dispatch dispatch, Span parent) throws Exception {
+      if (tracer == null)
+         return dispatch.handler.execute(dispatch.context);
+
+      try (Span span = tracer.start("execute", parent)) {
+         if (span.isSampled())
+            span.setAttribute("command", String.join(" ", dispatch.context.getPath()));
+
+         try {
+            int exitCode = dispatch.handler.execute(dispatch.context);
+            span.setAttribute("exitCode", exitCode);
+            return exitCode;
+         } catch (Exception e) {
+            span.setAttribute("error", e.getClass().getSimpleName());
+            throw e;
+         }
+      }
+   }
+
+   private Dispatch dispatch(ArgumentModel model,
+                             PrintStream out,
+                             PrintStream err,
+                             Path workingDirectory) throws IllegalArgumentException {
+      List<String> path = new ArrayList<>();
+      Dispatch dispatch = route(model, path, out, err, workingDirectory);
+      if (dispatch == null)
+         throw new IllegalArgumentException("No handler for the command " + path);
+
+      return dispatch;
+   }
+
+   /**
+    * Follows the given commands to the innermost command, that has a handler.
+    *
+    * @param path The list to collect the names of the given commands in
+    *
+    * @return The handler and the context or <code>null</code> if no given command has a handler
+    */
+   private Dispatch route(ArgumentModel model,
+                          List<String> path,
+                          PrintStream out,
+                          PrintStream err,
+                          Path workingDirectory) {
+      Objects.requireNonNull(model);
+      Level level = root;
+      ArgumentModel current = model;
+      Dispatch dispatch = null;
+
+      String name;
+      while ((name = current.getCommandName()) != null) {
+         Route route = level.routes.get(name);
+         if (route == null)
+            break;
+
+         current = current.getCommandValue(name);
+         path.add(name);
+         if (route.handler != null)
+            dispatch = new Dispatch(route.handler,
+                                    new CommandContext(model, current, new ArrayList<>(path), out, err, workingDirectory));
+
+         level = route.level;
+      }
+
+      return dispatch;
+   }
+
+   private static final class Level {
+      private final Map<String, Route> routes = new HashMap<>();
+   }
+
+   private static final class Route {
+      private final CommandHandler handler;
+      private final Level level;
+
+      Route(CommandHandler handler, Level level) {
+         this.handler = handler;
+         this.level = level;
+      }
+   }
+
+   private static final class Dispatch {
+      private final CommandHandler handler;
+      private final CommandContext context;
+
+      Dispatch(CommandHandler handler, CommandContext context) {
+         this.handler = handler;
+         this.context = context;
+      }
+   }
+}
@@ -0,0 +1,21 @@
+package com.github.koettlitz.opt.exec;
+
+/**
+ * Executes a parsed command.
+ *
+ * @see CommandDispatcher
+ * @see com.github.koettlitz.opt.CommandBuilder#setHandler(CommandHandler)
+ */
+@FunctionalInterface
+public interface CommandHandler {
+   /**
+    * Executes the command.
+    *
+    * @param context The parsed arguments of the command and the environment to execute it in
+    *
+    * @return The exit code of the command, where 0 means success
+    *
+    * @throws Exception If the command failed
+    */
+   int execute(CommandContext context) throws Exception;
+}
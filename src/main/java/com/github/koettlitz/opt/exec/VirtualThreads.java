@@ -0,0 +1,50 @@
+package com.github.koettlitz.opt.exec;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Starts a thread per task, that is a virtual thread if the running JDK supports it (21+).
+ * The library is compiled for Java 8, so <code>Thread.startVirtualThread</code> is looked up once at runtime.
+ * On older JDKs every task gets a daemon platform thread instead.
+ */
+final class VirtualThreads {
+   private static final MethodHandle START_VIRTUAL_THREAD = lookup();
+   private static final AtomicLong THREAD_COUNT = new AtomicLong();
+
+   private VirtualThreads() {}
+
+   private static MethodHandle lookup() {
+      try {
+         return MethodHandles.publicLookup()
+                             .findStatic(Thread.class,
+                                         "startVirtualThread",
+                                         MethodType.methodType(Thread.class, Runnable.class));
+      } catch (NoSuchMethodException | IllegalAccessException e) {
+         return null;
+      }
+   }
+
+   static boolean isSupported() {
+      return START_VIRTUAL_THREAD != null;
+   }
+
+   static Thread start(Runnable task) {
+      if (START_VIRTUAL_THREAD == null) {
+         Thread thread = new Thread(task, "command-" + THREAD_COUNT.incrementAndGet());
+         thread.setDaemon(true);
+         thread.start();
+         return thread;
+      }
+
+      try {
+         return (Thread) START_VIRTUAL_THREAD.invokeExact(task);
+      } catch (RuntimeException | Error e) {
+         throw e;
+      } catch (Throwable e) {
+         throw new IllegalStateException("Virtual thread could not be started.", e);
+      }
+   }
+}
@@ -0,0 +1,282 @@
+package com.github.koettlitz.opt.shell;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+import com.github.koettlitz.opt.ArgumentModel;
+import com.github.koettlitz.opt.ArgumentParser;
+import com.github.koettlitz.opt.IncrementalParser;
+import com.github.koettlitz.opt.ParseDiagnostic;
+import com.github.koettlitz.opt.ParseSession;
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+import com.github.koettlitz.opt.exec.CommandDispatcher;
+import com.github.koettlitz.opt.trace.Span;
+import com.github.koettlitz.opt.trace.Tracer;
+import com.github.koettlitz.util.Tokenizer;
+
+/**
+ * An interactive loop, that reads command lines, executes their commands and keeps a history.
+ * The parser is built once and every line is parsed by the same {@link ParseSession},
+ * so nothing is rebuilt per line.
+ * <p>
+ * Line editors validate and complete the line while it is typed with {@link #check(List)}
+ * and {@link #complete(List, String)}. Both use an {@link IncrementalParser},
+ * which only parses the tokens after the first edited one.
+ * <p>
+ * Besides the commands of the parser the shell knows the built-in commands
+ * <code>exit</code>, which ends the loop, and <code>history</code>, which prints the history.
+ */
+public final class Shell {
+   public static final String DEFAULT_PROMPT = "> ";
+   public static final int DEFAULT_MAX_HISTORY = 1000;
+
+   private final ParseSession session;
+   private final CommandDispatcher dispatcher;
+   private final IncrementalParser editor;
+   private final PrintStream out;
+   private final PrintStream err;
+   private final Deque<String> history = new ArrayDeque<>();
+   private String prompt = DEFAULT_PROMPT;
+   private int maxHistory = DEFAULT_MAX_HISTORY;
+   private Path workingDirectory = Paths.get("").toAbsolutePath();
+   private boolean exited;
+
+   /**
+    * Creates a new shell.
+    *
+    * @param parser The parser of the lines, whose commands have handlers
+    * @param out The stream for the prompt and the output of the commands
+    * @param err The stream for the errors
+    *
+    * @throws NullPointerException If any argument is <code>null</code>
+    */
+   public Shell(ArgumentParser parser, PrintStream out, PrintStream err) throws NullPointerException {
+      this.session = parser.newSession();
+      this.dispatcher = new CommandDispatcher(parser);
+      this.editor = new IncrementalParser(parser);
+      this.out = Objects.requireNonNull(out);
+      this.err = Objects.requireNonNull(err);
+   }
+
+   /**
+    * Reads and executes lines until the input ends or <code>exit</code> is given.
+    *
+    * @param in The input of the lines
+    *
+    * @return The exit code of the last executed command line
+    *
+    * @throws IOException If reading the input fails
+    */
+   public int run(Reader in) throws IOException {
+      BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+      int exitCode = 0;
+      exited = false;
+
+      while (!exited) {
+         out.print(prompt);
+         out.flush();
+         String line = reader.readLine();
+         if (line == null)
+            break;
+
+         exitCode = execute(line);
+      }
+
+      return exitCode;
+   }
+
+   /**
+    * Executes a single line and adds it to the history.
+    *
+    * @param line The command line
+    *
+    * @return The exit code of the command, 0 for an empty line
+    */
+   public int execute(String line) {
+      Tracer tracer = editor.getParser().getTracer();
+      if (tracer == null)
+         return execute(line, null);
+
+      // a line is a trace of its own with the tokenizing, the parse and the execution as children
+      Span span = tracer.start("line", null);
+      try {
+         return execute(line, tracer);
+      } finally {
+         span.close();
+      }
+   }
+
+   private int execute(String line, Tracer tracer) {
+      List<String> tokens;
+      Span span = tracer == null ? null : tracer.start("tokenize");
+      try {
+         tokens = tokenize(line);
+      } catch (IOException e) {
+         err.println(e.getMessage());
+         return CommandDispatcher.EXIT_USAGE;
+      } finally {
+         if (span != null)
+            span.close();
+      }
+
+      if (tokens.isEmpty())
+         return 0;
+
+      addHistory(line);
+      if (tokens.size() == 1 && "exit".equals(tokens.get(0))) {
+         exited = true;
+         return 0;
+      }
+      if (tokens.size() == 1 && "history".equals(tokens.get(0))) {
+         int i = 1;
+         for (String entry : history)
+            out.printf("%5d  %s%n", i++, entry);
+         return 0;
+      }
+
+      ArgumentModel model;
+      try {
+         session.setWorkingDirectory(workingDirectory);
+         model = session.parse(tokens.toArray(new String[0]));
+      } catch (ArgumentParseException e) {
+         err.println(e.getMessage());
+         return CommandDispatcher.EXIT_USAGE;
+      }
+
+      if (!dispatcher.canDispatch(model)) {
+         err.println("No command given.");
+         return CommandDispatcher.EXIT_USAGE;
+      }
+
+      try {
+         return dispatcher.execute(model, out, err, workingDirectory);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         exited = true;
+         e.printStackTrace(err);
+         return CommandDispatcher.EXIT_FAILURE;
+      } catch (Exception e) {
+         e.printStackTrace(err);
+         return CommandDispatcher.EXIT_FAILURE;
+      }
+   }
+
+   /**
+    * Validates the tokens of a line, that is edited. Only the tokens after the first token,
+    * that changed since the last call, are parsed again.
+    *
+    * @param tokens The tokens of the whole line
+    *
+    * @return The problems of the tokens
+    */
+   public List<ParseDiagnostic> check(List<String> tokens) {
+      return editor.update(tokens);
+   }
+
+   /**
+    * Completes the token following <code>tokens</code>. Only the tokens after the first token,
+    * that changed since the last call, are parsed again.
+    *
+    * @param tokens The complete tokens of the line
+    * @param prefix The beginning of the next token, that was already typed
+    *
+    * @return The candidates for the next token, sorted
+    */
+   public List<String> complete(List<String> tokens, String prefix) {
+      editor.update(tokens);
+      return editor.complete(prefix);
+   }
+
+   /**
+    * Splits a line into tokens like a POSIX shell.
+    *
+    * @param line The line
+    *
+    * @return The tokens
+    *
+    * @throws IOException If the line ends within quotes or after an escaping backslash
+    */
+   public static List<String> tokenize(String line) throws IOException {
+      Tokenizer tokenizer = new Tokenizer(new StringReader(line));
+      List<String> tokens = new ArrayList<>();
+      for (String token = tokenizer.nextToken(); token != null; token = tokenizer.nextToken())
+         tokens.add(token);
+
+      return tokens;
+   }
+
+   private void addHistory(String line) {
+      if (line.equals(history.peekLast()))
+         return;
+
+      history.addLast(line);
+      while (history.size() > maxHistory)
+         history.removeFirst();
+   }
+
+   /**
+    * Get the executed lines, oldest first. Repeated lines are kept once.
+    *
+    * @return An unmodifiable copy of the history
+    */
+   public List<String> getHistory() {
+      return Collections.unmodifiableList(new ArrayList<>(history));
+   }
+
+   public void clearHistory() {
+      history.clear();
+   }
+
+   public int getMaxHistory() {
+      return maxHistory;
+   }
+
+   /**
+    * Set the maximum number of lines in the history. The oldest lines are dropped first.
+    *
+    * @param maxHistory The maximum number of lines
+    *
+    * @throws IllegalArgumentException If <code>maxHistory</code> is negative
+    */
+   public void setMaxHistory(int maxHistory) throws IllegalArgumentException {
+      if (maxHistory < 0)
+         throw new IllegalArgumentException("maxHistory can not be less than 0. Was " + maxHistory);
+
+      this.maxHistory = maxHistory;
+      while (history.size() > maxHistory)
+         history.removeFirst();
+   }
+
+   public String getPrompt() {
+      return prompt;
+   }
+
+   public void setPrompt(String prompt) {
+      this.prompt = Objects.requireNonNull(prompt);
+   }
+
+   public Path getWorkingDirectory() {
+      return workingDirectory;
+   }
+
+   /**
+    * Set the working directory passed to the commands, which the names of argument files
+    * and the paths checked by {@link com.github.koettlitz.opt.PathPolicy}s are resolved against too.
+    *
+    * @param workingDirectory The working directory
+    */
+   public void setWorkingDirectory(Path workingDirectory) {
+      this.workingDirectory = workingDirectory.toAbsolutePath();
+   }
+}
@@ -0,0 +1,420 @@
+package com.github.koettlitz.opt.tools;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import com.github.koettlitz.opt.ArgumentModel;
+import com.github.koettlitz.opt.ArgumentParser;
+import com.github.koettlitz.opt.ArgumentParserBuilder;
+import com.github.koettlitz.opt.ExpectedOption;
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+import com.github.koettlitz.util.LatencyHistogram;
+import com.github.koettlitz.util.Tokenizer;
+
+/**
+ * Replays a recorded corpus of command lines against an {@link ArgumentParser} and measures
+ * throughput, latency, allocation and errors of {@link ArgumentParser#parseArguments(String...)}.
+ * <p>
+ * The corpus is replayed by a number of threads, that go through the corpus in turns starting at different
+ * command lines. They either parse as fast as possible or at a fixed rate, that is shared by all threads.
+ * At a fixed rate every parse has a scheduled start time and its latency is measured from that time,
+ * so a stalled parse shows up in the latencies of the following parses, too.
+ * The latencies are collected in a {@link LatencyHistogram} per thread and allocations are measured
+ * per thread, if the JVM supports it. Warmup parses are done before and not measured.
+ * <p>
+ * The tool runs from the command line with a parser supplied by a class of the application:
+ * <pre>
+ * java -cp clp.jar:app.jar com.github.koettlitz.opt.tools.CorpusReplay --parser=com.example.Parsers \
+ *      --threads=4 --rate=10000 --count=1000000 corpus.txt
+ * </pre>
+ */
+public final class CorpusReplay {
+   private final ArgumentParser parser;
+   private final List<String[]> corpus;
+   private int threads = 1;
+   private double rate;
+   private long count;
+   private long warmupCount;
+
+   /**
+    * Creates a replay, that parses every command line of the corpus once on a single thread as fast as possible.
+    *
+    * @param parser The parser to measure
+    * @param corpus The command lines
+    *
+    * @throws NullPointerException If <code>parser</code> or <code>corpus</code> is <code>null</code>
+    * @throws IllegalArgumentException If the corpus is empty
+    */
+   public CorpusReplay(ArgumentParser parser, List<String[]> corpus) throws NullPointerException,
+                                                                             IllegalArgumentException {
+      if (corpus.isEmpty())
+         throw new IllegalArgumentException("The corpus is empty.");
+
+      this.parser = Objects.requireNonNull(parser);
+      this.corpus = new ArrayList<>(corpus);
+      this.count = corpus.size();
+   }
+
+   /**
+    * Reads a corpus file. If the file contains NUL characters, every line is a command line
+    * with its arguments separated by NUL, like <code>/proc/PID/cmdline</code>. Otherwise every line is split
+    * like by a POSIX shell and lines starting with <code>#</code> are comments. Empty lines are skipped.
+    *
+    * @param file The UTF-8 encoded corpus
+    *
+    * @return The command lines
+    *
+    * @throws IOException If reading fails or a line ends within quotes
+    */
+   public static List<String[]> readCorpus(Path file) throws IOException {
+      String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+      boolean nulSeparated = content.indexOf('\0') >= 0;
+      List<String[]> corpus = new ArrayList<>();
+
+      for (String line : content.split("\r?\n")) {
+         if (nulSeparated) {
+            // the arguments may be terminated by NUL like in /proc/PID/cmdline, so "\0" is one empty argument
+            if (!line.isEmpty())
+               corpus.add((line.endsWith("\0") ? line.substring(0, line.length() - 1) : line).split("\0", -1));
+         } else {
+            Tokenizer tokenizer = new Tokenizer(new StringReader(line));
+            List<String> args = new ArrayList<>();
+            for (String token = tokenizer.nextToken(); token != null; token = tokenizer.nextToken())
+               args.add(token);
+            if (!args.isEmpty())
+               corpus.add(args.toArray(new String[0]));
+         }
+      }
+
+      return corpus;
+   }
+
+   /**
+    * Replays the corpus.
+    *
+    * @return The measurements
+    *
+    * @throws InterruptedException If the current thread was interrupted while it waited for the replaying threads
+    */
+   public ReplayReport run() throws InterruptedException {
+      Worker[] workers = new Worker[threads];
+      CountDownLatch ready = new CountDownLatch(threads);
+      CountDownLatch start = new CountDownLatch(1);
+      Thread[] started = new Thread[threads];
+      long perThread = count / threads;
+
+      for (int t = 0; t < threads; t++) {
+         long parses = perThread + (t < count % threads ? 1 : 0);
+         workers[t] = new Worker(t, parses, warmupCount / threads, ready, start);
+         started[t] = new Thread(workers[t], "corpus-replay-" + t);
+         started[t].start();
+      }
+
+      ready.await();
+      long begin = System.nanoTime();
+      for (Worker worker : workers)
+         worker.begin = begin;
+      start.countDown();
+      for (Thread thread : started)
+         thread.join();
+      long elapsed = System.nanoTime() - begin;
+
+      LatencyHistogram latencies = new LatencyHistogram();
+      long allocated = 0;
+      Map<String, Long> errors = new HashMap<>();
+      for (Worker worker : workers) {
+         if (worker.failure != null)
+            throw new IllegalStateException("Replay failed on thread " + worker.index, worker.failure);
+
+         latencies.add(worker.latencies);
+         allocated = allocated < 0 || worker.allocatedBytes < 0 ? -1 : allocated + worker.allocatedBytes;
+         for (Map.Entry<String, long[]> e : worker.errors.entrySet())
+            errors.merge(e.getKey(), e.getValue()[0], Long::sum);
+      }
+
+      return new ReplayReport(version(), threads, rate, elapsed, latencies, allocated, errors);
+   }
+
+   private static String version() {
+      String version = ArgumentParser.class.getPackage().getImplementationVersion();
+      return version == null ? "dev" : version;
+   }
+
+   /**
+    * Get the bytes allocated by the current thread so far.
+    *
+    * @return The allocated bytes or -1 if the JVM can't measure them
+    */
+   static long allocatedBytes() {
+      java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (!(bean instanceof com.sun.management.ThreadMXBean))
+         return -1;
+
+      com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+      if (!threadBean.isThreadAllocatedMemorySupported() || !threadBean.isThreadAllocatedMemoryEnabled())
+         return -1;
+
+      return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+   }
+
+   private final class Worker implements Runnable {
+      private final int index;
+      private final long parses;
+      private final long warmup;
+      private final CountDownLatch ready;
+      private final CountDownLatch start;
+      private final LatencyHistogram latencies = new LatencyHistogram();
+      private final Map<String, long[]> errors = new HashMap<>();
+      private volatile long begin;
+      private long allocatedBytes;
+      private Throwable failure;
+      private int next;
+
+      Worker(int index, long parses, long warmup, CountDownLatch ready, CountDownLatch start) {
+         this.index = index;
+         this.parses = parses;
+         this.warmup = warmup;
+         this.ready = ready;
+         this.start = start;
+         this.next = (int) ((long) corpus.size() * index / threads);
+      }
+
+      @Override
+      public void run() {
+         try {
+            for (long n = 0; n < warmup; n++)
+               parse();
+            // the counters of the measurement exist before it starts, so it only allocates for errors
+            for (String[] args : corpus)
+               prepareErrorCounter(args);
+            for (long[] counter : errors.values())
+               counter[0] = 0;
+         } catch (Throwable e) {
+            failure = e;
+         } finally {
+            ready.countDown();
+         }
+
+         try {
+            start.await();
+            if (failure == null)
+               measure();
+         } catch (Throwable e) {
+            failure = e;
+         }
+      }
+
+      private void measure() {
+         long interval = rate > 0 ? (long) (1e9 * threads / rate) : 0;
+         long scheduled = begin + (interval * index) / threads;
+         long allocatedBefore = allocatedBytes();
+
+         for (long n = 0; n < parses; n++) {
+            long startTime;
+            if (interval > 0) {
+               long now;
+               while ((now = System.nanoTime()) < scheduled)
+                  LockSupport.parkNanos(scheduled - now);
+               startTime = scheduled;
+               scheduled += interval;
+            } else {
+               startTime = System.nanoTime();
+            }
+
+            parse();
+            latencies.record(System.nanoTime() - startTime);
+         }
+
+         long allocatedAfter = allocatedBytes();
+         allocatedBytes = allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore;
+      }
+
+      private void parse() {
+         String[] args = corpus.get(next);
+         if (++next == corpus.size())
+            next = 0;
+
+         try {
+            parser.parseArguments(args);
+         } catch (ArgumentParseException | RuntimeException e) {
+            errorCounter(e)[0]++;
+         }
+      }
+
+      private void prepareErrorCounter(String[] args) {
+         try {
+            parser.parseArguments(args);
+         } catch (ArgumentParseException | RuntimeException e) {
+            errorCounter(e);
+         }
+      }
+
+      private long[] errorCounter(Exception e) {
+         return errors.computeIfAbsent(e.getClass().getSimpleName(), name -> new long[1]);
+      }
+   }
+
+   public int getThreads() {
+      return threads;
+   }
+
+   /**
+    * Set the number of threads, that replay the corpus concurrently.
+    *
+    * @param threads The number of threads
+    *
+    * @return This replay
+    *
+    * @throws IllegalArgumentException If <code>threads</code> is less than 1
+    */
+   public CorpusReplay setThreads(int threads) throws IllegalArgumentException {
+      if (threads < 1)
+         throw new IllegalArgumentException("threads can not be less than 1. Was " + threads);
+
+      this.threads = threads;
+      return this;
+   }
+
+   public double getRate() {
+      return rate;
+   }
+
+   /**
+    * Set the number of parses per second over all threads.
+    *
+    * @param rate The rate or 0 to parse as fast as possible
+    *
+    * @return This replay
+    *
+    * @throws IllegalArgumentException If <code>rate</code> is negative
+    */
+   public CorpusReplay setRate(double rate) throws IllegalArgumentException {
+      if (!(rate >= 0))
+         throw new IllegalArgumentException("rate can not be less than 0. Was " + rate);
+
+      this.rate = rate;
+      return this;
+   }
+
+   public long getCount() {
+      return count;
+   }
+
+   /**
+    * Set the number of measured parses over all threads. The corpus is repeated as often as necessary.
+    *
+    * @param count The number of parses
+    *
+    * @return This replay
+    *
+    * @throws IllegalArgumentException If <code>count</code> is less than 1
+    */
+   public CorpusReplay setCount(long count) throws IllegalArgumentException {
+      if (count < 1)
+         throw new IllegalArgumentException("count can not be less than 1. Was " + count);
+
+      this.count = count;
+      return this;
+   }
+
+   public long getWarmupCount() {
+      return warmupCount;
+   }
+
+   /**
+    * Set the number of parses over all threads, that are done before the measurement.
+    *
+    * @param warmupCount The number of parses
+    *
+    * @return This replay
+    *
+    * @throws IllegalArgumentException If <code>warmupCount</code> is negative
+    */
+   public CorpusReplay setWarmupCount(long warmupCount) throws IllegalArgumentException {
+      if (warmupCount < 0)
+         throw new IllegalArgumentException("warmupCount can not be less than 0. Was " + warmupCount);
+
+      this.warmupCount = warmupCount;
+      return this;
+   }
+
+   private static ArgumentParser commandLineParser() {
+      return ArgumentParserBuilder.begin()
+                                  .buildArgument("corpus")
+                                     .setDescription("The corpus file")
+                                     .build()
+                                  .buildOption('p')
+                                     .setLongKey("parser")
+                                     .setExpectsValue(true)
+                                     .setMandatory(true)
+                                     .setDescription("A class implementing Supplier<ArgumentParser>, that supplies the parser to measure")
+                                     .build()
+                                  .buildOption('t')
+                                     .setLongKey("threads")
+                                     .setExpectsValue(true)
+                                     .setDefaultValue("1")
+                                     .build()
+                                  .buildOption('r')
+                                     .setLongKey("rate")
+                                     .setExpectsValue(true)
+                                     .setDefaultValue("0")
+                                     .setDescription("Parses per second over all threads, 0 is as fast as possible")
+                                     .build()
+                                  .buildOption('n')
+                                     .setLongKey("count")
+                                     .setExpectsValue(true)
+                                     .setDescription("Measured parses, the size of the corpus by default")
+                                     .build()
+                                  .buildOption('w')
+                                     .setLongKey("warmup")
+                                     .setExpectsValue(true)
+                                     .setDefaultValue("0")
+                                     .build()
+                                  .buildOption(ExpectedOption.NO_KEY)
+                                     .setLongKey("help")
+                                     .build()
+                                  .buildAndGet();
+   }
+
+   @SuppressWarnings("unchecked")
+   public static void main(String[] args) throws Exception {
+      ArgumentParser commandLine = commandLineParser();
+      if (commandLine.printUsageIfHelpRequested(System.out, args))
+         return;
+
+      ArgumentModel model;
+      try {
+         model = commandLine.parseArguments(args);
+      } catch (ArgumentParseException e) {
+         System.err.println(e.getMessage());
+         commandLine.printUsage(System.err);
+         System.exit(2);
+         return;
+      }
+
+      String supplier = model.getOptionValue("parser");
+      ArgumentParser parser = ((Supplier<ArgumentParser>) Class.forName(supplier).getConstructor().newInstance()).get();
+      List<String[]> corpus = readCorpus(Paths.get(model.getArgumentValue("corpus")));
+
+      CorpusReplay replay = new CorpusReplay(parser, corpus).setThreads(Integer.parseInt(model.getOptionValue('t')))
+                                                            .setRate(Double.parseDouble(model.getOptionValue('r')))
+                                                            .setWarmupCount(Long.parseLong(model.getOptionValue('w')));
+      if (model.isOptionPresent('n'))
+         replay.setCount(Long.parseLong(model.getOptionValue('n')));
+
+      replay.run().print(System.out);
+   }
+}
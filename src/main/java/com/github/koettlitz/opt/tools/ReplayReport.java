@@ -0,0 +1,139 @@
+package com.github.koettlitz.opt.tools;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import com.github.koettlitz.util.LatencyHistogram;
+
+/**
+ * The results of a {@link CorpusReplay}.
+ * {@link #print(PrintStream)} writes them as <code>key=value</code> lines in a fixed order,
+ * so the reports of different library versions can be compared line by line.
+ */
+public final class ReplayReport {
+   private final String version;
+   private final int threads;
+   private final double rate;
+   private final long elapsedNanos;
+   private final LatencyHistogram latencies;
+   private final long allocatedBytes;
+   private final Map<String, Long> errors;
+
+   ReplayReport(String version,
+                int threads,
+                double rate,
+                long elapsedNanos,
+                LatencyHistogram latencies,
+                long allocatedBytes,
+                Map<String, Long> errors) {
+      this.version = version;
+      this.threads = threads;
+      this.rate = rate;
+      this.elapsedNanos = elapsedNanos;
+      this.latencies = latencies;
+      this.allocatedBytes = allocatedBytes;
+      this.errors = Collections.unmodifiableMap(new TreeMap<>(errors));
+   }
+
+   /**
+    * Get the version of the library, that parsed the corpus.
+    *
+    * @return The implementation version of the jar or <code>"dev"</code> if the classes are not in a jar
+    */
+   public String getVersion() {
+      return version;
+   }
+
+   public int getThreads() {
+      return threads;
+   }
+
+   /**
+    * Get the target rate of the replay.
+    *
+    * @return The parses per second over all threads or 0 if the corpus was replayed as fast as possible
+    */
+   public double getRate() {
+      return rate;
+   }
+
+   public long getParses() {
+      return latencies.getCount();
+   }
+
+   public long getElapsedNanos() {
+      return elapsedNanos;
+   }
+
+   /**
+    * Get the achieved throughput.
+    *
+    * @return The parses per second over all threads
+    */
+   public double getThroughput() {
+      return elapsedNanos == 0 ? 0 : latencies.getCount() * 1e9 / elapsedNanos;
+   }
+
+   /**
+    * Get the latencies of the parses in nanoseconds. In a replay at a fixed rate the latency of a parse
+    * is measured from the time it was scheduled for, so a stalled parse also delays the following ones.
+    *
+    * @return The histogram of the latencies
+    */
+   public LatencyHistogram getLatencies() {
+      return latencies;
+   }
+
+   /**
+    * Get the bytes allocated per parse.
+    *
+    * @return The mean allocation per parse or -1 if the JVM can't measure the allocations of a thread
+    */
+   public double getAllocatedBytesPerParse() {
+      return allocatedBytes < 0 ? -1 : latencies.getCount() == 0 ? 0 : (double) allocatedBytes / latencies.getCount();
+   }
+
+   /**
+    * Get the number of failed parses by the simple name of the exception.
+    *
+    * @return A read-only map sorted by the names of the exceptions
+    */
+   public Map<String, Long> getErrors() {
+      return errors;
+   }
+
+   public long getErrorCount() {
+      long count = 0;
+      for (long n : errors.values())
+         count += n;
+
+      return count;
+   }
+
+   /**
+    * Prints the report.
+    *
+    * @param out The stream to print to
+    */
+   public void print(PrintStream out) {
+      out.printf(Locale.ROOT, "version=%s%n", version);
+      out.printf(Locale.ROOT, "threads=%d%n", threads);
+      out.printf(Locale.ROOT, "rate=%.0f%n", rate);
+      out.printf(Locale.ROOT, "parses=%d%n", getParses());
+      out.printf(Locale.ROOT, "elapsed_ms=%.1f%n", elapsedNanos / 1e6);
+      out.printf(Locale.ROOT, "throughput_per_s=%.0f%n", getThroughput());
+      out.printf(Locale.ROOT, "latency_p50_ns=%d%n", latencies.getValueAtPercentile(50));
+      out.printf(Locale.ROOT, "latency_p99_ns=%d%n", latencies.getValueAtPercentile(99));
+      out.printf(Locale.ROOT, "latency_p999_ns=%d%n", latencies.getValueAtPercentile(99.9));
+      out.printf(Locale.ROOT, "latency_max_ns=%d%n", latencies.getMax());
+      out.printf(Locale.ROOT, "latency_mean_ns=%.1f%n", latencies.getMean());
+      out.printf(Locale.ROOT, "alloc_bytes_per_parse=%.1f%n", getAllocatedBytesPerParse());
+      out.printf(Locale.ROOT, "errors=%d%n", getErrorCount());
+      for (Entry<String, Long> e : errors.entrySet())
+         out.printf(Locale.ROOT, "errors.%s=%d%n", e.getKey(), e.getValue());
+   }
+}
@@ -0,0 +1,79 @@
+package com.github.koettlitz.opt.trace;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends every span as a line to a local file. A line consists of the trace id, span id and parent id in hex,
+ * the name, the start in milliseconds since the epoch, the duration in microseconds and the attributes
+ * as <code>key=value</code>, separated by spaces.
+ * <br>
+ * The lines are buffered and flushed when the root span of a trace is ended, so a trace is written at once.
+ * Spans are only exported for sampled traces, so writing on the ending thread stays cheap.
+ * A span, that can't be written, is dropped and counted instead of failing the traced operation.
+ */
+public class FileSpanExporter implements SpanExporter, AutoCloseable {
+   private final Writer out;
+   private long dropped;
+   private IOException lastError;
+
+   /**
+    * Creates an exporter, that appends to <code>file</code>.
+    *
+    * @param file The trace file
+    *
+    * @throws IOException If the file can't be opened
+    */
+   public FileSpanExporter(Path file) throws IOException {
+      this.out = Files.newBufferedWriter(file,
+                                         StandardCharsets.UTF_8,
+                                         StandardOpenOption.CREATE,
+                                         StandardOpenOption.WRITE,
+                                         StandardOpenOption.APPEND);
+   }
+
+   /**
+    * Writes the span or drops it, if it can't be written.
+    *
+    * @param span The ended span
+    */
+   @Override
+   public synchronized void export(Span span) {
+      try {
+         out.write(span.toString());
+         out.write('\n');
+         if (span.getParentId() == 0)
+            out.flush();
+      } catch (IOException e) {
+         dropped++;
+         lastError = e;
+      }
+   }
+
+   /**
+    * Get the number of spans, that could not be written.
+    *
+    * @return The number of dropped spans
+    */
+   public synchronized long getDroppedCount() {
+      return dropped;
+   }
+
+   /**
+    * Get the last problem writing the file.
+    *
+    * @return The last exception or <code>null</code> if every span was written
+    */
+   public synchronized IOException getLastError() {
+      return lastError;
+   }
+
+   @Override
+   public synchronized void close() throws IOException {
+      out.close();
+   }
+}
@@ -0,0 +1,73 @@
+package com.github.koettlitz.opt.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the last spans in memory, e.g. to be shown by a diagnostic command of a running server.
+ * Exporting a span is a single atomic increment and store, the oldest span is overwritten if the buffer is full.
+ */
+public class RingBufferExporter implements SpanExporter {
+   private final AtomicReferenceArray<Span> spans;
+   private final AtomicLong next = new AtomicLong();
+
+   /**
+    * Creates a buffer for the given number of spans.
+    *
+    * @param capacity The number of spans, that are kept
+    *
+    * @throws IllegalArgumentException If <code>capacity</code> is less than 1
+    */
+   public RingBufferExporter(int capacity) throws IllegalArgumentException {
+      if (capacity < 1)
+         throw new IllegalArgumentException("capacity can not be less than 1. Was " + capacity);
+
+      this.spans = new AtomicReferenceArray<>(capacity);
+   }
+
+   @Override
+   public void export(Span span) {
+      spans.set((int) (next.getAndIncrement() % spans.length()), span);
+   }
+
+   /**
+    * Get the kept spans.
+    *
+    * @return The spans from the oldest to the newest one
+    */
+   public List<Span> getSpans() {
+      long end = next.get();
+      long start = Math.max(0, end - spans.length());
+      List<Span> result = new ArrayList<>((int) (end - start));
+      for (long i = start; i < end; i++) {
+         Span span = spans.get((int) (i % spans.length()));
+         if (span != null)
+            result.add(span);
+      }
+
+      return result;
+   }
+
+   /**
+    * Get the kept spans of a trace.
+    *
+    * @param traceId The id of the trace
+    *
+    * @return The spans of the trace in the order they were ended
+    */
+   public List<Span> getTrace(long traceId) {
+      List<Span> trace = new ArrayList<>();
+      for (Span span : getSpans()) {
+         if (span.getTraceId() == traceId)
+            trace.add(span);
+      }
+
+      return trace;
+   }
+
+   public int getCapacity() {
+      return spans.length();
+   }
+}
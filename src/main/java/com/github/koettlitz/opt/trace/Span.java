@@ -0,0 +1,201 @@
+package com.github.koettlitz.opt.trace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A timed section of work like a parse, a nested command or the execution of a handler.
+ * Spans of the same request share a trace id and link to the span they were started in.
+ * <p>
+ * A span is started by a {@link Tracer}, becomes the current span of the starting thread
+ * and is ended by {@link #close()} on the same thread, which makes the span it was started in current again,
+ * so spans have to be closed in the reverse order they were started (e.g. by try with resources).
+ * A span, that was not sampled, is {@link #NOOP}, whose methods do nothing.
+ */
+public final class Span implements AutoCloseable {
+   /**
+    * The span of requests, that were not sampled.
+    */
+   public static final Span NOOP = new Span();
+
+   private final Tracer tracer;
+   private final long traceId;
+   private final long spanId;
+   private final long parentId;
+   private final Span parent;
+   private final Span previous;
+   private final String name;
+   private final long startMillis;
+   private final long startNanos;
+   private long durationNanos = -1;
+   private List<Object> attributes;
+
+   private Span() {
+      this(null, 0, 0, null, null, "noop");
+   }
+
+   Span(Tracer tracer, long traceId, long spanId, Span parent, Span previous, String name) {
+      this.tracer = tracer;
+      this.traceId = traceId;
+      this.spanId = spanId;
+      this.parentId = parent == null ? 0 : parent.spanId;
+      this.parent = parent;
+      this.previous = previous;
+      this.name = name;
+      this.startMillis = tracer == null ? 0 : System.currentTimeMillis();
+      this.startNanos = tracer == null ? 0 : System.nanoTime();
+   }
+
+   /**
+    * Find out whether this span is recorded.
+    *
+    * @return <code>false</code> if this is {@link #NOOP}
+    */
+   public boolean isSampled() {
+      return this != NOOP;
+   }
+
+   /**
+    * Adds an attribute to this span.
+    *
+    * @param key The name of the attribute
+    * @param value The value of the attribute
+    *
+    * @return This span
+    */
+   public Span setAttribute(String key, String value) {
+      if (this != NOOP)
+         addAttribute(key, value);
+
+      return this;
+   }
+
+   /**
+    * Adds a numeric attribute to this span. Unsampled spans don't box the value.
+    *
+    * @param key The name of the attribute
+    * @param value The value of the attribute
+    *
+    * @return This span
+    */
+   public Span setAttribute(String key, long value) {
+      if (this != NOOP)
+         addAttribute(key, value);
+
+      return this;
+   }
+
+   private synchronized void addAttribute(String key, Object value) {
+      if (attributes == null)
+         attributes = new ArrayList<>(4);
+
+      attributes.add(key);
+      attributes.add(value);
+   }
+
+   /**
+    * Ends this span and exports it. Ending a span twice has no effect.
+    */
+   @Override
+   public void close() {
+      if (this == NOOP) {
+         Tracer.endUnsampled();
+         return;
+      }
+
+      synchronized (this) {
+         if (durationNanos >= 0)
+            return;
+
+         durationNanos = System.nanoTime() - startNanos;
+      }
+
+      Tracer.end(this, previous);
+      tracer.getExporter().export(this);
+   }
+
+   Tracer getTracer() {
+      return tracer;
+   }
+
+   public long getTraceId() {
+      return traceId;
+   }
+
+   public long getSpanId() {
+      return spanId;
+   }
+
+   /**
+    * Get the id of the span this span was started in.
+    *
+    * @return The id of the parent or 0 if this span is the root of its trace
+    */
+   public long getParentId() {
+      return parentId;
+   }
+
+   /**
+    * Get the span this span was started in.
+    *
+    * @return The parent, {@link #NOOP} for {@link #NOOP} or <code>null</code> if this span is the root of its trace
+    */
+   public Span getParent() {
+      return this == NOOP ? NOOP : parent;
+   }
+
+   public String getName() {
+      return name;
+   }
+
+   /**
+    * Get the time this span was started at.
+    *
+    * @return The start in milliseconds since the epoch
+    */
+   public long getStartMillis() {
+      return startMillis;
+   }
+
+   /**
+    * Get the duration of this span.
+    *
+    * @return The duration in nanoseconds or -1 if this span was not ended yet
+    */
+   public synchronized long getDurationNanos() {
+      return durationNanos;
+   }
+
+   /**
+    * Get the attributes of this span.
+    *
+    * @return The names and values of the attributes in turns
+    */
+   public synchronized List<Object> getAttributes() {
+      return attributes == null ? Collections.emptyList() : new ArrayList<>(attributes);
+   }
+
+   @Override
+   public String toString() {
+      StringBuilder builder = new StringBuilder();
+      builder.append(Long.toHexString(traceId))
+             .append(' ')
+             .append(Long.toHexString(spanId))
+             .append(' ')
+             .append(Long.toHexString(parentId))
+             .append(' ')
+             .append(name)
+             .append(' ')
+             .append(startMillis)
+             .append(' ')
+             .append(getDurationNanos() / 1000)
+             .append("us");
+
+      List<Object> attributes = getAttributes();
+      for (int i = 0; i < attributes.size(); i += 2)
+         builder.append(' ').append(attributes.get(i)).append('=').append(attributes.get(i + 1));
+
+      return builder.toString();
+   }
+}
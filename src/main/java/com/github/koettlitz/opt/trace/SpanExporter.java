@@ -0,0 +1,18 @@
+package com.github.koettlitz.opt.trace;
+
+/**
+ * Receives the ended spans of a {@link Tracer}. An exporter is called on the thread, that ended the span,
+ * so it should be quick and has to be thread safe.
+ *
+ * @see RingBufferExporter
+ * @see FileSpanExporter
+ */
+@FunctionalInterface
+public interface SpanExporter {
+   /**
+    * Exports an ended span.
+    *
+    * @param span The sampled span
+    */
+   void export(Span span);
+}
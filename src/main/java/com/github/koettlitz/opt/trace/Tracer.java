@@ -0,0 +1,152 @@
+package com.github.koettlitz.opt.trace;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Starts {@link Span}s and hands the ended spans to an exporter.
+ * <p>
+ * Whether a trace is recorded is decided once at its root span by the sample rate,
+ * its children follow that decision. A trace, that is not sampled, only consists of {@link Span#NOOP},
+ * so it costs a thread local lookup per span and doesn't allocate anything.
+ * <p>
+ * Every thread has a current span, that is the parent of the spans started by {@link #start(String)}.
+ * To continue a trace on another thread, the current span is passed on and given to {@link #start(String, Span)}.
+ */
+public final class Tracer {
+   private static final ThreadLocal<Context> CONTEXT = new ThreadLocal<Context>() {
+      @Override
+      protected Context initialValue() {
+         return new Context();
+      }
+   };
+
+   private final double sampleRate;
+   private final SpanExporter exporter;
+
+   /**
+    * Creates a new tracer.
+    *
+    * @param sampleRate The fraction of traces, that are recorded, between 0 and 1
+    * @param exporter The receiver of the ended spans
+    *
+    * @throws IllegalArgumentException If <code>sampleRate</code> is not between 0 and 1
+    * @throws NullPointerException If <code>exporter</code> is <code>null</code>
+    */
+   public Tracer(double sampleRate, SpanExporter exporter) throws IllegalArgumentException, NullPointerException {
+      if (!(sampleRate >= 0 && sampleRate <= 1))
+         throw new IllegalArgumentException("sampleRate has to be between 0 and 1. Was " + sampleRate);
+
+      this.sampleRate = sampleRate;
+      this.exporter = Objects.requireNonNull(exporter);
+   }
+
+   /**
+    * Get the current span of this thread.
+    *
+    * @return The innermost span, that was started and not ended on this thread, {@link Span#NOOP} if it was not sampled
+    * or <code>null</code> if there is none
+    */
+   public static Span current() {
+      return CONTEXT.get().current;
+   }
+
+   /**
+    * Starts a span in the current span of this thread, which is the root of a new trace if there is none.
+    *
+    * @param name The name of the span
+    *
+    * @return The new current span
+    */
+   public Span start(String name) {
+      return start(name, current());
+   }
+
+   /**
+    * Starts a span in the given parent, e.g. a span passed on from another thread.
+    *
+    * @param name The name of the span
+    * @param parent The parent span or <code>null</code> to start a new trace
+    *
+    * @return The new current span
+    */
+   public Span start(String name, Span parent) {
+      Context context = CONTEXT.get();
+      boolean sampled = parent == null ? ThreadLocalRandom.current().nextDouble() < sampleRate : parent.isSampled();
+      if (!sampled)
+         return startUnsampled(context);
+
+      long traceId = parent == null ? nextId() : parent.getTraceId();
+      Span span = new Span(this, traceId, nextId(), parent, context.current, name);
+      context.current = span;
+      return span;
+   }
+
+   /**
+    * Starts a span in the current span of this thread with the tracer of the current span.
+    * Code, that has no tracer of its own, continues a trace with this method.
+    *
+    * @param name The name of the span
+    *
+    * @return The new current span or <code>null</code> if there is no current span
+    */
+   public static Span startChild(String name) {
+      Context context = CONTEXT.get();
+      Span current = context.current;
+      if (current == null)
+         return null;
+
+      return current.isSampled() ? current.getTracer().start(name, current) : startUnsampled(context);
+   }
+
+   private static Span startUnsampled(Context context) {
+      if (context.unsampled++ == 0)
+         context.beforeUnsampled = context.current;
+
+      context.current = Span.NOOP;
+      return Span.NOOP;
+   }
+
+   private static long nextId() {
+      long id;
+      do {
+         id = ThreadLocalRandom.current().nextLong();
+      } while (id == 0);
+
+      return id;
+   }
+
+   static void end(Span span, Span previous) {
+      Context context = CONTEXT.get();
+      if (context.current == span)
+         context.current = previous;
+   }
+
+   static void endUnsampled() {
+      Context context = CONTEXT.get();
+      if (context.unsampled > 0 && --context.unsampled == 0) {
+         context.current = context.beforeUnsampled;
+         context.beforeUnsampled = null;
+      }
+   }
+
+   public double getSampleRate() {
+      return sampleRate;
+   }
+
+   public SpanExporter getExporter() {
+      return exporter;
+   }
+
+   private static final class Context {
+      private Span current;
+      /**
+       * The number of unsampled spans, that are open.
+       */
+      private int unsampled;
+      /**
+       * The current span before the outermost unsampled span was started.
+       */
+      private Span beforeUnsampled;
+   }
+}
@@ -0,0 +1,194 @@
+package com.github.koettlitz.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A {@link PeekableIterator} that expands argument files (also known as response files).
+ * Every token of the wrapped iterator that starts with an <code>@</code> is replaced by the tokens
+ * read from the file it names, e.g. <code>@files.txt</code> is replaced by the contents of <code>files.txt</code>.
+ * Argument files can name other argument files, a token starting with <code>@@</code> is passed on
+ * with the first <code>@</code> removed.
+ * <br>
+ * The files are read lazily with a {@link Tokenizer}, so only the next token and a read buffer
+ * per open file are held in memory, regardless of the file size. With a maximum token length
+ * a longer token of a file is cut after <code>maxTokenLength + 1</code> chars and passed on as it is,
+ * even if it starts with an <code>@</code>, so the caller detects it without the whole token being read.
+ * Relative paths are resolved against the given working directory or the current working directory.
+ * <br>
+ * Because an iterator can not throw checked exceptions, reading errors are thrown as {@link UncheckedIOException}.
+ */
+public class ArgFileIterator implements PeekableIterator<String>, Closeable {
+    /** The maximal number of argument files, that can be open at the same time. */
+    public static final int MAX_DEPTH = 32;
+
+    private final PeekableIterator<String> source;
+    private final Path workingDirectory;
+    private final int maxTokenLength;
+    private final Deque<ArgFile> files = new ArrayDeque<>();
+    private String next;
+
+    /**
+     * Creates a new ArgFileIterator which expands the argument files of the <code>source</code> iterator.
+     *
+     * @param source The iterator over the given arguments
+     *
+     * @throws NullPointerException if <code>source</code> is <code>null</code>
+     */
+    public ArgFileIterator(PeekableIterator<String> source) throws NullPointerException {
+        this(source, null);
+    }
+
+    /**
+     * Creates a new ArgFileIterator which expands the argument files of the <code>source</code> iterator
+     * and resolves their relative paths against <code>workingDirectory</code>.
+     *
+     * @param source The iterator over the given arguments
+     * @param workingDirectory The directory relative paths are resolved against
+     *                         or <code>null</code> for the current working directory
+     *
+     * @throws NullPointerException if <code>source</code> is <code>null</code>
+     */
+    public ArgFileIterator(PeekableIterator<String> source, Path workingDirectory) throws NullPointerException {
+        this(source, workingDirectory, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new ArgFileIterator which expands the argument files of the <code>source</code> iterator,
+     * resolves their relative paths against <code>workingDirectory</code>
+     * and cuts the tokens of the files, that are longer than <code>maxTokenLength</code>.
+     *
+     * @param source The iterator over the given arguments
+     * @param workingDirectory The directory relative paths are resolved against
+     *                         or <code>null</code> for the current working directory
+     * @param maxTokenLength The maximum length of a token of an argument file
+     *
+     * @throws NullPointerException if <code>source</code> is <code>null</code>
+     * @throws IllegalArgumentException if <code>maxTokenLength</code> is negative
+     */
+    public ArgFileIterator(PeekableIterator<String> source,
+                           Path workingDirectory,
+                           int maxTokenLength) throws NullPointerException, IllegalArgumentException {
+        if (maxTokenLength < 0)
+            throw new IllegalArgumentException("maxTokenLength can not be less than 0. Was " + maxTokenLength);
+
+        this.source = Objects.requireNonNull(source);
+        this.workingDirectory = workingDirectory;
+        this.maxTokenLength = maxTokenLength;
+    }
+
+    @Override
+    public boolean hasNext() throws UncheckedIOException {
+        return fill();
+    }
+
+    @Override
+    public String peek() throws NoSuchElementException, UncheckedIOException {
+        if (!fill())
+            throw new NoSuchElementException();
+
+        return next;
+    }
+
+    @Override
+    public String next() throws NoSuchElementException, UncheckedIOException {
+        String result = peek();
+        next = null;
+        return result;
+    }
+
+    /**
+     * Closes all argument files, that are currently open.
+     */
+    @Override
+    public void close() {
+        while (!files.isEmpty())
+            files.pop().close();
+
+        next = null;
+    }
+
+    private boolean fill() throws UncheckedIOException {
+        while (next == null) {
+            String token;
+            if (!files.isEmpty()) {
+                token = files.peek().nextToken();
+                if (token == null) {
+                    files.pop().close();
+                    continue;
+                }
+            } else if (source.hasNext()) {
+                token = source.next();
+            } else {
+                return false;
+            }
+
+            if (token.length() > 1 && token.charAt(0) == '@' && token.length() <= maxTokenLength) {
+                if (token.charAt(1) == '@')
+                    next = token.substring(1);
+                else
+                    open(token.substring(1));
+            } else {
+                next = token;
+            }
+        }
+
+        return true;
+    }
+
+    private void open(String fileName) throws UncheckedIOException {
+        Path path = workingDirectory == null ? Paths.get(fileName) : workingDirectory.resolve(fileName);
+        path = path.toAbsolutePath().normalize();
+        if (files.size() >= MAX_DEPTH)
+            throw new UncheckedIOException(new IOException("Argument files nested deeper than " + MAX_DEPTH + ": " + path));
+
+        for (ArgFile file : files) {
+            if (file.path.equals(path))
+                throw new UncheckedIOException(new IOException("Argument file includes itself: " + path));
+        }
+
+        try {
+            files.push(new ArgFile(path, Files.newBufferedReader(path, StandardCharsets.UTF_8), maxTokenLength));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open argument file " + path, e);
+        }
+    }
+
+    private static class ArgFile {
+        private final Path path;
+        private final BufferedReader reader;
+        private final Tokenizer tokenizer;
+
+        private ArgFile(Path path, BufferedReader reader, int maxTokenLength) {
+            this.path = path;
+            this.reader = reader;
+            this.tokenizer = new Tokenizer(reader, maxTokenLength);
+        }
+
+        private String nextToken() throws UncheckedIOException {
+            try {
+                return tokenizer.nextToken();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read argument file " + path, e);
+            }
+        }
+
+        private void close() {
+            try {
+                reader.close();
+            } catch (IOException ignored) {
+                // nothing left to read
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.koettlitz.util;
+
+/**
+ * Static helper methods for bit sets, that are stored in <code>long</code> arrays.
+ * Bit <code>i</code> is stored in word <code>i / 64</code> at position <code>i % 64</code>.
+ * Masks, that are checked against a bit set, are stored sparsely (see {@link #sparse(long[])})
+ * and must not have bits beyond the length of the bit set.
+ */
+public final class Bits {
+
+    private Bits() {
+    }
+
+    /**
+     * Creates a new bit set, that is able to hold the bits <code>0</code> to <code>bitCount - 1</code>.
+     *
+     * @param bitCount The number of bits
+     *
+     * @return A new bit set with no bits set
+     */
+    public static long[] create(int bitCount) {
+        return new long[(bitCount + 63) >>> 6];
+    }
+
+    public static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    public static boolean get(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public static void clear(long[] bits) {
+        for (int i = 0; i < bits.length; i++)
+            bits[i] = 0;
+    }
+
+    /**
+     * Compresses the given bit set into a sparse mask, that holds only the words with bits set
+     * as pairs of the index of the word and the word. Checking a bit set against a sparse mask
+     * visits only these words, however many bits the bit set has room for.
+     *
+     * @param bits The bit set
+     *
+     * @return A new sparse mask with the same bits as <code>bits</code>
+     */
+    public static long[] sparse(long[] bits) {
+        int words = 0;
+        for (long word : bits) {
+            if (word != 0)
+                words++;
+        }
+
+        long[] mask = new long[words * 2];
+        for (int i = 0, n = 0; i < bits.length; i++) {
+            if (bits[i] != 0) {
+                mask[n++] = i;
+                mask[n++] = bits[i];
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Checks whether all bits of <code>mask</code> are set in <code>bits</code>.
+     *
+     * @param bits The bits to check
+     * @param mask The sparse mask of the bits that have to be set
+     *
+     * @return <code>true</code> if <code>bits</code> contains all bits of <code>mask</code>
+     *
+     * @see #sparse(long[])
+     */
+    public static boolean containsAll(long[] bits, long[] mask) {
+        for (int i = 0; i < mask.length; i += 2) {
+            long word = mask[i + 1];
+            if ((bits[(int) mask[i]] & word) != word)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether any bit of <code>mask</code> is set in <code>bits</code>.
+     *
+     * @param bits The bits to check
+     * @param mask The sparse mask of the bits to look for
+     *
+     * @return <code>true</code> if <code>bits</code> and <code>mask</code> have at least one bit in common
+     *
+     * @see #sparse(long[])
+     */
+    public static boolean intersects(long[] bits, long[] mask) {
+        for (int i = 0; i < mask.length; i += 2) {
+            if ((bits[(int) mask[i]] & mask[i + 1]) != 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Counts the bits, that are set in both <code>bits</code> and <code>mask</code>.
+     *
+     * @param bits The bits to check
+     * @param mask The sparse mask of the bits to count
+     *
+     * @return The number of bits <code>bits</code> and <code>mask</code> have in common
+     *
+     * @see #sparse(long[])
+     */
+    public static int intersectionCount(long[] bits, long[] mask) {
+        int count = 0;
+        for (int i = 0; i < mask.length; i += 2)
+            count += Long.bitCount(bits[(int) mask[i]] & mask[i + 1]);
+
+        return count;
+    }
+
+    /**
+     * Get the index of the next bit, that is set, starting at <code>from</code>.
+     *
+     * @param bits The bits to search
+     * @param from The index to start the search at
+     *
+     * @return The index of the next set bit or <code>-1</code> if there is none
+     */
+    public static int nextSetBit(long[] bits, int from) {
+        int word = from >>> 6;
+        if (word >= bits.length)
+            return -1;
+
+        long current = bits[word] & (-1L << from);
+        while (current == 0) {
+            if (++word == bits.length)
+                return -1;
+
+            current = bits[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(current);
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.koettlitz.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * An append only list, that stores its elements in chunks of arrays.
+ * The first chunk grows like an <code>ArrayList</code> until it reaches the chunk size,
+ * every further chunk is allocated with the full chunk size. So growing the list never copies
+ * more than one chunk and large lists don't need one huge contiguous array.
+ * <br>
+ * Elements can be accessed by index in constant time and the {@link Spliterator} of this list
+ * splits at chunk boundaries, so streams over the list can be processed in parallel efficiently.
+ *
+ * @param <E> The element type
+ */
+public class ChunkedList<E> extends AbstractList<E> implements RandomAccess {
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private Object[][] chunks = new Object[1][];
+    private int size;
+
+    @Override
+    public boolean add(E element) {
+        int chunk = size >>> CHUNK_SHIFT;
+        int offset = size & CHUNK_MASK;
+        if (chunk == 0) {
+            growFirstChunk();
+        } else {
+            if (chunk == chunks.length)
+                chunks = Arrays.copyOf(chunks, chunks.length * 2);
+            if (chunks[chunk] == null)
+                chunks[chunk] = new Object[CHUNK_SIZE];
+        }
+
+        chunks[chunk][offset] = element;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    private void growFirstChunk() {
+        Object[] first = chunks[0];
+        if (first == null)
+            chunks[0] = new Object[INITIAL_CAPACITY];
+        else if (size == first.length)
+            chunks[0] = Arrays.copyOf(first, Math.min(first.length * 2, CHUNK_SIZE));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+        return (E) chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all elements. The allocated chunks are kept to be reused.
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i += CHUNK_SIZE)
+            Arrays.fill(chunks[i >>> CHUNK_SHIFT], 0, Math.min(size - i, CHUNK_SIZE), null);
+
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return new ChunkSpliterator(0, size, modCount);
+    }
+
+    private class ChunkSpliterator implements Spliterator<E> {
+        private final int expectedModCount;
+        private int index;
+        private final int fence;
+
+        private ChunkSpliterator(int origin, int fence, int expectedModCount) {
+            this.index = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int remaining = fence - index;
+            if (remaining < 2)
+                return null;
+
+            int mid = index + (remaining >>> 1);
+            // Prefer splitting at a chunk boundary, so each half walks whole chunks
+            if (remaining > CHUNK_SIZE)
+                mid &= ~CHUNK_MASK;
+
+            if (mid <= index)
+                return null;
+
+            Spliterator<E> prefix = new ChunkSpliterator(index, mid, expectedModCount);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            if (index >= fence)
+                return false;
+
+            checkForComodification();
+            int i = index++;
+            action.accept((E) chunks[i >>> CHUNK_SHIFT][i & CHUNK_MASK]);
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            checkForComodification();
+            int i = index;
+            while (i < fence) {
+                Object[] chunk = chunks[i >>> CHUNK_SHIFT];
+                int end = Math.min(fence - (i & ~CHUNK_MASK), CHUNK_SIZE);
+                for (int offset = i & CHUNK_MASK; offset < end; offset++)
+                    action.accept((E) chunk[offset]);
+
+                i = (i & ~CHUNK_MASK) + end;
+            }
+            index = fence;
+            checkForComodification();
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+}
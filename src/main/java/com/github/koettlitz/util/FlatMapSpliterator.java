@@ -0,0 +1,180 @@
+package com.github.koettlitz.util;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A {@link Spliterator}, that concatenates the streams, which a function maps the elements of a source to,
+ * like <code>Stream.flatMap</code>, but uses the spliterators of those streams directly.
+ * <code>flatMap</code> consumes each mapped stream sequentially, so a single large stream, e.g. of one glob pattern,
+ * is never processed in parallel. This spliterator splits the remaining source elements first,
+ * then hands off the stream, that is consumed, and finally splits within the spliterator of the last stream,
+ * so a parallel stream spreads the elements of a single mapped stream over multiple cores too.
+ * <br>
+ * Each mapped stream is closed as soon as it is consumed unless it was split, the streams, that are still open,
+ * are closed when the stream returned by {@link #stream(Spliterator, Function)} is closed.
+ *
+ * @param <T> The element type of the source
+ * @param <R> The element type of the mapped streams
+ */
+public final class FlatMapSpliterator<T, R> implements Spliterator<R> {
+    private final Spliterator<T> source;
+    private final Function<? super T, ? extends Stream<R>> mapper;
+    private final Set<Stream<R>> openStreams;
+    private Stream<R> currentStream;
+    private Spliterator<R> current;
+    private boolean currentSplit;
+
+    private FlatMapSpliterator(Spliterator<T> source, Function<? super T, ? extends Stream<R>> mapper,
+                               Set<Stream<R>> openStreams, Stream<R> currentStream, Spliterator<R> current) {
+        this.source = source;
+        this.mapper = mapper;
+        this.openStreams = openStreams;
+        this.currentStream = currentStream;
+        this.current = current;
+    }
+
+    /**
+     * Creates a sequential stream over the elements of the streams, that <code>mapper</code> maps the elements
+     * of <code>source</code> to, in their order. The stream can be turned into a parallel stream
+     * by calling <code>parallel()</code> and has to be closed to close the mapped streams, that are still open.
+     *
+     * @param source The spliterator over the source elements
+     * @param mapper The function, that maps a source element to a stream, which may be <code>null</code> if it is empty
+     * @param <T> The element type of the source
+     * @param <R> The element type of the mapped streams
+     *
+     * @return The stream over the concatenated elements
+     */
+    public static <T, R> Stream<R> stream(Spliterator<T> source, Function<? super T, ? extends Stream<R>> mapper) {
+        FlatMapSpliterator<T, R> spliterator = new FlatMapSpliterator<>(Objects.requireNonNull(source),
+                                                                        Objects.requireNonNull(mapper),
+                                                                        ConcurrentHashMap.newKeySet(), null, null);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::closeAll);
+    }
+
+    @Override
+    public Spliterator<R> trySplit() {
+        if (current != null) {
+            if (source.estimateSize() == 0)
+                return splitCurrent();
+
+            // The consumed stream precedes the remaining source elements, so it is the prefix
+            FlatMapSpliterator<T, R> prefix = new FlatMapSpliterator<>(Spliterators.emptySpliterator(), mapper,
+                                                                       openStreams, currentStream, current);
+            prefix.currentSplit = currentSplit;
+            currentStream = null;
+            current = null;
+            return prefix;
+        }
+
+        Spliterator<T> prefix = source.trySplit();
+        if (prefix != null)
+            return new FlatMapSpliterator<>(prefix, mapper, openStreams, null, null);
+
+        while (current == null) {
+            if (!source.tryAdvance(this::open))
+                return null;
+        }
+
+        return splitCurrent();
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super R> action) {
+        Objects.requireNonNull(action);
+        while (true) {
+            if (current != null) {
+                if (current.tryAdvance(action))
+                    return true;
+
+                closeCurrent();
+            }
+            if (!source.tryAdvance(this::open))
+                return false;
+        }
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super R> action) {
+        Objects.requireNonNull(action);
+        if (current != null) {
+            current.forEachRemaining(action);
+            closeCurrent();
+        }
+        source.forEachRemaining(element -> {
+            open(element);
+            if (current != null) {
+                current.forEachRemaining(action);
+                closeCurrent();
+            }
+        });
+    }
+
+    @Override
+    public long estimateSize() {
+        return current == null && source.estimateSize() == 0 ? 0 : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return source.characteristics() & Spliterator.ORDERED;
+    }
+
+    private void open(T element) {
+        Stream<R> stream = mapper.apply(element);
+        if (stream == null)
+            return;
+
+        openStreams.add(stream);
+        currentStream = stream;
+        // The spliterator of a pipeline only splits if the pipeline is parallel, it's consumed sequentially otherwise
+        current = stream.parallel().spliterator();
+    }
+
+    private Spliterator<R> splitCurrent() {
+        Spliterator<R> prefix = current.trySplit();
+        if (prefix != null)
+            currentSplit = true;
+
+        return prefix;
+    }
+
+    private void closeCurrent() {
+        Stream<R> stream = currentStream;
+        boolean split = currentSplit;
+        currentStream = null;
+        current = null;
+        currentSplit = false;
+        // The prefixes split off the stream may still be consumed by other threads, so it's closed with the rest
+        if (split)
+            return;
+
+        openStreams.remove(stream);
+        stream.close();
+    }
+
+    private void closeAll() {
+        RuntimeException failure = null;
+        for (Stream<R> stream : openStreams) {
+            openStreams.remove(stream);
+            try {
+                stream.close();
+            } catch (RuntimeException e) {
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e);
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+}
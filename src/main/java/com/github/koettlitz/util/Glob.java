@@ -0,0 +1,133 @@
+package com.github.koettlitz.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Expands glob patterns like <code>logs/*.gz</code> or <code>src/**&#47;*.java</code> to the matching paths
+ * in the process instead of in the shell, so millions of matches never have to fit into the argument list.
+ * <p>
+ * The leading directories of a pattern without any of the glob chars <code>*?[{</code> are the base directory,
+ * the rest is matched as described by {@link java.nio.file.FileSystem#getPathMatcher(String)}.
+ * A pattern, that matches within its base directory only, reads that directory by a {@link DirectoryStream},
+ * any other pattern walks the tree below the base directory by {@link Files#walk(Path, int, java.nio.file.FileVisitOption...)}
+ * as deep as the pattern reaches. In both cases the matches are streamed while the directories are read,
+ * nothing is collected first.
+ */
+public final class Glob {
+
+    private Glob() {
+    }
+
+    /**
+     * Finds out whether the given <code>pattern</code> contains any glob chars.
+     *
+     * @param pattern The pattern
+     *
+     * @return <code>true</code> if the pattern has to be expanded, <code>false</code> if it is a plain path
+     */
+    public static boolean isPattern(String pattern) {
+        return firstGlobChar(pattern) >= 0;
+    }
+
+    /**
+     * Expands the given <code>pattern</code> lazily. The returned stream reads the directories while it is consumed
+     * and has to be closed to release them, e.g. by try with resources.
+     * It can be turned into a parallel stream by calling <code>parallel()</code>.
+     *
+     * @param pattern The glob pattern with <code>/</code> as separator
+     *
+     * @return A stream of the matching paths, the path itself if <code>pattern</code> is no pattern
+     * or an empty stream if the base directory doesn't exist
+     *
+     * @throws UncheckedIOException If the base directory can't be read.
+     * Directories, that can't be read while the stream is consumed, throw an <code>UncheckedIOException</code> too.
+     */
+    public static Stream<Path> expand(String pattern) throws UncheckedIOException {
+        return expand(Paths.get(""), pattern);
+    }
+
+    /**
+     * Expands the given <code>pattern</code> lazily like {@link #expand(String)},
+     * but resolves a relative pattern against <code>workingDirectory</code> instead of the current working directory.
+     *
+     * @param workingDirectory The directory a relative pattern is resolved against
+     * @param pattern The glob pattern with <code>/</code> as separator
+     *
+     * @return A stream of the matching paths, which are resolved against <code>workingDirectory</code>,
+     * the resolved path itself if <code>pattern</code> is no pattern
+     * or an empty stream if the base directory doesn't exist
+     *
+     * @throws UncheckedIOException If the base directory can't be read.
+     * Directories, that can't be read while the stream is consumed, throw an <code>UncheckedIOException</code> too.
+     */
+    public static Stream<Path> expand(Path workingDirectory, String pattern) throws UncheckedIOException {
+        int globChar = firstGlobChar(pattern);
+        if (globChar < 0)
+            return Stream.of(workingDirectory.resolve(pattern));
+
+        int baseEnd = pattern.lastIndexOf('/', globChar);
+        Path base = workingDirectory.resolve(baseEnd < 0 ? "" : baseEnd == 0 ? "/" : pattern.substring(0, baseEnd));
+        String rest = pattern.substring(baseEnd + 1);
+        if (!Files.isDirectory(base))
+            return Stream.empty();
+
+        try {
+            if (rest.indexOf('/') < 0 && !rest.contains("**"))
+                return list(base, rest);
+
+            return walk(base, rest);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Stream<Path> list(Path base, String glob) throws IOException {
+        DirectoryStream<Path> directory = Files.newDirectoryStream(base, glob);
+        return StreamSupport.stream(directory.spliterator(), false)
+                            .onClose(() -> {
+                                try {
+                                    directory.close();
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            });
+    }
+
+    private static Stream<Path> walk(Path base, String glob) throws IOException {
+        int depth = glob.contains("**") ? Integer.MAX_VALUE : count(glob, '/') + 1;
+        PathMatcher matcher = base.getFileSystem().getPathMatcher("glob:" + glob);
+        return Files.walk(base, depth)
+                    .filter(path -> !path.equals(base) && matcher.matches(base.relativize(path)));
+    }
+
+    private static int firstGlobChar(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            switch (pattern.charAt(i)) {
+                case '*':
+                case '?':
+                case '[':
+                case '{':
+                    return i;
+                default:
+            }
+        }
+
+        return -1;
+    }
+
+    private static int count(String string, char c) {
+        int count = 0;
+        for (int i = string.indexOf(c); i >= 0; i = string.indexOf(c, i + 1))
+            count++;
+
+        return count;
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.koettlitz.util;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of non-negative values like latencies in nanoseconds with logarithmic buckets.
+ * Every power of two is split into {@value #SUB_BUCKETS} linear sub-buckets, so a percentile
+ * is reported with a relative error below 1/{@value #SUB_BUCKETS} (about 3%) over the whole range of long,
+ * while the histogram has a fixed size of about 16 KiB.
+ * <br>
+ * Recording a value doesn't allocate. A histogram is not thread safe:
+ * Every thread records into its own histogram, that are combined with {@link #add(LatencyHistogram)}.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * Records a value.
+     *
+     * @param value The value
+     *
+     * @throws IllegalArgumentException If <code>value</code> is negative
+     */
+    public void record(long value) throws IllegalArgumentException {
+        if (value < 0)
+            throw new IllegalArgumentException("value can not be less than 0. Was " + value);
+
+        counts[bucketOf(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds all values recorded by <code>other</code> to this histogram.
+     *
+     * @param other The histogram to add
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++)
+            counts[i] += other.counts[i];
+
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+    }
+
+    /**
+     * Values below {@value #SUB_BUCKETS} have a bucket of their own. Above, the position of the highest bit
+     * selects the power of two and the following bits select the sub-bucket.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Get the highest value, that falls into the bucket.
+     */
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        long highest = lowest + (1L << shift) - 1;
+        return highest < 0 ? Long.MAX_VALUE : highest;
+    }
+
+    /**
+     * Get the value at the given percentile, e.g. 99.9 for p999.
+     * The result is the upper bound of the bucket of the value, but never more than the maximum.
+     *
+     * @param percentile The percentile between 0 and 100
+     *
+     * @return The value, that the given percentage of the values is less than or equal to,
+     * or 0 if no values were recorded
+     *
+     * @throws IllegalArgumentException If <code>percentile</code> is not between 0 and 100
+     */
+    public long getValueAtPercentile(double percentile) throws IllegalArgumentException {
+        if (!(percentile >= 0 && percentile <= 100))
+            throw new IllegalArgumentException("percentile has to be between 0 and 100. Was " + percentile);
+
+        if (count == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(highestValueOf(i), max);
+        }
+
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the smallest recorded value.
+     *
+     * @return The minimum or 0 if no values were recorded
+     */
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * Get the largest recorded value.
+     *
+     * @return The maximum or 0 if no values were recorded
+     */
+    public long getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    /**
+     * Get the exact mean of the recorded values.
+     *
+     * @return The mean or 0 if no values were recorded
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+}
@@ -0,0 +1,264 @@
+package com.github.koettlitz.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Objects;
+
+/**
+ * Splits the characters of a {@link Reader} into command line tokens, one token at a time.
+ * Tokens are separated by whitespace. Single and double quotes group characters (including whitespace)
+ * into one token and a backslash escapes the following character. Like in a POSIX shell, a backslash is kept
+ * inside single quotes and inside double quotes it only escapes <code>$ ` " \</code> and a line break,
+ * which is removed together with the backslash, so <code>"C:\dir"</code> is <code>C:\dir</code>.
+ * A <code>#</code> at the beginning of a token starts a comment, that lasts until the end of the line.
+ * Like in bash, <code>$'...'</code> quotes characters with the escapes of C, e.g. <code>$'a\nb'</code> is a line break
+ * between <code>a</code> and <code>b</code>. The escapes <code>\n \t \r \a \b \e \f \v \\ \' \"</code>,
+ * <code>\xHH</code> and <code>&#92;uHHHH</code> are known, any other backslash is kept.
+ * <br>
+ * Only the token that is currently read is held in memory, so the input can be of any size.
+ * A tokenizer with a maximum token length cuts a longer token after <code>maxTokenLength + 1</code> chars
+ * and ends there, i.e. the cut token is the last one and the rest of the input is never read.
+ * So a caller, that checks the length of the tokens, detects the too long token,
+ * even if the input is a single endless token.
+ */
+public class Tokenizer {
+    private static final int EOF = -1;
+    private static final int NONE = -2;
+
+    private final Reader reader;
+    private final int maxTokenLength;
+    private final StringBuilder token = new StringBuilder();
+    private int pushedBack = NONE;
+    private boolean cut;
+
+    /**
+     * Creates a new tokenizer, that reads its tokens from the given <code>reader</code>.
+     * The reader should be buffered, because it is read character by character.
+     *
+     * @param reader The reader to read the tokens from
+     *
+     * @throws NullPointerException if <code>reader</code> is <code>null</code>
+     */
+    public Tokenizer(Reader reader) throws NullPointerException {
+        this(reader, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new tokenizer, that reads its tokens from the given <code>reader</code>
+     * and cuts a token longer than <code>maxTokenLength</code> as the last one.
+     * The reader should be buffered, because it is read character by character.
+     *
+     * @param reader The reader to read the tokens from
+     * @param maxTokenLength The maximum length of a token
+     *
+     * @throws NullPointerException if <code>reader</code> is <code>null</code>
+     * @throws IllegalArgumentException if <code>maxTokenLength</code> is negative
+     */
+    public Tokenizer(Reader reader, int maxTokenLength) throws NullPointerException, IllegalArgumentException {
+        if (maxTokenLength < 0)
+            throw new IllegalArgumentException("maxTokenLength can not be less than 0. Was " + maxTokenLength);
+
+        this.reader = Objects.requireNonNull(reader);
+        this.maxTokenLength = maxTokenLength;
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return The next token, that is longer than the maximum token length if it was cut,
+     * or <code>null</code> if the end of the input or a cut token is reached.
+     *
+     * @throws IOException If reading from the underlying reader fails or the input ends within quotes
+     */
+    public String nextToken() throws IOException {
+        if (cut)
+            return null;
+
+        int c = skipWhitespaceAndComments();
+        if (c == EOF)
+            return null;
+
+        token.setLength(0);
+        while (c != EOF && !Character.isWhitespace(c) && !cut) {
+            if (c == '\'' || c == '"') {
+                readQuoted((char) c);
+            } else if (c == '\\') {
+                readEscaped();
+            } else if (c == '$') {
+                int next = read();
+                if (next == '\'')
+                    readAnsiQuoted();
+                else
+                    append('$');
+                pushedBack = next == '\'' ? NONE : next;
+            } else {
+                append((char) c);
+            }
+
+            if (!cut)
+                c = read();
+        }
+
+        return token.toString();
+    }
+
+    private int read() throws IOException {
+        int c = pushedBack;
+        if (c == NONE)
+            return reader.read();
+
+        pushedBack = NONE;
+        return c;
+    }
+
+    private int skipWhitespaceAndComments() throws IOException {
+        int c = read();
+        while (c != EOF) {
+            if (c == '#') {
+                do {
+                    c = read();
+                } while (c != EOF && c != '\n' && c != '\r');
+            } else if (!Character.isWhitespace(c)) {
+                return c;
+            } else {
+                c = read();
+            }
+        }
+
+        return EOF;
+    }
+
+    private void readQuoted(char quote) throws IOException {
+        int c = read();
+        while (c != quote && !cut) {
+            if (c == EOF)
+                throw new IOException("Missing closing quote " + quote + " after " + token);
+
+            if (c == '\\' && quote == '"')
+                readEscapedInDoubleQuotes();
+            else
+                append((char) c);
+
+            if (!cut)
+                c = read();
+        }
+    }
+
+    private void readAnsiQuoted() throws IOException {
+        int c = read();
+        while (c != '\'' && !cut) {
+            if (c == EOF)
+                throw new IOException("Missing closing quote ' after " + token);
+
+            if (c != '\\') {
+                append((char) c);
+                if (!cut)
+                    c = read();
+                continue;
+            }
+
+            c = read();
+            switch (c) {
+                case 'n':
+                    append('\n');
+                    break;
+                case 't':
+                    append('\t');
+                    break;
+                case 'r':
+                    append('\r');
+                    break;
+                case 'a':
+                    append('\u0007');
+                    break;
+                case 'b':
+                    append('\b');
+                    break;
+                case 'e':
+                    append('\u001b');
+                    break;
+                case 'f':
+                    append('\f');
+                    break;
+                case 'v':
+                    append('\u000b');
+                    break;
+                case '\\':
+                case '\'':
+                case '"':
+                    append((char) c);
+                    break;
+                case 'x':
+                case 'u':
+                    c = readHex(c == 'x' ? 2 : 4);
+                    continue;
+                case EOF:
+                    throw new IOException("Missing closing quote ' after " + token);
+                default:
+                    append('\\');
+                    append((char) c);
+            }
+            if (!cut)
+                c = read();
+        }
+    }
+
+    /**
+     * Reads up to <code>maxDigits</code> hex digits as a char.
+     *
+     * @return The char after the digits
+     */
+    private int readHex(int maxDigits) throws IOException {
+        int value = 0;
+        int digits = 0;
+        int c = read();
+        for (int digit; digits < maxDigits && (digit = Character.digit(c, 16)) >= 0; digits++) {
+            value = value * 16 + digit;
+            c = read();
+        }
+
+        if (digits == 0)
+            throw new IOException("Missing hex digits after " + token + '\\');
+
+        append((char) value);
+        return c;
+    }
+
+    private void readEscapedInDoubleQuotes() throws IOException {
+        int c = read();
+        switch (c) {
+            case '$':
+            case '`':
+            case '"':
+            case '\\':
+                append((char) c);
+                break;
+            case '\n':
+                break;
+            case EOF:
+                throw new IOException("Missing closing quote \" after " + token + '\\');
+            default:
+                append('\\');
+                append((char) c);
+        }
+    }
+
+    /**
+     * Appends <code>c</code> to the token unless the token is longer than the maximum already,
+     * in which case it is cut.
+     */
+    private void append(char c) {
+        if (token.length() <= maxTokenLength)
+            token.append(c);
+        if (token.length() > maxTokenLength)
+            cut = true;
+    }
+
+    private void readEscaped() throws IOException {
+        int c = read();
+        if (c == EOF)
+            throw new IOException("Nothing left to escape after " + token + '\\');
+
+        append((char) c);
+    }
+}
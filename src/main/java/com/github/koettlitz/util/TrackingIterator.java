@@ -0,0 +1,62 @@
+package com.github.koettlitz.util;
+
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A {@link PeekableIterator} over tokens, that keeps track of the position of the next token.
+ * The position is given as the index of the token and as the character offset of the token
+ * in a command line, where all tokens are joined by a single space.
+ */
+public class TrackingIterator implements PeekableIterator<String> {
+    private final PeekableIterator<String> source;
+    private int index;
+    private int charOffset;
+
+    /**
+     * Creates a new TrackingIterator over the tokens of the given <code>source</code>.
+     *
+     * @param source The iterator over the tokens
+     *
+     * @throws NullPointerException if <code>source</code> is <code>null</code>
+     */
+    public TrackingIterator(PeekableIterator<String> source) throws NullPointerException {
+        this.source = Objects.requireNonNull(source);
+    }
+
+    @Override
+    public String peek() throws NoSuchElementException {
+        return source.peek();
+    }
+
+    @Override
+    public String next() throws NoSuchElementException {
+        String next = source.next();
+        index++;
+        charOffset += next.length() + 1;
+        return next;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return source.hasNext();
+    }
+
+    /**
+     * Get the index of the token, that is returned by the next call of {@link #next()}.
+     *
+     * @return The index of the next token
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Get the character offset of the token, that is returned by the next call of {@link #next()}.
+     *
+     * @return The character offset of the next token
+     */
+    public int getCharOffset() {
+        return charOffset;
+    }
+}
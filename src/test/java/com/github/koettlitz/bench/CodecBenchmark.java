@@ -0,0 +1,87 @@
+package com.github.koettlitz.bench;
+
+import java.nio.ByteBuffer;
+
+import com.github.koettlitz.opt.ArgumentModel;
+import com.github.koettlitz.opt.ArgumentModelCodec;
+import com.github.koettlitz.opt.ArgumentParser;
+import com.github.koettlitz.opt.ArgumentParserBuilder;
+
+/**
+ * Compares passing parsed arguments through a queue as argv, that is parsed again by the consumer,
+ * with passing them as models encoded by an {@link ArgumentModelCodec}.
+ * Run with <code>java -cp target/classes:target/test-classes com.github.koettlitz.bench.CodecBenchmark</code>.
+ */
+public class CodecBenchmark {
+   private static final int WARMUP = 200_000;
+   private static final int ITERATIONS = 1_000_000;
+
+   private static final String[] ARGS = {
+      "-I", "/usr/include", "-I", "/opt/include", "-vv", "--threads=8", "main.c",
+      "run", "--output=build/main.o", "-O", "2", "first", "second", "third"
+   };
+
+   private static volatile Object sink;
+
+   public static void main(String[] args) throws Exception {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .addArgument("source")
+                                                   .buildOption('I')
+                                                      .setMultiValued(true)
+                                                      .build()
+                                                   .buildOption('v')
+                                                      .setLongKey("verbose")
+                                                      .build()
+                                                   .buildOption('t')
+                                                      .setLongKey("threads")
+                                                      .setExpectsValue(true)
+                                                      .build()
+                                                   .buildCommand("run")
+                                                      .buildParser()
+                                                         .setVarArgs(true)
+                                                         .buildOption('o')
+                                                            .setLongKey("output")
+                                                            .setExpectsValue(true)
+                                                            .build()
+                                                         .buildOption('O')
+                                                            .setExpectsValue(true)
+                                                            .build()
+                                                         .build()
+                                                      .build()
+                                                   .buildAndGet();
+
+      ArgumentModelCodec codec = new ArgumentModelCodec(parser);
+      ArgumentModel model = parser.parseArguments(ARGS);
+      ByteBuffer buffer = ByteBuffer.allocate(codec.encodedSize(model));
+
+      for (int round = 0; round < 3; round++) {
+         long reparse = run(WARMUP, ITERATIONS, () -> sink = parser.parseArguments(ARGS));
+         long codecTime = run(WARMUP, ITERATIONS, () -> {
+            buffer.clear();
+            codec.encode(model, buffer);
+            buffer.flip();
+            sink = codec.decode(buffer);
+         });
+
+         System.out.printf("re-parse: %7.1f ns/op   encode+decode: %7.1f ns/op   (%d bytes per model)%n",
+                           (double) reparse / ITERATIONS,
+                           (double) codecTime / ITERATIONS,
+                           buffer.limit());
+      }
+   }
+
+   private static long run(int warmup, int iterations, Task task) throws Exception {
+      for (int i = 0; i < warmup; i++)
+         task.run();
+
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++)
+         task.run();
+
+      return System.nanoTime() - start;
+   }
+
+   private interface Task {
+      void run() throws Exception;
+   }
+}
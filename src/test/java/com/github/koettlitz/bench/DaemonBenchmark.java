@@ -0,0 +1,117 @@
+package com.github.koettlitz.bench;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.koettlitz.opt.ArgumentParser;
+import com.github.koettlitz.opt.ArgumentParserBuilder;
+import com.github.koettlitz.opt.daemon.CommandClient;
+import com.github.koettlitz.opt.daemon.CommandServer;
+import com.github.koettlitz.opt.exec.CommandDispatcher;
+
+/**
+ * Compares the latency of invoking a command through a {@link CommandServer}
+ * with launching a new JVM, that builds the parser and executes the command itself.
+ * Run with <code>java -cp target/classes:target/test-classes com.github.koettlitz.bench.DaemonBenchmark</code>.
+ */
+public class DaemonBenchmark {
+   private static final int DAEMON_WARMUP = 2_000;
+   private static final int DAEMON_ITERATIONS = 10_000;
+   private static final int COLD_ITERATIONS = 20;
+
+   private static final String[] ARGS = { "-vv", "--threads=8", "build", "--output=main.o", "main.c" };
+
+   private static final OutputStream NULL = new OutputStream() {
+      @Override
+      public void write(int b) {}
+
+      @Override
+      public void write(byte[] b, int off, int len) {}
+   };
+
+   static ArgumentParser parser() {
+      return ArgumentParserBuilder.begin()
+                                  .buildOption('v')
+                                     .setLongKey("verbose")
+                                     .build()
+                                  .buildOption('t')
+                                     .setLongKey("threads")
+                                     .setExpectsValue(true)
+                                     .build()
+                                  .buildCommand("build")
+                                     .setHandler(ctx -> {
+                                        ctx.getOut().println(ctx.getModel().getOptionValue('o'));
+                                        return 0;
+                                     })
+                                     .buildParser()
+                                        .addArgument("source")
+                                        .buildOption('o')
+                                           .setLongKey("output")
+                                           .setExpectsValue(true)
+                                           .build()
+                                        .build()
+                                     .build()
+                                  .buildAndGet();
+   }
+
+   public static void main(String[] args) throws Exception {
+      try (CommandServer server = new CommandServer(parser(), 0)) {
+         for (int i = 0; i < DAEMON_WARMUP; i++)
+            CommandClient.execute(server.getPort(), ARGS, Paths.get(""), NULL, NULL);
+
+         long[] daemon = new long[DAEMON_ITERATIONS];
+         for (int i = 0; i < daemon.length; i++) {
+            long start = System.nanoTime();
+            CommandClient.execute(server.getPort(), ARGS, Paths.get(""), NULL, NULL);
+            daemon[i] = System.nanoTime() - start;
+         }
+         report("daemon", daemon);
+      }
+
+      List<String> command = new ArrayList<>();
+      command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path"));
+      command.add(ColdLaunch.class.getName());
+      command.addAll(Arrays.asList(ARGS));
+
+      long[] cold = new long[COLD_ITERATIONS];
+      for (int i = 0; i < cold.length; i++) {
+         long start = System.nanoTime();
+         Process process = new ProcessBuilder(command).redirectOutput(new File(nullDevice()))
+                                                      .redirectError(ProcessBuilder.Redirect.INHERIT)
+                                                      .start();
+         if (process.waitFor() != 0)
+            throw new IllegalStateException("Cold launch failed with " + process.exitValue());
+         cold[i] = System.nanoTime() - start;
+      }
+      report("cold JVM", cold);
+   }
+
+   private static String nullDevice() {
+      return System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null";
+   }
+
+   private static void report(String name, long[] nanos) {
+      Arrays.sort(nanos);
+      System.out.printf("%-9s p50 %9.1f us   p99 %9.1f us   max %9.1f us%n",
+                        name,
+                        nanos[nanos.length / 2] / 1e3,
+                        nanos[(int) (nanos.length * 0.99)] / 1e3,
+                        nanos[nanos.length - 1] / 1e3);
+   }
+
+   /**
+    * What every invocation does without a daemon.
+    */
+   public static class ColdLaunch {
+      public static void main(String[] args) throws Exception {
+         ArgumentParser parser = parser();
+         System.exit(new CommandDispatcher(parser).execute(parser.parseArguments(args)));
+      }
+   }
+}
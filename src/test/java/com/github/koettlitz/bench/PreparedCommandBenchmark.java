@@ -0,0 +1,83 @@
+package com.github.koettlitz.bench;
+
+import com.github.koettlitz.opt.ArgumentParser;
+import com.github.koettlitz.opt.ArgumentParserBuilder;
+import com.github.koettlitz.opt.PreparedCommand;
+
+/**
+ * Compares parsing a command line from a template every time with binding the values of a {@link PreparedCommand}.
+ * Run with <code>java -cp target/classes:target/test-classes com.github.koettlitz.bench.PreparedCommandBenchmark</code>.
+ */
+public class PreparedCommandBenchmark {
+   private static final int WARMUP = 200_000;
+   private static final int ITERATIONS = 1_000_000;
+
+   private static final String[] IMAGES = { "alpine:3.18", "debian:12", "ubuntu:22.04", "busybox" };
+
+   private static volatile Object sink;
+
+   public static void main(String[] args) throws Exception {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .buildOption('v')
+                                                      .setLongKey("verbose")
+                                                      .build()
+                                                   .buildCommand("run")
+                                                      .buildParser()
+                                                         .buildOption('i')
+                                                            .setLongKey("image")
+                                                            .setExpectsValue(true)
+                                                            .build()
+                                                         .buildOption('c')
+                                                            .setLongKey("cpus")
+                                                            .setExpectsValue(true)
+                                                            .build()
+                                                         .buildOption('m')
+                                                            .setLongKey("memory")
+                                                            .setExpectsValue(true)
+                                                            .build()
+                                                         .buildCommand("job")
+                                                            .buildParser()
+                                                               .addArgument("id")
+                                                               .build()
+                                                            .build()
+                                                         .build()
+                                                      .build()
+                                                   .buildAndGet();
+
+      PreparedCommand prepared = parser.prepare("-v", "run", "--image=${img}", "--cpus=${n}", "--memory=2g",
+                                                "job", "${id}");
+
+      for (int round = 0; round < 3; round++) {
+         long parse = run(WARMUP, ITERATIONS, i -> sink = parser.parseArguments("-v",
+                                                                               "run",
+                                                                               "--image=" + IMAGES[i & 3],
+                                                                               "--cpus=" + (i & 7),
+                                                                               "--memory=2g",
+                                                                               "job",
+                                                                               Integer.toString(i)));
+         long bind = run(WARMUP, ITERATIONS, i -> sink = prepared.bind(IMAGES[i & 3],
+                                                                       Integer.toString(i & 7),
+                                                                       Integer.toString(i)));
+
+         System.out.printf("parse: %7.1f ns/op   bind: %7.1f ns/op   (%.1fx)%n",
+                           (double) parse / ITERATIONS,
+                           (double) bind / ITERATIONS,
+                           (double) parse / bind);
+      }
+   }
+
+   private static long run(int warmup, int iterations, Task task) throws Exception {
+      for (int i = 0; i < warmup; i++)
+         task.run(i);
+
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++)
+         task.run(i);
+
+      return System.nanoTime() - start;
+   }
+
+   private interface Task {
+      void run(int i) throws Exception;
+   }
+}
@@ -0,0 +1,115 @@
+package com.github.koettlitz.bench;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.koettlitz.opt.ArgumentModel;
+import com.github.koettlitz.opt.ArgumentParser;
+import com.github.koettlitz.opt.ArgumentParserBuilder;
+
+/**
+ * Measures the cold start of the parser: every run launches a new JVM, that builds a parser,
+ * parses one command line and reports the number of classes loaded and the time spent
+ * from entering <code>main</code> up to the first model.
+ * Run with <code>java -cp target/classes:target/test-classes com.github.koettlitz.bench.StartupBenchmark</code>.
+ */
+public class StartupBenchmark {
+   private static final int RUNS = 20;
+
+   private static final String[] ARGS = {
+      "-I", "/usr/include", "-vv", "--threads=8", "main.c", "build", "--output=main.o", "-O", "2"
+   };
+
+   public static void main(String[] args) throws Exception {
+      List<String> command = new ArrayList<>();
+      command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+      command.add("-Xshare:auto");
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path"));
+      command.add(FirstModel.class.getName());
+
+      long[] classes = new long[RUNS];
+      long[] firstModel = new long[RUNS];
+      long[] process = new long[RUNS];
+      for (int i = 0; i < RUNS; i++) {
+         long start = System.nanoTime();
+         Process child = new ProcessBuilder(command).redirectErrorStream(true).start();
+         String line;
+         try (BufferedReader in = new BufferedReader(new InputStreamReader(child.getInputStream(),
+                                                                           StandardCharsets.UTF_8))) {
+            line = in.readLine();
+         }
+         if (child.waitFor() != 0 || line == null)
+            throw new IllegalStateException("The child JVM failed: " + line);
+
+         process[i] = System.nanoTime() - start;
+         String[] fields = line.split(" ");
+         classes[i] = Long.parseLong(fields[0]);
+         firstModel[i] = Long.parseLong(fields[1]);
+      }
+
+      Arrays.sort(classes);
+      Arrays.sort(firstModel);
+      Arrays.sort(process);
+      System.out.printf("classes loaded for the first model: %d%n", classes[RUNS / 2]);
+      System.out.printf("time to first model: p50=%.2fms min=%.2fms%n",
+                        firstModel[RUNS / 2] / 1e6,
+                        firstModel[0] / 1e6);
+      System.out.printf("whole JVM:           p50=%.2fms min=%.2fms%n", process[RUNS / 2] / 1e6, process[0] / 1e6);
+   }
+
+   static ArgumentParser parser() {
+      return ArgumentParserBuilder.begin()
+                                  .addArgument("source")
+                                  .buildOption('I')
+                                     .setMultiValued(true)
+                                     .build()
+                                  .buildOption('v')
+                                     .setLongKey("verbose")
+                                     .build()
+                                  .buildOption('t')
+                                     .setLongKey("threads")
+                                     .setExpectsValue(true)
+                                     .build()
+                                  .buildCommand("build")
+                                     .buildParser()
+                                        .buildOption('o')
+                                           .setLongKey("output")
+                                           .setExpectsValue(true)
+                                           .build()
+                                        .buildOption('O')
+                                           .setExpectsValue(true)
+                                           .build()
+                                        .build()
+                                     .build()
+                                  .buildAndGet();
+   }
+
+   /**
+    * The child JVM. Prints the number of classes loaded and the nanoseconds spent by building the parser
+    * and parsing the arguments. The management beans are loaded beforehand, so they are not counted.
+    */
+   static class FirstModel {
+      public static void main(String[] args) throws Exception {
+         ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+         long loadedBefore = classLoading.getTotalLoadedClassCount();
+         long start = System.nanoTime();
+
+         ArgumentModel model = parser().parseArguments(ARGS);
+
+         long elapsed = System.nanoTime() - start;
+         long loaded = classLoading.getTotalLoadedClassCount() - loadedBefore;
+         if (!model.isCommandPresent("build"))
+            throw new IllegalStateException("The command was not parsed");
+
+         System.out.println(loaded + " " + elapsed);
+      }
+   }
+}
@@ -0,0 +1,149 @@
+package com.github.koettlitz.opt;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+
+/**
+ * Checks the bytes allocated per parse against the budgets in <code>allocation-budgets.properties</code>.
+ * A budget is the allocation measured when it was set plus some headroom for differences between JVMs.
+ * If a change allocates more on purpose, the budget has to be raised in the same commit.
+ */
+public class AllocationBudgetTest {
+   private static final String BUDGETS = "allocation-budgets.properties";
+   private static final int WARMUP = 50_000;
+   private static final int ITERATIONS = 20_000;
+   private static final int ROUNDS = 5;
+
+   private static final Properties budgets = new Properties();
+   private static com.sun.management.ThreadMXBean threadBean;
+
+   @BeforeAll
+   public static void loadBudgets() throws IOException {
+      try (InputStream in = AllocationBudgetTest.class.getResourceAsStream(BUDGETS)) {
+         assertNotNull(in, BUDGETS + " is missing");
+         budgets.load(in);
+      }
+
+      java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean
+          && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+         threadBean = (com.sun.management.ThreadMXBean) bean;
+         threadBean.setThreadAllocatedMemoryEnabled(true);
+      }
+   }
+
+   /**
+    * Measures the bytes per parse. The lowest of several rounds is taken,
+    * because a round may be disturbed by the JIT compiler, that allocates on the measured thread, too.
+    */
+   private static double bytesPerParse(ArgumentParser parser, String... args) throws ArgumentParseException {
+      assumeTrue(threadBean != null, "The JVM can't measure the allocations of a thread.");
+      long thread = Thread.currentThread().getId();
+
+      for (int i = 0; i < WARMUP; i++)
+         parser.parseArguments(args);
+
+      double lowest = Double.MAX_VALUE;
+      for (int round = 0; round < ROUNDS; round++) {
+         long before = threadBean.getThreadAllocatedBytes(thread);
+         for (int i = 0; i < ITERATIONS; i++)
+            parser.parseArguments(args);
+         long after = threadBean.getThreadAllocatedBytes(thread);
+         lowest = Math.min(lowest, (double) (after - before) / ITERATIONS);
+      }
+
+      return lowest;
+   }
+
+   private static void assertWithinBudget(String scenario, double bytesPerParse) {
+      String budget = budgets.getProperty(scenario);
+      assertNotNull(budget, "No budget for " + scenario + " in " + BUDGETS);
+
+      long limit = Long.parseLong(budget.trim());
+      assertTrue(bytesPerParse <= limit,
+                 String.format("%s allocates %.1f bytes per parse, %.1f%% over its budget of %d bytes. "
+                               + "Remove the new allocations or raise the budget in %s.",
+                               scenario,
+                               bytesPerParse,
+                               (bytesPerParse - limit) * 100 / limit,
+                               limit,
+                               BUDGETS));
+   }
+
+   @Test
+   public void flagsOnly() throws ArgumentParseException {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .addOption('a')
+                                                   .addOption('b')
+                                                   .addOption('c')
+                                                   .buildOption('v')
+                                                      .setLongKey("verbose")
+                                                      .build()
+                                                   .buildAndGet();
+
+      assertWithinBudget("flags", bytesPerParse(parser, "-ab", "-c", "--verbose", "-v"));
+   }
+
+   @Test
+   public void longOptionsWithValues() throws ArgumentParseException {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .buildOption('o')
+                                                      .setLongKey("output")
+                                                      .setExpectsValue(true)
+                                                      .build()
+                                                   .buildOption('t')
+                                                      .setLongKey("threads")
+                                                      .setExpectsValue(true)
+                                                      .build()
+                                                   .buildOption('I')
+                                                      .setLongKey("include")
+                                                      .setExpectsValue(true)
+                                                      .setMultiValued(true)
+                                                      .build()
+                                                   .buildAndGet();
+
+      assertWithinBudget("long-options",
+                         bytesPerParse(parser, "--output=main.o", "--threads=8", "--include=a", "--include=b"));
+   }
+
+   @Test
+   public void varArgs() throws ArgumentParseException {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .setVarArgs(true)
+                                                   .addOption('f')
+                                                   .buildAndGet();
+
+      assertWithinBudget("varargs", bytesPerParse(parser, "-f", "one", "two", "three", "four", "five", "six"));
+   }
+
+   @Test
+   public void nestedCommands() throws ArgumentParseException {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .addOption('v')
+                                                   .buildCommand("remote")
+                                                      .buildParser()
+                                                         .buildCommand("add")
+                                                            .buildParser()
+                                                               .addArgument("name")
+                                                               .addArgument("url")
+                                                               .addOption('f')
+                                                               .build()
+                                                            .build()
+                                                         .build()
+                                                      .build()
+                                                   .buildAndGet();
+
+      assertWithinBudget("nested-commands",
+                         bytesPerParse(parser, "-v", "remote", "add", "-f", "origin", "https://example.com/repo"));
+   }
+}
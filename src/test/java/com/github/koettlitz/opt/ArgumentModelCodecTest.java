@@ -0,0 +1,125 @@
+package com.github.koettlitz.opt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+
+public class ArgumentModelCodecTest {
+   private static ArgumentParser parser() {
+      return ArgumentParserBuilder.begin()
+                                  .addArgument("source")
+                                  .buildOption('I')
+                                     .setMultiValued(true)
+                                     .build()
+                                  .buildOption('v')
+                                     .setLongKey("verbose")
+                                     .build()
+                                  .buildCommand("run")
+                                     .buildParser()
+                                        .setVarArgs(true)
+                                        .buildOption('o')
+                                           .setLongKey("output")
+                                           .setExpectsValue(true)
+                                           .build()
+                                        .build()
+                                     .build()
+                                  .buildAndGet();
+   }
+
+   @Test
+   public void modelsSurviveRoundTrip() throws ArgumentParseException, IOException {
+      ArgumentParser parser = parser();
+      ArgumentModelCodec codec = new ArgumentModelCodec(parser);
+      ArgumentModel model = parser.parseArguments("-I", "a", "-vv", "-I", "ä😀", "src",
+                                                  "run", "--output=out", "x", "y");
+
+      byte[] bytes = codec.encode(model);
+      assertEquals(codec.encodedSize(model), bytes.length);
+
+      ArgumentModel decoded = codec.decode(ByteBuffer.wrap(bytes));
+      assertEquals(model, decoded);
+      assertEquals(Arrays.asList("a", "ä😀"), decoded.getOptionValues('I'));
+      assertEquals(2, decoded.getOptionCount("verbose"));
+      assertEquals("src", decoded.getArgumentValue("source"));
+      assertEquals("out", decoded.getCommandValue("run").getOptionValue('o'));
+      assertEquals(Arrays.asList("x", "y"), decoded.getCommandValue("run").getPlainArguments());
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      codec.write(model, new DataOutputStream(out));
+      codec.write(decoded, new DataOutputStream(out));
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+      assertEquals(model, codec.read(in));
+      assertEquals(model, codec.read(in));
+   }
+
+   @Test
+   public void modelsOfOtherParsersAreRejected() throws ArgumentParseException {
+      ArgumentParser parser = parser();
+      ArgumentParser other = ArgumentParserBuilder.begin()
+                                                  .addArgument("target")
+                                                  .buildAndGet();
+
+      byte[] bytes = new ArgumentModelCodec(other).encode(other.parseArguments("t"));
+      assertThrows(IOException.class, () -> new ArgumentModelCodec(parser).decode(ByteBuffer.wrap(bytes)));
+      assertThrows(IOException.class, () -> new ArgumentModelCodec(other).decode(ByteBuffer.wrap(bytes, 0, bytes.length - 1)));
+      assertThrows(IllegalArgumentException.class, () -> new ArgumentModelCodec(parser).encode(other.parseArguments("t")));
+      assertEquals(new ArgumentModelCodec(parser()).getFingerprint(), new ArgumentModelCodec(parser).getFingerprint());
+   }
+
+   @Test
+   public void corruptLengthsAreRejected() throws ArgumentParseException {
+      ArgumentParser parser = parser();
+      ArgumentModelCodec codec = new ArgumentModelCodec(parser, 1024);
+      byte[] bytes = codec.encode(parser.parseArguments("-I", "a", "src"));
+      // header, body size, presence bits and flags come before the value of source and then the values of -I
+      int source = 1 + 8 + 1 + 8 + 1;
+      int values = source + 1 + 1 + "src".length();
+      assertEquals(1, bytes[source]);
+      assertEquals(2, bytes[values]);
+
+      // the length of "src", the number of values of -I and the length of "a"
+      for (int length : new int[] { source + 1, values + 1, values + 2 }) {
+         byte[] corrupt = bytes.clone();
+         corrupt[length] = 0x7f;
+         assertThrows(IOException.class, () -> codec.decode(ByteBuffer.wrap(corrupt)));
+         assertThrows(IOException.class, () -> codec.read(new DataInputStream(new ByteArrayInputStream(corrupt))));
+      }
+
+      byte[] huge = Arrays.copyOf(bytes, bytes.length + 4);
+      System.arraycopy(new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f }, 0, huge, 9, 5);
+      assertThrows(IOException.class, () -> codec.read(new DataInputStream(new ByteArrayInputStream(huge))));
+      assertThrows(IOException.class, () -> codec.decode(ByteBuffer.wrap(huge)));
+      assertThrows(IllegalArgumentException.class, () -> new ArgumentModelCodec(parser, -1));
+   }
+
+   @Test
+   public void valuesNotMatchingTheLayoutAreRejected() throws ArgumentParseException {
+      ArgumentParser parser = parser();
+      ArgumentParser singleValued = ArgumentParserBuilder.begin()
+                                                         .addArgument("source")
+                                                         .buildOption('I')
+                                                            .setExpectsValue(true)
+                                                            .build()
+                                                         .buildAndGet();
+      ArgumentModelCodec codec = new ArgumentModelCodec(parser);
+      assertNotEquals(codec.getFingerprint(), new ArgumentModelCodec(singleValued).getFingerprint());
+
+      byte[] bytes = new ArgumentModelCodec(singleValued).encode(singleValued.parseArguments("-I", "a", "src"));
+      assertThrows(IOException.class, () -> codec.decode(ByteBuffer.wrap(bytes)));
+
+      // a single value of -I passes the fingerprint check now, but not the check of its tag
+      ByteBuffer.wrap(bytes, 1, 8).putLong(codec.getFingerprint());
+      assertThrows(IOException.class, () -> codec.decode(ByteBuffer.wrap(bytes)));
+      assertThrows(IOException.class, () -> codec.read(new DataInputStream(new ByteArrayInputStream(bytes))));
+   }
+}
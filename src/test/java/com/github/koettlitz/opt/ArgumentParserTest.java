@@ -2,14 +2,30 @@ package com.github.koettlitz.opt;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
 
 import com.github.koettlitz.opt.ex.ArgumentParseException;
+import com.github.koettlitz.opt.ex.ConstraintViolationException;
 import com.github.koettlitz.opt.ex.InvalidOptionFormatException;
+import com.github.koettlitz.opt.ex.LimitExceededException;
 import com.github.koettlitz.opt.ex.MissingArgumentException;
+import com.github.koettlitz.opt.ex.MissingOptionValueException;
 import com.github.koettlitz.opt.ex.UnknownArgumentException;
 
 /**
@@ -105,6 +121,21 @@ public class ArgumentParserTest {
       assertEquals(ARG_VALUE1, iterator.next());
    }
 
+   @Test
+   public void varArgsCanBeStreamedAndAccessedByIndex() {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .setVarArgs(true)
+                                                   .buildAndGet();
+
+      String[] args = new String[3000];
+      for (int i = 0; i < args.length; i++)
+         args[i] = Integer.toString(i);
+
+      ArgumentModel result = parse(parser, args);
+      assertEquals(args[2048], result.getPlainArgument(2048));
+      assertEquals(Arrays.asList(args), result.plainArgumentStream().parallel().collect(Collectors.toList()));
+   }
+
    @Test
    public void varArgsAndOptionsArePresent() {
       ArgumentParser parser = ArgumentParserBuilder.begin()
@@ -248,6 +279,52 @@ public class ArgumentParserTest {
       assertTrue(result.isOptionPresent(OPT_KEY2), "Third option not present.");
    }
 
+   @Test
+   public void multiValuedOptionKeepsAllValues() {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .buildOption(OPT_KEY2)
+                                                      .setLongKey(OPT_LONG_KEY2)
+                                                      .setMultiValued(true)
+                                                      .build()
+                                                   .buildOption(OPT_KEY0)
+                                                      .setExpectsValue(true)
+                                                      .build()
+                                                   .addArgument(ARG_NAME0)
+                                                   .buildAndGet();
+
+      ArgumentModel result = parse(parser,
+                                   "-" + OPT_KEY2, OPT_VALUE0,
+                                   "-" + OPT_KEY0, OPT_VALUE0,
+                                   "--" + OPT_LONG_KEY2 + '=' + OPT_VALUE1,
+                                   "-" + OPT_KEY0, OPT_VALUE1,
+                                   "-" + OPT_KEY2, OPT_VALUE2,
+                                   ARG_VALUE0);
+
+      assertEquals(Arrays.asList(OPT_VALUE0, OPT_VALUE1, OPT_VALUE2), result.getOptionValues(OPT_KEY2));
+      assertEquals(result.getOptionValues(OPT_KEY2), result.getOptionValues(OPT_LONG_KEY2));
+      assertEquals(OPT_VALUE2, result.getOptionValue(OPT_KEY2));
+      assertEquals(Arrays.asList(OPT_VALUE1), result.getOptionValues(OPT_KEY0));
+      assertEquals(ARG_VALUE0, result.getArgumentValue(ARG_NAME0));
+      assertThrows(UnsupportedOperationException.class, () -> result.getOptionValues(OPT_KEY2).add(ARG_VALUE0));
+   }
+
+   @Test
+   public void optionOccurrencesAreCounted() {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .buildOption(OPT_KEY1)
+                                                      .setLongKey(OPT_LONG_KEY1)
+                                                      .build()
+                                                   .addOption(OPT_KEY0)
+                                                   .addOption(OPT_KEY2)
+                                                   .buildAndGet();
+
+      ArgumentModel result = parse(parser, "-" + OPT_KEY1 + OPT_KEY1 + OPT_KEY0 + OPT_KEY1, "--" + OPT_LONG_KEY1);
+      assertEquals(4, result.getOptionCount(OPT_KEY1));
+      assertEquals(4, result.getOptionCount(OPT_LONG_KEY1));
+      assertEquals(1, result.getOptionCount(OPT_KEY0));
+      assertEquals(0, result.getOptionCount(OPT_KEY2));
+   }
+
    @Test
    public void optionThatExpectsValueCannotBeInFrontInOneToken() {
       ArgumentParser parser = ArgumentParserBuilder.begin()
@@ -425,6 +502,133 @@ public class ArgumentParserTest {
       assertFalse(cmdResult.isOptionPresent(OPT_KEY2));
    }
 
+   @Test
+   public void nestedCommandReturnsUnknownArgumentToParent() {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .addArgument(ARG_NAME0)
+                                                   .buildCommand(CMD_NAME0)
+                                                      .buildParser()
+                                                         .buildCommand(CMD_NAME1)
+                                                            .buildParser()
+                                                               .addOption(OPT_KEY1)
+                                                               .build()
+                                                            .build()
+                                                         .build()
+                                                      .build()
+                                                   .buildAndGet();
+
+      ArgumentModel result = parse(parser, CMD_NAME0, CMD_NAME1, "-" + OPT_KEY1, ARG_VALUE0);
+
+      ArgumentModel innermost = result.getCommandValue(CMD_NAME0).getCommandValue(CMD_NAME1);
+      assertTrue(innermost.isOptionPresent(OPT_KEY1));
+      assertEquals(ARG_VALUE0, result.getArgumentValue(ARG_NAME0));
+   }
+
+   @Test
+   public void sessionForgetsPreviousParse() throws ArgumentParseException {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .buildOption(OPT_KEY0)
+                                                      .setMultiValued(true)
+                                                      .build()
+                                                   .buildCommand(CMD_NAME0)
+                                                      .buildParser()
+                                                         .addArgument(ARG_NAME0)
+                                                         .addOption(OPT_KEY1)
+                                                         .build()
+                                                      .build()
+                                                   .buildAndGet();
+
+      ParseSession session = parser.newSession();
+      ArgumentModel first = session.parse("-" + OPT_KEY0, OPT_VALUE0, CMD_NAME0, "-" + OPT_KEY1, ARG_VALUE0);
+      assertEquals(Arrays.asList(OPT_VALUE0), first.getOptionValues(OPT_KEY0));
+      assertTrue(first.getCommandValue(CMD_NAME0).isOptionPresent(OPT_KEY1));
+
+      ArgumentModel second = session.parse(CMD_NAME0, ARG_VALUE1);
+      assertSame(second, session.getModel());
+      assertFalse(second.isOptionPresent(OPT_KEY0));
+      assertTrue(second.getOptionValues(OPT_KEY0).isEmpty());
+      assertFalse(second.getCommandValue(CMD_NAME0).isOptionPresent(OPT_KEY1));
+      assertEquals(ARG_VALUE1, second.getCommandValue(CMD_NAME0).getArgumentValue(ARG_NAME0));
+
+      assertThrows(MissingArgumentException.class, () -> session.parse(CMD_NAME0));
+      session.reset();
+      assertNull(session.getModel());
+      assertFalse(session.parse("-" + OPT_KEY0, OPT_VALUE1).isCommandPresent(CMD_NAME0));
+   }
+
+   @Test
+   public void modelsAreIndependentOfLaterParses() throws ArgumentParseException {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .buildOption(OPT_KEY0)
+                                                      .setMultiValued(true)
+                                                      .build()
+                                                   .addOption(OPT_KEY1)
+                                                   .setVarArgs(true)
+                                                   .buildAndGet();
+
+      ParseSession session = parser.newSession();
+      ArgumentModel first = session.parse("-" + OPT_KEY0, OPT_VALUE0, "-" + OPT_KEY1 + OPT_KEY1, ARG_VALUE0);
+      session.parse("-" + OPT_KEY0, OPT_VALUE1, ARG_VALUE1);
+
+      assertEquals(Arrays.asList(OPT_VALUE0), first.getOptionValues(OPT_KEY0));
+      assertEquals(2, first.getOptionCount(OPT_KEY1));
+      assertEquals(Arrays.asList(ARG_VALUE0), first.getPlainArguments());
+      assertThrows(UnsupportedOperationException.class, () -> first.getPlainArguments().add(ARG_VALUE1));
+   }
+
+   @Test
+   public void poolReusesClosedSessions() throws ArgumentParseException {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .addArgument(ARG_NAME0)
+                                                   .buildAndGet();
+      ParseSessionPool pool = new ParseSessionPool(parser, 1);
+
+      ParseSession session = pool.acquire();
+      assertEquals(ARG_VALUE0, session.parse(ARG_VALUE0).getArgumentValue(ARG_NAME0));
+      session.close();
+      session.close();
+      assertEquals(1, pool.getIdleCount());
+
+      try (ParseSession reused = pool.acquire()) {
+         assertSame(session, reused);
+         assertNull(reused.getModel());
+         assertEquals(ARG_VALUE1, reused.parse(ARG_VALUE1).getArgumentValue(ARG_NAME0));
+      }
+      assertEquals(1, pool.getIdleCount());
+   }
+
+   @Test
+   public void defaultValuesAreSuppliedLazilyOncePerModel() throws ArgumentParseException {
+      AtomicInteger calls = new AtomicInteger();
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .buildArgument(ARG_NAME0)
+                                                      .setMandatory(false)
+                                                      .setDefaultValue(ARG_VALUE0)
+                                                      .build()
+                                                   .buildOption(OPT_KEY2)
+                                                      .setLongKey(OPT_LONG_KEY2)
+                                                      .setExpectsValue(true)
+                                                      .setDefaultValue(() -> OPT_VALUE2 + calls.incrementAndGet())
+                                                      .build()
+                                                   .buildAndGet();
+
+      ArgumentModel given = parser.parseArguments("-" + OPT_KEY2, OPT_VALUE0, ARG_VALUE1);
+      assertEquals(OPT_VALUE0, given.getOptionValue(OPT_KEY2));
+      assertEquals(ARG_VALUE1, given.getArgumentValue(ARG_NAME0));
+      assertEquals(0, calls.get());
+
+      ArgumentModel absent = parser.parseArguments(new String[0]);
+      assertEquals(0, calls.get());
+      assertEquals(OPT_VALUE2 + 1, absent.getOptionValue(OPT_KEY2));
+      assertEquals(OPT_VALUE2 + 1, absent.getOptionalValue(OPT_LONG_KEY2).orElse(null));
+      assertFalse(absent.isOptionPresent(OPT_KEY2));
+      assertEquals(ARG_VALUE0, absent.getArgumentValue(ARG_NAME0));
+      assertEquals(ARG_VALUE0, absent.getPlainArgument(0));
+      assertEquals(1, calls.get());
+
+      assertEquals(OPT_VALUE2 + 2, parser.parseArguments(new String[0]).getOptionValue(OPT_LONG_KEY2));
+   }
+
    @Test
    public void additionalAlternativeCommandThrowsException() {
       ArgumentParser parser = ArgumentParserBuilder.begin()
@@ -507,6 +711,149 @@ public class ArgumentParserTest {
       assertThrows(MissingArgumentException.class, () -> parser.parseArguments(ARG_VALUE0));
    }
 
+   @Test
+   public void mutuallyExclusiveOptionsCannotBeCombined() {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .addOption(OPT_KEY0)
+                                                   .buildOption(OPT_KEY1)
+                                                      .setLongKey(OPT_LONG_KEY1)
+                                                      .build()
+                                                   .addOption(OPT_KEY2)
+                                                   .mutuallyExclusive("-" + OPT_KEY0, "--" + OPT_LONG_KEY1)
+                                                   .buildAndGet();
+
+      assertTrue(parse(parser, "-" + OPT_KEY0, "-" + OPT_KEY2).isOptionPresent(OPT_KEY0));
+      assertThrows(ConstraintViolationException.class, () -> parser.parseArguments("-" + OPT_KEY0 + OPT_KEY1));
+   }
+
+   @Test
+   public void requiredTogetherAndRequiresConstraintsAreChecked() {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .buildArgument(ARG_NAME0)
+                                                      .setMandatory(false)
+                                                      .build()
+                                                   .addOption(OPT_KEY0)
+                                                   .addOption(OPT_KEY1)
+                                                   .addOption(OPT_KEY2)
+                                                   .requiredTogether("-" + OPT_KEY0, "-" + OPT_KEY1)
+                                                   .requires("-" + OPT_KEY2, ARG_NAME0)
+                                                   .buildAndGet();
+
+      parse(parser, "-" + OPT_KEY0 + OPT_KEY1);
+      parse(parser, "-" + OPT_KEY2, ARG_VALUE0);
+      assertThrows(ConstraintViolationException.class, () -> parser.parseArguments("-" + OPT_KEY1));
+      assertThrows(ConstraintViolationException.class, () -> parser.parseArguments("-" + OPT_KEY2));
+   }
+
+   @Test
+   public void constraintWithUnknownArgumentIsRejected() {
+      ArgumentParserBuilder builder = ArgumentParserBuilder.begin()
+                                                           .addOption(OPT_KEY0)
+                                                           .mutuallyExclusive("-" + OPT_KEY0, "--unknown");
+
+      assertThrows(IllegalArgumentException.class, builder::buildAndGet);
+   }
+
+   @Test
+   public void constraintsSpanningManyWordsAreChecked() throws ArgumentParseException {
+      ArgumentParserBuilder builder = ArgumentParserBuilder.begin();
+      for (int i = 0; i < 200; i++)
+         builder.buildOption(ExpectedOption.NO_KEY).setLongKey("o" + i).build();
+      ArgumentParser parser = builder.mutuallyExclusive("--o5", "--o150")
+                                     .requiredTogether("--o70", "--o190")
+                                     .buildAndGet();
+
+      parser.parseArguments("--o5", "--o70", "--o190", "--o100");
+      assertThrows(ConstraintViolationException.class, () -> parser.parseArguments("--o5", "--o150"));
+      ConstraintViolationException e = assertThrows(ConstraintViolationException.class,
+                                                    () -> parser.parseArguments("--o190"));
+      Iterator<? extends ExpectedArgument> missing = e.getArguments().iterator();
+      assertEquals("o70", ((ExpectedOption) missing.next()).getLongKey());
+      assertFalse(missing.hasNext());
+   }
+
+   @Test
+   public void oneOfMandatoryCommandsIsSufficient() {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .buildCommand(CMD_NAME0)
+                                                      .setMandatory(true)
+                                                      .build()
+                                                   .buildCommand(CMD_NAME1)
+                                                      .build()
+                                                   .buildAndGet();
+
+      assertTrue(parse(parser, CMD_NAME1).isCommandPresent(CMD_NAME1));
+      assertThrows(MissingArgumentException.class, () -> parser.parseArguments(new String[0]));
+   }
+
+   @Test
+   public void mandatoryOptionHasToBeGiven() {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .buildOption('p')
+                                                      .setLongKey("parser")
+                                                      .setExpectsValue(true)
+                                                      .setMandatory(true)
+                                                      .build()
+                                                   .buildAndGet();
+
+      assertEquals("x", parse(parser, "--parser=x").getOptionValue('p'));
+      assertThrows(MissingArgumentException.class, () -> parser.parseArguments(new String[0]));
+      assertEquals("-p <parser>", parser.syntax());
+   }
+
+   @Test
+   public void recoveringParseCollectsAllProblemsWithPositions() {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .addArgument(ARG_NAME0)
+                                                   .addArgument(ARG_NAME1)
+                                                   .addOption(OPT_KEY0)
+                                                   .buildOption(OPT_KEY1)
+                                                      .setLongKey(OPT_LONG_KEY1)
+                                                      .setExpectsValue(true)
+                                                      .build()
+                                                   .buildAndGet();
+
+      ParseResult result = parser.parseRecovering("-" + OPT_KEY0 + "x",
+                                                  ARG_VALUE0,
+                                                  "--unknown",
+                                                  "--" + OPT_LONG_KEY1);
+
+      assertFalse(result.isValid());
+      List<ParseDiagnostic> diagnostics = result.getDiagnostics();
+      assertEquals(4, diagnostics.size(), diagnostics.toString());
+
+      assertTrue(diagnostics.get(0).getException() instanceof UnknownArgumentException);
+      assertEquals(0, diagnostics.get(0).getTokenIndex());
+      assertEquals(2, diagnostics.get(0).getOffset());
+      assertEquals(2, diagnostics.get(0).getCharOffset());
+
+      assertTrue(diagnostics.get(1).getException() instanceof UnknownArgumentException);
+      assertEquals(2, diagnostics.get(1).getTokenIndex());
+      assertEquals(("-" + OPT_KEY0 + "x " + ARG_VALUE0 + " ").length(), diagnostics.get(1).getCharOffset());
+
+      assertTrue(diagnostics.get(2).getException() instanceof MissingOptionValueException);
+      assertEquals(3, diagnostics.get(2).getTokenIndex());
+
+      assertTrue(diagnostics.get(3).getException() instanceof MissingArgumentException);
+      assertEquals(4, diagnostics.get(3).getTokenIndex());
+
+      assertTrue(result.getModel().isOptionPresent(OPT_KEY0));
+      assertEquals(ARG_VALUE0, result.getModel().getArgumentValue(ARG_NAME0));
+      assertNull(result.getModel().getArgumentValue(ARG_NAME1));
+   }
+
+   @Test
+   public void recoveringParseOfValidArgumentsHasNoDiagnostics() {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .addArgument(ARG_NAME0)
+                                                   .addOption(OPT_KEY0)
+                                                   .buildAndGet();
+
+      ParseResult result = parser.parseRecovering("-" + OPT_KEY0, ARG_VALUE0);
+      assertTrue(result.isValid());
+      assertEquals(ARG_VALUE0, result.getModel().getArgumentValue(ARG_NAME0));
+   }
+
    @Test
    public void exceptionIsThrownWhenTooManyArgumentsAreGiven() throws UnknownArgumentException {
       ArgumentParser parser = ArgumentParserBuilder.begin()
@@ -516,6 +863,227 @@ public class ArgumentParserTest {
       assertThrows(UnknownArgumentException.class, () -> parser.parseArguments(ARG_VALUE0, "InvalidArg"));
    }
 
+   @Test
+   public void argFilesAreExpanded() throws IOException {
+      Path nested = Files.createTempFile("clp", ".args");
+      Path argFile = Files.createTempFile("clp", ".args");
+      try {
+         Files.write(nested, ("# nested file\n'" + ARG_VALUE1 + " with space' \"-" + OPT_KEY0 + "\"\n").getBytes(StandardCharsets.UTF_8));
+         Files.write(argFile, (ARG_VALUE0 + "\n@" + nested + "\n").getBytes(StandardCharsets.UTF_8));
+
+         ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                      .expandArgFiles()
+                                                      .setVarArgs(true)
+                                                      .addOption(OPT_KEY0)
+                                                      .buildAndGet();
+
+         ArgumentModel result = parse(parser, "@" + argFile, "@@" + ARG_VALUE0);
+         Iterator<String> iterator = verifyVarArgs(result, 3);
+         assertEquals(ARG_VALUE0, iterator.next());
+         assertEquals(ARG_VALUE1 + " with space", iterator.next());
+         assertEquals("@" + ARG_VALUE0, iterator.next());
+         assertTrue(result.isOptionPresent(OPT_KEY0), "Option from nested argument file not present.");
+      } finally {
+         Files.delete(argFile);
+         Files.delete(nested);
+      }
+   }
+
+   @Test
+   public void argFilesAreNotExpandedByDefault() {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .addArgument(ARG_NAME0)
+                                                   .buildAndGet();
+
+      assertEquals("@" + ARG_VALUE0, parse(parser, "@" + ARG_VALUE0).getArgumentValue(ARG_NAME0));
+   }
+
+   @Test
+   public void exceptionIsThrownWhenArgFileIncludesItself() throws IOException {
+      Path argFile = Files.createTempFile("clp", ".args");
+      try {
+         Files.write(argFile, (ARG_VALUE0 + " @" + argFile).getBytes(StandardCharsets.UTF_8));
+         ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                      .expandArgFiles()
+                                                      .setVarArgs(true)
+                                                      .buildAndGet();
+
+         assertThrows(UncheckedIOException.class, () -> parser.parseArguments("@" + argFile));
+      } finally {
+         Files.delete(argFile);
+      }
+   }
+
+   @Test
+   public void exceptionIsThrownWhenLimitIsExceeded() throws ArgumentParseException {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .setVarArgs(true)
+                                                   .addOption('a')
+                                                   .addOption('b')
+                                                   .buildOption('o')
+                                                      .setExpectsValue(true)
+                                                      .build()
+                                                   .buildCommand("cmd")
+                                                      .buildParser()
+                                                         .buildCommand("sub")
+                                                            .buildParser()
+                                                               .build()
+                                                            .build()
+                                                         .build()
+                                                      .build()
+                                                   .setLimits(ParseLimits.NONE
+                                                                         .withMaxTokens(5)
+                                                                         .withMaxTokenLength(8)
+                                                                         .withMaxCombinedFlags(2)
+                                                                         .withMaxVarArgs(2)
+                                                                         .withMaxCommandDepth(1))
+                                                   .buildAndGet();
+
+      assertEquals(2, parser.parseArguments("-ab", "-o", "12345678", "x", "y").getPlainArguments().size());
+      assertLimitExceeded(ParseLimits.Limit.TOKENS, 5, parser, "x", "y", "-a", "-b", "-a", "-b");
+      assertLimitExceeded(ParseLimits.Limit.TOKEN_LENGTH, 8, parser, "-o", "123456789");
+      assertLimitExceeded(ParseLimits.Limit.COMBINED_FLAGS, 2, parser, "-aba");
+      assertLimitExceeded(ParseLimits.Limit.VAR_ARGS, 2, parser, "x", "y", "z");
+      assertLimitExceeded(ParseLimits.Limit.COMMAND_DEPTH, 1, parser, "cmd", "sub");
+   }
+
+   @Test
+   public void tooLongTokensOfArgFilesExceedTheLimitWithoutBeingReadCompletely() throws IOException {
+      Path argFile = Files.createTempFile("clp", ".args");
+      try {
+         Files.write(argFile, "short 'much too long' @never.args".getBytes(StandardCharsets.UTF_8));
+         ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                      .expandArgFiles()
+                                                      .setVarArgs(true)
+                                                      .setLimits(ParseLimits.NONE.withMaxTokenLength(8))
+                                                      .buildAndGet();
+
+         assertLimitExceeded(ParseLimits.Limit.TOKEN_LENGTH, 8, parser, "@" + argFile);
+         assertLimitExceeded(ParseLimits.Limit.TOKEN_LENGTH, 8, parser, "@" + argFile.toString().substring(0, 8));
+         try (ParseSession session = parser.newSession()) {
+            assertThrows(LimitExceededException.class, () -> session.parse("@" + argFile));
+         }
+
+         // a single endless token
+         Path zero = Paths.get("/dev/zero");
+         if (Files.isReadable(zero))
+            assertLimitExceeded(ParseLimits.Limit.TOKEN_LENGTH, 8, parser, "@" + zero);
+      } finally {
+         Files.delete(argFile);
+      }
+   }
+
+   private static void assertLimitExceeded(ParseLimits.Limit limit, int maximum, ArgumentParser parser, String... args) {
+      LimitExceededException e = assertThrows(LimitExceededException.class, () -> parser.parseArguments(args));
+      assertEquals(limit, e.getLimit());
+      assertEquals(maximum, e.getMaximum());
+   }
+
+   @Test
+   public void recoveringParseStopsAtExceededLimit() {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .setVarArgs(true)
+                                                   .setLimits(ParseLimits.NONE.withMaxVarArgs(3))
+                                                   .buildAndGet();
+      String[] args = new String[100_000];
+      Arrays.fill(args, "x");
+
+      ParseResult result = parser.parseRecovering(args);
+      assertEquals(1, result.getDiagnostics().size());
+      assertEquals(3, result.getDiagnostics().get(0).getTokenIndex());
+      assertEquals(3, result.getModel().getPlainArguments().size());
+   }
+
+   @Test
+   public void delimitedOptionsAreListedByEntries() throws ArgumentParseException {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .buildOption('h')
+                                                      .setLongKey("hosts")
+                                                      .setDelimiter(',')
+                                                      .setDefaultValue("localhost")
+                                                      .build()
+                                                   .buildOption('e')
+                                                      .setDelimiter(';')
+                                                      .setMultiValued(true)
+                                                      .build()
+                                                   .buildOption('o')
+                                                      .setExpectsValue(true)
+                                                      .build()
+                                                   .buildAndGet();
+
+      ArgumentModel model = parser.parseArguments("--hosts=a,,bc,d", "-e", "x;y", "-e", "", "-e", "z", "-o", "1,2");
+      DelimitedList hosts = model.getOptionList("hosts");
+      assertEquals(Arrays.asList("a", "", "bc", "d"), hosts);
+      assertSame(hosts, model.getOptionList('h'));
+      assertEquals("bc", hosts.slice(2).toString());
+      assertEquals("a,,bc,d", model.getOptionValue('h'));
+      assertEquals(Arrays.asList("x", "y", "z"), model.getOptionList('e'));
+      assertEquals("z", model.getOptionList('e').get(2));
+      assertThrows(IndexOutOfBoundsException.class, () -> model.getOptionList('e').get(3));
+      assertEquals(Arrays.asList("1,2"), model.getOptionList('o'));
+      assertTrue(model.getOptionList('x').isEmpty());
+
+      assertEquals(Arrays.asList("localhost"), parser.parseArguments("-o", "1").getOptionList('h'));
+   }
+
+   @Test
+   public void globArgumentsAreExpandedToPaths() throws ArgumentParseException, IOException {
+      Path dir = Files.createTempDirectory("glob");
+      try {
+         for (String file : Arrays.asList("a.txt", "b.txt", "c.log"))
+            Files.createFile(dir.resolve(file));
+
+         ArgumentParser varArgs = ArgumentParserBuilder.begin().setGlobVarArgs(true).buildAndGet();
+         ArgumentModel model = varArgs.parseArguments(dir + "/*.txt", dir + "/c.log", dir + "/*.none");
+         try (Stream<Path> paths = model.plainArgumentPathStream()) {
+            assertEquals(Arrays.asList("a.txt", "b.txt", "c.log"),
+                         paths.map(path -> path.getFileName().toString()).sorted().collect(Collectors.toList()));
+         }
+         try (Stream<Path> paths = model.plainArgumentPathStream().parallel()) {
+            assertEquals(3, paths.count());
+         }
+
+         ArgumentParser named = ArgumentParserBuilder.begin()
+                                                     .buildArgument("inputs")
+                                                        .setGlob(true)
+                                                        .build()
+                                                     .addArgument("output")
+                                                     .buildAndGet();
+         model = named.parseArguments(dir + "/*", dir + "/*.out");
+         try (Stream<Path> paths = model.argumentPathStream("inputs").parallel()) {
+            assertEquals(3, paths.count());
+         }
+         try (Stream<Path> paths = model.argumentPathStream("output")) {
+            assertEquals(Arrays.asList(Paths.get(dir + "/*.out")), paths.collect(Collectors.toList()));
+         }
+      } finally {
+         try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files)
+               Files.delete(file);
+         }
+         Files.delete(dir);
+      }
+   }
+
+   @Test
+   @SuppressWarnings("deprecation")
+   public void deprecatedModelBuilderConstructorsStillBuildModels() throws ArgumentParseException {
+      ExpectedPlainArgument argument = new ExpectedPlainArgument(0, ARG_NAME0, false, "");
+      argument.setDefaultValue("default");
+      ArgumentModel model = new ArgumentModelBuilder(Arrays.asList(argument),
+                                                     new HashMap<Character, ExpectedOption>(),
+                                                     new HashMap<String, ExpectedOption>()).build();
+      assertEquals("default", model.getArgumentValue(ARG_NAME0));
+
+      ArgumentModelBuilder missing = new ArgumentModelBuilder(Arrays.asList(new ExpectedPlainArgument(0, ARG_NAME0, "")),
+                                                              new HashMap<Character, ExpectedOption>(),
+                                                              new HashMap<String, ExpectedOption>(),
+                                                              (CommandGroup) null);
+      assertThrows(MissingArgumentException.class, missing::build);
+      assertTrue(new ArgumentModelBuilder(new HashMap<Character, ExpectedOption>(),
+                                          new HashMap<String, ExpectedOption>()).build().getPlainArguments().isEmpty());
+   }
+
    @Test
    public void exceptionIsThrownWhenAddingExpectedArgsOnVarArgMode() {
       ArgumentParserBuilder builder = ArgumentParserBuilder.begin().setVarArgs(true);
@@ -0,0 +1,110 @@
+package com.github.koettlitz.opt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+import com.github.koettlitz.util.Tokenizer;
+
+public class ArgumentRendererTest {
+   private static ArgumentParser parser() {
+      return ArgumentParserBuilder.begin()
+                                  .addArgument("source")
+                                  .buildArgument("target")
+                                     .setMandatory(false)
+                                     .build()
+                                  .buildOption('I')
+                                     .setMultiValued(true)
+                                     .build()
+                                  .buildOption('v')
+                                     .setLongKey("verbose")
+                                     .build()
+                                  .buildOption(ExpectedOption.NO_KEY)
+                                     .setLongKey("name")
+                                     .setExpectsValue(true)
+                                     .build()
+                                  .buildCommand("run")
+                                     .buildParser()
+                                        .setVarArgs(true)
+                                        .addOption('f')
+                                        .build()
+                                     .build()
+                                  .buildAndGet();
+   }
+
+   private static String[] split(String line) throws IOException {
+      Tokenizer tokenizer = new Tokenizer(new StringReader(line));
+      List<String> tokens = new ArrayList<>();
+      for (String token = tokenizer.nextToken(); token != null; token = tokenizer.nextToken())
+         tokens.add(token);
+
+      return tokens.toArray(new String[0]);
+   }
+
+   private static void assertRoundTrip(ArgumentParser parser, String... args) throws ArgumentParseException,
+                                                                                     IOException {
+      ArgumentModel model = parser.parseArguments(args);
+      assertEquals(model, parser.parseArguments(ArgumentRenderer.toArgs(model)));
+
+      String line = ArgumentRenderer.toCommandLine(model);
+      assertEquals(line.length(), ArgumentRenderer.commandLineLength(model));
+      assertEquals(model, parser.parseArguments(split(line)));
+   }
+
+   @Test
+   public void renderedArgumentsParseToEqualModel() throws ArgumentParseException, IOException {
+      ArgumentParser parser = parser();
+      assertRoundTrip(parser, "src");
+      assertRoundTrip(parser, "-vI", "a", "-I", "b c", "--verbose", "--name=", "", "src", "run", "-f", "x", "it's");
+      assertRoundTrip(parser, "--name=#1", "--", "-src", "@target");
+      assertRoundTrip(parser, "--name=a\nb", "-I", "it's\t\\\u0001\u2028", "src\r", "run", "\u007f");
+      assertEquals("-I $'it\\'s\\t\\\\\\x01' --name=$'a\\nb' src",
+                   ArgumentRenderer.toCommandLine(parser.parseArguments("--name=a\nb", "-I", "it's\t\\\u0001", "src")));
+
+      ArgumentParser ambiguous = ArgumentParserBuilder.begin()
+                                                      .addArgument("source")
+                                                      .buildCommand("run")
+                                                         .build()
+                                                      .buildAndGet();
+      assertRoundTrip(ambiguous, "run", "run");
+   }
+
+   @Test
+   public void dashedPlainsAndArgFileNamesAreEscaped() throws ArgumentParseException, IOException {
+      ArgumentParser parser = parser();
+      ArgumentModel model = parser.parseArguments("--", "-src", "run", "-f", "--", "-x");
+      // a model, that holds dashed plain arguments without "--", e.g. a bound prepared command
+      long[] present = model.getPresence().clone();
+      present[0] &= ~(1L << model.getSpec().optionIndex('-'));
+      ArgumentModel withoutMinusMinus = new ArgumentModel(model.getSpec(),
+                                                          present,
+                                                          model.getValues(),
+                                                          model.getCounts(),
+                                                          model.getVarArgs());
+      assertArrayEquals(new String[] { "--", "-src", "run", "-f", "--", "-x" }, ArgumentRenderer.toArgs(withoutMinusMinus));
+
+      parser.setExpandArgFiles(true);
+      assertRoundTrip(parser, "-I", "@@inc", "@@src", "@", "run", "@@x");
+      ArgumentModel escaped = parser.parseArguments("-I", "@@inc", "@@src", "@", "run", "@@x");
+      assertEquals("@src", escaped.getArgumentValue("source"));
+      assertEquals("-I @@inc @@src @ run @@x", ArgumentRenderer.toCommandLine(escaped));
+   }
+
+   @Test
+   public void renderingIsCanonical() throws ArgumentParseException, IOException {
+      ArgumentModel model = parser().parseArguments("src", "-I", "b c", "-v", "-I", "a", "run", "x");
+
+      assertArrayEquals(new String[] { "-I", "b c", "-I", "a", "-v", "src", "run", "x" },
+                        ArgumentRenderer.toArgs(model));
+      assertEquals("-I 'b c' -I a -v src run x", ArgumentRenderer.toCommandLine(model));
+
+      StringBuilder builder = new StringBuilder("tool ");
+      assertEquals("tool -I 'b c' -I a -v src run x", ArgumentRenderer.appendCommandLine(model, builder).toString());
+   }
+}
@@ -0,0 +1,126 @@
+package com.github.koettlitz.opt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+
+public class ArgvGeneratorTest {
+   private static final int THREADS = 4;
+   private static final int LINES = 500;
+
+   private static ArgumentParser parser() {
+      return ArgumentParserBuilder.begin()
+                                  .addArgument("source")
+                                  .buildArgument("target")
+                                     .setMandatory(false)
+                                     .build()
+                                  .addOption('a')
+                                  .addOption('b')
+                                  .buildOption('I')
+                                     .setMultiValued(true)
+                                     .build()
+                                  .buildOption('v')
+                                     .setLongKey("verbose")
+                                     .build()
+                                  .buildOption('o')
+                                     .setLongKey("output")
+                                     .setExpectsValue(true)
+                                     .build()
+                                  .buildCommand("run")
+                                     .buildParser()
+                                        .setVarArgs(true)
+                                        .addOption('f')
+                                        .buildCommand("fast")
+                                           .buildParser()
+                                              .addArgument("level")
+                                              .build()
+                                           .build()
+                                        .build()
+                                     .build()
+                                  .buildCommand("get")
+                                     .buildParser()
+                                        .buildOption('n')
+                                           .setExpectsValue(true)
+                                           .build()
+                                        .build()
+                                     .build()
+                                  .buildAndGet();
+   }
+
+   @Test
+   public void generatesReproducibleValidAndInvalidLines() {
+      ArgumentParser parser = parser();
+      ArgvGenerator generator = new ArgvGenerator(parser, 42).setInvalidRatio(0.3);
+      List<String> first = generator.stream().limit(LINES).map(Arrays::toString).collect(Collectors.toList());
+      List<String> second = new ArgvGenerator(parser, 42).setInvalidRatio(0.3)
+                                                          .stream()
+                                                          .limit(LINES)
+                                                          .map(Arrays::toString)
+                                                          .collect(Collectors.toList());
+      assertEquals(first, second);
+
+      ArgvGenerator shaped = new ArgvGenerator(parser, 7).setCombinedFlagRatio(1).setLongFormRatio(1).setMaxOptions(8);
+      boolean combined = false;
+      boolean longForm = false;
+      for (int i = 0; i < LINES; i++) {
+         String[] valid = shaped.nextValid();
+         assertTrue(parser.parseRecovering(valid).getDiagnostics().isEmpty(), Arrays.toString(valid));
+         for (String token : valid) {
+            combined |= token.matches("-[abIv]{2,}");
+            longForm |= token.startsWith("--output=");
+         }
+
+         String[] invalid = shaped.nextInvalid();
+         assertThrows(ArgumentParseException.class, () -> parser.parseArguments(invalid), Arrays.toString(invalid));
+      }
+      assertTrue(combined);
+      assertTrue(longForm);
+   }
+
+   @Test
+   public void concurrentParsesAgreeWithSequentialParses() throws Exception {
+      ArgumentParser parser = parser();
+      ArgvGenerator generator = new ArgvGenerator(parser, 1);
+      List<List<String[]>> lines = new ArrayList<>();
+      List<List<ArgumentModel>> expected = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+         ArgvGenerator split = generator.split();
+         List<String[]> threadLines = new ArrayList<>();
+         List<ArgumentModel> threadModels = new ArrayList<>();
+         for (int i = 0; i < LINES; i++) {
+            threadLines.add(split.nextValid());
+            threadModels.add(parser.parseArguments(threadLines.get(i)));
+         }
+         lines.add(threadLines);
+         expected.add(threadModels);
+      }
+
+      ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+      try {
+         List<Future<List<ArgumentModel>>> results = new ArrayList<>();
+         for (List<String[]> threadLines : lines) {
+            results.add(executor.submit(() -> {
+               List<ArgumentModel> models = new ArrayList<>();
+               for (String[] args : threadLines)
+                  models.add(parser.parseArguments(args));
+               return models;
+            }));
+         }
+
+         for (int t = 0; t < THREADS; t++)
+            assertEquals(expected.get(t), results.get(t).get());
+      } finally {
+         executor.shutdown();
+      }
+   }
+}
@@ -0,0 +1,94 @@
+package com.github.koettlitz.opt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class IncrementalParserTest {
+   private static ArgumentParser parser() {
+      return ArgumentParserBuilder.begin()
+                                  .buildOption('v')
+                                     .setLongKey("verbose")
+                                     .build()
+                                  .buildOption('o')
+                                     .setLongKey("output")
+                                     .setExpectsValue(true)
+                                     .build()
+                                  .buildCommand("run")
+                                     .buildParser()
+                                        .setVarArgs(true)
+                                        .addOption('f')
+                                        .build()
+                                     .build()
+                                  .buildCommand("rm")
+                                     .buildParser()
+                                        .addArgument("file")
+                                        .build()
+                                     .build()
+                                  .buildAndGet();
+   }
+
+   private static void assertSameAsRecovering(ArgumentParser parser, List<String> tokens, List<ParseDiagnostic> actual) {
+      List<ParseDiagnostic> expected = new ArrayList<>();
+      for (ParseDiagnostic d : parser.parseRecovering(tokens.toArray(new String[0])).getDiagnostics()) {
+         // missing mandatory arguments are only known once the line is finished
+         if (d.getToken() != null)
+            expected.add(d);
+      }
+
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+         assertEquals(expected.get(i).getTokenIndex(), actual.get(i).getTokenIndex());
+         assertEquals(expected.get(i).getCharOffset(), actual.get(i).getCharOffset());
+         assertEquals(expected.get(i).getMessage(), actual.get(i).getMessage());
+      }
+   }
+
+   @Test
+   public void resumesAtFirstEditedToken() {
+      ArgumentParser parser = parser();
+      IncrementalParser incremental = new IncrementalParser(parser);
+      List<String> line = new ArrayList<>(Arrays.asList("-v", "--output=a", "rm", "x"));
+      for (int i = 0; i < 1000; i++)
+         line.add(i % 2 == 0 ? "-v" : "--verbose");
+      line.add("-x");
+
+      assertSameAsRecovering(parser, line, incremental.update(line));
+      assertEquals(0, incremental.getResumedAt());
+      assertEquals(1, incremental.getDiagnostics().size());
+
+      line.set(line.size() - 1, "-v");
+      assertSameAsRecovering(parser, line, incremental.update(line));
+      assertEquals(line.size() - 1, incremental.getResumedAt());
+
+      line.set(3, "--");
+      line.add("-o");
+      assertSameAsRecovering(parser, line, incremental.update(line));
+      assertEquals(3, incremental.getResumedAt());
+      // the tokens after the plain argument of "rm" are unknown to it, so they closed its level
+      assertTrue(incremental.getCommandPath().isEmpty());
+      assertTrue(incremental.expectsOptionValue());
+   }
+
+   @Test
+   public void completesNextToken() {
+      IncrementalParser incremental = new IncrementalParser(parser());
+
+      incremental.update(Arrays.asList());
+      assertEquals(Arrays.asList("rm", "run"), incremental.complete("r"));
+
+      incremental.update(Arrays.asList("run", "a"));
+      assertEquals(Arrays.asList("run"), incremental.getCommandPath());
+      // options of the command and, because it ignores unknown arguments, of the root
+      assertEquals(Arrays.asList("--", "--output", "--verbose", "-f", "-o", "-v"), incremental.complete("-"));
+      assertTrue(incremental.complete("r").isEmpty());
+
+      incremental.update(Arrays.asList("run", "-o"));
+      assertTrue(incremental.expectsOptionValue());
+      assertTrue(incremental.complete("").isEmpty());
+   }
+}
@@ -0,0 +1,100 @@
+package com.github.koettlitz.opt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.PathPolicy.Check;
+import com.github.koettlitz.opt.ex.PathValidationException;
+
+public class PathPolicyTest {
+   private static final PathPolicy READABLE = PathPolicy.NONE.withReadable(true).withMaxSize(4);
+
+   private static Path createFiles() throws IOException {
+      Path dir = Files.createTempDirectory("paths");
+      Files.write(dir.resolve("small"), new byte[] { 1, 2 });
+      Files.write(dir.resolve("large"), new byte[] { 1, 2, 3, 4, 5 });
+      return dir;
+   }
+
+   private static void delete(Path dir) throws IOException {
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+         for (Path file : files)
+            Files.delete(file);
+      }
+      Files.delete(dir);
+   }
+
+   @Test
+   public void pathsAreCheckedAfterParsing() throws Exception {
+      Path dir = createFiles();
+      try {
+         ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                      .buildArgument("output")
+                                                         .setPathPolicy(PathPolicy.NONE.withDirectory(true))
+                                                         .build()
+                                                      .buildOption('i')
+                                                         .setMultiValued(true)
+                                                         .setPathPolicy(READABLE)
+                                                         .build()
+                                                      .buildAndGet();
+
+         parser.parseArguments("-i", dir + "/small", dir.toString());
+
+         PathValidationException e = assertThrows(PathValidationException.class,
+                                                  () -> parser.parseArguments("-i", dir + "/missing", dir.toString()));
+         assertEquals(Check.EXISTS, e.getCheck());
+         assertEquals(dir + "/missing", e.getPath());
+         assertEquals("-i", e.getArgumentName());
+
+         e = assertThrows(PathValidationException.class, () -> parser.parseArguments(dir + "/small"));
+         assertEquals(Check.DIRECTORY, e.getCheck());
+
+         e = assertThrows(PathValidationException.class, () -> parser.parseArguments(dir + "/nul\0"));
+         assertEquals(Check.VALID, e.getCheck());
+
+         PreparedCommand prepared = parser.prepare("-i", "${input}", dir.toString());
+         assertEquals(dir + "/small", prepared.bind(dir + "/small").getOptionValue('i'));
+         e = assertThrows(PathValidationException.class, () -> prepared.bind(dir + "/large"));
+         assertEquals(Check.MAX_SIZE, e.getCheck());
+      } finally {
+         delete(dir);
+      }
+   }
+
+   @Test
+   public void concurrentChecksReportAllViolationsInOrder() throws Exception {
+      Path dir = createFiles();
+      ExecutorService executor = Executors.newFixedThreadPool(3);
+      try {
+         ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                      .setVarArgPathPolicy(READABLE)
+                                                      .setGlobVarArgs(true)
+                                                      .setPathValidation(executor, 4)
+                                                      .buildAndGet();
+
+         String[] args = new String[200];
+         for (int i = 0; i < args.length; i++)
+            args[i] = dir + (i % 50 == 7 ? "/missing" + i : i == 120 ? "/large" : i == 150 ? "/*" : "/small");
+
+         List<ParseDiagnostic> diagnostics = parser.parseRecovering(args).getDiagnostics();
+         assertEquals(5, diagnostics.size());
+         assertEquals(dir + "/missing7", ((PathValidationException) diagnostics.get(0).getException()).getPath());
+         assertEquals(dir + "/missing57", ((PathValidationException) diagnostics.get(1).getException()).getPath());
+         assertEquals(dir + "/missing107", ((PathValidationException) diagnostics.get(2).getException()).getPath());
+         assertEquals(Check.MAX_SIZE, ((PathValidationException) diagnostics.get(3).getException()).getCheck());
+         assertEquals(dir + "/missing157", ((PathValidationException) diagnostics.get(4).getException()).getPath());
+      } finally {
+         executor.shutdown();
+         delete(dir);
+      }
+   }
+}
@@ -0,0 +1,98 @@
+package com.github.koettlitz.opt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ex.LimitExceededException;
+
+public class PreparedCommandTest {
+   private static ArgumentParser parser() {
+      return ArgumentParserBuilder.begin()
+                                  .buildOption('v')
+                                     .build()
+                                  .buildCommand("run")
+                                     .buildParser()
+                                        .buildOption('i')
+                                           .setLongKey("image")
+                                           .setExpectsValue(true)
+                                           .build()
+                                        .buildOption('c')
+                                           .setLongKey("cpus")
+                                           .setExpectsValue(true)
+                                           .build()
+                                        .buildOption('e')
+                                           .setMultiValued(true)
+                                           .build()
+                                        .buildCommand("job")
+                                           .buildParser()
+                                              .setVarArgs(true)
+                                              .build()
+                                           .build()
+                                        .build()
+                                     .build()
+                                  .buildAndGet();
+   }
+
+   @Test
+   public void bindingEqualsParsingTheBoundCommandLine() throws Exception {
+      ArgumentParser parser = parser();
+      PreparedCommand prepared = parser.prepare("-v", "run", "--image=${img}", "-c", "${n}",
+                                                "-e", "A=1", "-e", "${env}", "job", "${id}", "${img}");
+      assertEquals(Arrays.asList("img", "n", "env", "id"), prepared.getPlaceholders());
+
+      ArgumentModel bound = prepared.bind("alpine", "4", "B=2", "42");
+      ArgumentModel parsed = parser.parseArguments("-v", "run", "--image=alpine", "-c", "4",
+                                                   "-e", "A=1", "-e", "B=2", "job", "42", "alpine");
+      assertEquals(parsed, bound);
+      assertEquals(Arrays.asList("A=1", "B=2"), bound.getCommandValue("run").getOptionValues('e'));
+
+      // bound values are never parsed, so they can't turn into options
+      ArgumentModel dashed = prepared.bind("alpine", "4", "B=2", "-x");
+      assertEquals(Arrays.asList("-x", "alpine"),
+                   dashed.getCommandValue("run").getCommandValue("job").getPlainArguments());
+      assertEquals(parser.parseArguments("-v", "run", "--image=alpine", "-c", "4",
+                                         "-e", "A=1", "-e", "B=2", "job", "--", "-x", "alpine"),
+                   dashed);
+      assertEquals(dashed, parser.parseArguments(ArgumentRenderer.toArgs(dashed)));
+
+      Map<String, String> values = new HashMap<>();
+      values.put("img", "debian");
+      values.put("n", "2");
+      values.put("env", "C=3");
+      values.put("id", "7");
+      ArgumentModel other = prepared.bind(values);
+      assertEquals("debian", other.getCommandValue("run").getOptionValue("image"));
+      assertEquals("${img}", prepared.getTemplate().getCommandValue("run").getOptionValue("image"));
+      assertEquals("alpine", bound.getCommandValue("run").getOptionValue("image"));
+   }
+
+   @Test
+   public void rejectsMisplacedPlaceholdersAndInvalidValues() throws Exception {
+      ArgumentParser parser = parser();
+      assertThrows(IllegalArgumentException.class, () -> parser.prepare("run", "--image=x${img}"));
+
+      PreparedCommand prepared = parser.prepare("run", "-i", "${img}");
+      assertThrows(IllegalArgumentException.class, () -> prepared.bind("a", "b"));
+      assertThrows(IllegalArgumentException.class, () -> prepared.bind(new HashMap<String, String>()));
+      assertThrows(NullPointerException.class, () -> prepared.bind((String) null));
+
+      parser.setLimits(ParseLimits.NONE.withMaxTokenLength(3));
+      assertThrows(LimitExceededException.class, () -> prepared.bind("alpine"));
+      assertEquals("abc", prepared.bind("abc").getCommandValue("run").getOptionValue('i'));
+
+      // only the bound models are executed, so the template is not audited
+      List<ArgumentModel> audited = new ArrayList<>();
+      parser.setLimits(ParseLimits.NONE);
+      parser.setAuditSink(audited::add);
+      ArgumentModel bound = parser.prepare("run", "-i", "${img}").bind("abc");
+      assertEquals(Collections.singletonList(bound), audited);
+   }
+}
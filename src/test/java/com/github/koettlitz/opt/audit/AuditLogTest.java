@@ -0,0 +1,151 @@
+package com.github.koettlitz.opt.audit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ArgumentModel;
+import com.github.koettlitz.opt.ArgumentParser;
+import com.github.koettlitz.opt.ArgumentParserBuilder;
+import com.github.koettlitz.opt.audit.AuditLog.FsyncPolicy;
+import com.github.koettlitz.opt.audit.AuditLog.OverflowPolicy;
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+
+public class AuditLogTest {
+   private static ArgumentParser parser(AuditSink sink) {
+      return ArgumentParserBuilder.begin()
+                                  .setVarArgs(true)
+                                  .buildOption('o')
+                                     .setLongKey("output")
+                                     .setExpectsValue(true)
+                                     .build()
+                                  .setAuditSink(sink)
+                                  .buildAndGet();
+   }
+
+   private static List<String> lines(Path dir) throws IOException {
+      List<String> lines = new ArrayList<>();
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+         for (Path file : files) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8))
+               lines.add(line.substring(line.indexOf(' ') + 1));
+         }
+      }
+      return lines;
+   }
+
+   private static void delete(Path dir) throws IOException {
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+         for (Path file : files)
+            Files.delete(file);
+      }
+      Files.delete(dir);
+   }
+
+   @Test
+   public void writesEverySuccessfulParseAndRotates() throws Exception {
+      Path dir = Files.createTempDirectory("clp");
+      try {
+         AuditLog log = new AuditLog(dir.resolve("audit.log"), 64, OverflowPolicy.BLOCK);
+         log.setMaxFileSize(4096);
+         log.setMaxBackups(100);
+         log.setFsyncPolicy(FsyncPolicy.INTERVAL);
+         ArgumentParser parser = parser(log);
+
+         int threads = 4;
+         int perThread = 250;
+         CountDownLatch done = new CountDownLatch(threads);
+         for (int t = 0; t < threads; t++) {
+            int thread = t;
+            new Thread(() -> {
+               try {
+                  for (int i = 0; i < perThread; i++)
+                     parser.parseArguments("--output=" + thread, "file" + i);
+               } catch (ArgumentParseException e) {
+                  fail(e);
+               } finally {
+                  done.countDown();
+               }
+            }).start();
+         }
+         done.await();
+         assertThrows(ArgumentParseException.class, () -> parser.parseArguments("-x"));
+         log.close();
+
+         assertEquals(threads * perThread, log.getWrittenCount());
+         assertEquals(0, log.getDroppedCount());
+         assertNull(log.getLastError());
+         assertTrue(Files.exists(dir.resolve("audit.log.1")));
+
+         List<String> lines = lines(dir);
+         assertEquals(threads * perThread, lines.size());
+         assertTrue(lines.contains("-o 3 file249"));
+      } finally {
+         delete(dir);
+      }
+   }
+
+   @Test
+   public void lineBreaksInValuesCanNotForgeRecords() throws Exception {
+      Path dir = Files.createTempDirectory("clp");
+      try {
+         AuditLog log = new AuditLog(dir.resolve("audit.log"), 16, OverflowPolicy.BLOCK);
+         parser(log).parseArguments("--output=x\n1700000000000 --output=forged", "a\u2028b");
+         log.close();
+
+         assertEquals(1, log.getWrittenCount());
+         assertEquals(1, lines(dir).size());
+         assertEquals("-o $'x\\n1700000000000 --output=forged' $'a\\u2028b'", lines(dir).get(0));
+      } finally {
+         delete(dir);
+      }
+   }
+
+   @Test
+   public void loneSurrogatesDoNotCutLines() throws Exception {
+      Path dir = Files.createTempDirectory("clp");
+      try {
+         AuditLog log = new AuditLog(dir.resolve("audit.log"), 16, OverflowPolicy.BLOCK);
+         ArgumentParser parser = parser(log);
+         parser.parseArguments("a\ud800b");
+         parser.parseArguments("next");
+         log.close();
+
+         assertEquals(2, log.getWrittenCount());
+         List<String> lines = lines(dir);
+         assertEquals(2, lines.size());
+         assertEquals("'a?b'", lines.get(0));
+         assertEquals("next", lines.get(1));
+      } finally {
+         delete(dir);
+      }
+   }
+
+   @Test
+   public void dropsRecordsWhenQueueIsFull() throws Exception {
+      Path dir = Files.createTempDirectory("clp");
+      try {
+         AuditLog log = new AuditLog(dir.resolve("audit.log"), 1, OverflowPolicy.DROP);
+         ArgumentModel model = parser(null).parseArguments("a");
+         for (int i = 0; i < 10_000; i++)
+            log.record(model);
+         log.close();
+         log.record(model);
+
+         assertEquals(10_001, log.getWrittenCount() + log.getDroppedCount());
+         assertTrue(log.getDroppedCount() > 1);
+         assertEquals(log.getWrittenCount(), lines(dir).size());
+      } finally {
+         delete(dir);
+      }
+   }
+}
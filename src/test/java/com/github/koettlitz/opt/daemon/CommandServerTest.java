@@ -0,0 +1,164 @@
+package com.github.koettlitz.opt.daemon;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ArgumentParser;
+import com.github.koettlitz.opt.ArgumentParserBuilder;
+import com.github.koettlitz.opt.exec.CommandDispatcher;
+
+public class CommandServerTest {
+   private static final int CLIENTS = 4;
+
+   private final CountDownLatch waiting = new CountDownLatch(CLIENTS);
+
+   private ArgumentParser parser() {
+      return ArgumentParserBuilder.begin()
+                                  .buildCommand("echo")
+                                     .setHandler(ctx -> {
+                                        ctx.getOut().print(ctx.getModel().getArgumentValue("text"));
+                                        ctx.getErr().print(ctx.getWorkingDirectory());
+                                        return 3;
+                                     })
+                                     .buildParser()
+                                        .addArgument("text")
+                                        .build()
+                                     .build()
+                                  .buildCommand("await")
+                                     .setHandler(ctx -> {
+                                        waiting.countDown();
+                                        return waiting.await(10, TimeUnit.SECONDS) ? 0 : 1;
+                                     })
+                                     .build()
+                                  .buildAndGet();
+   }
+
+   private static int execute(CommandServer server,
+                              ByteArrayOutputStream out,
+                              ByteArrayOutputStream err,
+                              String... args) throws IOException {
+      return CommandClient.execute(server.getPort(), args, Paths.get("/tmp"), out, err);
+   }
+
+   @Test
+   public void streamsOutputAndExitCode() throws IOException {
+      try (CommandServer server = new CommandServer(parser(), 0)) {
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         ByteArrayOutputStream err = new ByteArrayOutputStream();
+         assertEquals(3, execute(server, out, err, "echo", "hällo wörld"));
+         assertEquals("hällo wörld", out.toString("UTF-8"));
+         assertEquals(Paths.get("/tmp").toString(), err.toString("UTF-8"));
+
+         err.reset();
+         assertEquals(CommandDispatcher.EXIT_USAGE, execute(server, out, err, "echo"));
+         assertFalse(err.toString("UTF-8").isEmpty());
+      }
+   }
+
+   @Test
+   public void rejectsWrongTokensAndParsesInTheClientDirectory() throws IOException {
+      Path directory = Files.createTempDirectory("daemon");
+      Path tokenFile = directory.resolve("server.token");
+      Path argFile = directory.resolve("echo.args");
+      ArgumentParser parser = parser();
+      parser.setExpandArgFiles(true);
+      try (CommandServer server = new CommandServer(parser, 0, Executors.newCachedThreadPool(), tokenFile)) {
+         assertEquals(tokenFile, server.getTokenFile());
+         assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile)));
+         String token = CommandClient.readToken(tokenFile);
+
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         ByteArrayOutputStream err = new ByteArrayOutputStream();
+         String wrong = (token.charAt(0) == '0' ? "1" : "0") + token.substring(1);
+         assertThrows(IOException.class,
+                      () -> CommandClient.execute(server.getPort(), wrong, new String[] { "echo", "x" }, directory, out, err));
+         assertThrows(IOException.class,
+                      () -> CommandClient.execute(server.getPort(), "short", new String[] { "echo", "x" }, directory, out, err));
+         assertEquals(0, out.size());
+
+         // the argument file is relative to the working directory of the client, not to the one of the server
+         Files.write(argFile, "echo 'from file'".getBytes(StandardCharsets.UTF_8));
+         assertEquals(3, CommandClient.execute(server.getPort(), token, new String[] { "@echo.args" }, directory, out, err));
+         assertEquals("from file", out.toString("UTF-8"));
+      } finally {
+         Files.deleteIfExists(argFile);
+         Files.deleteIfExists(tokenFile);
+         Files.delete(directory);
+      }
+   }
+
+   @Test
+   public void dropsUnauthenticatedAndIdleConnectionsAndLimitsSessions() throws IOException {
+      try (CommandServer server = new CommandServer(parser(), 0)) {
+         server.setRequestTimeoutMillis(200);
+         server.setMaxSessions(1);
+
+         // a wrong token is rejected before the length of the frame is read
+         try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeByte(Frames.REQUEST);
+            out.write(new byte[Frames.TOKEN_LENGTH]);
+            out.flush();
+            socket.setSoTimeout(5_000);
+            assertEquals(-1, socket.getInputStream().read());
+         }
+
+         // an idle connection holds the only session until the request timeout, then the next client is served
+         try (Socket idle = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(3, execute(server, out, new ByteArrayOutputStream(), "echo", "x"));
+            assertEquals("x", out.toString("UTF-8"));
+            idle.setSoTimeout(5_000);
+            assertEquals(-1, idle.getInputStream().read());
+         }
+
+         assertThrows(IllegalArgumentException.class, () -> server.setMaxSessions(0));
+         assertThrows(IllegalArgumentException.class, () -> server.setRequestTimeoutMillis(-1));
+      }
+   }
+
+   @Test
+   public void servesConcurrentSessionsAndDrainsOnClose() throws Exception {
+      CommandServer server = new CommandServer(parser(), 0);
+      ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+      try {
+         List<Future<Integer>> results = new ArrayList<>();
+         for (int i = 0; i < CLIENTS; i++) {
+            results.add(clients.submit(() -> execute(server,
+                                                     new ByteArrayOutputStream(),
+                                                     new ByteArrayOutputStream(),
+                                                     "await")));
+         }
+
+         // every command waits for all the others, so they only complete if they run concurrently
+         for (Future<Integer> result : results)
+            assertEquals(Integer.valueOf(0), result.get(20, TimeUnit.SECONDS));
+      } finally {
+         clients.shutdown();
+         server.close();
+      }
+
+      assertTrue(server.isClosed());
+      assertThrows(IOException.class,
+                   () -> execute(server, new ByteArrayOutputStream(), new ByteArrayOutputStream(), "echo", "x"));
+   }
+}
@@ -0,0 +1,115 @@
+package com.github.koettlitz.opt.exec;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ArgumentModel;
+import com.github.koettlitz.opt.ArgumentParser;
+import com.github.koettlitz.opt.ArgumentParserBuilder;
+import com.github.koettlitz.opt.ex.ArgumentParseException;
+
+public class CommandDispatcherTest {
+   private static ArgumentParser parser() {
+      return ArgumentParserBuilder.begin()
+                                  .buildCommand("remote")
+                                     .setHandler(ctx -> 1)
+                                     .buildParser()
+                                        .buildCommand("add")
+                                           .setHandler(ctx -> {
+                                              ctx.getOut().print(ctx.getModel().getArgumentValue("name"));
+                                              return 2;
+                                           })
+                                           .buildParser()
+                                              .addArgument("name")
+                                              .build()
+                                           .build()
+                                        .buildCommand("show")
+                                           .build()
+                                        .build()
+                                     .build()
+                                  .buildCommand("status")
+                                     .build()
+                                  .buildAndGet();
+   }
+
+   @Test
+   public void executesInnermostHandler() throws Exception {
+      ArgumentParser parser = parser();
+      CommandDispatcher dispatcher = new CommandDispatcher(parser);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      PrintStream print = new PrintStream(out, true, "UTF-8");
+
+      ArgumentModel model = parser.parseArguments("remote", "add", "origin");
+      assertEquals(2, dispatcher.execute(model, print, System.err, Paths.get("/tmp")));
+      assertEquals("origin", out.toString("UTF-8"));
+
+      assertEquals(1, dispatcher.execute(parser.parseArguments("remote", "show")));
+      assertFalse(dispatcher.canDispatch(parser.parseArguments("status")));
+      assertThrows(IllegalArgumentException.class, () -> dispatcher.execute(parser.parseArguments("status")));
+   }
+
+   @Test
+   public void contextDescribesCommand() throws ArgumentParseException, ExecutionException, InterruptedException {
+      CommandContext[] seen = new CommandContext[1];
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .buildCommand("run")
+                                                      .setHandler(ctx -> {
+                                                         seen[0] = ctx;
+                                                         return 0;
+                                                      })
+                                                      .buildParser()
+                                                         .addOption('f')
+                                                         .build()
+                                                      .build()
+                                                   .buildAndGet();
+      ArgumentModel model = parser.parseArguments("run", "-f");
+      CommandDispatcher dispatcher = new CommandDispatcher(parser);
+
+      assertEquals(Integer.valueOf(0), dispatcher.submit(model, Runnable::run, System.out, System.err, Paths.get("/tmp")).get());
+      assertSame(model, seen[0].getRootModel());
+      assertTrue(seen[0].getModel().isOptionPresent('f'));
+      assertEquals(Arrays.asList("run"), seen[0].getPath());
+      assertEquals(Paths.get("/tmp/x"), seen[0].resolve("x"));
+   }
+
+   @Test
+   public void submitsToExecutorAndNewThread() throws Exception {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .buildCommand("fail")
+                                                      .setHandler(ctx -> {
+                                                         throw new IllegalStateException("failed");
+                                                      })
+                                                      .build()
+                                                   .buildCommand("name")
+                                                      .setHandler(ctx -> Thread.currentThread().getName().isEmpty() ? 0 : 1)
+                                                      .build()
+                                                   .buildAndGet();
+      CommandDispatcher dispatcher = new CommandDispatcher(parser);
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+         CompletableFuture<Integer> failed = dispatcher.submit(parser.parseArguments("fail"), executor);
+         ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+         assertTrue(e.getCause() instanceof IllegalStateException);
+
+         assertEquals(Integer.valueOf(1), dispatcher.submit(parser.parseArguments("name"), executor).get(10, TimeUnit.SECONDS));
+      } finally {
+         executor.shutdown();
+      }
+
+      // virtual threads have no name by default, platform threads of the fallback have one
+      Integer expected = CommandDispatcher.isVirtualThreadSupported() ? 0 : 1;
+      assertEquals(expected,
+                   dispatcher.submitOnNewThread(parser.parseArguments("name")).get(10, TimeUnit.SECONDS));
+   }
+}
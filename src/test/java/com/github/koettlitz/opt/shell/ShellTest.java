@@ -0,0 +1,96 @@
+package com.github.koettlitz.opt.shell;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ArgumentParser;
+import com.github.koettlitz.opt.ArgumentParserBuilder;
+import com.github.koettlitz.opt.exec.CommandDispatcher;
+
+public class ShellTest {
+   private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+   private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+   private Shell shell() throws IOException {
+      return shell(false);
+   }
+
+   private Shell shell(boolean expandArgFiles) throws IOException {
+      ArgumentParser parser = ArgumentParserBuilder.begin()
+                                                   .buildCommand("echo")
+                                                      .setHandler(ctx -> {
+                                                         ctx.getOut().println(ctx.getModel().getPlainArguments());
+                                                         return ctx.getModel().getPlainArguments().size();
+                                                      })
+                                                      .buildParser()
+                                                         .setVarArgs(true)
+                                                         .build()
+                                                      .build()
+                                                   .buildAndGet();
+      parser.setExpandArgFiles(expandArgFiles);
+      Shell shell = new Shell(parser, new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"));
+      shell.setPrompt("");
+      return shell;
+   }
+
+   @Test
+   public void executesLinesUntilExit() throws IOException {
+      Shell shell = shell();
+      String input = "echo a 'b c'\n\necho a 'b c'\nunknown\nhistory\nexit\necho never\n";
+
+      assertEquals(0, shell.run(new StringReader(input)));
+      assertEquals(Arrays.asList("echo a 'b c'", "unknown", "history", "exit"), shell.getHistory());
+
+      String output = out.toString("UTF-8");
+      assertTrue(output.startsWith("[a, b c]" + System.lineSeparator() + "[a, b c]"));
+      assertTrue(output.contains("2  unknown"));
+      assertFalse(output.contains("never"));
+      assertFalse(err.toString("UTF-8").isEmpty());
+   }
+
+   @Test
+   public void backslashesInDoubleQuotesOnlyEscapeLikeInAPosixShell() throws IOException {
+      assertEquals(Arrays.asList("C:\\dir", "$`\"\\", "ab", "a\\'b"),
+                   Shell.tokenize("\"C:\\dir\" \"\\$\\`\\\"\\\\\" \"a\\\nb\" a\\\\\\'b"));
+      assertEquals(Arrays.asList("C:\\dir"), Shell.tokenize("'C:\\dir'"));
+      assertThrows(IOException.class, () -> Shell.tokenize("\"a\\"));
+   }
+
+   @Test
+   public void argumentFilesAreRelativeToTheWorkingDirectoryOfTheShell() throws IOException {
+      Path directory = Files.createTempDirectory("shell");
+      Path argFile = directory.resolve("echo.args");
+      try {
+         Files.write(argFile, "echo a b".getBytes(StandardCharsets.UTF_8));
+         Shell shell = shell(true);
+         shell.setWorkingDirectory(directory);
+
+         assertEquals(2, shell.execute("@echo.args"));
+         assertTrue(out.toString("UTF-8").startsWith("[a, b]"));
+      } finally {
+         Files.deleteIfExists(argFile);
+         Files.delete(directory);
+      }
+   }
+
+   @Test
+   public void reportsExitCodesAndHints() throws IOException {
+      Shell shell = shell();
+      assertEquals(2, shell.execute("echo x y"));
+      assertEquals(CommandDispatcher.EXIT_USAGE, shell.execute("echo 'open"));
+      assertEquals(CommandDispatcher.EXIT_USAGE, shell.execute("-z"));
+
+      assertEquals(Arrays.asList("echo"), shell.complete(Shell.tokenize(""), "e"));
+      assertEquals(1, shell.check(Shell.tokenize("-z echo")).size());
+   }
+}
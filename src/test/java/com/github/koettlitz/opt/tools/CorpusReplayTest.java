@@ -0,0 +1,86 @@
+package com.github.koettlitz.opt.tools;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ArgumentParser;
+import com.github.koettlitz.opt.ArgumentParserBuilder;
+
+public class CorpusReplayTest {
+   private static ArgumentParser parser() {
+      return ArgumentParserBuilder.begin()
+                                  .addArgument("source")
+                                  .buildOption('v')
+                                     .setLongKey("verbose")
+                                     .build()
+                                  .buildAndGet();
+   }
+
+   private static List<String[]> corpus(String content) throws IOException {
+      Path file = Files.createTempFile("corpus", ".txt");
+      try {
+         Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+         return CorpusReplay.readCorpus(file);
+      } finally {
+         Files.delete(file);
+      }
+   }
+
+   @Test
+   public void readsLineAndNulSeparatedCorpora() throws IOException {
+      List<String[]> lines = corpus("# recorded\n-v 'a b'\n\n--verbose x\n");
+      assertEquals(2, lines.size());
+      assertArrayEquals(new String[] { "-v", "a b" }, lines.get(0));
+
+      List<String[]> nul = corpus("-v\0a b\0\n\0\n");
+      assertEquals(2, nul.size());
+      assertArrayEquals(new String[] { "-v", "a b" }, nul.get(0));
+      assertArrayEquals(new String[] { "" }, nul.get(1));
+   }
+
+   @Test
+   public void reportsThroughputLatencyAndErrors() throws Exception {
+      List<String[]> corpus = Arrays.asList(new String[] { "-v", "a" },
+                                            new String[] { "b" },
+                                            new String[] { "-x", "c" },
+                                            new String[] {});
+      ReplayReport report = new CorpusReplay(parser(), corpus).setThreads(2)
+                                                              .setCount(400)
+                                                              .setWarmupCount(100)
+                                                              .run();
+
+      assertEquals(400, report.getParses());
+      assertEquals(2, report.getThreads());
+      assertTrue(report.getThroughput() > 0);
+      assertTrue(report.getLatencies().getValueAtPercentile(50) <= report.getLatencies().getValueAtPercentile(99.9));
+      assertEquals(Long.valueOf(100), report.getErrors().get("UnknownArgumentException"));
+      assertEquals(Long.valueOf(100), report.getErrors().get("MissingArgumentException"));
+      assertEquals(200, report.getErrorCount());
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      report.print(new PrintStream(out, true, "UTF-8"));
+      String printed = out.toString("UTF-8");
+      assertTrue(printed.contains("parses=400"));
+      assertTrue(printed.contains("errors.UnknownArgumentException=100"));
+   }
+
+   @Test
+   public void replaysAtFixedRate() throws Exception {
+      ReplayReport report = new CorpusReplay(parser(), Arrays.<String[]>asList(new String[] { "a" })).setRate(2000)
+                                                                                                     .setCount(100)
+                                                                                                     .run();
+      // 100 parses at 2000 per second take at least 49.5 ms
+      assertTrue(report.getElapsedNanos() >= 49_000_000L, Long.toString(report.getElapsedNanos()));
+      assertEquals(0, report.getErrorCount());
+   }
+}
@@ -0,0 +1,107 @@
+package com.github.koettlitz.opt.trace;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.koettlitz.opt.ArgumentModel;
+import com.github.koettlitz.opt.ArgumentParser;
+import com.github.koettlitz.opt.ArgumentParserBuilder;
+import com.github.koettlitz.opt.ex.UnknownArgumentException;
+import com.github.koettlitz.opt.exec.CommandDispatcher;
+
+public class TracerTest {
+   private static ArgumentParser parser(Tracer tracer) {
+      return ArgumentParserBuilder.begin()
+                                  .addOption('v')
+                                  .buildCommand("remote")
+                                     .buildParser()
+                                        .buildCommand("add")
+                                           .setHandler(ctx -> 3)
+                                           .buildParser()
+                                              .addArgument("name")
+                                              .build()
+                                           .build()
+                                        .build()
+                                     .build()
+                                  .setTracer(tracer)
+                                  .buildAndGet();
+   }
+
+   @Test
+   public void tracesParseCommandsAndExecutionInOneTrace() throws Exception {
+      RingBufferExporter exporter = new RingBufferExporter(16);
+      Tracer tracer = new Tracer(1, exporter);
+      ArgumentParser parser = parser(tracer);
+      CommandDispatcher dispatcher = new CommandDispatcher(parser);
+
+      try (Span request = tracer.start("request")) {
+         assertSame(request, Tracer.current());
+         ArgumentModel model = parser.parseArguments("-v", "remote", "add", "origin");
+         assertEquals(3, dispatcher.execute(model));
+      }
+      assertNull(Tracer.current());
+
+      Map<String, Span> spans = new HashMap<>();
+      for (Span span : exporter.getSpans())
+         spans.put(span.getName() + (span.getAttributes().contains("add") ? "-add" : ""), span);
+
+      assertEquals(6, exporter.getSpans().size());
+      Span request = spans.get("request");
+      assertEquals(0, request.getParentId());
+      assertEquals(request.getSpanId(), spans.get("parse").getParentId());
+      assertEquals(request.getSpanId(), spans.get("execute").getParentId());
+      assertEquals(spans.get("parse").getSpanId(), spans.get("command").getParentId());
+      assertEquals(spans.get("command").getSpanId(), spans.get("command-add").getParentId());
+      assertEquals(spans.get("parse").getSpanId(), spans.get("validate").getParentId());
+      for (Span span : spans.values()) {
+         assertEquals(request.getTraceId(), span.getTraceId());
+         assertTrue(span.getDurationNanos() >= 0);
+      }
+
+      List<Object> parse = spans.get("parse").getAttributes();
+      assertEquals(4L, parse.get(parse.indexOf("tokens") + 1));
+      assertEquals(Long.valueOf(3), spans.get("execute").getAttributes().get(3));
+   }
+
+   @Test
+   public void failedAndUnsampledParsesLeaveNoSpanOpen() {
+      RingBufferExporter exporter = new RingBufferExporter(16);
+      ArgumentParser sampled = parser(new Tracer(1, exporter));
+      assertThrows(UnknownArgumentException.class, () -> sampled.parseArguments("remote", "add", "origin", "x"));
+      assertNull(Tracer.current());
+      // the parse span and the spans of both commands, that were open when the parse failed
+      assertEquals(3, exporter.getSpans().size());
+      assertTrue(exporter.getSpans().get(2).getAttributes().contains("UnknownArgumentException"));
+
+      RingBufferExporter unsampledExporter = new RingBufferExporter(16);
+      ArgumentParser unsampled = parser(new Tracer(0, unsampledExporter));
+      assertThrows(UnknownArgumentException.class, () -> unsampled.parseArguments("remote", "add", "origin", "x"));
+      assertNull(Tracer.current());
+      assertTrue(unsampledExporter.getSpans().isEmpty());
+   }
+
+   @Test
+   public void spansAreDroppedIfTheFileCanNotBeWritten() throws Exception {
+      Path file = Files.createTempFile("trace", ".log");
+      try {
+         FileSpanExporter exporter = new FileSpanExporter(file);
+         exporter.close();
+
+         // the parse doesn't fail, because its spans can't be written
+         ArgumentModel model = parser(new Tracer(1, exporter)).parseArguments("remote", "add", "origin");
+         assertTrue(model.isCommandPresent("remote"));
+         assertNull(Tracer.current());
+         assertEquals(4, exporter.getDroppedCount());
+         assertNotNull(exporter.getLastError());
+      } finally {
+         Files.delete(file);
+      }
+   }
+}
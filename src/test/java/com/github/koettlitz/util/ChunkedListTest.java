@@ -0,0 +1,62 @@
+package com.github.koettlitz.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import org.junit.jupiter.api.Test;
+
+public class ChunkedListTest {
+    private static final int SIZE = 5000;
+
+    private static ChunkedList<Integer> filledList(int size) {
+        ChunkedList<Integer> list = new ChunkedList<>();
+        for (int i = 0; i < size; i++)
+            list.add(i);
+
+        return list;
+    }
+
+    @Test
+    public void elementsCanBeAccessedByIndex() {
+        ChunkedList<Integer> list = filledList(SIZE);
+
+        assertEquals(SIZE, list.size());
+        for (int i = 0; i < SIZE; i++)
+            assertEquals(i, (int) list.get(i));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(SIZE));
+    }
+
+    @Test
+    public void parallelStreamContainsAllElementsInOrder() {
+        ChunkedList<Integer> list = filledList(SIZE);
+
+        assertEquals(IntStream.range(0, SIZE).boxed().collect(Collectors.toList()),
+                     StreamSupport.stream(list.spliterator(), true).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void spliteratorSplitsAtChunkBoundaries() {
+        Spliterator<Integer> spliterator = filledList(SIZE).spliterator();
+        Spliterator<Integer> prefix = spliterator.trySplit();
+
+        assertNotNull(prefix);
+        assertEquals(0, prefix.estimateSize() % 1024);
+        assertEquals(SIZE, prefix.estimateSize() + spliterator.estimateSize());
+    }
+
+    @Test
+    public void clearedListCanBeReused() {
+        ChunkedList<Integer> list = filledList(SIZE);
+        list.clear();
+
+        assertTrue(list.isEmpty());
+        list.add(42);
+        assertEquals(42, (int) list.get(0));
+        assertEquals(1, list.size());
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.koettlitz.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+public class FlatMapSpliteratorTest {
+    private static final int SIZE = 5000;
+
+    @Test
+    public void parallelStreamContainsAllElementsInOrder() {
+        List<Integer> sizes = Arrays.asList(3, 0, SIZE, 1, 700);
+        List<Integer> expected = sizes.stream()
+                                      .flatMap(size -> IntStream.range(0, size).boxed())
+                                      .collect(Collectors.toList());
+
+        try (Stream<Integer> stream = FlatMapSpliterator.stream(sizes.spliterator(),
+                                                                size -> size == 0 ? null : IntStream.range(0, size).boxed())) {
+            assertEquals(expected, stream.parallel().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void aSingleMappedStreamIsSplit() {
+        try (Stream<Integer> stream = FlatMapSpliterator.stream(Arrays.asList(SIZE).spliterator(),
+                                                                size -> IntStream.range(0, size).boxed())) {
+            Spliterator<Integer> suffix = stream.spliterator();
+            Spliterator<Integer> prefix = suffix.trySplit();
+
+            assertNotNull(prefix);
+            AtomicInteger count = new AtomicInteger();
+            prefix.forEachRemaining(i -> count.incrementAndGet());
+            suffix.forEachRemaining(i -> count.incrementAndGet());
+            assertEquals(SIZE, count.get());
+        }
+    }
+
+    @Test
+    public void mappedStreamsAreClosed() {
+        AtomicInteger closed = new AtomicInteger();
+        Stream<Integer> stream = FlatMapSpliterator.stream(Arrays.asList(2, 2, 2).spliterator(),
+                                                           size -> IntStream.range(0, size)
+                                                                            .boxed()
+                                                                            .onClose(closed::incrementAndGet));
+        Iterator<Integer> iterator = stream.iterator();
+        for (int i = 0; i < 3; i++)
+            iterator.next();
+
+        assertEquals(1, closed.get());
+        stream.close();
+        assertEquals(2, closed.get());
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.koettlitz.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+public class GlobTest {
+
+    static Path createTree() throws IOException {
+        Path dir = Files.createTempDirectory("glob");
+        Files.createDirectories(dir.resolve("sub/deep"));
+        for (String file : Arrays.asList("a.txt", "b.txt", "c.log", "sub/d.txt", "sub/deep/e.txt"))
+            Files.createFile(dir.resolve(file));
+
+        return dir;
+    }
+
+    static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                Files.delete(path);
+        }
+    }
+
+    private static Set<String> expand(Path dir, String pattern) {
+        try (Stream<Path> paths = Glob.expand(dir + "/" + pattern)) {
+            return paths.map(path -> dir.relativize(path).toString().replace('\\', '/'))
+                        .collect(Collectors.toCollection(TreeSet::new));
+        }
+    }
+
+    @Test
+    public void patternsAreMatchedInTheirDirectoryOrBelow() throws IOException {
+        Path dir = createTree();
+        try {
+            assertEquals(new TreeSet<>(Arrays.asList("a.txt", "b.txt")), expand(dir, "*.txt"));
+            assertEquals(new TreeSet<>(Arrays.asList("a.txt", "c.log")), expand(dir, "{a.txt,c.*}"));
+            assertEquals(new TreeSet<>(Arrays.asList("sub/d.txt")), expand(dir, "*/*.txt"));
+            assertEquals(new TreeSet<>(Arrays.asList("sub/d.txt", "sub/deep/e.txt")), expand(dir, "**/*.txt"));
+            assertEquals(new TreeSet<>(Arrays.asList("sub/deep/e.txt")), expand(dir, "sub/d??p/*"));
+            assertTrue(expand(dir, "missing/*.txt").isEmpty());
+
+            try (Stream<Path> paths = Glob.expand(dir + "/**").parallel()) {
+                assertEquals(7, paths.count());
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void plainPathsAreNotExpanded() {
+        assertFalse(Glob.isPattern("dir/file.txt"));
+        assertTrue(Glob.isPattern("dir/*.txt"));
+
+        List<Path> paths = Glob.expand("does/not/exist.txt").collect(Collectors.toList());
+        assertEquals(Arrays.asList(Paths.get("does/not/exist.txt")), paths);
+    }
+}
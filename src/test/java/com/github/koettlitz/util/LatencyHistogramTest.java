@@ -0,0 +1,44 @@
+package com.github.koettlitz.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++)
+            histogram.record(value);
+
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(100_000, histogram.getMax());
+        assertEquals(50_000.5, histogram.getMean(), 1e-9);
+
+        assertEquals(50_000, histogram.getValueAtPercentile(50), 50_000 / 32.0);
+        assertEquals(99_000, histogram.getValueAtPercentile(99), 99_000 / 32.0);
+        assertEquals(99_900, histogram.getValueAtPercentile(99.9), 99_900 / 32.0);
+        assertEquals(100_000, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void addCombinesHistograms() {
+        LatencyHistogram small = new LatencyHistogram();
+        LatencyHistogram large = new LatencyHistogram();
+        small.record(3);
+        large.record(Long.MAX_VALUE);
+
+        small.add(large);
+        assertEquals(2, small.getCount());
+        assertEquals(3, small.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, small.getValueAtPercentile(100));
+
+        small.reset();
+        assertEquals(0, small.getCount());
+        assertEquals(0, small.getValueAtPercentile(99));
+        assertThrows(IllegalArgumentException.class, () -> small.record(-1));
+    }
+}